@@ -0,0 +1,209 @@
+package org.kmfahey.jchessgame;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A store of search results that persists between runs: for each position
+ * searched, the depth it was searched to, the score found and the best move.
+ * It's a fixed-size hash table in a memory-mapped file, so opening it reads
+ * nothing; the operating system pages in the parts that are probed, and
+ * writes go to the page cache and reach the disk in the background (or on
+ * force()). Several runners, in the same process or not, can share one file.
+ * <p>
+ * The file is a 64-byte header followed by buckets of four 16-byte entries,
+ * one cache line each. A position's key picks its bucket. An entry holds
+ * the key xored with its data word, and then the data word; an entry that
+ * was torn by two threads writing it at once then fails to match the key it
+ * was probed with, and is ignored, so no locking is needed. When a bucket is
+ * full, the shallowest entry in it is replaced.
+ * <p>
+ * Moves are kept in the 16-bit encoding PolyglotBook uses, and positions are
+ * keyed with Zobrist.key().
+ *
+ * @see MinimaxRunner#setAnalysisStore
+ */
+public final class AnalysisStore {
+
+    /** The size of a store file created when none is given, in megabytes. */
+    public static final int DEFAULT_SIZE_MB = 64;
+
+    /** The largest store file that can be created or opened, in megabytes;
+        a mapping can't be more than 2GB. */
+    public static final int MAX_SIZE_MB = 1024;
+
+    /* The first int of a store file, "JCAS" in ASCII, and the version of its
+       layout. */
+    private static final int FILE_MAGIC = 0x4a434153;
+    private static final int FILE_VERSION = 1;
+
+    private static final int HEADER_BYTES = 64;
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int BUCKET_BYTES = ENTRY_BYTES * BUCKET_ENTRIES;
+
+    /* The offset of the buckets count in the header. */
+    private static final int BUCKETS_COUNT_OFFSET = 8;
+
+    /**
+     * A stored search result.
+     *
+     * @param move  The best move, in PolyglotBook's 16-bit encoding.
+     * @param depth The depth the position was searched to, in plies.
+     * @param score The score of the best move, from the point of view of the
+     *              side to move.
+     */
+    public record Entry(int move, int depth, double score) {
+    }
+
+    /* The mapped file. Only absolute gets and puts are used on it, which
+       don't touch its position. */
+    private final MappedByteBuffer storeBuffer;
+    private final int bucketsMask;
+
+    /*
+     * Instances an AnalysisStore over a mapped file.
+     *
+     * @param storeBufferObj The mapped file.
+     * @param bucketsCount   The number of buckets in it, a power of two.
+     */
+    private AnalysisStore(final MappedByteBuffer storeBufferObj, final int bucketsCount) {
+        storeBuffer = storeBufferObj;
+        bucketsMask = bucketsCount - 1;
+    }
+
+    /**
+     * Opens a store file, creating it if it doesn't exist, and maps it into
+     * memory. The mapping stays valid after this returns and is released once
+     * the AnalysisStore is garbage collected.
+     *
+     * @param storePath     The path to the file.
+     * @param sizeMegabytes The size to create the file at, if it doesn't
+     *                      exist, in megabytes; rounded down to a power of two.
+     *                      An existing file keeps its size.
+     * @return              An AnalysisStore object.
+     * @throws IOException If the file can't be opened, created or mapped, or
+     *                     isn't a store file.
+     */
+    public static AnalysisStore open(final Path storePath, final int sizeMegabytes) throws IOException {
+        if (sizeMegabytes < 1 || sizeMegabytes > MAX_SIZE_MB) {
+            throw new IllegalArgumentException("a store must be from 1 to " + MAX_SIZE_MB + " megabytes.");
+        }
+        boolean isNew = !Files.exists(storePath);
+        try (FileChannel storeChannel = FileChannel.open(storePath, StandardOpenOption.CREATE,
+                                                         StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int bucketsCount;
+            if (isNew || storeChannel.size() == 0) {
+                bucketsCount = Integer.highestOneBit(sizeMegabytes) * (1 << 20) / BUCKET_BYTES;
+            } else if (storeChannel.size() < HEADER_BYTES) {
+                throw new IOException("`" + storePath + "` isn't an analysis store file.");
+            } else {
+                MappedByteBuffer headerBuffer = storeChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+                bucketsCount = headerBuffer.getInt(BUCKETS_COUNT_OFFSET);
+                if (headerBuffer.getInt(0) != FILE_MAGIC || headerBuffer.getInt(4) != FILE_VERSION
+                    || Integer.bitCount(bucketsCount) != 1 || bucketsCount > MAX_SIZE_MB * (1 << 20) / BUCKET_BYTES
+                    || storeChannel.size() != HEADER_BYTES + (long) bucketsCount * BUCKET_BYTES) {
+                    throw new IOException("`" + storePath + "` isn't an analysis store file.");
+                }
+            }
+
+            /* Mapping past the end of the file grows it, with zeroes, which
+               is an empty entry. */
+            MappedByteBuffer storeBuffer = storeChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                                            HEADER_BYTES + (long) bucketsCount * BUCKET_BYTES);
+            if (isNew || storeBuffer.getInt(0) != FILE_MAGIC) {
+                storeBuffer.putInt(0, FILE_MAGIC);
+                storeBuffer.putInt(4, FILE_VERSION);
+                storeBuffer.putInt(BUCKETS_COUNT_OFFSET, bucketsCount);
+            }
+            return new AnalysisStore(storeBuffer, bucketsCount);
+        }
+    }
+
+    /**
+     * Accessor for the number of entries the store can hold.
+     *
+     * @return The number of entries.
+     */
+    public int getEntriesCapacity() {
+        return (bucketsMask + 1) * BUCKET_ENTRIES;
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param positionKey The position's key, from Zobrist.key().
+     * @return            The stored Entry, or null if there's none.
+     */
+    public Entry probe(final long positionKey) {
+        int bucketOffset = bucketOffset(positionKey);
+        for (int entryIdx = 0; entryIdx < BUCKET_ENTRIES; entryIdx++) {
+            int entryOffset = bucketOffset + entryIdx * ENTRY_BYTES;
+            long dataWord = storeBuffer.getLong(entryOffset + 8);
+            if (dataWord != 0 && (storeBuffer.getLong(entryOffset) ^ dataWord) == positionKey) {
+                return new Entry((int) (dataWord & 0xffff), (int) (dataWord >>> 16) & 0xff,
+                                 Float.intBitsToFloat((int) (dataWord >>> 32)));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores a search result. If the position is already stored from a
+     * deeper search, it's left as it is.
+     *
+     * @param positionKey The position's key, from Zobrist.key().
+     * @param move        The best move, in PolyglotBook's 16-bit encoding.
+     * @param depth       The depth searched to, in plies; at least 1.
+     * @param score       The score of the best move, from the point of view
+     *                    of the side to move. It's stored as a float.
+     */
+    public void store(final long positionKey, final int move, final int depth, final double score) {
+        int bucketOffset = bucketOffset(positionKey);
+        int replacedOffset = -1;
+        int replacedDepth = Integer.MAX_VALUE;
+
+        for (int entryIdx = 0; entryIdx < BUCKET_ENTRIES; entryIdx++) {
+            int entryOffset = bucketOffset + entryIdx * ENTRY_BYTES;
+            long dataWord = storeBuffer.getLong(entryOffset + 8);
+            int entryDepth = dataWord == 0 ? -1 : (int) (dataWord >>> 16) & 0xff;
+            if (dataWord != 0 && (storeBuffer.getLong(entryOffset) ^ dataWord) == positionKey) {
+                if (entryDepth > depth) {
+                    return;
+                }
+                replacedOffset = entryOffset;
+                break;
+            } else if (entryDepth < replacedDepth) {
+                replacedOffset = entryOffset;
+                replacedDepth = entryDepth;
+            }
+        }
+
+        long dataWord = (long) Float.floatToIntBits((float) score) << 32 | (long) Math.min(depth, 0xff) << 16
+                        | move & 0xffff;
+        storeBuffer.putLong(replacedOffset, positionKey ^ dataWord);
+        storeBuffer.putLong(replacedOffset + 8, dataWord);
+    }
+
+    /**
+     * Writes any stored results still only in the page cache out to the
+     * file.
+     */
+    public void force() {
+        storeBuffer.force();
+    }
+
+    /*
+     * Computes the offset of a position's bucket.
+     *
+     * @param positionKey The position's key.
+     * @return            The offset in the file.
+     */
+    private int bucketOffset(final long positionKey) {
+        return HEADER_BYTES + (int) (positionKey & bucketsMask) * BUCKET_BYTES;
+    }
+}
@@ -0,0 +1,538 @@
+package org.kmfahey.jchessgame;
+
+import java.util.Arrays;
+
+/**
+ * The number of pieces of each color attacking each square of a board, kept
+ * up to date as moves are made and unmade rather than retraced from the
+ * board. A move empties, fills or changes the piece on two to four squares;
+ * each of those changes only alters the attacks of the piece it puts down or
+ * takes up and, if the square's occupancy changes, the rays of the sliding
+ * pieces that pass through it. So makeMove() and unmakeMove() update just
+ * those attacks instead of rescanning the board, and whether a square is
+ * attacked is then a single array lookup.
+ * <p>
+ * The counts answer the questions BoardArrays.wouldKingBeInCheck() answers
+ * by tracing rays outward from the king: whether a king is in check, whether
+ * a king may step onto a square or castle across it, and, since a king
+ * that's not in check can only be exposed by moving a piece pinned to it,
+ * whether any other move leaves the mover's king in check. When the king is
+ * already in check the last of these falls back to the traced test.
+ * <p>
+ * Unlike EvaluationState, this class makes and unmakes the moves on the
+ * board array itself, because it updates the counts one square at a time as
+ * the board changes.
+ *
+ * @see BoardArrays#wouldKingBeInCheck
+ * @see EvaluationState
+ */
+public final class AttackMaps {
+
+    /* These statements copy the piece int constants from BoardArrays to this
+       class for convenience. */
+    private static final int WHITE = BoardArrays.WHITE;
+    private static final int BLACK = BoardArrays.BLACK;
+    private static final int KING = BoardArrays.KING;
+    private static final int QUEEN = BoardArrays.QUEEN;
+    private static final int BISHOP = BoardArrays.BISHOP;
+    private static final int KNIGHT = BoardArrays.KNIGHT;
+    private static final int ROOK = BoardArrays.ROOK;
+    private static final int PAWN = BoardArrays.PAWN;
+
+    /* The steps of the eight rays from a square. The first four are the
+       orthogonal ones that rooks and queens move along, the last four the
+       diagonal ones that bishops and queens move along; each even-indexed
+       ray is followed by the one pointing the opposite way. */
+    private static final int[] RAY_X_STEPS = {1, -1, 0, 0, 1, -1, 1, -1};
+    private static final int[] RAY_Y_STEPS = {0, 0, 1, -1, 1, -1, -1, 1};
+
+    /* The steps of the eight knight's moves from a square. */
+    private static final int[] KNIGHT_X_STEPS = {1, 2, 2, 1, -1, -2, -2, -1};
+    private static final int[] KNIGHT_Y_STEPS = {2, 1, -1, -2, -2, -1, 1, 2};
+
+    private final int colorOnTop;
+
+    /* The number of pieces attacking each square, indexed by color (0 for
+       white, 1 for black) and then by square index, yIdx * 8 + xIdx. */
+    private final int[][] attackCounts = new int[2][64];
+
+    /* The square index of each color's king, indexed by color, or -1 if
+       the board has no king of that color. */
+    private final int[] kingSquares = new int[2];
+
+    /**
+     * Instances an AttackMaps, computing its counts from a board.
+     *
+     * @param boardArray    The int[8][8] board representation.
+     * @param colorOnTopVal The color playing from the top of the board.
+     */
+    public AttackMaps(final int[][] boardArray, final int colorOnTopVal) {
+        colorOnTop = colorOnTopVal;
+        recompute(boardArray);
+    }
+
+    /**
+     * Recomputes the counts from a board, discarding the current ones.
+     *
+     * @param boardArray The int[8][8] board representation.
+     */
+    public void recompute(final int[][] boardArray) {
+        Arrays.fill(attackCounts[0], 0);
+        Arrays.fill(attackCounts[1], 0);
+        kingSquares[0] = -1;
+        kingSquares[1] = -1;
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            for (int yIdx = 0; yIdx < 8; yIdx++) {
+                if (boardArray[xIdx][yIdx] != 0) {
+                    addAttacks(boardArray, xIdx, yIdx, 1);
+                    noteKing(boardArray[xIdx][yIdx], xIdx, yIdx);
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes a move on a board, as BoardArrays.makeMove() does, updating
+     * the counts to match. It's called in place of BoardArrays.makeMove().
+     *
+     * @param boardArray The int[8][8] board the counts match.
+     * @param moveArray  The int[7] move array.
+     */
+    public void makeMove(final int[][] boardArray, final int[] moveArray) {
+        updateForMove(boardArray, moveArray, true);
+    }
+
+    /**
+     * Reverses a move executed with makeMove(), as BoardArrays.unmakeMove()
+     * does, updating the counts to match. It's called in place of
+     * BoardArrays.unmakeMove().
+     *
+     * @param boardArray The int[8][8] board the counts match.
+     * @param moveArray  The int[7] move array passed to makeMove().
+     */
+    public void unmakeMove(final int[][] boardArray, final int[] moveArray) {
+        updateForMove(boardArray, moveArray, false);
+    }
+
+    /**
+     * Accessor for the number of pieces of one color attacking a square.
+     *
+     * @param color BoardArrays.WHITE or BoardArrays.BLACK.
+     * @param xIdx  The x index of the square.
+     * @param yIdx  The y index of the square.
+     * @return      The number of pieces.
+     */
+    public int getAttackCount(final int color, final int xIdx, final int yIdx) {
+        return attackCounts[colorIndex(color)][yIdx * 8 + xIdx];
+    }
+
+    /**
+     * Tests whether any piece of one color attacks a square.
+     *
+     * @param color BoardArrays.WHITE or BoardArrays.BLACK.
+     * @param xIdx  The x index of the square.
+     * @param yIdx  The y index of the square.
+     * @return      True if the square is attacked by that color, false
+     *              otherwise.
+     */
+    public boolean isAttacked(final int color, final int xIdx, final int yIdx) {
+        return attackCounts[colorIndex(color)][yIdx * 8 + xIdx] != 0;
+    }
+
+    /**
+     * Tests whether a color's king is in check; the lookup equivalent of
+     * BoardArrays.isKingInCheck().
+     *
+     * @param color BoardArrays.WHITE or BoardArrays.BLACK.
+     * @return      True if that color's king is attacked, false otherwise or
+     *              if it has no king on the board.
+     */
+    public boolean isKingInCheck(final int color) {
+        int colorIdx = colorIndex(color);
+        return kingSquares[colorIdx] != -1 && attackCounts[1 - colorIdx][kingSquares[colorIdx]] != 0;
+    }
+
+    /**
+     * Tests whether a color's king would be in check on a square it moved to;
+     * the equivalent of the five-argument BoardArrays.wouldKingBeInCheck().
+     * If the king isn't in check where it stands, no sliding piece's ray
+     * passes through its square, so moving it can't open one, and the test
+     * is whether the other color attacks the square. Otherwise it falls back
+     * to BoardArrays.wouldKingBeInCheck().
+     *
+     * @param boardArray The int[8][8] board the counts match.
+     * @param kingXIdx   The x index of the square the king would be on.
+     * @param kingYIdx   The y index of the square the king would be on.
+     * @param color      The color of the king.
+     * @return           True if the king would be in check, false otherwise.
+     */
+    public boolean wouldKingBeInCheck(final int[][] boardArray, final int kingXIdx, final int kingYIdx,
+                                      final int color) {
+        if (isKingInCheck(color)) {
+            return BoardArrays.wouldKingBeInCheck(boardArray, kingXIdx, kingYIdx, color, colorOnTop);
+        }
+        return attackCounts[1 - colorIndex(color)][kingYIdx * 8 + kingXIdx] != 0;
+    }
+
+    /**
+     * Tests whether moving a piece other than the king would leave its
+     * color's king in check; the equivalent of the seven-argument
+     * BoardArrays.wouldKingBeInCheck(). If the king isn't in check, the move
+     * can only expose it by taking a pinned piece off the line between the
+     * king and a sliding piece, so the test walks that one line. Otherwise
+     * it falls back to BoardArrays.wouldKingBeInCheck().
+     *
+     * @param boardArray The int[8][8] board the counts match.
+     * @param fromXIdx   The x index of the square the piece moves from.
+     * @param fromYIdx   The y index of the square the piece moves from.
+     * @param toXIdx     The x index of the square the piece moves to.
+     * @param toYIdx     The y index of the square the piece moves to.
+     * @param color      The color of the piece.
+     * @return           True if the move would leave the king in check, false
+     *                   otherwise.
+     */
+    public boolean wouldKingBeInCheck(final int[][] boardArray, final int fromXIdx, final int fromYIdx,
+                                      final int toXIdx, final int toYIdx, final int color) {
+        int kingSquareIdx = kingSquares[colorIndex(color)];
+        if (kingSquareIdx == -1 || isKingInCheck(color)) {
+            return BoardArrays.wouldKingBeInCheck(boardArray, fromXIdx, fromYIdx, toXIdx, toYIdx, color, colorOnTop);
+        }
+        int kingXIdx = kingSquareIdx & 7;
+        int kingYIdx = kingSquareIdx >>> 3;
+        int xDiff = fromXIdx - kingXIdx;
+        int yDiff = fromYIdx - kingYIdx;
+        if (xDiff == 0 && yDiff == 0) {
+            return BoardArrays.wouldKingBeInCheck(boardArray, fromXIdx, fromYIdx, toXIdx, toYIdx, color, colorOnTop);
+        } else if (xDiff != 0 && yDiff != 0 && Math.abs(xDiff) != Math.abs(yDiff)) {
+            return false;
+        }
+        int xStep = Integer.signum(xDiff);
+        int yStep = Integer.signum(yDiff);
+
+        /* The piece is only pinned if nothing stands between it and the
+           king. A destination between them keeps the line blocked. */
+        int xIdx = kingXIdx + xStep;
+        int yIdx = kingYIdx + yStep;
+        while (xIdx != fromXIdx || yIdx != fromYIdx) {
+            if (boardArray[xIdx][yIdx] != 0 || xIdx == toXIdx && yIdx == toYIdx) {
+                return false;
+            }
+            xIdx += xStep;
+            yIdx += yStep;
+        }
+
+        /* Past the piece, the first piece on the line pins it if it's an
+           opposing slider that moves along the line, unless the move
+           captures it or stays on the line short of it. */
+        int otherColor = color == WHITE ? BLACK : WHITE;
+        int pinningSliderInt = otherColor | (xStep != 0 && yStep != 0 ? BISHOP : ROOK);
+        xIdx = fromXIdx + xStep;
+        yIdx = fromYIdx + yStep;
+        while (xIdx >= 0 && xIdx <= 7 && yIdx >= 0 && yIdx <= 7) {
+            if (xIdx == toXIdx && yIdx == toYIdx) {
+                return false;
+            }
+            int pieceInt = boardArray[xIdx][yIdx];
+            if (pieceInt != 0) {
+                return pieceInt == pinningSliderInt || pieceInt == (otherColor | QUEEN);
+            }
+            xIdx += xStep;
+            yIdx += yStep;
+        }
+        return false;
+    }
+
+    /**
+     * Checks the counts against ones recomputed from a board.
+     *
+     * @param boardArray The int[8][8] board the counts should match.
+     * @throws IllegalStateException If they don't match.
+     */
+    public void verify(final int[][] boardArray) throws IllegalStateException {
+        AttackMaps recomputedMaps = new AttackMaps(boardArray, colorOnTop);
+        for (int colorIdx = 0; colorIdx < 2; colorIdx++) {
+            if (!Arrays.equals(attackCounts[colorIdx], recomputedMaps.attackCounts[colorIdx])
+                || kingSquares[colorIdx] != recomputedMaps.kingSquares[colorIdx]) {
+                throw new IllegalStateException("incremental attack maps for " + (colorIdx == 0 ? "white" : "black")
+                                                + " don't match the board: counts "
+                                                + Arrays.toString(attackCounts[colorIdx]) + " and king square "
+                                                + kingSquares[colorIdx] + ", recomputed counts "
+                                                + Arrays.toString(recomputedMaps.attackCounts[colorIdx])
+                                                + " and king square " + recomputedMaps.kingSquares[colorIdx]);
+            }
+        }
+    }
+
+    /*
+     * Makes or unmakes a move on a board, updating the counts. The board is
+     * changed the way BoardArrays.makeMove() and unmakeMove() change it, but
+     * one square at a time, so that each change only has to update the
+     * attacks of the piece put on or taken off the square and of the sliders
+     * whose rays pass through it.
+     *
+     * @param boardArray The int[8][8] board the counts match.
+     * @param moveArray  The int[7] move array.
+     * @param isMake     True to make the move, false to unmake it.
+     */
+    private void updateForMove(final int[][] boardArray, final int[] moveArray, final boolean isMake) {
+        int fromXIdx = moveArray[1];
+        int fromYIdx = moveArray[2];
+        int toXIdx = moveArray[3];
+        int toYIdx = moveArray[4];
+
+        if (BoardArrays.isCastlingMove(moveArray)) {
+            int kingNewXIdx = toXIdx == 7 ? 6 : 2;
+            int rookNewXIdx = toXIdx == 7 ? 5 : 3;
+            if (isMake) {
+                removePiece(boardArray, fromXIdx, fromYIdx);
+                removePiece(boardArray, toXIdx, toYIdx);
+                putPiece(boardArray, kingNewXIdx, fromYIdx, moveArray[0]);
+                putPiece(boardArray, rookNewXIdx, fromYIdx, moveArray[5]);
+            } else {
+                removePiece(boardArray, kingNewXIdx, fromYIdx);
+                removePiece(boardArray, rookNewXIdx, fromYIdx);
+                putPiece(boardArray, fromXIdx, fromYIdx, moveArray[0]);
+                putPiece(boardArray, toXIdx, toYIdx, moveArray[5]);
+            }
+        } else if (isMake) {
+            int newPieceInt = moveArray[6] != 0 ? moveArray[6] : moveArray[0];
+            removePiece(boardArray, fromXIdx, fromYIdx);
+            if (moveArray[5] != 0) {
+                replacePiece(boardArray, toXIdx, toYIdx, newPieceInt);
+            } else {
+                putPiece(boardArray, toXIdx, toYIdx, newPieceInt);
+            }
+        } else {
+            if (moveArray[5] != 0) {
+                replacePiece(boardArray, toXIdx, toYIdx, moveArray[5]);
+            } else {
+                removePiece(boardArray, toXIdx, toYIdx);
+            }
+            putPiece(boardArray, fromXIdx, fromYIdx, moveArray[0]);
+        }
+    }
+
+    /*
+     * Takes the piece off a square, subtracting its attacks and extending
+     * the rays of the sliders that it blocked.
+     *
+     * @param boardArray The int[8][8] board.
+     * @param xIdx       The x index of the square.
+     * @param yIdx       The y index of the square.
+     */
+    private void removePiece(final int[][] boardArray, final int xIdx, final int yIdx) {
+        addAttacks(boardArray, xIdx, yIdx, -1);
+        boardArray[xIdx][yIdx] = 0;
+        updateRaysThrough(boardArray, xIdx, yIdx, 1);
+    }
+
+    /*
+     * Puts a piece on an empty square, cutting short the rays of the sliders
+     * that it now blocks and adding its attacks.
+     *
+     * @param boardArray The int[8][8] board.
+     * @param xIdx       The x index of the square.
+     * @param yIdx       The y index of the square.
+     * @param pieceInt   The piece int to put there.
+     */
+    private void putPiece(final int[][] boardArray, final int xIdx, final int yIdx, final int pieceInt) {
+        updateRaysThrough(boardArray, xIdx, yIdx, -1);
+        boardArray[xIdx][yIdx] = pieceInt;
+        addAttacks(boardArray, xIdx, yIdx, 1);
+        noteKing(pieceInt, xIdx, yIdx);
+    }
+
+    /*
+     * Replaces the piece on an occupied square. The square stays occupied,
+     * so no slider's ray changes; only the two pieces' attacks do.
+     *
+     * @param boardArray The int[8][8] board.
+     * @param xIdx       The x index of the square.
+     * @param yIdx       The y index of the square.
+     * @param pieceInt   The piece int to put there.
+     */
+    private void replacePiece(final int[][] boardArray, final int xIdx, final int yIdx, final int pieceInt) {
+        addAttacks(boardArray, xIdx, yIdx, -1);
+        boardArray[xIdx][yIdx] = pieceInt;
+        addAttacks(boardArray, xIdx, yIdx, 1);
+        noteKing(pieceInt, xIdx, yIdx);
+    }
+
+    /*
+     * Adds or subtracts the attacks that sliders make past a square, for the
+     * square becoming empty or occupied. Along each of the four lines through
+     * the square, the first piece in each direction is found; if it slides
+     * along the line, its ray passes through the square and on to the first
+     * piece in the other direction, and those squares gain or lose its
+     * attack.
+     *
+     * @param boardArray The int[8][8] board.
+     * @param xIdx       The x index of the square.
+     * @param yIdx       The y index of the square.
+     * @param delta      1 when the square has become empty, -1 when it's
+     *                   about to be occupied.
+     */
+    private void updateRaysThrough(final int[][] boardArray, final int xIdx, final int yIdx, final int delta) {
+        for (int rayIdx = 0; rayIdx < 8; rayIdx += 2) {
+            int sliderFlags = QUEEN | (rayIdx < 4 ? ROOK : BISHOP);
+            int forwardLength = rayLength(boardArray, xIdx, yIdx, rayIdx);
+            int backwardLength = rayLength(boardArray, xIdx, yIdx, rayIdx + 1);
+            int forwardPieceInt = pieceAtRayEnd(boardArray, xIdx, yIdx, rayIdx, forwardLength);
+            int backwardPieceInt = pieceAtRayEnd(boardArray, xIdx, yIdx, rayIdx + 1, backwardLength);
+            if ((forwardPieceInt & sliderFlags) != 0) {
+                addRayAttacks(forwardPieceInt, xIdx, yIdx, rayIdx + 1, backwardLength, delta);
+            }
+            if ((backwardPieceInt & sliderFlags) != 0) {
+                addRayAttacks(backwardPieceInt, xIdx, yIdx, rayIdx, forwardLength, delta);
+            }
+        }
+    }
+
+    /*
+     * Counts the squares along a ray from a square, up to and including the
+     * first occupied one or up to the edge of the board.
+     *
+     * @param boardArray The int[8][8] board.
+     * @param xIdx       The x index of the square the ray starts from.
+     * @param yIdx       The y index of the square the ray starts from.
+     * @param rayIdx     The index of the ray's steps in RAY_X_STEPS and
+     *                   RAY_Y_STEPS.
+     * @return           The number of squares.
+     */
+    private static int rayLength(final int[][] boardArray, final int xIdx, final int yIdx, final int rayIdx) {
+        int rayLength = 0;
+        int rayXIdx = xIdx + RAY_X_STEPS[rayIdx];
+        int rayYIdx = yIdx + RAY_Y_STEPS[rayIdx];
+        while (rayXIdx >= 0 && rayXIdx <= 7 && rayYIdx >= 0 && rayYIdx <= 7) {
+            rayLength++;
+            if (boardArray[rayXIdx][rayYIdx] != 0) {
+                break;
+            }
+            rayXIdx += RAY_X_STEPS[rayIdx];
+            rayYIdx += RAY_Y_STEPS[rayIdx];
+        }
+        return rayLength;
+    }
+
+    /*
+     * Finds the piece on the last square of a ray measured by rayLength().
+     *
+     * @param boardArray The int[8][8] board.
+     * @param xIdx       The x index of the square the ray starts from.
+     * @param yIdx       The y index of the square the ray starts from.
+     * @param rayIdx     The index of the ray's steps.
+     * @param rayLength  The ray's length.
+     * @return           The piece int there, or 0 if the ray reaches the edge
+     *                   of the board without meeting a piece.
+     */
+    private static int pieceAtRayEnd(final int[][] boardArray, final int xIdx, final int yIdx, final int rayIdx,
+                                     final int rayLength) {
+        if (rayLength == 0) {
+            return 0;
+        }
+        return boardArray[xIdx + RAY_X_STEPS[rayIdx] * rayLength][yIdx + RAY_Y_STEPS[rayIdx] * rayLength];
+    }
+
+    /*
+     * Adds or subtracts a slider's attacks on the squares along a ray.
+     *
+     * @param sliderPieceInt The slider's piece int.
+     * @param xIdx           The x index of the square the ray starts from.
+     * @param yIdx           The y index of the square the ray starts from.
+     * @param rayIdx         The index of the ray's steps.
+     * @param rayLength      The number of squares along the ray to update.
+     * @param delta          1 to add the attacks, -1 to subtract them.
+     */
+    private void addRayAttacks(final int sliderPieceInt, final int xIdx, final int yIdx, final int rayIdx,
+                               final int rayLength, final int delta) {
+        int[] colorsCounts = attackCounts[colorIndex(sliderPieceInt & (WHITE | BLACK))];
+        int squareIdx = yIdx * 8 + xIdx;
+        int squareStep = RAY_Y_STEPS[rayIdx] * 8 + RAY_X_STEPS[rayIdx];
+        for (int stepIdx = 0; stepIdx < rayLength; stepIdx++) {
+            squareIdx += squareStep;
+            colorsCounts[squareIdx] += delta;
+        }
+    }
+
+    /*
+     * Adds or subtracts the attacks of the piece on a square. Pawns attack
+     * the two squares diagonally forward, knights and kings their usual
+     * squares, and sliders every square along their rays up to and
+     * including the first occupied one.
+     *
+     * @param boardArray The int[8][8] board.
+     * @param xIdx       The x index of the piece's square.
+     * @param yIdx       The y index of the piece's square.
+     * @param delta      1 to add the attacks, -1 to subtract them.
+     */
+    private void addAttacks(final int[][] boardArray, final int xIdx, final int yIdx, final int delta) {
+        int pieceInt = boardArray[xIdx][yIdx];
+        int[] colorsCounts = attackCounts[colorIndex(pieceInt & (WHITE | BLACK))];
+
+        if ((pieceInt & PAWN) != 0) {
+            int attackedYIdx = (pieceInt & colorOnTop) != 0 ? yIdx + 1 : yIdx - 1;
+            if (attackedYIdx >= 0 && attackedYIdx <= 7) {
+                if (xIdx > 0) {
+                    colorsCounts[attackedYIdx * 8 + xIdx - 1] += delta;
+                }
+                if (xIdx < 7) {
+                    colorsCounts[attackedYIdx * 8 + xIdx + 1] += delta;
+                }
+            }
+        } else if ((pieceInt & KNIGHT) != 0) {
+            for (int stepIdx = 0; stepIdx < 8; stepIdx++) {
+                int attackedXIdx = xIdx + KNIGHT_X_STEPS[stepIdx];
+                int attackedYIdx = yIdx + KNIGHT_Y_STEPS[stepIdx];
+                if (attackedXIdx >= 0 && attackedXIdx <= 7 && attackedYIdx >= 0 && attackedYIdx <= 7) {
+                    colorsCounts[attackedYIdx * 8 + attackedXIdx] += delta;
+                }
+            }
+        } else if ((pieceInt & KING) != 0) {
+            for (int rayIdx = 0; rayIdx < 8; rayIdx++) {
+                int attackedXIdx = xIdx + RAY_X_STEPS[rayIdx];
+                int attackedYIdx = yIdx + RAY_Y_STEPS[rayIdx];
+                if (attackedXIdx >= 0 && attackedXIdx <= 7 && attackedYIdx >= 0 && attackedYIdx <= 7) {
+                    colorsCounts[attackedYIdx * 8 + attackedXIdx] += delta;
+                }
+            }
+        } else {
+            int firstRayIdx = (pieceInt & BISHOP) != 0 ? 4 : 0;
+            int lastRayIdx = (pieceInt & ROOK) != 0 ? 4 : 8;
+            for (int rayIdx = firstRayIdx; rayIdx < lastRayIdx; rayIdx++) {
+                int attackedXIdx = xIdx + RAY_X_STEPS[rayIdx];
+                int attackedYIdx = yIdx + RAY_Y_STEPS[rayIdx];
+                while (attackedXIdx >= 0 && attackedXIdx <= 7 && attackedYIdx >= 0 && attackedYIdx <= 7) {
+                    colorsCounts[attackedYIdx * 8 + attackedXIdx] += delta;
+                    if (boardArray[attackedXIdx][attackedYIdx] != 0) {
+                        break;
+                    }
+                    attackedXIdx += RAY_X_STEPS[rayIdx];
+                    attackedYIdx += RAY_Y_STEPS[rayIdx];
+                }
+            }
+        }
+    }
+
+    /*
+     * Records a king's square if the piece int is a king.
+     *
+     * @param pieceInt The piece int on the square, or 0.
+     * @param xIdx     The x index of the square.
+     * @param yIdx     The y index of the square.
+     */
+    private void noteKing(final int pieceInt, final int xIdx, final int yIdx) {
+        if ((pieceInt & KING) != 0) {
+            kingSquares[colorIndex(pieceInt & (WHITE | BLACK))] = yIdx * 8 + xIdx;
+        }
+    }
+
+    /*
+     * Maps a color to its index in the counts.
+     *
+     * @param color BoardArrays.WHITE or BoardArrays.BLACK.
+     * @return      0 for white, 1 for black.
+     */
+    private static int colorIndex(final int color) {
+        return color == WHITE ? 0 : 1;
+    }
+}
@@ -0,0 +1,277 @@
+package org.kmfahey.jchessgame;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Analyzes a stream of positions with the engine, headless, on a pool of
+ * worker threads. Positions are read one per line, as FEN or EPD, from a file
+ * or standard in, and a result line is written for each as soon as its search
+ * finishes. At most two positions per worker are read ahead of the searches,
+ * so memory use doesn't grow with the size of the input, and a pipeline
+ * consuming the output sees results while the input is still being read.
+ * <p>
+ * Run from the commandline as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.BatchAnalysis [--engine &lt;spec&gt;] [--workers &lt;n&gt;]
+ *         [--output &lt;file&gt;] [&lt;file&gt; | -]
+ * </pre>
+ * The engine spec is as for Tournament, for instance "depth=5" or
+ * "depth=8,time=500"; by default each position is searched to depth 4. With
+ * no file, or -, positions are read from standard in. Blank lines and lines
+ * starting with # are skipped.
+ * <p>
+ * Since the workers finish in any order, the results are written in the
+ * order they complete, not the input order. Each is a tab-separated line of:
+ * the position's line number in the input; the best move in long algebraic
+ * notation, or (none) if the side to move has no moves; the score in
+ * centipawns from the side to move's point of view, as "cp N", or "mate" or
+ * "-mate" if the search found a forced mate for or against it; the depth of
+ * the deepest completed iteration; the nodes searched; the search time in
+ * milliseconds; and the position's EPD id, or its FEN if it has none. A line
+ * that doesn't parse gets a result line of its line number, "error" and the
+ * reason, and the run continues. A summary is printed to standard error at
+ * the end.
+ *
+ * @see Tournament
+ * @see Epd
+ */
+public final class BatchAnalysis {
+
+    /* Positions are set up from FENs, which put white at the bottom. */
+    private static final int COLOR_ON_TOP = BoardArrays.BLACK;
+
+    /* The engine spec used unless one is given. */
+    private static final String DEFAULT_ENGINE_SPEC = "depth=4";
+
+    /* The number of positions per worker that may be read ahead of the
+       searches, which bounds the memory held by pending positions. */
+    private static final int READ_AHEAD_PER_WORKER = 2;
+
+    /**
+     * A worker's engine: a Chessboard whose board array each position is
+     * parsed into, and a MinimaxRunner over it. Each worker thread keeps one
+     * for the whole run, so its evaluation cache carries over between
+     * positions.
+     */
+    private static final class Worker {
+        private final Chessboard chessboard;
+        private final MinimaxRunner minimaxRunner;
+        private int lastDepth;
+        private double lastScore;
+
+        /*
+         * Instances a Worker.
+         *
+         * @param engineConfig The configuration to search with.
+         */
+        private Worker(final Tournament.EngineConfig engineConfig) {
+            chessboard = new Chessboard(new int[8][8], BoardArrays.WHITE, COLOR_ON_TOP);
+            minimaxRunner = engineConfig.newRunner(chessboard, BoardArrays.WHITE);
+            minimaxRunner.setIterationListener((depth, score, nodes, elapsedNanos, bestMoveArray) -> {
+                lastDepth = depth;
+                lastScore = score;
+            });
+        }
+    }
+
+    private BatchAnalysis() { }
+
+    /**
+     * Analyzes every position read from a reader, writing a result line for
+     * each to a writer as its search finishes. It returns once every position
+     * has been analyzed and its result written.
+     *
+     * @param positionsReader The source of the positions, one per line.
+     * @param resultsWriter   The destination of the result lines. It's
+     *                        flushed after every line.
+     * @param engineConfig    The configuration to search with.
+     * @param workersCount    The number of positions to search at once.
+     * @return                The number of positions analyzed, not counting
+     *                        lines that didn't parse.
+     * @throws IOException If reading a position fails.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    public static long analyze(final BufferedReader positionsReader, final PrintWriter resultsWriter,
+                               final Tournament.EngineConfig engineConfig, final int workersCount)
+            throws IOException, InterruptedException {
+        ExecutorService workerPool = Executors.newFixedThreadPool(workersCount, runnable -> {
+            Thread thread = new Thread(runnable, "batch-analysis-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ThreadLocal<Worker> workers = ThreadLocal.withInitial(() -> new Worker(engineConfig));
+        Semaphore readAheadPermits = new Semaphore(workersCount * READ_AHEAD_PER_WORKER);
+        AtomicLong analyzedCount = new AtomicLong();
+        long lineNumber = 0;
+        String line;
+
+        try {
+            while ((line = positionsReader.readLine()) != null) {
+                lineNumber++;
+                if (!Epd.isPositionLine(line)) {
+                    continue;
+                }
+                long positionLineNumber = lineNumber;
+                String positionLine = line;
+                readAheadPermits.acquire();
+                workerPool.execute(() -> {
+                    try {
+                        String resultLine = analyzePosition(workers.get(), positionLineNumber, positionLine);
+                        analyzedCount.incrementAndGet();
+                        writeResultLine(resultsWriter, resultLine);
+                    } catch (IllegalArgumentException exception) {
+                        writeResultLine(resultsWriter, positionLineNumber + "\terror\t" + exception.getMessage());
+                    } catch (RuntimeException exception) {
+                        writeResultLine(resultsWriter, positionLineNumber + "\terror\t" + exception);
+                    } finally {
+                        readAheadPermits.release();
+                    }
+                });
+            }
+        } finally {
+            workerPool.shutdown();
+            workerPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        return analyzedCount.get();
+    }
+
+    /*
+     * Searches one position and formats its result line.
+     *
+     * @param worker       The calling thread's Worker.
+     * @param lineNumber   The position's line number in the input.
+     * @param positionLine The line, as FEN or EPD.
+     * @return             The result line, without a line ending.
+     * @throws IllegalArgumentException If the line doesn't parse.
+     */
+    private static String analyzePosition(final Worker worker, final long lineNumber, final String positionLine)
+            throws IllegalArgumentException {
+        Epd.Entry entry = Epd.parse(positionLine);
+        Fen.Position position = Fen.parse(entry.fen(), COLOR_ON_TOP, worker.chessboard.getBoardArray());
+
+        int colorToMove = position.colorToMove();
+        MinimaxRunner minimaxRunner = worker.minimaxRunner;
+        minimaxRunner.setColors(colorToMove == BoardArrays.WHITE ? BoardArrays.BLACK : BoardArrays.WHITE,
+                                COLOR_ON_TOP);
+        minimaxRunner.setCastlingRights(position.castlingRights());
+        worker.lastDepth = 0;
+        worker.lastScore = 0D;
+
+        /* A turn count of 0 would shuffle the root moves, which would make
+           the best move among equally scored ones vary from run to run. */
+        long startNodes = minimaxRunner.getNodeCount();
+        long startNanos = System.nanoTime();
+        Chessboard.Move moveObj = minimaxRunner.algorithmTopLevel(Math.max(1, position.fullmoveNumber() - 1));
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+        long nodes = minimaxRunner.getNodeCount() - startNodes;
+
+        String bestMove;
+        String score;
+        if (Objects.isNull(moveObj.movingPiece())) {
+            bestMove = "(none)";
+            score = BoardArrays.isKingInCheck(position.boardArray(), colorToMove, COLOR_ON_TOP) ? "-mate" : "cp 0";
+        } else {
+            int[] moveArray = {moveObj.movingPiece().pieceInt(), moveObj.fromXCoord(), moveObj.fromYCoord(),
+                               moveObj.toXCoord(), moveObj.toYCoord(), 0, moveObj.promotedToPieceInt()};
+            bestMove = BoardArrays.moveArrayToLongAlgNotn(moveArray, COLOR_ON_TOP);
+            score = Double.isInfinite(worker.lastScore) ? (worker.lastScore > 0 ? "mate" : "-mate")
+                                                         : "cp " + Math.round(worker.lastScore * 100);
+        }
+
+        return lineNumber + "\t" + bestMove + "\t" + score + "\t" + worker.lastDepth + "\t" + nodes + "\t"
+               + elapsedMillis + "\t" + entry.id();
+    }
+
+    /*
+     * Writes a result line and flushes it, so it's seen at once.
+     *
+     * @param resultsWriter The destination.
+     * @param resultLine    The line, without a line ending.
+     */
+    private static void writeResultLine(final PrintWriter resultsWriter, final String resultLine) {
+        synchronized (resultsWriter) {
+            resultsWriter.println(resultLine);
+            resultsWriter.flush();
+        }
+    }
+
+    /**
+     * Main method. See the class documentation for the commandline syntax.
+     * The process exits with status 1 if the arguments don't parse.
+     *
+     * @param args The commandline arguments.
+     * @throws IOException If the input can't be read or the output can't be
+     *                     written.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        String usage = """
+                       Usage: BatchAnalysis [--engine <spec>] [--workers <n>] [--output <file>] [<file> | -]""";
+        Tournament.EngineConfig engineConfig = Tournament.EngineConfig.parse(DEFAULT_ENGINE_SPEC, "minimax");
+        int workersCount = Runtime.getRuntime().availableProcessors();
+        String inputFileName = "-";
+        String outputFileName = null;
+
+        try {
+            for (int argIdx = 0; argIdx < args.length; argIdx++) {
+                if (!args[argIdx].startsWith("--")) {
+                    inputFileName = args[argIdx];
+                    continue;
+                } else if (argIdx + 1 >= args.length) {
+                    throw new IllegalArgumentException("option `" + args[argIdx] + "` has no value.");
+                }
+                String value = args[++argIdx];
+                switch (args[argIdx - 1]) {
+                    case "--engine" -> engineConfig = Tournament.EngineConfig.parse(DEFAULT_ENGINE_SPEC + "," + value,
+                                                                                    "minimax");
+                    case "--workers" -> workersCount = Integer.parseInt(value);
+                    case "--output" -> outputFileName = value;
+                    default -> throw new IllegalArgumentException("unknown option `" + args[argIdx - 1] + "`.");
+                }
+            }
+            if (workersCount < 1) {
+                throw new IllegalArgumentException("--workers must be at least 1.");
+            }
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println(usage);
+            System.exit(1);
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        long analyzedCount;
+        try (BufferedReader positionsReader = inputFileName.equals("-")
+                                              ? new BufferedReader(new InputStreamReader(System.in,
+                                                                                         StandardCharsets.UTF_8))
+                                              : Files.newBufferedReader(Path.of(inputFileName),
+                                                                        StandardCharsets.UTF_8);
+             Writer outputWriter = Objects.nonNull(outputFileName)
+                                   ? Files.newBufferedWriter(Path.of(outputFileName), StandardCharsets.UTF_8)
+                                   : null) {
+            PrintWriter resultsWriter = Objects.nonNull(outputWriter)
+                                        ? new PrintWriter(outputWriter)
+                                        : new PrintWriter(System.out, false, StandardCharsets.UTF_8);
+            analyzedCount = analyze(positionsReader, resultsWriter, engineConfig, workersCount);
+            resultsWriter.flush();
+        }
+
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        System.err.printf("Analyzed %d positions in %.1f s (%.1f positions/s) with %d workers%n", analyzedCount,
+                          elapsedSeconds, analyzedCount / elapsedSeconds, workersCount);
+    }
+}
@@ -0,0 +1,164 @@
+package org.kmfahey.jchessgame;
+
+import java.util.List;
+
+/**
+ * Searches a built-in list of positions to a fixed depth, on one thread, and
+ * prints the total number of nodes searched and the nodes per second. The
+ * node total is a signature of the search: it's the same on every run and
+ * every machine, and changes only when a change to the engine changes what
+ * the search visits. A change meant only to make the engine faster should
+ * leave it alone; a change to move ordering, pruning or evaluation will
+ * usually move it, which is worth knowing about either way. The nodes per
+ * second is the speed measurement, and does vary from run to run.
+ * <p>
+ * The search is made deterministic by searching single-threaded with a fresh
+ * MinimaxRunner for each position, with no time or node budget, and by
+ * reseeding BoardArrays' Random object before the first position, so the
+ * root move shuffle on the first turn and the chirality of promoted knights
+ * come out the same each time.
+ * <p>
+ * Run from the commandline as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.Bench [--depth &lt;n&gt;]
+ * </pre>
+ * The depth defaults to 3. Signatures are only comparable at the same depth.
+ *
+ * @see BoardArrays#setRandomSeed
+ */
+public final class Bench {
+
+    /* Positions are set up from FENs, which put white at the bottom. */
+    private static final int COLOR_ON_TOP = BoardArrays.BLACK;
+
+    /* The search depth used unless one is given. */
+    private static final int DEFAULT_DEPTH = 3;
+
+    /* The seed BoardArrays' Random object is reset to before a run. */
+    private static final long RANDOM_SEED = 0x6a436865L;
+
+    /**
+     * The positions searched: the opening position, which the engine shuffles
+     * the root moves of, a spread of middlegames, and a few endgames,
+     * including one with a promotion in reach.
+     */
+    public static final List<String> POSITIONS = List.of(
+        Fen.START_POSITION,
+        "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r1bq1rk1/pp2ppbp/2np1np1/8/3NP3/2N1BP2/PPPQ2PP/R3KB1R b KQ - 3 9",
+        "2rq1rk1/pb1nbppp/1p2pn2/2pp4/2PP4/1PN1PN2/PB2BPPP/2RQ1RK1 w - - 4 11",
+        "r2qr1k1/1p1nbppp/p2pbn2/4p3/4P3/1NN1BP2/PPPQ2PP/2KR1B1R w - - 6 12",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "8/8/4k3/3p4/3P4/4K3/8/8 w - - 0 1",
+        "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",
+        "8/1P6/8/8/8/5k2/8/4K3 w - - 0 1"
+    );
+
+    /**
+     * The result of a bench run.
+     *
+     * @param nodes           The total nodes searched, the run's signature.
+     * @param elapsedNanos    The total time spent searching.
+     * @param pawnHashHitRate The fraction of evaluations whose pawn tallies
+     *                        were found in the pawn hash table.
+     */
+    public record Result(long nodes, long elapsedNanos, double pawnHashHitRate) {
+
+        /**
+         * Accessor for the search speed.
+         *
+         * @return The nodes searched per second.
+         */
+        public long nodesPerSecond() {
+            return elapsedNanos == 0 ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+        }
+    }
+
+    private Bench() { }
+
+    /**
+     * Searches every position in POSITIONS to a depth and totals the nodes.
+     * A line is printed for each position as it's searched.
+     *
+     * @param depth The depth to search each position to.
+     * @return      A Result object.
+     */
+    public static Result run(final int depth) {
+        BoardArrays.setRandomSeed(RANDOM_SEED);
+        long totalNodes = 0;
+        long totalNanos = 0;
+        long totalPawnHashLookups = 0;
+        long totalPawnHashHits = 0;
+
+        for (int positionIdx = 0; positionIdx < POSITIONS.size(); positionIdx++) {
+            Chessboard chessboard = new Chessboard(new int[8][8], BoardArrays.WHITE, COLOR_ON_TOP);
+            Fen.Position position = Fen.parse(POSITIONS.get(positionIdx), COLOR_ON_TOP,
+                                              chessboard.getBoardArray());
+            int colorToMove = position.colorToMove();
+            MinimaxRunner minimaxRunner = new MinimaxRunner(chessboard, colorToMove);
+            minimaxRunner.setColors(colorToMove == BoardArrays.WHITE ? BoardArrays.BLACK : BoardArrays.WHITE,
+                                    COLOR_ON_TOP);
+            minimaxRunner.setCastlingRights(position.castlingRights());
+            minimaxRunner.setMaxDepth(depth);
+            minimaxRunner.setThreadCount(1);
+
+            /* The turn count is 0 for the opening position, so its root moves
+               are shuffled, from the seeded Random object. */
+            long startNanos = System.nanoTime();
+            minimaxRunner.algorithmTopLevel(position.fullmoveNumber() - 1);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            long nodes = minimaxRunner.getNodeCount();
+
+            totalNodes += nodes;
+            totalNanos += elapsedNanos;
+            totalPawnHashLookups += minimaxRunner.getPawnHashLookups();
+            totalPawnHashHits += minimaxRunner.getPawnHashHits();
+            System.out.printf("Position %2d/%d: %,12d nodes %8d ms%n", positionIdx + 1, POSITIONS.size(), nodes,
+                              elapsedNanos / 1_000_000L);
+        }
+
+        return new Result(totalNodes, totalNanos,
+                          totalPawnHashLookups == 0 ? 0D : (double) totalPawnHashHits / totalPawnHashLookups);
+    }
+
+    /**
+     * Main method. See the class documentation for the commandline syntax.
+     * The process exits with status 1 if the arguments don't parse.
+     *
+     * @param args The commandline arguments.
+     */
+    public static void main(final String[] args) {
+        String usage = """
+                       Usage: Bench [--depth <n>]""";
+        int depth = DEFAULT_DEPTH;
+
+        try {
+            for (int argIdx = 0; argIdx < args.length; argIdx++) {
+                if (!args[argIdx].equals("--depth")) {
+                    throw new IllegalArgumentException("unknown option `" + args[argIdx] + "`.");
+                } else if (argIdx + 1 >= args.length) {
+                    throw new IllegalArgumentException("option `" + args[argIdx] + "` has no value.");
+                }
+                depth = Integer.parseInt(args[++argIdx]);
+            }
+            if (depth < 1) {
+                throw new IllegalArgumentException("--depth must be at least 1.");
+            }
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println(usage);
+            System.exit(1);
+            return;
+        }
+
+        Result result = run(depth);
+        System.out.println("===========================");
+        System.out.printf("Total time (ms) : %d%n", result.elapsedNanos() / 1_000_000L);
+        System.out.printf("Nodes searched  : %d%n", result.nodes());
+        System.out.printf("Nodes/second    : %d%n", result.nodesPerSecond());
+        System.out.printf("Pawn hash hits  : %.1f%%%n", 100D * result.pawnHashHitRate());
+    }
+}
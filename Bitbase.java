@@ -0,0 +1,384 @@
+package org.kmfahey.jchessgame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Endgame tables for king and pawn, king and rook, and king and queen against
+ * a lone king, giving the exact outcome of every position in them and, for a
+ * won one, the number of plies to mate with best play. They're built by
+ * BitbaseGenerator and loaded from a directory holding one file per ending.
+ * <p>
+ * A table has an entry for every placement of the three pieces with either
+ * side to move. Squares are counted from the side with the extra piece, so
+ * that its pawn always moves up the board and a table serves both colors.
+ * An entry is 0 for a draw (or a position that can't arise), and otherwise
+ * one more than the distance to mate in plies; the side with the extra piece
+ * can never lose, so whether it's a win or a loss follows from the side to
+ * move. Entries are packed into as few bits as the longest mate needs, which
+ * for these endings is 5 for KQK and 6 for KRK and KPK, so a table is under
+ * half a megabyte.
+ *
+ * @see BitbaseGenerator
+ * @see MinimaxRunner#setBitbase
+ */
+public final class Bitbase {
+
+    /** Returned by probe() for a position with other material. */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    /** Returned by probe() for a drawn position. */
+    public static final int DRAW = 0;
+
+    /** probe() returns MATE_VALUE less the plies to mate for a win, and its
+        negation for a loss, so a nearer mate is a larger score. */
+    public static final int MATE_VALUE = 256;
+
+    /** The number of entries in a table: two sides to move, and 64 squares
+        each for the extra piece, the lone king and the stronger king. */
+    public static final int ENTRIES_COUNT = 2 * 64 * 64 * 64;
+
+    /* These statements copy the piece int constants from BoardArrays to this
+       class for convenience. */
+    private static final int WHITE = BoardArrays.WHITE;
+    private static final int BLACK = BoardArrays.BLACK;
+    private static final int KING = BoardArrays.KING;
+    private static final int QUEEN = BoardArrays.QUEEN;
+    private static final int BISHOP = BoardArrays.BISHOP;
+    private static final int KNIGHT = BoardArrays.KNIGHT;
+    private static final int ROOK = BoardArrays.ROOK;
+    private static final int PAWN = BoardArrays.PAWN;
+
+    /* The first int of a table file, "JCBB" in ASCII. */
+    private static final int FILE_MAGIC = 0x4a434242;
+
+    /**
+     * The endings there are tables for.
+     */
+    public enum Kind {
+        /** King and pawn against king. */
+        KPK(PAWN),
+        /** King and rook against king. */
+        KRK(ROOK),
+        /** King and queen against king. */
+        KQK(QUEEN);
+
+        private final int pieceType;
+
+        Kind(final int pieceTypeVal) {
+            pieceType = pieceTypeVal;
+        }
+
+        /**
+         * Accessor for the type of the extra piece.
+         *
+         * @return The BoardArrays piece type flag.
+         */
+        public int getPieceType() {
+            return pieceType;
+        }
+
+        /**
+         * Names the file the ending's table is kept in.
+         *
+         * @return The file name, for instance "kqk.bin".
+         */
+        public String getFileName() {
+            return name().toLowerCase() + ".bin";
+        }
+    }
+
+    /**
+     * One ending's table, its entries packed at a fixed number of bits each.
+     */
+    public static final class Table {
+
+        private final Kind kind;
+        private final int bitsPerEntry;
+        private final long[] packedEntries;
+
+        /**
+         * Packs a table from its entries.
+         *
+         * @param kindVal      The ending.
+         * @param entriesArray The entries, ENTRIES_COUNT of them, each 0 for
+         *                     a draw or one more than the plies to mate.
+         */
+        public Table(final Kind kindVal, final byte[] entriesArray) {
+            int maxEntry = 0;
+            for (byte entry : entriesArray) {
+                maxEntry = Math.max(maxEntry, Byte.toUnsignedInt(entry));
+            }
+            kind = kindVal;
+            bitsPerEntry = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxEntry));
+            packedEntries = new long[(int) (((long) ENTRIES_COUNT * bitsPerEntry + 63) / 64)];
+            for (int entryIdx = 0; entryIdx < ENTRIES_COUNT; entryIdx++) {
+                long bitIdx = (long) entryIdx * bitsPerEntry;
+                long entry = Byte.toUnsignedInt(entriesArray[entryIdx]);
+                int wordIdx = (int) (bitIdx >>> 6);
+                int bitOffset = (int) (bitIdx & 63);
+                packedEntries[wordIdx] |= entry << bitOffset;
+                if (bitOffset + bitsPerEntry > 64) {
+                    packedEntries[wordIdx + 1] |= entry >>> (64 - bitOffset);
+                }
+            }
+        }
+
+        /*
+         * Instances a Table over entries already packed, as read from a file.
+         *
+         * @param kindVal          The ending.
+         * @param bitsPerEntryVal  The width of an entry.
+         * @param packedEntriesArr The packed entries.
+         */
+        private Table(final Kind kindVal, final int bitsPerEntryVal, final long[] packedEntriesArr) {
+            kind = kindVal;
+            bitsPerEntry = bitsPerEntryVal;
+            packedEntries = packedEntriesArr;
+        }
+
+        /**
+         * Accessor for the ending.
+         *
+         * @return The Kind.
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Accessor for the width of an entry.
+         *
+         * @return The number of bits each entry is packed into.
+         */
+        public int getBitsPerEntry() {
+            return bitsPerEntry;
+        }
+
+        /**
+         * Looks up an entry.
+         *
+         * @param entryIdx The entry's index, from index().
+         * @return         0 for a draw, or one more than the plies to mate.
+         */
+        public int get(final int entryIdx) {
+            long bitIdx = (long) entryIdx * bitsPerEntry;
+            int wordIdx = (int) (bitIdx >>> 6);
+            int bitOffset = (int) (bitIdx & 63);
+            long entry = packedEntries[wordIdx] >>> bitOffset;
+            if (bitOffset + bitsPerEntry > 64) {
+                entry |= packedEntries[wordIdx + 1] << (64 - bitOffset);
+            }
+            return (int) (entry & ((1L << bitsPerEntry) - 1));
+        }
+
+        /**
+         * Writes the table to a file.
+         *
+         * @param tablePath The file to write.
+         * @throws IOException If the file can't be written.
+         */
+        public void write(final Path tablePath) throws IOException {
+            try (DataOutputStream tableStream = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tablePath)))) {
+                tableStream.writeInt(FILE_MAGIC);
+                tableStream.writeUTF(kind.name());
+                tableStream.writeInt(bitsPerEntry);
+                tableStream.writeInt(packedEntries.length);
+                for (long packedWord : packedEntries) {
+                    tableStream.writeLong(packedWord);
+                }
+            }
+        }
+
+        /**
+         * Reads a table from a file written by write().
+         *
+         * @param tablePath The file to read.
+         * @return          The Table.
+         * @throws IOException If the file can't be read or isn't a table.
+         */
+        public static Table read(final Path tablePath) throws IOException {
+            try (DataInputStream tableStream = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(tablePath)))) {
+                if (tableStream.readInt() != FILE_MAGIC) {
+                    throw new IOException("`" + tablePath + "` isn't a bitbase file.");
+                }
+                Kind kind;
+                try {
+                    kind = Kind.valueOf(tableStream.readUTF());
+                } catch (IllegalArgumentException exception) {
+                    throw new IOException("`" + tablePath + "` is a bitbase for an unknown ending.");
+                }
+                int bitsPerEntry = tableStream.readInt();
+                int wordsCount = tableStream.readInt();
+                if (bitsPerEntry < 1 || bitsPerEntry > 8
+                    || wordsCount != ((long) ENTRIES_COUNT * bitsPerEntry + 63) / 64) {
+                    throw new IOException("`" + tablePath + "` has a malformed header.");
+                }
+                long[] packedEntries = new long[wordsCount];
+                for (int wordIdx = 0; wordIdx < wordsCount; wordIdx++) {
+                    packedEntries[wordIdx] = tableStream.readLong();
+                }
+                return new Table(kind, bitsPerEntry, packedEntries);
+            }
+        }
+    }
+
+    /* The loaded tables, indexed by Kind ordinal; null where there's none. */
+    private final Table[] tables = new Table[Kind.values().length];
+
+    /**
+     * Instances a Bitbase from tables already built or loaded.
+     *
+     * @param tablesArr The tables. A later one for the same ending replaces
+     *                  an earlier one.
+     */
+    public Bitbase(final Table... tablesArr) {
+        for (Table table : tablesArr) {
+            tables[table.getKind().ordinal()] = table;
+        }
+    }
+
+    /**
+     * Loads the tables kept in a directory, as written by BitbaseGenerator.
+     * Endings whose files are missing are simply not covered.
+     *
+     * @param tablesDirPath The directory.
+     * @return              A Bitbase object.
+     * @throws IOException If a file can't be read, or there are none.
+     */
+    public static Bitbase open(final Path tablesDirPath) throws IOException {
+        Bitbase bitbase = new Bitbase();
+        boolean isAnyFound = false;
+        for (Kind kind : Kind.values()) {
+            Path tablePath = tablesDirPath.resolve(kind.getFileName());
+            if (Files.exists(tablePath)) {
+                Table table = Table.read(tablePath);
+                bitbase.tables[table.getKind().ordinal()] = table;
+                isAnyFound = true;
+            }
+        }
+        if (!isAnyFound) {
+            throw new IOException("no bitbase files found in `" + tablesDirPath + "`.");
+        }
+        return bitbase;
+    }
+
+    /**
+     * Tests whether an ending's table is loaded.
+     *
+     * @param kind The ending.
+     * @return     True if it is, false otherwise.
+     */
+    public boolean covers(final Kind kind) {
+        return tables[kind.ordinal()] != null;
+    }
+
+    /**
+     * Computes the index of an entry. Squares are numbered 0 to 63 from a1 as
+     * seen by the side with the extra piece, eight to a rank.
+     *
+     * @param isWeakerToMove    Whether the lone king is to move.
+     * @param pieceSqIdx        The extra piece's square.
+     * @param weakerKingSqIdx   The lone king's square.
+     * @param strongerKingSqIdx The other king's square.
+     * @return                  The index.
+     */
+    public static int index(final boolean isWeakerToMove, final int pieceSqIdx, final int weakerKingSqIdx,
+                            final int strongerKingSqIdx) {
+        return (((isWeakerToMove ? 1 : 0) * 64 + pieceSqIdx) * 64 + weakerKingSqIdx) * 64 + strongerKingSqIdx;
+    }
+
+    /**
+     * Looks up the outcome of a position. Positions with bare kings, or a
+     * lone knight or bishop, are reported as draws; positions with any other
+     * material not covered by a loaded table are reported as not found.
+     *
+     * @param boardArray  The board.
+     * @param colorOnTop  The color playing from the top of the board.
+     * @param colorToMove The side to move.
+     * @return            NOT_FOUND; DRAW; MATE_VALUE less the plies to mate if
+     *                    the side to move wins; or the negation of that if it
+     *                    loses.
+     */
+    public int probe(final int[][] boardArray, final int colorOnTop, final int colorToMove) {
+        int piecesCount = 0;
+        int pieceInt = 0;
+        int pieceXIdx = 0;
+        int pieceYIdx = 0;
+        int whiteKingXIdx = 0;
+        int whiteKingYIdx = 0;
+        int blackKingXIdx = 0;
+        int blackKingYIdx = 0;
+
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            for (int yIdx = 0; yIdx < 8; yIdx++) {
+                int squareInt = boardArray[xIdx][yIdx];
+                if (squareInt == 0) {
+                    continue;
+                } else if (++piecesCount > 3) {
+                    return NOT_FOUND;
+                } else if (squareInt == (WHITE | KING)) {
+                    whiteKingXIdx = xIdx;
+                    whiteKingYIdx = yIdx;
+                } else if (squareInt == (BLACK | KING)) {
+                    blackKingXIdx = xIdx;
+                    blackKingYIdx = yIdx;
+                } else {
+                    pieceInt = squareInt;
+                    pieceXIdx = xIdx;
+                    pieceYIdx = yIdx;
+                }
+            }
+        }
+
+        if (pieceInt == 0 || (pieceInt & (KNIGHT | BISHOP)) != 0) {
+            return piecesCount < 2 ? NOT_FOUND : DRAW;
+        }
+        Table table = null;
+        for (Kind kind : Kind.values()) {
+            if ((pieceInt & kind.getPieceType()) != 0) {
+                table = tables[kind.ordinal()];
+            }
+        }
+        if (table == null) {
+            return NOT_FOUND;
+        }
+
+        boolean isStrongerWhite = (pieceInt & WHITE) != 0;
+        int pieceSqIdx = squareIdx(pieceXIdx, pieceYIdx, isStrongerWhite, colorOnTop);
+        int weakerKingSqIdx = isStrongerWhite ? squareIdx(blackKingXIdx, blackKingYIdx, true, colorOnTop)
+                                              : squareIdx(whiteKingXIdx, whiteKingYIdx, false, colorOnTop);
+        int strongerKingSqIdx = isStrongerWhite ? squareIdx(whiteKingXIdx, whiteKingYIdx, true, colorOnTop)
+                                                : squareIdx(blackKingXIdx, blackKingYIdx, false, colorOnTop);
+        boolean isWeakerToMove = (colorToMove == WHITE) != isStrongerWhite;
+
+        int entry = table.get(index(isWeakerToMove, pieceSqIdx, weakerKingSqIdx, strongerKingSqIdx));
+        if (entry == 0) {
+            return DRAW;
+        }
+        return isWeakerToMove ? -(MATE_VALUE - (entry - 1)) : MATE_VALUE - (entry - 1);
+    }
+
+    /*
+     * Converts board coordinates to a square index as seen by the side with
+     * the extra piece, flipping the board top to bottom if that side is black.
+     *
+     * @param xIdx            The x coordinate.
+     * @param yIdx            The y coordinate.
+     * @param isStrongerWhite Whether the side with the extra piece is white.
+     * @param colorOnTop      The color playing from the top of the board.
+     * @return                The square index.
+     */
+    private static int squareIdx(final int xIdx, final int yIdx, final boolean isStrongerWhite,
+                                 final int colorOnTop) {
+        int rankIdx = colorOnTop == BLACK ? 7 - yIdx : yIdx;
+        return (isStrongerWhite ? rankIdx : 7 - rankIdx) * 8 + xIdx;
+    }
+}
@@ -0,0 +1,521 @@
+package org.kmfahey.jchessgame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the Bitbase tables by retrograde analysis. Starting from the
+ * positions where the lone king is checkmated, it works outward a ply at a
+ * time: a position with the stronger side to move is won in n plies if it
+ * has a move to a position lost in n - 1, and one with the lone king to move
+ * is lost in n plies if every move it has is to a position won in n - 1 or
+ * fewer and none of them captures the extra piece. When a pass finds nothing
+ * new, every position left is a draw. Each pass only writes positions with
+ * one side to move and only reads those with the other, so it's split across
+ * a pool of workers with no locking.
+ * <p>
+ * The tables work on their own square numbering (see Bitbase.index()) and
+ * generate their own moves, which with three pieces is a few lines per
+ * piece, rather than setting up a board for every position. A pawn that
+ * promotes goes into the KQK or KRK table, so those are built first;
+ * promoting to a knight or bishop always draws and isn't considered.
+ * <p>
+ * Run from the commandline as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.BitbaseGenerator --output-dir &lt;dir&gt; [--workers &lt;n&gt;]
+ * </pre>
+ * which writes kqk.bin, krk.bin and kpk.bin to the directory.
+ *
+ * @see Bitbase
+ */
+public final class BitbaseGenerator {
+
+    /* The positions of a pass are cut into about this many chunks per
+       worker, so that a worker that finishes early can take another. */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /* The offset of the entries with the lone king to move. */
+    private static final int WEAKER_TO_MOVE_OFFSET = Bitbase.ENTRIES_COUNT / 2;
+
+    /* The rank and file steps of kings, and of rooks and bishops, which
+       queens have both of. */
+    private static final int[][] KING_STEPS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+    private static final int[][] ROOK_STEPS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
+    /**
+     * The outcome of generating a table.
+     *
+     * @param table         The table.
+     * @param wonCount      The number of positions won by the side to move,
+     *                      with the stronger side to move.
+     * @param maxPlies      The longest mate, in plies.
+     * @param elapsedNanos  How long it took, in nanoseconds.
+     */
+    public record Result(Bitbase.Table table, int wonCount, int maxPlies, long elapsedNanos) {
+    }
+
+    private BitbaseGenerator() { }
+
+    /**
+     * Generates an ending's table.
+     *
+     * @param kind         The ending.
+     * @param workersCount The number of threads to run passes on.
+     * @param queenTable   The KQK table, which a KPK table needs for
+     *                     promotions; ignored otherwise.
+     * @param rookTable    The KRK table, likewise.
+     * @return             A Result object.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    public static Result generate(final Bitbase.Kind kind, final int workersCount, final Bitbase.Table queenTable,
+                                  final Bitbase.Table rookTable) throws InterruptedException {
+        if (kind == Bitbase.Kind.KPK && (queenTable == null || rookTable == null)) {
+            throw new IllegalArgumentException("a KPK table needs the KQK and KRK tables to be built.");
+        }
+        long startNanos = System.nanoTime();
+        byte[] entriesArray = new byte[Bitbase.ENTRIES_COUNT];
+        boolean[] isLegalArray = new boolean[Bitbase.ENTRIES_COUNT];
+        ExecutorService workerPool = Executors.newFixedThreadPool(workersCount);
+
+        try {
+            runPass(workerPool, workersCount, false,
+                    entryIdx -> markLegalOrMated(kind, entryIdx, entriesArray, isLegalArray));
+            runPass(workerPool, workersCount, true,
+                    entryIdx -> markLegalOrMated(kind, entryIdx, entriesArray, isLegalArray));
+
+            /* A position resolved on pass n has n plies to mate, so an entry
+               of n + 1. Odd passes look at the stronger side to move and even
+               ones at the lone king; passes stop after two find nothing. */
+            int idlePasses = 0;
+            int plies = 1;
+            for (; idlePasses < 2; plies++) {
+                if (plies + 1 > 255) {
+                    throw new IllegalStateException("a mate is longer than an entry can hold.");
+                }
+                int pliesToMate = plies;
+                int resolvedCount;
+                if (plies % 2 == 1) {
+                    resolvedCount = runPass(workerPool, workersCount, false,
+                                            entryIdx -> resolveWin(kind, entryIdx, pliesToMate, entriesArray,
+                                                                   isLegalArray, queenTable, rookTable));
+                } else {
+                    resolvedCount = runPass(workerPool, workersCount, true,
+                                            entryIdx -> resolveLoss(kind, entryIdx, pliesToMate, entriesArray,
+                                                                    isLegalArray));
+                }
+                idlePasses = resolvedCount == 0 ? idlePasses + 1 : 0;
+            }
+
+            int wonCount = 0;
+            int maxPlies = 0;
+            for (int entryIdx = 0; entryIdx < Bitbase.ENTRIES_COUNT; entryIdx++) {
+                int entry = Byte.toUnsignedInt(entriesArray[entryIdx]);
+                if (entry != 0 && entryIdx < WEAKER_TO_MOVE_OFFSET) {
+                    wonCount++;
+                }
+                maxPlies = Math.max(maxPlies, entry - 1);
+            }
+            return new Result(new Bitbase.Table(kind, entriesArray), wonCount, maxPlies,
+                              System.nanoTime() - startNanos);
+        } finally {
+            workerPool.shutdownNow();
+        }
+    }
+
+    /*
+     * Works out something about one position, returning whether it resolved
+     * it.
+     */
+    @FunctionalInterface
+    private interface PositionStep {
+        boolean apply(int entryIdx);
+    }
+
+    /*
+     * Runs a step over the positions with one side to move, split into chunks
+     * across the worker pool.
+     *
+     * @param workerPool     The pool.
+     * @param workersCount   The number of threads in it.
+     * @param isWeakerToMove Which half of the table to run over.
+     * @param positionStep   The step.
+     * @return               The number of positions the step resolved.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    private static int runPass(final ExecutorService workerPool, final int workersCount,
+                               final boolean isWeakerToMove, final PositionStep positionStep)
+            throws InterruptedException {
+        int firstEntryIdx = isWeakerToMove ? WEAKER_TO_MOVE_OFFSET : 0;
+        int chunksCount = workersCount * CHUNKS_PER_WORKER;
+        int chunkLength = (WEAKER_TO_MOVE_OFFSET + chunksCount - 1) / chunksCount;
+        List<Callable<Integer>> chunkTasks = new ArrayList<>();
+
+        for (int chunkStartIdx = 0; chunkStartIdx < WEAKER_TO_MOVE_OFFSET; chunkStartIdx += chunkLength) {
+            int startIdx = firstEntryIdx + chunkStartIdx;
+            int endIdx = firstEntryIdx + Math.min(WEAKER_TO_MOVE_OFFSET, chunkStartIdx + chunkLength);
+            chunkTasks.add(() -> {
+                int resolvedCount = 0;
+                for (int entryIdx = startIdx; entryIdx < endIdx; entryIdx++) {
+                    if (positionStep.apply(entryIdx)) {
+                        resolvedCount++;
+                    }
+                }
+                return resolvedCount;
+            });
+        }
+
+        int resolvedCount = 0;
+        for (Future<Integer> chunkFuture : workerPool.invokeAll(chunkTasks)) {
+            try {
+                resolvedCount += chunkFuture.get();
+            } catch (ExecutionException exception) {
+                throw new IllegalStateException(exception.getCause());
+            }
+        }
+        return resolvedCount;
+    }
+
+    /*
+     * Works out whether a position can arise, and if it has the lone king
+     * to move, whether it's checkmated.
+     *
+     * @param kind         The ending.
+     * @param entryIdx     The position's index.
+     * @param entriesArray The entries; set to 1 if the position is mate.
+     * @param isLegalArray Whether each position can arise; set here.
+     * @return             True if the position is mate, false otherwise.
+     */
+    private static boolean markLegalOrMated(final Bitbase.Kind kind, final int entryIdx, final byte[] entriesArray,
+                                            final boolean[] isLegalArray) {
+        boolean isWeakerToMove = entryIdx >= WEAKER_TO_MOVE_OFFSET;
+        int strongerKingSqIdx = entryIdx & 63;
+        int weakerKingSqIdx = (entryIdx >>> 6) & 63;
+        int pieceSqIdx = (entryIdx >>> 12) & 63;
+
+        if (pieceSqIdx == strongerKingSqIdx || pieceSqIdx == weakerKingSqIdx
+            || areAdjacent(strongerKingSqIdx, weakerKingSqIdx)
+            || kind == Bitbase.Kind.KPK && (pieceSqIdx < 8 || pieceSqIdx >= 56)) {
+            return false;
+        }
+        boolean isWeakerKingInCheck = isAttackedByPiece(kind, pieceSqIdx, weakerKingSqIdx, strongerKingSqIdx);
+        if (!isWeakerToMove && isWeakerKingInCheck) {
+            return false;
+        }
+        isLegalArray[entryIdx] = true;
+
+        if (isWeakerToMove && isWeakerKingInCheck
+            && !hasWeakerKingMove(kind, pieceSqIdx, weakerKingSqIdx, strongerKingSqIdx)) {
+            entriesArray[entryIdx] = 1;
+            return true;
+        }
+        return false;
+    }
+
+    /*
+     * Marks a position with the stronger side to move as won in the given
+     * number of plies if it has a move to a position lost in one fewer.
+     *
+     * @param kind         The ending.
+     * @param entryIdx     The position's index.
+     * @param pliesToMate  The number of plies of this pass.
+     * @param entriesArray The entries.
+     * @param isLegalArray Whether each position can arise.
+     * @param queenTable   The KQK table, for KPK promotions.
+     * @param rookTable    The KRK table, for KPK promotions.
+     * @return             True if the position was resolved, false otherwise.
+     */
+    private static boolean resolveWin(final Bitbase.Kind kind, final int entryIdx, final int pliesToMate,
+                                      final byte[] entriesArray, final boolean[] isLegalArray,
+                                      final Bitbase.Table queenTable, final Bitbase.Table rookTable) {
+        if (!isLegalArray[entryIdx] || entriesArray[entryIdx] != 0) {
+            return false;
+        }
+        int strongerKingSqIdx = entryIdx & 63;
+        int weakerKingSqIdx = (entryIdx >>> 6) & 63;
+        int pieceSqIdx = (entryIdx >>> 12) & 63;
+        boolean isWon = false;
+
+        /* The stronger king's moves. It can't capture anything, and it can't
+           step next to the lone king. */
+        for (int[] kingStep : KING_STEPS) {
+            int toSqIdx = step(strongerKingSqIdx, kingStep[0], kingStep[1]);
+            if (toSqIdx >= 0 && toSqIdx != pieceSqIdx && !areAdjacent(toSqIdx, weakerKingSqIdx)
+                && isLostIn(entriesArray, Bitbase.index(true, pieceSqIdx, weakerKingSqIdx, toSqIdx), pliesToMate)) {
+                isWon = true;
+                break;
+            }
+        }
+
+        /* The extra piece's moves. */
+        if (!isWon && kind == Bitbase.Kind.KPK) {
+            int pushSqIdx = pieceSqIdx + 8;
+            if (pushSqIdx != strongerKingSqIdx && pushSqIdx != weakerKingSqIdx) {
+                if (pushSqIdx >= 56) {
+                    isWon = isLostIn(queenTable, pushSqIdx, weakerKingSqIdx, strongerKingSqIdx, pliesToMate)
+                            || isLostIn(rookTable, pushSqIdx, weakerKingSqIdx, strongerKingSqIdx, pliesToMate);
+                } else {
+                    isWon = isLostIn(entriesArray, Bitbase.index(true, pushSqIdx, weakerKingSqIdx,
+                                                                 strongerKingSqIdx), pliesToMate);
+                    int doublePushSqIdx = pushSqIdx + 8;
+                    isWon = isWon || pieceSqIdx < 16 && doublePushSqIdx != strongerKingSqIdx
+                                     && doublePushSqIdx != weakerKingSqIdx
+                                     && isLostIn(entriesArray, Bitbase.index(true, doublePushSqIdx, weakerKingSqIdx,
+                                                                             strongerKingSqIdx), pliesToMate);
+                }
+            }
+        } else if (!isWon) {
+            int[][] pieceSteps = kind == Bitbase.Kind.KQK ? KING_STEPS : ROOK_STEPS;
+            for (int stepIdx = 0; !isWon && stepIdx < pieceSteps.length; stepIdx++) {
+                int toSqIdx = step(pieceSqIdx, pieceSteps[stepIdx][0], pieceSteps[stepIdx][1]);
+                while (!isWon && toSqIdx >= 0 && toSqIdx != strongerKingSqIdx && toSqIdx != weakerKingSqIdx) {
+                    isWon = isLostIn(entriesArray, Bitbase.index(true, toSqIdx, weakerKingSqIdx, strongerKingSqIdx),
+                                     pliesToMate);
+                    toSqIdx = step(toSqIdx, pieceSteps[stepIdx][0], pieceSteps[stepIdx][1]);
+                }
+            }
+        }
+
+        if (isWon) {
+            entriesArray[entryIdx] = (byte) (pliesToMate + 1);
+        }
+        return isWon;
+    }
+
+    /*
+     * Marks a position with the lone king to move as lost in the given number
+     * of plies if every move it has leads to a won position. Its moves were
+     * all resolved by the previous pass at the latest, so if they're all won
+     * now, the longest of them is one ply shorter than this.
+     *
+     * @param kind         The ending.
+     * @param entryIdx     The position's index.
+     * @param pliesToMate  The number of plies of this pass.
+     * @param entriesArray The entries.
+     * @param isLegalArray Whether each position can arise.
+     * @return             True if the position was resolved, false otherwise.
+     */
+    private static boolean resolveLoss(final Bitbase.Kind kind, final int entryIdx, final int pliesToMate,
+                                       final byte[] entriesArray, final boolean[] isLegalArray) {
+        if (!isLegalArray[entryIdx] || entriesArray[entryIdx] != 0) {
+            return false;
+        }
+        int strongerKingSqIdx = entryIdx & 63;
+        int weakerKingSqIdx = (entryIdx >>> 6) & 63;
+        int pieceSqIdx = (entryIdx >>> 12) & 63;
+        int movesCount = 0;
+
+        for (int[] kingStep : KING_STEPS) {
+            int toSqIdx = step(weakerKingSqIdx, kingStep[0], kingStep[1]);
+            if (toSqIdx < 0 || !isWeakerKingMoveLegal(kind, pieceSqIdx, toSqIdx, strongerKingSqIdx)) {
+                continue;
+            } else if (toSqIdx == pieceSqIdx
+                       || entriesArray[Bitbase.index(false, pieceSqIdx, toSqIdx, strongerKingSqIdx)] == 0) {
+                /* Capturing the extra piece, or escaping to a position that
+                   isn't won yet. */
+                return false;
+            }
+            movesCount++;
+        }
+
+        /* A lone king with no moves that wasn't mated is stalemated. */
+        if (movesCount == 0) {
+            return false;
+        }
+        entriesArray[entryIdx] = (byte) (pliesToMate + 1);
+        return true;
+    }
+
+    /*
+     * Tests whether a position with the lone king to move is lost in the
+     * given number of plies less one.
+     *
+     * @param entriesArray The entries.
+     * @param entryIdx     The position's index.
+     * @param pliesToMate  The number of plies of the current pass.
+     * @return             True if it is, false otherwise.
+     */
+    private static boolean isLostIn(final byte[] entriesArray, final int entryIdx, final int pliesToMate) {
+        int entry = Byte.toUnsignedInt(entriesArray[entryIdx]);
+        return entry != 0 && entry <= pliesToMate;
+    }
+
+    /*
+     * Tests whether a position just after a pawn promotes, with the lone king
+     * to move, is lost in the given number of plies less one, according to
+     * the table of the piece promoted to.
+     *
+     * @param table             The KQK or KRK table.
+     * @param pieceSqIdx        The promoted piece's square.
+     * @param weakerKingSqIdx   The lone king's square.
+     * @param strongerKingSqIdx The other king's square.
+     * @param pliesToMate       The number of plies of the current pass.
+     * @return                  True if it is, false otherwise.
+     */
+    private static boolean isLostIn(final Bitbase.Table table, final int pieceSqIdx, final int weakerKingSqIdx,
+                                    final int strongerKingSqIdx, final int pliesToMate) {
+        int entry = table.get(Bitbase.index(true, pieceSqIdx, weakerKingSqIdx, strongerKingSqIdx));
+        return entry != 0 && entry <= pliesToMate;
+    }
+
+    /*
+     * Tests whether the lone king has any legal move.
+     *
+     * @param kind              The ending.
+     * @param pieceSqIdx        The extra piece's square.
+     * @param weakerKingSqIdx   The lone king's square.
+     * @param strongerKingSqIdx The other king's square.
+     * @return                  True if it has, false otherwise.
+     */
+    private static boolean hasWeakerKingMove(final Bitbase.Kind kind, final int pieceSqIdx,
+                                             final int weakerKingSqIdx, final int strongerKingSqIdx) {
+        for (int[] kingStep : KING_STEPS) {
+            int toSqIdx = step(weakerKingSqIdx, kingStep[0], kingStep[1]);
+            if (toSqIdx >= 0 && isWeakerKingMoveLegal(kind, pieceSqIdx, toSqIdx, strongerKingSqIdx)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Tests whether the lone king may move to a square: it mustn't be next to
+     * the other king, and unless it's capturing the extra piece, the piece
+     * mustn't attack it.
+     *
+     * @param kind              The ending.
+     * @param pieceSqIdx        The extra piece's square.
+     * @param toSqIdx           The square moved to.
+     * @param strongerKingSqIdx The other king's square.
+     * @return                  True if it may, false otherwise.
+     */
+    private static boolean isWeakerKingMoveLegal(final Bitbase.Kind kind, final int pieceSqIdx, final int toSqIdx,
+                                                 final int strongerKingSqIdx) {
+        return !areAdjacent(toSqIdx, strongerKingSqIdx)
+               && (toSqIdx == pieceSqIdx || !isAttackedByPiece(kind, pieceSqIdx, toSqIdx, strongerKingSqIdx));
+    }
+
+    /*
+     * Tests whether the extra piece attacks a square. Only the stronger king
+     * can block it; the lone king is either on the square or moving off its
+     * own square toward it, and a king can't block an attack on the square
+     * it's moving to.
+     *
+     * @param kind              The ending.
+     * @param pieceSqIdx        The extra piece's square.
+     * @param targetSqIdx       The square.
+     * @param strongerKingSqIdx The other king's square.
+     * @return                  True if it does, false otherwise.
+     */
+    private static boolean isAttackedByPiece(final Bitbase.Kind kind, final int pieceSqIdx, final int targetSqIdx,
+                                             final int strongerKingSqIdx) {
+        int fileDelta = (targetSqIdx & 7) - (pieceSqIdx & 7);
+        int rankDelta = (targetSqIdx >>> 3) - (pieceSqIdx >>> 3);
+
+        if (kind == Bitbase.Kind.KPK) {
+            return rankDelta == 1 && Math.abs(fileDelta) == 1;
+        }
+        boolean isStraight = fileDelta == 0 || rankDelta == 0;
+        boolean isDiagonal = Math.abs(fileDelta) == Math.abs(rankDelta);
+        if (targetSqIdx == pieceSqIdx || !isStraight && !(isDiagonal && kind == Bitbase.Kind.KQK)) {
+            return false;
+        }
+        int fileStep = Integer.signum(fileDelta);
+        int rankStep = Integer.signum(rankDelta);
+        for (int sqIdx = step(pieceSqIdx, fileStep, rankStep); sqIdx != targetSqIdx;
+             sqIdx = step(sqIdx, fileStep, rankStep)) {
+            if (sqIdx == strongerKingSqIdx) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Tests whether two squares are the same or touch.
+     *
+     * @param firstSqIdx  One square.
+     * @param secondSqIdx The other.
+     * @return            True if they are, false otherwise.
+     */
+    private static boolean areAdjacent(final int firstSqIdx, final int secondSqIdx) {
+        return Math.abs((firstSqIdx & 7) - (secondSqIdx & 7)) <= 1
+               && Math.abs((firstSqIdx >>> 3) - (secondSqIdx >>> 3)) <= 1;
+    }
+
+    /*
+     * Steps from a square.
+     *
+     * @param sqIdx     The square.
+     * @param fileDelta The number of files to step.
+     * @param rankDelta The number of ranks to step.
+     * @return          The square stepped to, or -1 if it's off the board.
+     */
+    private static int step(final int sqIdx, final int fileDelta, final int rankDelta) {
+        int fileIdx = (sqIdx & 7) + fileDelta;
+        int rankIdx = (sqIdx >>> 3) + rankDelta;
+        return fileIdx < 0 || fileIdx > 7 || rankIdx < 0 || rankIdx > 7 ? -1 : rankIdx * 8 + fileIdx;
+    }
+
+    /**
+     * Main method. See the class documentation for the commandline syntax.
+     * The process exits with status 1 if the arguments don't parse.
+     *
+     * @param args The commandline arguments.
+     * @throws IOException If a table can't be written.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        String usage = "Usage: BitbaseGenerator --output-dir <dir> [--workers <n>]";
+        Path outputDirPath = null;
+        int workersCount = Runtime.getRuntime().availableProcessors();
+
+        try {
+            for (int argIdx = 0; argIdx < args.length; argIdx++) {
+                if (argIdx + 1 >= args.length) {
+                    throw new IllegalArgumentException("option `" + args[argIdx] + "` has no value.");
+                }
+                String value = args[++argIdx];
+                switch (args[argIdx - 1]) {
+                    case "--output-dir" -> outputDirPath = Path.of(value);
+                    case "--workers" -> workersCount = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("unknown option `" + args[argIdx - 1] + "`.");
+                }
+            }
+            if (outputDirPath == null) {
+                throw new IllegalArgumentException("--output-dir is required.");
+            } else if (workersCount < 1) {
+                throw new IllegalArgumentException("--workers must be at least 1.");
+            }
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println(usage);
+            System.exit(1);
+            return;
+        }
+
+        Files.createDirectories(outputDirPath);
+        Bitbase.Table queenTable = null;
+        Bitbase.Table rookTable = null;
+        for (Bitbase.Kind kind : List.of(Bitbase.Kind.KQK, Bitbase.Kind.KRK, Bitbase.Kind.KPK)) {
+            Result result = generate(kind, workersCount, queenTable, rookTable);
+            Path tablePath = outputDirPath.resolve(kind.getFileName());
+            result.table().write(tablePath);
+            if (kind == Bitbase.Kind.KQK) {
+                queenTable = result.table();
+            } else if (kind == Bitbase.Kind.KRK) {
+                rookTable = result.table();
+            }
+            System.err.printf("%s: %d positions won with the stronger side to move, longest mate %d plies, "
+                              + "%d bits per entry, %.1f s; wrote %s%n", kind, result.wonCount(), result.maxPlies(),
+                              result.table().getBitsPerEntry(), result.elapsedNanos() / 1e9, tablePath);
+        }
+    }
+}
@@ -85,16 +85,54 @@ public final class BoardArrays {
         this.put(QUEEN, "Q"); this.put(KING, "K");
     }};
 
+    /** Castling rights flag: white may castle with the rook on the h file. */
+    public static final int CASTLING_WHITE_KINGSIDE = 0b0001;
+
+    /** Castling rights flag: white may castle with the rook on the a file. */
+    public static final int CASTLING_WHITE_QUEENSIDE = 0b0010;
+
+    /** Castling rights flag: black may castle with the rook on the h file. */
+    public static final int CASTLING_BLACK_KINGSIDE = 0b0100;
+
+    /** Castling rights flag: black may castle with the rook on the a file. */
+    public static final int CASTLING_BLACK_QUEENSIDE = 0b1000;
+
+    /** All four castling rights flags or'd together. */
+    public static final int CASTLING_ALL = 0b1111;
+
     /** Contains the pieces that a pawn can be promoted to. */
     public static final int[] PAWN_PROMOTION_PIECES = new int[] {ROOK, KNIGHT, BISHOP, QUEEN};
 
     /** A Random object, used for a few cases where a coin toss is needed.
+        It can be reseeded with setRandomSeed() to make those repeatable.
         @see #shuffleMovesArray
         @see #generatePawnsMoves */
     private static final Random RNG = new Random();
 
+    /* The {x delta, y delta} steps of a knight, and of a king, whose steps
+       are also the eight directions a sliding piece can move in. */
+    private static final int[][] KNIGHT_DELTAS = {
+        {1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}
+    };
+    private static final int[][] KING_DELTAS = {
+        {0, 1}, {1, 1}, {1, 0}, {1, -1}, {0, -1}, {-1, -1}, {-1, 0}, {-1, 1}
+    };
+
     private BoardArrays() { }
 
+    /**
+     * Reseeds the Random object used to shuffle moves and to pick the
+     * chirality of a knight a pawn is promoted to, so that the coin tosses
+     * made after this call are the same from run to run. It's meant for
+     * benchmarks whose node counts have to be reproducible; the sequence is
+     * only repeatable if a single thread makes the calls.
+     *
+     * @param seed The seed.
+     */
+    public static void setRandomSeed(final long seed) {
+        RNG.setSeed(seed);
+    }
+
     /**
      * Converts an integer representing a piece into a textual representation of
      * the piece.
@@ -155,6 +193,22 @@ public final class BoardArrays {
         return alphaComponent + numComponent;
     }
 
+    /**
+     * Translates coordinates of a square on a chessboard into algebraic
+     * notation, taking into account which color is playing from the top of the
+     * board. coordsToAlgNotn() assumes white is at the bottom; when white is on
+     * top, the board is flipped vertically, so the ranks run the other way.
+     *
+     * @param xCoord     The x coordinate of the square.
+     * @param yCoord     The y coordinate of the square.
+     * @param colorOnTop The color playing from the top of the board.
+     * @return           The algebraic notation for the same square (a
+     *                   2-character String).
+     */
+    public static String coordsToAlgNotn(final int xCoord, final int yCoord, final int colorOnTop) {
+        return coordsToAlgNotn(xCoord, colorOnTop == WHITE ? 7 - yCoord : yCoord);
+    }
+
     /**
      * Finds the king of the specified color in its boardArray argument.
      *
@@ -228,6 +282,27 @@ public final class BoardArrays {
         return generatePossibleMoves(boardArray, movesArray, colorsTurnItIs, colorOnTop) == 0;
     }
 
+    /**
+     * Generates possible moves for every piece of the specified color, as the
+     * generatePossibleMoves() that takes AttackMaps does, testing whether
+     * each move leaves the king in check by tracing outward from the king.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param movesArray     The working int[][7] array to fill moves into.
+     * @param colorsTurnItIs The color of the piece.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @return               The new value for the index of the first empty
+     *                       array in the int[][7] movesArray.
+     * @throws IllegalArgumentException If an integer in the boardArray argument
+     *                                  doesn't parse as a valid composite of
+     *                                  integer piece flags.
+     */
+    public static int generatePossibleMoves(final int[][] boardArray, final int[][] movesArray,
+                                            final int colorsTurnItIs, final int colorOnTop
+                                            ) throws IllegalArgumentException {
+        return generatePossibleMoves(boardArray, movesArray, colorsTurnItIs, colorOnTop, null);
+    }
+
     /**
      * Generates possible moves for every piece in the boardArray argument of
      * the specified color. It saves them to its movesArray argument. It returns
@@ -240,6 +315,10 @@ public final class BoardArrays {
      * @param movesArray      The working int[][7] array to fill moves into.
      * @param colorsTurnItIs  The color of the piece.
      * @param colorOnTop      The color playing from the top of the board.
+     * @param attackMaps      The attack maps matching boardArray, to test
+     *                        whether each move leaves the king in check
+     *                        with lookups, or null to test it by tracing
+     *                        outward from the king.
      * @return                The new value for the index of the first empty
      *                        array in the int[][7] movesArray.
      * @throws IllegalArgumentException If an integer in the boardArray argument
@@ -253,8 +332,8 @@ public final class BoardArrays {
      * @see #generateKingsMoves
      */
     public static int generatePossibleMoves(final int[][] boardArray, final int[][] movesArray,
-                                            final int colorsTurnItIs, final int colorOnTop
-                                            ) throws IllegalArgumentException {
+                                            final int colorsTurnItIs, final int colorOnTop,
+                                            final AttackMaps attackMaps) throws IllegalArgumentException {
         int colorOpposing = (colorsTurnItIs == WHITE) ? BLACK : WHITE;
         int moveIdx = 0;
 
@@ -264,13 +343,38 @@ public final class BoardArrays {
                 if (pieceInt == 0 || (pieceInt & colorOpposing) != 0) {
                     continue;
                 }
-                moveIdx = generatePieceMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop);
+                moveIdx = generatePieceMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop,
+                                             attackMaps);
             }
         }
 
         return moveIdx;
     }
 
+    /**
+     * Generates possible moves for the piece at the specified location, as
+     * the generatePieceMoves() that takes AttackMaps does, testing whether
+     * each move leaves the king in check by tracing outward from the king.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param movesArray     The working int[][7] array to fill moves into.
+     * @param moveIdx        The index of the first empty array in movesArray.
+     * @param xIdx           The x index of the location of the piece.
+     * @param yIdx           The y index of the location of the piece.
+     * @param colorsTurnItIs The color of the piece.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @return               The new value for the index of the first empty
+     *                       array in the int[][7] movesArray.
+     * @throws IllegalArgumentException If an integer in the boardArray argument
+     *                                  doesn't parse as a valid composite of
+     *                                  integer piece flags.
+     */
+    public static int generatePieceMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdx,
+                                  final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
+                                  ) throws IllegalArgumentException {
+        return generatePieceMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop, null);
+    }
+
     /**
      * Generates possible moves for the piece at the specified location its
      * boardArray first argument, and saves them to its movesArray argument. It
@@ -289,6 +393,10 @@ public final class BoardArrays {
      * @param yIdx           The y index of the location of the piece.
      * @param colorsTurnItIs The color of the piece.
      * @param colorOnTop     The color playing from the top of the board.
+     * @param attackMaps     The attack maps matching boardArray, to test
+     *                       whether each move leaves the king in check
+     *                       with lookups, or null to test it by tracing
+     *                       outward from the king.
      * @return               The new value for the index of the first empty
      *                       array in the int[][7] movesArray.
      * @throws IllegalArgumentException If an integer in the boardArray argument
@@ -302,18 +410,22 @@ public final class BoardArrays {
      * @see #generateKingsMoves
      */
     public static int generatePieceMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdx,
-                                  final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
-                                  ) throws IllegalArgumentException {
+                                  final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop,
+                                  final AttackMaps attackMaps) throws IllegalArgumentException {
         int pieceInt = boardArray[xIdx][yIdx];
         int retval = switch (pieceInt ^ colorsTurnItIs) {
-            case PAWN -> generatePawnsMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop);
-            case ROOK -> generateRooksMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop);
-            case KNIGHT | LEFT, KNIGHT | RIGHT ->
-                    generateKnightsMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop);
-            case BISHOP ->
-                    generateBishopsMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop);
-            case QUEEN -> generateQueensMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop);
-            case KING -> generateKingsMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop);
+            case PAWN -> generatePawnsMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop,
+                                            attackMaps);
+            case ROOK -> generateRooksMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop,
+                                            attackMaps);
+            case KNIGHT | LEFT, KNIGHT | RIGHT -> generateKnightsMoves(boardArray, movesArray, moveIdx, xIdx, yIdx,
+                                                                       colorsTurnItIs, colorOnTop, attackMaps);
+            case BISHOP -> generateBishopsMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs,
+                                                colorOnTop, attackMaps);
+            case QUEEN -> generateQueensMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop,
+                                              attackMaps);
+            case KING -> generateKingsMoves(boardArray, movesArray, moveIdx, xIdx, yIdx, colorsTurnItIs, colorOnTop,
+                                            attackMaps);
             default -> throw new IllegalArgumentException(
                     "The integer value found in the board array at the specified indexes doesn't parse as a "
                             + "piece int value.");
@@ -333,6 +445,188 @@ public final class BoardArrays {
         return retval;
     }
 
+    /**
+     * Counts the pseudo-legal moves of every piece of one color: the moves
+     * the pieces could make if leaving their own king in check were allowed.
+     * No moves are generated and wouldKingBeInCheck() is never called, so this
+     * is far cheaper than counting the moves generatePossibleMoves() finds,
+     * and allocates nothing. It's meant as a mobility measure, so a few
+     * details of the full move count are left out: a promotion counts as one
+     * move rather than four, and castling and en passant aren't counted.
+     * Captures of the opposing king aren't counted either, just as
+     * generatePieceMoves() never generates them.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param colorsTurnItIs The color to count moves for, either
+     *                       BoardArrays.WHITE or BoardArrays.BLACK.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @return               The number of pseudo-legal moves.
+     */
+    public static int countPseudoLegalMoves(final int[][] boardArray, final int colorsTurnItIs,
+                                            final int colorOnTop) {
+        int otherKing = (colorsTurnItIs == WHITE ? BLACK : WHITE) | KING;
+        int pawnYDelta = colorsTurnItIs == colorOnTop ? 1 : -1;
+        int pawnStartYIdx = colorsTurnItIs == colorOnTop ? 1 : 6;
+        int movesCount = 0;
+
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            for (int yIdx = 0; yIdx < 8; yIdx++) {
+                int pieceInt = boardArray[xIdx][yIdx];
+                if ((pieceInt & colorsTurnItIs) == 0) {
+                    continue;
+                }
+                if ((pieceInt & PAWN) != 0) {
+                    movesCount += countPawnMoves(boardArray, xIdx, yIdx, pawnYDelta, pawnStartYIdx,
+                                                 colorsTurnItIs, otherKing);
+                } else if ((pieceInt & KNIGHT) != 0) {
+                    movesCount += countStepMoves(boardArray, xIdx, yIdx, KNIGHT_DELTAS, colorsTurnItIs, otherKing);
+                } else if ((pieceInt & KING) != 0) {
+                    movesCount += countStepMoves(boardArray, xIdx, yIdx, KING_DELTAS, colorsTurnItIs, otherKing);
+                } else {
+                    /* Rooks, bishops and queens slide along the directions
+                       that their flag has in common with the directions
+                       table: straight lines, diagonals, or both. */
+                    for (int[] direction : KING_DELTAS) {
+                        boolean isDiagonal = direction[0] != 0 && direction[1] != 0;
+                        if ((pieceInt & (isDiagonal ? BISHOP | QUEEN : ROOK | QUEEN)) != 0) {
+                            movesCount += countSlideMoves(boardArray, xIdx, yIdx, direction[0], direction[1],
+                                                          colorsTurnItIs, otherKing);
+                        }
+                    }
+                }
+            }
+        }
+
+        return movesCount;
+    }
+
+    /*
+     * Counts a pawn's pseudo-legal moves: one or, from its starting rank, two
+     * squares ahead if they're empty, and captures on either forward diagonal.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param xIdx           The x index of the pawn.
+     * @param yIdx           The y index of the pawn.
+     * @param yIdxDelta      The direction the pawn advances in, 1 or -1.
+     * @param startYIdx      The y index of the pawn's starting rank.
+     * @param colorsTurnItIs The color of the pawn.
+     * @param otherKing      The piece int of the opposing king.
+     * @return               The number of moves.
+     */
+    private static int countPawnMoves(final int[][] boardArray, final int xIdx, final int yIdx, final int yIdxDelta,
+                                      final int startYIdx, final int colorsTurnItIs, final int otherKing) {
+        int yIdxMod = yIdx + yIdxDelta;
+        if (yIdxMod < 0 || yIdxMod > 7) {
+            return 0;
+        }
+
+        int movesCount = 0;
+        if (boardArray[xIdx][yIdxMod] == 0) {
+            movesCount++;
+            if (yIdx == startYIdx && boardArray[xIdx][yIdxMod + yIdxDelta] == 0) {
+                movesCount++;
+            }
+        }
+        for (int xIdxMod = xIdx - 1; xIdxMod <= xIdx + 1; xIdxMod += 2) {
+            if (xIdxMod < 0 || xIdxMod > 7) {
+                continue;
+            }
+            int targetPieceInt = boardArray[xIdxMod][yIdxMod];
+            if (targetPieceInt != 0 && (targetPieceInt & colorsTurnItIs) == 0 && targetPieceInt != otherKing) {
+                movesCount++;
+            }
+        }
+        return movesCount;
+    }
+
+    /*
+     * Counts the pseudo-legal moves of a knight or king: each of its
+     * one-step deltas that lands on the board, on a square that's empty or
+     * holds an opposing piece other than the king.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param xIdx           The x index of the piece.
+     * @param yIdx           The y index of the piece.
+     * @param deltas         The piece's {x delta, y delta} pairs.
+     * @param colorsTurnItIs The color of the piece.
+     * @param otherKing      The piece int of the opposing king.
+     * @return               The number of moves.
+     */
+    private static int countStepMoves(final int[][] boardArray, final int xIdx, final int yIdx, final int[][] deltas,
+                                      final int colorsTurnItIs, final int otherKing) {
+        int movesCount = 0;
+        for (int[] delta : deltas) {
+            int xIdxMod = xIdx + delta[0];
+            int yIdxMod = yIdx + delta[1];
+            if (xIdxMod < 0 || xIdxMod > 7 || yIdxMod < 0 || yIdxMod > 7) {
+                continue;
+            }
+            int targetPieceInt = boardArray[xIdxMod][yIdxMod];
+            if ((targetPieceInt & colorsTurnItIs) == 0 && targetPieceInt != otherKing) {
+                movesCount++;
+            }
+        }
+        return movesCount;
+    }
+
+    /*
+     * Counts the pseudo-legal moves of a sliding piece in one direction: the
+     * empty squares up to the first occupied one, plus that one if it holds
+     * an opposing piece other than the king.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param xIdx           The x index of the piece.
+     * @param yIdx           The y index of the piece.
+     * @param xIdxDelta      The x step of the direction, -1, 0 or 1.
+     * @param yIdxDelta      The y step of the direction, -1, 0 or 1.
+     * @param colorsTurnItIs The color of the piece.
+     * @param otherKing      The piece int of the opposing king.
+     * @return               The number of moves.
+     */
+    private static int countSlideMoves(final int[][] boardArray, final int xIdx, final int yIdx,
+                                       final int xIdxDelta, final int yIdxDelta, final int colorsTurnItIs,
+                                       final int otherKing) {
+        int movesCount = 0;
+        for (int xIdxMod = xIdx + xIdxDelta, yIdxMod = yIdx + yIdxDelta;
+             xIdxMod >= 0 && xIdxMod < 8 && yIdxMod >= 0 && yIdxMod < 8;
+             xIdxMod += xIdxDelta, yIdxMod += yIdxDelta) {
+            int targetPieceInt = boardArray[xIdxMod][yIdxMod];
+            if (targetPieceInt == 0) {
+                movesCount++;
+                continue;
+            }
+            if ((targetPieceInt & colorsTurnItIs) == 0 && targetPieceInt != otherKing) {
+                movesCount++;
+            }
+            break;
+        }
+        return movesCount;
+    }
+
+    /**
+     * Generates possible moves for the pawn, as the generatePawnsMoves() that
+     * takes AttackMaps does, testing whether each move leaves the king in
+     * check by tracing outward from the king.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param movesArray     The working int[][7] array to fill moves into.
+     * @param moveIdxArg     The index of the first empty array in movesArray.
+     * @param xIdx           The x index of the location of the pawn.
+     * @param yIdx           The y index of the location of the pawn.
+     * @param colorsTurnItIs The color of the pawn.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @return               The new value for the index of the first empty
+     *                       array in the int[][7] movesArray.
+     * @throws IllegalArgumentException If the coordinates point to a cell in
+     *                                  the boardArray argument that isn't a
+     *                                  pawn of the specified color.
+     */
+    public static int generatePawnsMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
+                                  final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
+                                  ) throws IllegalArgumentException {
+        return generatePawnsMoves(boardArray, movesArray, moveIdxArg, xIdx, yIdx, colorsTurnItIs, colorOnTop, null);
+    }
+
     /**
      * Generates possible moves for the pawn, and saves them to its movesArray
      * argument. It returns the index of the first empty array in movesArray
@@ -354,6 +648,10 @@ public final class BoardArrays {
      * @param yIdx            The y index of the location of the pawn.
      * @param colorsTurnItIs  The color of the pawn.
      * @param colorOnTop      The color playing from the top of the board.
+     * @param attackMaps      The attack maps matching boardArray, to test
+     *                        whether each move leaves the king in check
+     *                        with lookups, or null to test it by tracing
+     *                        outward from the king.
      * @return                The new value for the index of the first empty
      *                        array in the int[][7] movesArray.
      * @throws IllegalArgumentException If the coordinates point to a cell in
@@ -361,8 +659,8 @@ public final class BoardArrays {
      *                                  pawn of the specified color.
      */
     public static int generatePawnsMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
-                                  final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
-                                  ) throws IllegalArgumentException {
+                                  final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop,
+                                  final AttackMaps attackMaps) throws IllegalArgumentException {
         int colorOnBottom = colorOnTop == WHITE ? BLACK : WHITE;
         int otherColor = (colorsTurnItIs == WHITE) ? BLACK : WHITE;
         int pawnPieceInt;
@@ -420,7 +718,7 @@ public final class BoardArrays {
 
             /* If the move would put this side's king in check (or fail to
                get it out of check), it's discarded. */
-            if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop)) {
+            if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop, attackMaps)) {
                 continue;
             }
 
@@ -455,17 +753,20 @@ public final class BoardArrays {
         }
 
         /* If the pawn is on the 2nd rank from the top, and is the color playing
-           from the top, and the square two ahead is empty, */
-        if (yIdx == 1 && colorsTurnItIs == colorOnTop && boardArray[xIdx][yIdx + 2] == 0
+           from the top, and the squares one and two ahead are empty, */
+        if (yIdx == 1 && colorsTurnItIs == colorOnTop
+            && boardArray[xIdx][yIdx + 1] == 0 && boardArray[xIdx][yIdx + 2] == 0
             /* or the pawn is on the 7th rank from the top, and is the color
-               playing from the bottom, and the square two ahead is empty, */
-            || yIdx == 6 && colorsTurnItIs == colorOnBottom && boardArray[xIdx][yIdx - 2] == 0) {
+               playing from the bottom, and the squares one and two ahead are
+               empty, */
+            || yIdx == 6 && colorsTurnItIs == colorOnBottom
+            && boardArray[xIdx][yIdx - 1] == 0 && boardArray[xIdx][yIdx - 2] == 0) {
             /* Then a move of two ahead is possible. */
             yIdxMod = yIdx == 1 ? yIdx + 2 : yIdx - 2;
 
             /* If the move wouldn't put this side's king in check (or fail to
                get it out of check), it's saved to the movesArray. */
-            if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdx, yIdxMod, colorsTurnItIs, colorOnTop)) {
+            if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdx, yIdxMod, colorsTurnItIs, colorOnTop, attackMaps)) {
                 moveIdx = setMoveToMovesArray(movesArray, moveIdx, pawnPieceInt, xIdx, yIdx, xIdx, yIdxMod, 0);
             }
         }
@@ -476,6 +777,30 @@ public final class BoardArrays {
         return moveIdx;
     }
 
+    /**
+     * Generates possible moves for the rook, as the generateRooksMoves() that
+     * takes AttackMaps does, testing whether each move leaves the king in
+     * check by tracing outward from the king.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param movesArray     The working int[][7] array to fill moves into.
+     * @param moveIdxArg     The index of the first empty array in movesArray.
+     * @param xIdx           The x index of the location of the rook.
+     * @param yIdx           The y index of the location of the rook.
+     * @param colorsTurnItIs The color of the rook.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @return               The new value for the index of the first empty
+     *                       array in the int[][7] movesArray.
+     * @throws IllegalArgumentException If the coordinates point to a cell in
+     *                                  the boardArray argument that isn't a
+     *                                  rook of the specified color.
+     */
+    public static int generateRooksMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
+                                  final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
+                                  ) throws IllegalArgumentException {
+        return generateRooksMoves(boardArray, movesArray, moveIdxArg, xIdx, yIdx, colorsTurnItIs, colorOnTop, null);
+    }
+
     /**
      * Generate possible moves for the rook, and saves them to its movesArray
      * argument. It returns the index of the first empty array in movesArray
@@ -497,6 +822,10 @@ public final class BoardArrays {
      * @param yIdx            The y index of the location of the rook.
      * @param colorsTurnItIs  The color of the rook.
      * @param colorOnTop      The color playing from the top of the board.
+     * @param attackMaps      The attack maps matching boardArray, to test
+     *                        whether each move leaves the king in check
+     *                        with lookups, or null to test it by tracing
+     *                        outward from the king.
      * @return                The new value for the index of the first empty
      *                        array in the int[][7] movesArray.
      * @throws IllegalArgumentException If the coordinates point to a cell in
@@ -504,8 +833,8 @@ public final class BoardArrays {
      *                                  rook of the specified color.
      */
     public static int generateRooksMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
-                                  final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
-                                  ) throws IllegalArgumentException {
+                                  final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop,
+                                  final AttackMaps attackMaps) throws IllegalArgumentException {
         int otherColor = (colorsTurnItIs == WHITE) ? BLACK : WHITE;
         int rookPieceInt;
         int moveIdx = moveIdxArg;
@@ -529,13 +858,11 @@ public final class BoardArrays {
                  yIdxMod < 8 && (boardArray[xIdx][yIdxMod] & colorsTurnItIs) == 0;
                  yIdxMod++) {
 
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdx, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdx][yIdxMod] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdx, yIdxMod, colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdx][yIdxMod] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, rookPieceInt, xIdx, yIdx, xIdx, yIdxMod,
                                                   boardArray[xIdx][yIdxMod]);
                 }
@@ -553,14 +880,11 @@ public final class BoardArrays {
                  yIdxMod >= 0 && (boardArray[xIdx][yIdxMod] & colorsTurnItIs) == 0;
                  yIdxMod--) {
 
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdx, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdx][yIdxMod] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdx, yIdxMod, colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdx][yIdxMod] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, rookPieceInt, xIdx, yIdx, xIdx, yIdxMod,
                                                   boardArray[xIdx][yIdxMod]);
                 }
@@ -578,13 +902,11 @@ public final class BoardArrays {
                  xIdxMod < 8 && (boardArray[xIdxMod][yIdx] & colorsTurnItIs) == 0;
                  xIdxMod++) {
 
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdx, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdxMod][yIdx] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdx, colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdxMod][yIdx] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, rookPieceInt, xIdx, yIdx, xIdxMod, yIdx,
                                                   boardArray[xIdxMod][yIdx]);
                 }
@@ -602,13 +924,11 @@ public final class BoardArrays {
                  xIdxMod >= 0 && (boardArray[xIdxMod][yIdx] & colorsTurnItIs) == 0;
                  xIdxMod--) {
 
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdx, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdxMod][yIdx] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdx, colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdxMod][yIdx] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, rookPieceInt, xIdx, yIdx, xIdxMod, yIdx,
                                                   boardArray[xIdxMod][yIdx]);
                 }
@@ -625,6 +945,30 @@ public final class BoardArrays {
         return moveIdx;
     }
 
+    /**
+     * Generates possible moves for the bishop, as the generateBishopsMoves() that
+     * takes AttackMaps does, testing whether each move leaves the king in
+     * check by tracing outward from the king.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param movesArray     The working int[][7] array to fill moves into.
+     * @param moveIdxArg     The index of the first empty array in movesArray.
+     * @param xIdx           The x index of the location of the bishop.
+     * @param yIdx           The y index of the location of the bishop.
+     * @param colorsTurnItIs The color of the bishop.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @return               The new value for the index of the first empty
+     *                       array in the int[][7] movesArray.
+     * @throws IllegalArgumentException If the coordinates point to a cell in
+     *                                  the boardArray argument that isn't a
+     *                                  bishop of the specified color.
+     */
+    public static int generateBishopsMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
+                                    final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
+                                    ) throws IllegalArgumentException {
+        return generateBishopsMoves(boardArray, movesArray, moveIdxArg, xIdx, yIdx, colorsTurnItIs, colorOnTop, null);
+    }
+
     /**
      * Generates possible moves for the bishop, and saves them to its movesArray
      * argument. It returns the index of the first empty array in movesArray
@@ -646,6 +990,10 @@ public final class BoardArrays {
      * @param yIdx            The y index of the location of the bishop.
      * @param colorsTurnItIs  The color of the bishop.
      * @param colorOnTop      The color playing from the top of the board.
+     * @param attackMaps      The attack maps matching boardArray, to test
+     *                        whether each move leaves the king in check
+     *                        with lookups, or null to test it by tracing
+     *                        outward from the king.
      * @return                The new value for the index of the first empty
      *                        array in the int[][7] movesArray.
      * @throws IllegalArgumentException If the coordinates point to a cell in
@@ -653,8 +1001,8 @@ public final class BoardArrays {
      *                                  bishop of the specified color.
      */
     public static int generateBishopsMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
-                                    final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
-                                    ) throws IllegalArgumentException {
+                                    final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop,
+                                    final AttackMaps attackMaps) throws IllegalArgumentException {
         int otherColor = (colorsTurnItIs == WHITE) ? BLACK : WHITE;
         int bishopPieceInt;
         int moveIdx = moveIdxArg;
@@ -677,13 +1025,12 @@ public final class BoardArrays {
             for (int xIdxMod = xIdx + 1, yIdxMod = yIdx + 1;
                 xIdxMod < 8 && yIdxMod < 8 && (boardArray[xIdxMod][yIdxMod] & colorsTurnItIs) == 0;
                 xIdxMod++, yIdxMod++) {
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod,
+                                        colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, bishopPieceInt, xIdx, yIdx, xIdxMod, yIdxMod,
                                                   boardArray[xIdxMod][yIdxMod]);
                 }
@@ -700,13 +1047,12 @@ public final class BoardArrays {
             for (int xIdxMod = xIdx - 1, yIdxMod = yIdx + 1;
                 xIdxMod >= 0 && yIdxMod < 8 && (boardArray[xIdxMod][yIdxMod] & colorsTurnItIs) == 0;
                 xIdxMod--, yIdxMod++) {
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod,
+                                        colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, bishopPieceInt, xIdx, yIdx, xIdxMod, yIdxMod,
                                                   boardArray[xIdxMod][yIdxMod]);
                 }
@@ -723,13 +1069,12 @@ public final class BoardArrays {
             for (int xIdxMod = xIdx + 1, yIdxMod = yIdx - 1;
                 xIdxMod < 8 && yIdxMod >= 0 && (boardArray[xIdxMod][yIdxMod] & colorsTurnItIs) == 0;
                 xIdxMod++, yIdxMod--) {
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod,
+                                        colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, bishopPieceInt, xIdx, yIdx, xIdxMod, yIdxMod,
                                                   boardArray[xIdxMod][yIdxMod]);
                 }
@@ -746,13 +1091,12 @@ public final class BoardArrays {
             for (int xIdxMod = xIdx - 1, yIdxMod = yIdx - 1;
                 xIdxMod >= 0 && yIdxMod >= 0 && (boardArray[xIdxMod][yIdxMod] & colorsTurnItIs) == 0;
                 xIdxMod--, yIdxMod--) {
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod,
+                                        colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, bishopPieceInt, xIdx, yIdx, xIdxMod, yIdxMod,
                                                   boardArray[xIdxMod][yIdxMod]);
                 }
@@ -769,6 +1113,30 @@ public final class BoardArrays {
         return moveIdx;
     }
 
+    /**
+     * Generates possible moves for the knight, as the generateKnightsMoves() that
+     * takes AttackMaps does, testing whether each move leaves the king in
+     * check by tracing outward from the king.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param movesArray     The working int[][7] array to fill moves into.
+     * @param moveIdxArg     The index of the first empty array in movesArray.
+     * @param xIdx           The x index of the location of the knight.
+     * @param yIdx           The y index of the location of the knight.
+     * @param colorsTurnItIs The color of the knight.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @return               The new value for the index of the first empty
+     *                       array in the int[][7] movesArray.
+     * @throws IllegalArgumentException If the coordinates point to a cell in
+     *                                  the boardArray argument that isn't a
+     *                                  knight of the specified color.
+     */
+    public static int generateKnightsMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
+                                    final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
+                                    ) throws IllegalArgumentException {
+        return generateKnightsMoves(boardArray, movesArray, moveIdxArg, xIdx, yIdx, colorsTurnItIs, colorOnTop, null);
+    }
+
     /**
      * Generates possible moves for the knight, and saves them to its movesArray
      * argument. It returns the index of the first empty array in movesArray
@@ -790,6 +1158,10 @@ public final class BoardArrays {
      * @param yIdx            The y index of the location of the knight.
      * @param colorsTurnItIs  The color of the knight.
      * @param colorOnTop      The color playing from the top of the board.
+     * @param attackMaps      The attack maps matching boardArray, to test
+     *                        whether each move leaves the king in check
+     *                        with lookups, or null to test it by tracing
+     *                        outward from the king.
      * @return                The new value for the index of the first empty
      *                        array in the int[][7] movesArray.
      * @throws IllegalArgumentException If the coordinates point to a cell in
@@ -797,8 +1169,8 @@ public final class BoardArrays {
      *                                  knight of the specified color.
      */
     public static int generateKnightsMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
-                                    final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
-                                    ) throws IllegalArgumentException {
+                                    final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop,
+                                    final AttackMaps attackMaps) throws IllegalArgumentException {
         int otherColor = (colorsTurnItIs == WHITE) ? BLACK : WHITE;
         int knightPieceInt;
         int moveIdx = moveIdxArg;
@@ -842,7 +1214,8 @@ public final class BoardArrays {
 
                 /* If the move would put this side's king in check (or fail to
                    get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop)) {
+                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod,
+                                       colorsTurnItIs, colorOnTop, attackMaps)) {
                     continue;
                 }
 
@@ -858,6 +1231,30 @@ public final class BoardArrays {
         return moveIdx;
     }
 
+    /**
+     * Generates possible moves for the queen, as the generateQueensMoves() that
+     * takes AttackMaps does, testing whether each move leaves the king in
+     * check by tracing outward from the king.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param movesArray     The working int[][7] array to fill moves into.
+     * @param moveIdxArg     The index of the first empty array in movesArray.
+     * @param xIdx           The x index of the location of the queen.
+     * @param yIdx           The y index of the location of the queen.
+     * @param colorsTurnItIs The color of the queen.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @return               The new value for the index of the first empty
+     *                       array in the int[][7] movesArray.
+     * @throws IllegalArgumentException If the coordinates point to a cell in
+     *                                  the boardArray argument that isn't a
+     *                                  queen of the specified color.
+     */
+    public static int generateQueensMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
+                                   final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
+                                   ) throws IllegalArgumentException {
+        return generateQueensMoves(boardArray, movesArray, moveIdxArg, xIdx, yIdx, colorsTurnItIs, colorOnTop, null);
+    }
+
     /**
      * Generates possible moves for the queen, and saves them to its movesArray
      * argument. It returns the index of the first empty array in movesArray
@@ -879,6 +1276,10 @@ public final class BoardArrays {
      * @param yIdx            The y index of the location of the queen.
      * @param colorsTurnItIs  The color of the queen.
      * @param colorOnTop      The color playing from the top of the board.
+     * @param attackMaps      The attack maps matching boardArray, to test
+     *                        whether each move leaves the king in check
+     *                        with lookups, or null to test it by tracing
+     *                        outward from the king.
      * @return                The new value for the index of the first empty
      *                        array in the int[][7] movesArray.
      * @throws IllegalArgumentException If the coordinates point to a cell in
@@ -886,8 +1287,8 @@ public final class BoardArrays {
      *                                  queen of the specified color.
      */
     public static int generateQueensMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
-                                   final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
-                                   ) throws IllegalArgumentException {
+                                   final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop,
+                                   final AttackMaps attackMaps) throws IllegalArgumentException {
         int otherColor = (colorsTurnItIs == WHITE) ? BLACK : WHITE;
         int queenPieceInt;
         int moveIdx = moveIdxArg;
@@ -909,13 +1310,11 @@ public final class BoardArrays {
             for (int xIdxMod = xIdx + 1;
                 xIdxMod < 8 && (boardArray[xIdxMod][yIdx] & colorsTurnItIs) == 0;
                 xIdxMod++) {
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdx, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdxMod][yIdx] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdx, colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdxMod][yIdx] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, queenPieceInt, xIdx, yIdx, xIdxMod, yIdx,
                                                   boardArray[xIdxMod][yIdx]);
                 }
@@ -931,13 +1330,12 @@ public final class BoardArrays {
                 for (int xIdxMod = xIdx + 1, yIdxMod = yIdx + 1;
                      xIdxMod < 8 && yIdxMod < 8 && (boardArray[xIdxMod][yIdxMod] & colorsTurnItIs) == 0;
                      xIdxMod++, yIdxMod++) {
-                    /* If the move would put this side's king in check (or fail to
-                       get it out of check), it's discarded. */
-                    if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                        continue;
-                    }
-                    /* The move is saved if it wouldn't capture a king. */
-                    if ((boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
+                    /* The move is saved if it wouldn't put this side's king in check (or
+                       fail to get it out of check), and it wouldn't capture a king. The
+                       loop still breaks below if the square is occupied. */
+                    if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod,
+                                            colorsTurnItIs, colorOnTop, attackMaps)
+                        && (boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
                         moveIdx = setMoveToMovesArray(movesArray, moveIdx, queenPieceInt, xIdx, yIdx, xIdxMod, yIdxMod,
                                                       boardArray[xIdxMod][yIdxMod]);
                     }
@@ -953,13 +1351,12 @@ public final class BoardArrays {
                    friendly piece. */
                 for (int xIdxMod = xIdx + 1, yIdxMod = yIdx - 1; xIdxMod < 8 && yIdxMod >= 0
                      && (boardArray[xIdxMod][yIdxMod] & colorsTurnItIs) == 0; xIdxMod++, yIdxMod--) {
-                    /* If the move would put this side's king in check (or fail to
-                       get it out of check), it's discarded. */
-                    if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                        continue;
-                    }
-                    /* The move is saved if it wouldn't capture a king. */
-                    if ((boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
+                    /* The move is saved if it wouldn't put this side's king in check (or
+                       fail to get it out of check), and it wouldn't capture a king. The
+                       loop still breaks below if the square is occupied. */
+                    if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod,
+                                            colorsTurnItIs, colorOnTop, attackMaps)
+                        && (boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
                         moveIdx = setMoveToMovesArray(movesArray, moveIdx, queenPieceInt, xIdx, yIdx, xIdxMod, yIdxMod,
                                                       boardArray[xIdxMod][yIdxMod]);
                     }
@@ -977,13 +1374,11 @@ public final class BoardArrays {
             for (int yIdxMod = yIdx + 1;
                  yIdxMod < 8 && (boardArray[xIdx][yIdxMod] & colorsTurnItIs) == 0;
                  yIdxMod++) {
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdx, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdx][yIdxMod] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdx, yIdxMod, colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdx][yIdxMod] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, queenPieceInt, xIdx, yIdx, xIdx, yIdxMod,
                                                   boardArray[xIdx][yIdxMod]);
                 }
@@ -1000,13 +1395,11 @@ public final class BoardArrays {
             for (int yIdxMod = yIdx - 1;
                  yIdxMod >= 0 && (boardArray[xIdx][yIdxMod] & colorsTurnItIs) == 0;
                  yIdxMod--) {
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdx, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdx][yIdxMod] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdx, yIdxMod, colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdx][yIdxMod] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, queenPieceInt, xIdx, yIdx, xIdx, yIdxMod,
                                                   boardArray[xIdx][yIdxMod]);
                 }
@@ -1023,13 +1416,11 @@ public final class BoardArrays {
             for (int xIdxMod = xIdx - 1;
                  xIdxMod >= 0 && (boardArray[xIdxMod][yIdx] & colorsTurnItIs) == 0;
                  xIdxMod--) {
-                /* If the move would put this side's king in check (or fail to
-                   get it out of check), it's discarded. */
-                if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdx, colorsTurnItIs, colorOnTop)) {
-                    continue;
-                }
-                /* The move is saved if it wouldn't capture a king. */
-                if ((boardArray[xIdxMod][yIdx] ^ otherColor) != KING) {
+                /* The move is saved if it wouldn't put this side's king in check (or
+                   fail to get it out of check), and it wouldn't capture a king. The
+                   loop still breaks below if the square is occupied. */
+                if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdx, colorsTurnItIs, colorOnTop, attackMaps)
+                    && (boardArray[xIdxMod][yIdx] ^ otherColor) != KING) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, queenPieceInt, xIdx, yIdx, xIdxMod, yIdx,
                                                   boardArray[xIdxMod][yIdx]);
                 }
@@ -1045,13 +1436,12 @@ public final class BoardArrays {
                 for (int xIdxMod = xIdx - 1, yIdxMod = yIdx + 1;
                      xIdxMod >= 0 && yIdxMod < 8 && (boardArray[xIdxMod][yIdxMod] & colorsTurnItIs) == 0;
                      xIdxMod--, yIdxMod++) {
-                    /* If the move would put this side's king in check (or fail
-                       to get it out of check), it's discarded. */
-                    if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                        continue;
-                    }
-                    /* The move is saved if it wouldn't capture a king. */
-                    if ((boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
+                    /* The move is saved if it wouldn't put this side's king in check
+                       (or fail to get it out of check), and it wouldn't capture a
+                       king. The loop still breaks below if the square is occupied. */
+                    if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod,
+                                            colorsTurnItIs, colorOnTop, attackMaps)
+                        && (boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
                         moveIdx = setMoveToMovesArray(movesArray, moveIdx, queenPieceInt, xIdx, yIdx, xIdxMod, yIdxMod,
                                                       boardArray[xIdxMod][yIdxMod]);
                     }
@@ -1068,13 +1458,12 @@ public final class BoardArrays {
                 for (int xIdxMod = xIdx - 1, yIdxMod = yIdx - 1;
                      xIdxMod >= 0 && yIdxMod >= 0 && (boardArray[xIdxMod][yIdxMod] & colorsTurnItIs) == 0;
                      xIdxMod--, yIdxMod--) {
-                    /* If the move would put this side's king in check (or fail
-                       to get it out of check), it's discarded. */
-                    if (wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop)) {
-                        continue;
-                    }
-                    /* The move is saved if it wouldn't capture a king. */
-                    if ((boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
+                    /* The move is saved if it wouldn't put this side's king in check
+                       (or fail to get it out of check), and it wouldn't capture a
+                       king. The loop still breaks below if the square is occupied. */
+                    if (!wouldKingBeInCheck(boardArray, xIdx, yIdx, xIdxMod, yIdxMod,
+                                            colorsTurnItIs, colorOnTop, attackMaps)
+                        && (boardArray[xIdxMod][yIdxMod] ^ otherColor) != KING) {
                         moveIdx = setMoveToMovesArray(movesArray, moveIdx, queenPieceInt, xIdx, yIdx, xIdxMod, yIdxMod,
                                                       boardArray[xIdxMod][yIdxMod]);
                     }
@@ -1092,6 +1481,30 @@ public final class BoardArrays {
         return moveIdx;
     }
 
+    /**
+     * Generates possible moves for the king, as the generateKingsMoves() that
+     * takes AttackMaps does, testing whether each move leaves the king in
+     * check by tracing outward from the king.
+     *
+     * @param boardArray     The int[8][8] board representation.
+     * @param movesArray     The working int[][7] array to fill moves into.
+     * @param moveIdxArg     The index of the first empty array in movesArray.
+     * @param xIdx           The x index of the location of the king.
+     * @param yIdx           The y index of the location of the king.
+     * @param colorsTurnItIs The color of the king.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @return               The new value for the index of the first empty
+     *                       array in the int[][7] movesArray.
+     * @throws IllegalArgumentException If the coordinates point to a cell in
+     *                                  the boardArray argument that isn't a
+     *                                  king of the specified color.
+     */
+    public static int generateKingsMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
+                                         final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
+                                         ) throws IllegalArgumentException {
+        return generateKingsMoves(boardArray, movesArray, moveIdxArg, xIdx, yIdx, colorsTurnItIs, colorOnTop, null);
+    }
+
     /**
      * Generates possible moves for the king, and save them to the movesArray
      * it's given as an argument. It returns the index of the first empty array
@@ -1116,6 +1529,10 @@ public final class BoardArrays {
      * @param yIdx            The y index of the location of the king.
      * @param colorsTurnItIs  The color of the king.
      * @param colorOnTop      The color playing from the top of the board.
+     * @param attackMaps      The attack maps matching boardArray, to test
+     *                        whether each move leaves the king in check
+     *                        with lookups, or null to test it by tracing
+     *                        outward from the king.
      * @return                The new value for the index of the first empty
      *                        array in the int[][7] movesArray.
      * @throws IllegalArgumentException If the coordinates point to a cell in
@@ -1124,8 +1541,8 @@ public final class BoardArrays {
      * @see #isKingInCheck
      */
     public static int generateKingsMoves(final int[][] boardArray, final int[][] movesArray, final int moveIdxArg,
-                                         final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop
-                                         ) throws IllegalArgumentException {
+                                         final int xIdx, final int yIdx, final int colorsTurnItIs, final int colorOnTop,
+                                         final AttackMaps attackMaps) throws IllegalArgumentException {
         int otherColor = (colorsTurnItIs == WHITE) ? BLACK : WHITE;
         int pieceInt;
         int moveIdx = moveIdxArg;
@@ -1164,7 +1581,7 @@ public final class BoardArrays {
                     continue;
                 }
 
-                if (wouldKingBeInCheck(boardArray, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop)) {
+                if (wouldKingBeInCheck(boardArray, xIdxMod, yIdxMod, colorsTurnItIs, colorOnTop, attackMaps)) {
                     continue;
                 }
 
@@ -1180,28 +1597,31 @@ public final class BoardArrays {
         /*
         * This set of conditionals checks whether the king can castle with
         * either rook. (The normal prerequisite of castling, that the king and
-        * the rook must not have moved yet in the game, cannot be tested for
-        * here but will be tested for by Chessboard.movePiece() if this move is
-        * attempted, since the Chessboard class does track those booleans.)
+        * the rook must not have moved yet in the game, isn't tested for here,
+        * since the board alone doesn't record it. Chessboard tracks it as the
+        * BoardArrays.CASTLING_* flags, and callers drop the castling moves
+        * whose right has been lost with isCastlingAllowed().)
         */
-        if ((yIdx == 0 || yIdx == 7) && xIdx == 4) {
-            /* If the king is at its starter position, then it might be able to
-               castle in either direction. The intervening squares must be
-               empty, the rook must be in position, and both the king's
-               destination square and the intervening squares must not be
-               threatened. */
+        if ((yIdx == 0 || yIdx == 7) && xIdx == 4 && !wouldKingBeInCheck(boardArray, xIdx, yIdx, colorsTurnItIs,
+                                                                         colorOnTop, attackMaps)) {
+            /* If the king is at its starter position and isn't in check, then
+               it might be able to castle in either direction. The intervening
+               squares must be empty, the rook must be in position, and the
+               squares the king passes over and lands on must not be
+               threatened. (On the queenside, the square next to the rook must
+               be empty but may be threatened, since the king doesn't cross
+               it.) */
             if (boardArray[3][yIdx] == 0 && boardArray[2][yIdx] == 0 && boardArray[1][yIdx] == 0
                 && boardArray[0][yIdx] == (colorsTurnItIs | ROOK)
-                && !wouldKingBeInCheck(boardArray, 3, yIdx, colorsTurnItIs, colorOnTop)
-                && !wouldKingBeInCheck(boardArray, 2, yIdx, colorsTurnItIs, colorOnTop)
-                && !wouldKingBeInCheck(boardArray, 1, yIdx, colorsTurnItIs, colorOnTop)) {
+                && !wouldKingBeInCheck(boardArray, 3, yIdx, colorsTurnItIs, colorOnTop, attackMaps)
+                && !wouldKingBeInCheck(boardArray, 2, yIdx, colorsTurnItIs, colorOnTop, attackMaps)) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, pieceInt, xIdx, yIdx, 0, yIdx,
                                                   boardArray[0][yIdx]);
             }
             if (boardArray[5][yIdx] == 0 && boardArray[6][yIdx] == 0
                 && boardArray[7][yIdx] == (colorsTurnItIs | ROOK)
-                && !wouldKingBeInCheck(boardArray, 5, yIdx, colorsTurnItIs, colorOnTop)
-                && !wouldKingBeInCheck(boardArray, 6, yIdx, colorsTurnItIs, colorOnTop)) {
+                && !wouldKingBeInCheck(boardArray, 5, yIdx, colorsTurnItIs, colorOnTop, attackMaps)
+                && !wouldKingBeInCheck(boardArray, 6, yIdx, colorsTurnItIs, colorOnTop, attackMaps)) {
                     moveIdx = setMoveToMovesArray(movesArray, moveIdx, pieceInt, xIdx, yIdx, 7, yIdx,
                                                   boardArray[7][yIdx]);
             }
@@ -1285,6 +1705,368 @@ public final class BoardArrays {
         return moveIdx + 1;
     }
 
+    /**
+     * Tests whether a move array produced by the generate*sMoves() methods
+     * describes castling. generateKingsMoves() encodes castling as the king
+     * moving onto the square of a friendly rook, so a move is a castling move
+     * if the moving piece is a king and the "captured" piece is a rook of the
+     * same color.
+     *
+     * @param moveArray An int[7] move array, as populated by the
+     *                  generate*sMoves() methods.
+     * @return          True if the move is a castling move, false otherwise.
+     */
+    public static boolean isCastlingMove(final int[] moveArray) {
+        int movedPieceInt = moveArray[0];
+        int capturedPieceInt = moveArray[5];
+        return (movedPieceInt & KING) != 0 && (capturedPieceInt & ROOK) != 0
+               && (movedPieceInt & WHITE) == (capturedPieceInt & WHITE);
+    }
+
+    /**
+     * Executes a move array on the boardArray argument in place. Castling
+     * moves (see isCastlingMove()) put the king and the rook on their
+     * post-castling squares, and pawn promotion moves put the promoted-to
+     * piece on the destination square. The move array holds everything
+     * needed to reverse the move, so unmakeMove() takes the same arguments.
+     *
+     * @param boardArray An int[8][8] array that is the chessboard
+     *                   representation used explicitly by methods in this
+     *                   static class, and internally by the Chessboard object.
+     * @param moveArray  An int[7] move array, as populated by the
+     *                   generate*sMoves() methods.
+     * @see #unmakeMove
+     */
+    public static void makeMove(final int[][] boardArray, final int[] moveArray) {
+        int fromXIdx = moveArray[1];
+        int fromYIdx = moveArray[2];
+        int toXIdx = moveArray[3];
+        int toYIdx = moveArray[4];
+
+        if (isCastlingMove(moveArray)) {
+            /* The king moves two squares toward the rook, and the rook lands on
+               the square the king passed over. */
+            int kingNewXIdx = toXIdx == 7 ? 6 : 2;
+            int rookNewXIdx = toXIdx == 7 ? 5 : 3;
+            boardArray[fromXIdx][fromYIdx] = 0;
+            boardArray[toXIdx][toYIdx] = 0;
+            boardArray[kingNewXIdx][fromYIdx] = moveArray[0];
+            boardArray[rookNewXIdx][fromYIdx] = moveArray[5];
+        } else {
+            boardArray[toXIdx][toYIdx] = moveArray[6] != 0 ? moveArray[6] : moveArray[0];
+            boardArray[fromXIdx][fromYIdx] = 0;
+        }
+    }
+
+    /**
+     * Reverses a move that was executed on the boardArray argument with
+     * makeMove(), restoring the moved piece, any captured piece, and in the
+     * case of castling the rook.
+     *
+     * @param boardArray An int[8][8] array that is the chessboard
+     *                   representation used explicitly by methods in this
+     *                   static class, and internally by the Chessboard object.
+     * @param moveArray  The same int[7] move array that was passed to
+     *                   makeMove().
+     * @see #makeMove
+     */
+    public static void unmakeMove(final int[][] boardArray, final int[] moveArray) {
+        int fromXIdx = moveArray[1];
+        int fromYIdx = moveArray[2];
+        int toXIdx = moveArray[3];
+        int toYIdx = moveArray[4];
+
+        if (isCastlingMove(moveArray)) {
+            int kingNewXIdx = toXIdx == 7 ? 6 : 2;
+            int rookNewXIdx = toXIdx == 7 ? 5 : 3;
+            boardArray[kingNewXIdx][fromYIdx] = 0;
+            boardArray[rookNewXIdx][fromYIdx] = 0;
+            boardArray[fromXIdx][fromYIdx] = moveArray[0];
+            boardArray[toXIdx][toYIdx] = moveArray[5];
+        } else {
+            boardArray[fromXIdx][fromYIdx] = moveArray[0];
+            boardArray[toXIdx][toYIdx] = moveArray[5];
+        }
+    }
+
+    /**
+     * Returns a deep copy of the boardArray argument, so that it can be
+     * manipulated without affecting the original (for example by a search
+     * running on another thread).
+     *
+     * @param boardArray An int[8][8] array that is the chessboard
+     *                   representation used explicitly by methods in this
+     *                   static class, and internally by the Chessboard object.
+     * @return           A new int[8][8] array with the same contents.
+     */
+    public static int[][] copyBoardArray(final int[][] boardArray) {
+        int[][] boardArrayCopy = new int[8][8];
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            System.arraycopy(boardArray[xIdx], 0, boardArrayCopy[xIdx], 0, 8);
+        }
+        return boardArrayCopy;
+    }
+
+    /**
+     * Tests whether a move is allowed by a set of castling rights. The
+     * generate*sMoves() methods don't know whether the king or rooks have
+     * moved, so they generate castling moves whenever the squares permit it;
+     * this method is used to discard the ones whose right has been lost.
+     * Moves other than castling are always allowed.
+     *
+     * @param moveArray      An int[7] move array, as populated by the
+     *                       generate*sMoves() methods.
+     * @param castlingRights The castling rights, an or'd combination of the
+     *                       CASTLING_* flags.
+     * @return               False if the move is castling and the right to
+     *                       castle with that rook has been lost, true
+     *                       otherwise.
+     */
+    public static boolean isCastlingAllowed(final int[] moveArray, final int castlingRights) {
+        if (!isCastlingMove(moveArray)) {
+            return true;
+        }
+        int rookXIdx = moveArray[3];
+        int castlingFlag = (moveArray[0] & WHITE) != 0
+                           ? (rookXIdx == 7 ? CASTLING_WHITE_KINGSIDE : CASTLING_WHITE_QUEENSIDE)
+                           : (rookXIdx == 7 ? CASTLING_BLACK_KINGSIDE : CASTLING_BLACK_QUEENSIDE);
+        return (castlingRights & castlingFlag) != 0;
+    }
+
+    /**
+     * Computes the castling rights after a move. A king move loses both of its
+     * color's rights, and a move from or to a corner square loses the right
+     * associated with the rook that started there.
+     *
+     * @param castlingRights The castling rights before the move, an or'd
+     *                       combination of the CASTLING_* flags.
+     * @param moveArray      The move, an int[7] move array.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @return               The castling rights after the move.
+     */
+    public static int updateCastlingRights(final int castlingRights, final int[] moveArray, final int colorOnTop) {
+        int newCastlingRights = castlingRights;
+        if (moveArray[0] == (WHITE | KING)) {
+            newCastlingRights &= ~(CASTLING_WHITE_KINGSIDE | CASTLING_WHITE_QUEENSIDE);
+        } else if (moveArray[0] == (BLACK | KING)) {
+            newCastlingRights &= ~(CASTLING_BLACK_KINGSIDE | CASTLING_BLACK_QUEENSIDE);
+        }
+        newCastlingRights &= ~cornerCastlingFlag(moveArray[1], moveArray[2], colorOnTop);
+        newCastlingRights &= ~cornerCastlingFlag(moveArray[3], moveArray[4], colorOnTop);
+        return newCastlingRights;
+    }
+
+    /*
+     * Returns the castling rights flag for the rook that starts on the given
+     * square, or 0 if the square isn't a starting square for a rook.
+     *
+     * @param xIdx       The x index of the square.
+     * @param yIdx       The y index of the square.
+     * @param colorOnTop The color playing from the top of the board.
+     * @return           The castling rights flag, or 0.
+     */
+    private static int cornerCastlingFlag(final int xIdx, final int yIdx, final int colorOnTop) {
+        if (xIdx != 0 && xIdx != 7) {
+            return 0;
+        }
+        int whiteHomeYIdx = colorOnTop == WHITE ? 0 : 7;
+        int blackHomeYIdx = 7 - whiteHomeYIdx;
+        if (yIdx == whiteHomeYIdx) {
+            return xIdx == 7 ? CASTLING_WHITE_KINGSIDE : CASTLING_WHITE_QUEENSIDE;
+        } else if (yIdx == blackHomeYIdx) {
+            return xIdx == 7 ? CASTLING_BLACK_KINGSIDE : CASTLING_BLACK_QUEENSIDE;
+        }
+        return 0;
+    }
+
+    /**
+     * Renders a move array in long algebraic notation as the UCI protocol and
+     * perft tools use it: the from square and the to square, for instance
+     * "e2e4", with a lowercase letter appended for a pawn promotion ("e7e8q").
+     * Castling is rendered as the king's move ("e1g1"). Squares are named
+     * assuming white is at the bottom of the board.
+     *
+     * @param moveArray An int[7] move array, as populated by the
+     *                  generate*sMoves() methods.
+     * @return          The move in long algebraic notation.
+     */
+    public static String moveArrayToLongAlgNotn(final int[] moveArray) {
+        return moveArrayToLongAlgNotn(moveArray, BLACK);
+    }
+
+    /**
+     * Renders a move array in long algebraic notation, naming the squares
+     * according to which color is playing from the top of the board.
+     *
+     * @param moveArray  An int[7] move array, as populated by the
+     *                   generate*sMoves() methods.
+     * @param colorOnTop The color playing from the top of the board.
+     * @return           The move in long algebraic notation.
+     * @see #moveArrayToLongAlgNotn(int[])
+     */
+    public static String moveArrayToLongAlgNotn(final int[] moveArray, final int colorOnTop) {
+        int toXIdx = moveArray[3];
+        if (isCastlingMove(moveArray)) {
+            toXIdx = toXIdx == 7 ? 6 : 2;
+        }
+        String moveStr = coordsToAlgNotn(moveArray[1], moveArray[2], colorOnTop)
+                         + coordsToAlgNotn(toXIdx, moveArray[4], colorOnTop);
+        int promotedToPieceInt = moveArray[6];
+        if ((promotedToPieceInt & QUEEN) != 0) {
+            moveStr += "q";
+        } else if ((promotedToPieceInt & ROOK) != 0) {
+            moveStr += "r";
+        } else if ((promotedToPieceInt & BISHOP) != 0) {
+            moveStr += "b";
+        } else if ((promotedToPieceInt & KNIGHT) != 0) {
+            moveStr += "n";
+        }
+        return moveStr;
+    }
+
+    /**
+     * Renders a move array in standard algebraic notation (SAN), the notation
+     * PGN files use: for instance "Nf3", "exd5", "Rad1", "e8=Q+" or "O-O#".
+     * The move's file or rank of departure is added when another piece of the
+     * same type could also move to the destination square, and a check or
+     * checkmate suffix is added when the move gives one. The move must be
+     * legal in the position; the position isn't modified.
+     *
+     * @param boardArray The int[8][8] array that represents the chessboard,
+     *                   before the move is made.
+     * @param moveArray  An int[7] move array, as populated by the
+     *                   generate*sMoves() methods.
+     * @param colorOnTop The color playing from the top of the board.
+     * @return           The move in standard algebraic notation.
+     */
+    public static String moveArrayToSan(final int[][] boardArray, final int[] moveArray, final int colorOnTop) {
+        StringBuilder sanBuilder = new StringBuilder();
+        int movedPieceInt = moveArray[0];
+        int pieceColor = movedPieceInt & (WHITE | BLACK);
+        int otherColor = pieceColor == WHITE ? BLACK : WHITE;
+        int pieceType = movedPieceInt & (KING | QUEEN | ROOK | BISHOP | KNIGHT | PAWN);
+        String fromSquare = coordsToAlgNotn(moveArray[1], moveArray[2], colorOnTop);
+        String toSquare = coordsToAlgNotn(moveArray[3], moveArray[4], colorOnTop);
+        boolean isCapture = moveArray[5] != 0 && !isCastlingMove(moveArray);
+        int[][] movesArray = new int[128][7];
+
+        if (isCastlingMove(moveArray)) {
+            sanBuilder.append(moveArray[3] == 7 ? "O-O" : "O-O-O");
+        } else if (pieceType == PAWN) {
+            if (isCapture) {
+                sanBuilder.append(fromSquare.charAt(0)).append('x');
+            }
+            sanBuilder.append(toSquare);
+            if (moveArray[6] != 0) {
+                sanBuilder.append('=').append(PIECES_ABBRS.get(moveArray[6] & ~(WHITE | BLACK)));
+            }
+        } else {
+            sanBuilder.append(PIECES_ABBRS.get(pieceType == KNIGHT ? KNIGHT | LEFT : pieceType));
+
+            /* If other pieces of the same type can move to the same square,
+               the file of departure is added if it tells them apart, else the
+               rank, else both. */
+            boolean isAmbiguous = false;
+            boolean sharesFile = false;
+            boolean sharesRank = false;
+            int movesCount = generatePossibleMoves(boardArray, movesArray, pieceColor, colorOnTop);
+            for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+                int[] otherMoveArray = movesArray[moveIdx];
+                if ((otherMoveArray[0] & pieceType) == 0 || isCastlingMove(otherMoveArray)
+                    || otherMoveArray[3] != moveArray[3] || otherMoveArray[4] != moveArray[4]
+                    || (otherMoveArray[1] == moveArray[1] && otherMoveArray[2] == moveArray[2])) {
+                    continue;
+                }
+                isAmbiguous = true;
+                sharesFile |= otherMoveArray[1] == moveArray[1];
+                sharesRank |= otherMoveArray[2] == moveArray[2];
+            }
+            if (isAmbiguous) {
+                if (!sharesFile) {
+                    sanBuilder.append(fromSquare.charAt(0));
+                } else if (!sharesRank) {
+                    sanBuilder.append(fromSquare.charAt(1));
+                } else {
+                    sanBuilder.append(fromSquare);
+                }
+            }
+            for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+                Arrays.fill(movesArray[moveIdx], 0);
+            }
+
+            if (isCapture) {
+                sanBuilder.append('x');
+            }
+            sanBuilder.append(toSquare);
+        }
+
+        /* The move is made on a copy of the board to see whether it gives
+           check, and if so whether the other side has any reply. */
+        int[][] boardArrayAfter = copyBoardArray(boardArray);
+        makeMove(boardArrayAfter, moveArray);
+        if (isKingInCheck(boardArrayAfter, otherColor, colorOnTop)) {
+            boolean hasReply = generatePossibleMoves(boardArrayAfter, movesArray, otherColor, colorOnTop) != 0;
+            sanBuilder.append(hasReply ? '+' : '#');
+        }
+
+        return sanBuilder.toString();
+    }
+
+    /**
+     * Finds the move that a move string in standard algebraic notation
+     * denotes, among generated moves. Check, checkmate and annotation
+     * suffixes (+, #, !, ?) and a promotion's = are ignored, castling may be
+     * written with zeroes or with letters, and an overly disambiguated move
+     * ("Ng1f3") or one in long algebraic notation ("g1f3") is also matched.
+     *
+     * @param boardArray The int[8][8] array that represents the chessboard.
+     * @param movesArray The moves to search, as populated by
+     *                   generatePossibleMoves().
+     * @param movesCount The number of moves in movesArray.
+     * @param moveStr    The move string.
+     * @param colorOnTop The color playing from the top of the board.
+     * @return           The index of the matching move in movesArray, or -1 if
+     *                   none matches.
+     */
+    public static int findSanMove(final int[][] boardArray, final int[][] movesArray, final int movesCount,
+                                  final String moveStr, final int colorOnTop) {
+        String wantedSan = normalizeSan(moveStr);
+
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            int[] moveArray = movesArray[moveIdx];
+            String san = normalizeSan(moveArrayToSan(boardArray, moveArray, colorOnTop));
+            String longAlgNotn = moveArrayToLongAlgNotn(moveArray, colorOnTop);
+            String pieceAbbr = san.isEmpty() || !Character.isUpperCase(san.charAt(0)) || san.startsWith("O-O")
+                               ? "" : san.substring(0, 1);
+            if (san.equals(wantedSan) || longAlgNotn.equals(wantedSan.toLowerCase())
+                || (!pieceAbbr.isEmpty() && wantedSan.replace("x", "").equals(pieceAbbr + longAlgNotn))) {
+                return moveIdx;
+            }
+        }
+
+        return -1;
+    }
+
+    /*
+     * Strips a SAN move string of the characters findSanMove() ignores.
+     *
+     * @param moveStr The move string.
+     * @return        The move string without check, checkmate and
+     *                annotation suffixes or =, and with castling in letters.
+     */
+    private static String normalizeSan(final String moveStr) {
+        StringBuilder sanBuilder = new StringBuilder(moveStr.length());
+        for (int charIdx = 0; charIdx < moveStr.length(); charIdx++) {
+            char sanChar = moveStr.charAt(charIdx);
+            switch (sanChar) {
+                case '+', '#', '!', '?', '=' -> { }
+                case '0' -> sanBuilder.append('O');
+                default -> sanBuilder.append(sanChar);
+            }
+        }
+        return sanBuilder.toString();
+    }
+
     /**
      * Tests whether the king of the specified color is in check.
      *
@@ -1353,6 +2135,54 @@ public final class BoardArrays {
         return wouldKingBeInCheck(boardArray, kingXIdx, kingYIdx, -1, -1, -1, -1, colorsTurnItIs, colorOnTop);
     }
 
+    /*
+     * Tests whether a friendly piece moving between the specified squares
+     * would leave the king of the specified color in check, with a lookup in
+     * the attack maps if the generate*sMoves() method was passed them, and
+     * by tracing outward from the king otherwise.
+     *
+     * @param boardArray     The int[8][8] array that represents the chessboard.
+     * @param fromXIdx       The x coordinate of the square moved from.
+     * @param fromYIdx       The y coordinate of the square moved from.
+     * @param toXIdx         The x coordinate of the square moved to.
+     * @param toYIdx         The y coordinate of the square moved to.
+     * @param colorsTurnItIs The color of the king.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @param attackMaps     The attack maps matching boardArray, or null.
+     * @return               A boolean, whether the king would be in check.
+     */
+    private static boolean wouldKingBeInCheck(final int[][] boardArray, final int fromXIdx, final int fromYIdx,
+                                              final int toXIdx, final int toYIdx, final int colorsTurnItIs,
+                                              final int colorOnTop, final AttackMaps attackMaps) {
+        if (attackMaps == null) {
+            return wouldKingBeInCheck(boardArray, fromXIdx, fromYIdx, toXIdx, toYIdx, colorsTurnItIs, colorOnTop);
+        }
+        return attackMaps.wouldKingBeInCheck(boardArray, fromXIdx, fromYIdx, toXIdx, toYIdx, colorsTurnItIs);
+    }
+
+    /*
+     * Tests whether the king of the specified color would be in check if it
+     * were located in the specified square, with a lookup in the attack maps
+     * if the generate*sMoves() method was passed them, and by tracing
+     * outward from the square otherwise.
+     *
+     * @param boardArray     The int[8][8] array that represents the chessboard.
+     * @param kingXIdx       The x coordinate of the square.
+     * @param kingYIdx       The y coordinate of the square.
+     * @param colorsTurnItIs The color of the king.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @param attackMaps     The attack maps matching boardArray, or null.
+     * @return               A boolean, whether the king would be in check.
+     */
+    private static boolean wouldKingBeInCheck(final int[][] boardArray, final int kingXIdx, final int kingYIdx,
+                                              final int colorsTurnItIs, final int colorOnTop,
+                                              final AttackMaps attackMaps) {
+        if (attackMaps == null) {
+            return wouldKingBeInCheck(boardArray, kingXIdx, kingYIdx, colorsTurnItIs, colorOnTop);
+        }
+        return attackMaps.wouldKingBeInCheck(boardArray, kingXIdx, kingYIdx, colorsTurnItIs);
+    }
+
     /**
      * Tests whether the king of the specified color would be in check if
      * it were located in the specified square and a friendly piece at the
@@ -1768,4 +2598,31 @@ public final class BoardArrays {
             return boardArray;
         }
     }
+
+    /**
+     * Infers castling rights from the placement of the pieces alone: a right
+     * is granted if the king and the rook are both on their starting squares.
+     * That's an upper bound on the true rights, which also depend on whether
+     * either piece has moved and come back.
+     *
+     * @param boardArray The int[8][8] board.
+     * @param colorOnTop The color playing from the top of the board.
+     * @return           An or'd combination of the CASTLING_* flags.
+     */
+    public static int castlingRightsFromPlacement(final int[][] boardArray, final int colorOnTop) {
+        int castlingRights = 0;
+        int whiteHomeYIdx = colorOnTop == WHITE ? 0 : 7;
+        int blackHomeYIdx = 7 - whiteHomeYIdx;
+
+        if (boardArray[4][whiteHomeYIdx] == (WHITE | KING)) {
+            castlingRights |= boardArray[7][whiteHomeYIdx] == (WHITE | ROOK) ? CASTLING_WHITE_KINGSIDE : 0;
+            castlingRights |= boardArray[0][whiteHomeYIdx] == (WHITE | ROOK) ? CASTLING_WHITE_QUEENSIDE : 0;
+        }
+        if (boardArray[4][blackHomeYIdx] == (BLACK | KING)) {
+            castlingRights |= boardArray[7][blackHomeYIdx] == (BLACK | ROOK) ? CASTLING_BLACK_KINGSIDE : 0;
+            castlingRights |= boardArray[0][blackHomeYIdx] == (BLACK | ROOK) ? CASTLING_BLACK_QUEENSIDE : 0;
+        }
+
+        return castlingRights;
+    }
 }
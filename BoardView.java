@@ -8,6 +8,8 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * This class subclasses JComponent and implements the chessboard area in the
@@ -63,14 +65,21 @@ public class BoardView extends JComponent implements MouseListener, ActionListen
         chessboard using Graphics.fillRect() */
     private final CoordinatesManager coordinatesManager;
 
+    /** Supplies the piece icons drawn on the chessboard. */
+    private final ImagesManager imagesManager;
+
     /** Textarea, logs moves and recent player errors. */
     private final MovesLog movesLog;
 
     /** Timer, triggers actionPerformed to run after mouseClicked is done. */
     private Timer opposingMoveDelayTimer;
 
-    /** Hosts the minimax algorithm. */
-    private final MinimaxRunner minimaxRunner;
+    /** Computes the moves of the side the player plays against. */
+    private final Opponent opponent;
+
+    /** Used to track whether a move has been requested from the opponent and
+        hasn't arrived yet, during which the player's clicks are ignored. */
+    private boolean opponentIsThinking = false;
 
     /** Used in a few places where a coin toss is needed. */
     private final Random RNG = new Random();
@@ -97,43 +106,41 @@ public class BoardView extends JComponent implements MouseListener, ActionListen
      *
      * @param chessGame     A JChessGame object.
      * @param coordMgr      A CoordinatesManager object.
+     * @param imagesMgr     An ImagesManager object, used to retrieve piece
+     *                      icons.
      * @param chessboardObj A Chessboard object.
      * @param movesLogObj   A MovesLog object, the textarea to the right of the
      *                      board that displays moves and error messages.
      * @param colorPlaying  An integer representing the color the player is
      *                      playing-- either BoardArrays.WHITE or
      *                      BoardArrays.BLACK.
+     * @param opponentObj   The Opponent that computes the moves of the side
+     *                      the player plays against.
      * @see JChessGame
      * @see Dimension
      * @see ImagesManager
      * @see CoordinatesManager
      * @see Chessboard
      * @see MovesLog
+     * @see Opponent
      */
-    public BoardView(final JChessGame chessGame, final CoordinatesManager coordMgr, final Chessboard chessboardObj,
-                     final MovesLog movesLogObj, final int colorPlaying) {
+    public BoardView(final JChessGame chessGame, final CoordinatesManager coordMgr, final ImagesManager imagesMgr,
+                     final Chessboard chessboardObj, final MovesLog movesLogObj, final int colorPlaying,
+                     final Opponent opponentObj) {
 
         chessGameFrame = chessGame;
         coordinatesManager = coordMgr;
+        imagesManager = imagesMgr;
         chessboard = chessboardObj;
         movesLog = movesLogObj;
         colorOfPlayer = colorPlaying;
         colorOfAI = (colorPlaying == BoardArrays.WHITE) ? BoardArrays.BLACK : BoardArrays.WHITE;
-        minimaxRunner = new MinimaxRunner(chessboard, colorOfAI);
+        opponent = opponentObj;
+
         turnCount = 0;
         whiteHasMoved = false;
         blackHasMoved = false;
         repaint();
-
-        /* If the player chose to play Black, then the timer is set up and
-           activated, so it can trigger actionPerformed() which contains the AI's
-           move generation and execution logic. */
-        if (colorOfAI == BoardArrays.WHITE) {
-            opposingMoveDelayTimer = new Timer(500, this);
-            opposingMoveDelayTimer.setActionCommand("move");
-            opposingMoveDelayTimer.setRepeats(true);
-            opposingMoveDelayTimer.start();
-        }
     }
 
     /**
@@ -148,16 +155,38 @@ public class BoardView extends JComponent implements MouseListener, ActionListen
     public void setColors(final int colorPlaying, final int colorOnTopVal) {
         colorOfPlayer = colorPlaying;
         colorOfAI = (colorPlaying == BoardArrays.WHITE) ? BoardArrays.BLACK : BoardArrays.WHITE;
-        minimaxRunner.setColors(colorPlaying, colorOnTopVal);
+        opponent.newGame();
+    }
+
+    /**
+     * Sets the turn the game starts on, for a game that starts from a
+     * position partway through a game rather than from the opening.
+     *
+     * @param turnCountVal The number of turns already played, counting from 0.
+     * @param colorToMove  The color whose move it is; if it's black, white is
+     *                     counted as having already moved this turn.
+     */
+    public void setStartingTurn(final int turnCountVal, final int colorToMove) {
+        turnCount = turnCountVal;
+        whiteHasMoved = colorToMove == BoardArrays.BLACK;
+        blackHasMoved = false;
     }
 
     /**
-     * Starts the Timer object that sends events to actionPerformed.
+     * Starts the Timer object that sends events to actionPerformed, so that
+     * the AI makes the first move of the game. It's called by JChessGame when
+     * the AI has the move at the start of a game: when it's playing white
+     * from the opening, or it's the side to move in a FEN start position.
      *
      * @see #actionPerformed
      * @see JChessGame
      */
     public void aiMovesFirst() {
+        if (Objects.isNull(opposingMoveDelayTimer)) {
+            opposingMoveDelayTimer = new Timer(500, this);
+            opposingMoveDelayTimer.setActionCommand("move");
+            opposingMoveDelayTimer.setRepeats(true);
+        }
         opposingMoveDelayTimer.start();
     }
 
@@ -265,9 +294,9 @@ public class BoardView extends JComponent implements MouseListener, ActionListen
             piecesDrawn++;
 
             /* The piece at those coordinates is fetched, and its icon is
-               retrieved from the Chessboard.Piece object. */
+               retrieved from ImagesManager by its piece int. */
             Chessboard.Piece piece = chessboard.getPieceAtCoords(pieceCoords[0], pieceCoords[1]);
-            Image pieceIcon = piece.pieceImage();
+            Image pieceIcon = imagesManager.getImageByPieceInt(piece.pieceInt());
 
             /* The exact coordinates to base the image at are retrieved
                from CoordinatesManager, and the image is drawn using
@@ -564,7 +593,9 @@ public class BoardView extends JComponent implements MouseListener, ActionListen
            returned. Otherwise, an int[2] array of the coordinates is returned. */
         clickSquareCoord = mouseClickedEventToCoords(event);
 
-        if (Objects.isNull(clickSquareCoord)) {
+        /* While the opponent is computing its move the board mustn't change,
+           so clicks are ignored. */
+        if (Objects.isNull(clickSquareCoord) || opponentIsThinking) {
             return;
         }
 
@@ -644,8 +675,6 @@ public class BoardView extends JComponent implements MouseListener, ActionListen
      * @param event The event object sent by the timer.
      */
     public void actionPerformed(final ActionEvent event) {
-        Chessboard.Move moveToMake;
-
         if (!event.getActionCommand().equals("move")) {
             return;
         /* If the player's pawn is being promoted, then a PopupPawnPromotion
@@ -675,16 +704,40 @@ public class BoardView extends JComponent implements MouseListener, ActionListen
         popupPawnPromotion = null;
         pawnToPromoteCoords = null;
 
-        /* Executing the minimax algorithm so the AI can generate a move, or
-           handling the error that results if the algorithm chokes. */
-        try {
-            moveToMake = minimaxRunner.algorithmTopLevel(turnCount);
-        } catch (IllegalArgumentException exception) {
-            String exceptionClassName = exception.getClass().getName().split("^.*\\.")[1];
-            JOptionPane.showMessageDialog(chessGameFrame, "Minimax algorithm experienced a " + exceptionClassName
-                                                          + ":\n" + exception.getMessage());
+        /* The opponent computes its move off the event dispatch thread, so the
+           GUI keeps repainting while it thinks; when the move arrives it's
+           handed back to this thread to be executed. */
+        opponentIsThinking = true;
+        opponent.requestMove(chessboard, colorOfAI, turnCount).whenComplete((moveToMake, throwable) ->
+            SwingUtilities.invokeLater(() -> opponentMoveReceived(moveToMake, throwable)));
+    }
+
+    /* Executes the opponent's move once it has arrived, on the event dispatch
+       thread. If the opponent failed to produce a move, the failure is
+       reported: a timeout forfeits the game to the player, and any other
+       error ends the program as an algorithm failure always has.
+
+       @param moveToMake The move the opponent chose, or null if it failed.
+       @param throwable  The exception the opponent failed with, or null. */
+    private void opponentMoveReceived(final Chessboard.Move moveToMake, final Throwable throwable) {
+        opponentIsThinking = false;
+
+        if (Objects.nonNull(throwable)) {
+            Throwable cause = (throwable instanceof CompletionException && Objects.nonNull(throwable.getCause()))
+                              ? throwable.getCause() : throwable;
+            if (cause instanceof TimeoutException) {
+                JOptionPane.showMessageDialog(chessGameFrame, opponent.getName() + " didn't move in time, and "
+                                                              + "forfeits the game.");
+                PopupGameOver popupGameOver = new PopupGameOver(chessGameFrame, this, PopupGameOver.AI_LOST);
+                turnCount = 0;
+                repaint();
+                return;
+            }
+            String exceptionClassName = cause.getClass().getSimpleName();
+            JOptionPane.showMessageDialog(chessGameFrame, opponent.getName() + " experienced a "
+                                                          + exceptionClassName + ":\n" + cause.getMessage());
             BoardArrays.printBoard(chessboard.getBoardArray());
-            exception.printStackTrace();
+            cause.printStackTrace();
             System.exit(1);
             return;
         }
@@ -703,7 +756,6 @@ public class BoardView extends JComponent implements MouseListener, ActionListen
         /* Moving the piece, or handling the error that arises because the move
            isn't executable. Hasn't had an error on an AI move yet. */
         try {
-            int[][] boardArray = chessboard.getBoardArray();
             chessboard.movePiece(moveToMake);
         } catch (KingIsInCheckException | CastlingNotPossibleException exception) {
             String exceptionClassName = exception.getClass().getName().split("^.*\\.")[1];
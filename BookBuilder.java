@@ -0,0 +1,569 @@
+package org.kmfahey.jchessgame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Builds an opening book, in the format PolyglotBook reads, from PGN files.
+ * Each game is replayed up to a ply limit, and for every position reached the
+ * move played and the game's result are tallied. A book entry is written for
+ * each move played in a position, weighted by the points it scored for the
+ * side that played it (two for a win, one for a draw).
+ * <p>
+ * The files are split into byte ranges that a pool of workers replays in
+ * parallel. Each worker tallies into a fixed-size table; when the table fills
+ * it's sorted and written out to a temporary run file, so memory use doesn't
+ * depend on the size of the input. Once every range is done the runs are
+ * merged, combining the tallies of the same move in the same position, and
+ * the book is written in key order.
+ * <p>
+ * Run from the commandline as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.BookBuilder --output &lt;book.bin&gt; [--plies &lt;n&gt;] [--min-games &lt;n&gt;]
+ *         [--workers &lt;n&gt;] [--table-entries &lt;n&gt;] [--temp-dir &lt;dir&gt;] &lt;file.pgn&gt; ...
+ * </pre>
+ * The ply limit defaults to 20. A move is only written if it was played in at
+ * least --min-games games (by default 1), and moves that only lost are left
+ * out, since they'd have a weight of 0. Games with no result, and the moves of
+ * a game from the first one that isn't legal, are skipped.
+ *
+ * @see PolyglotBook
+ * @see PgnReader
+ */
+public final class BookBuilder {
+
+    /* Games are set up from FENs, which put white at the bottom. */
+    private static final int COLOR_ON_TOP = BoardArrays.BLACK;
+
+    private static final int DEFAULT_PLY_LIMIT = 20;
+
+    /* The number of distinct position and move pairs a worker tallies before
+       spilling them to a run file. Each takes about 56 bytes of table. */
+    private static final int DEFAULT_TABLE_ENTRIES = 1 << 18;
+
+    /* Ranges are cut to about this many per worker, so that a worker that
+       finishes early can take another. */
+    private static final int RANGES_PER_WORKER = 4;
+    private static final long MIN_RANGE_BYTES = 1L << 20;
+
+    /* The order of tallies in a run file: by key, unsigned, then by move. */
+    private static final Comparator<RunReader> RUN_ORDER = Comparator
+        .<RunReader, Long>comparing(runReader -> runReader.key, Long::compareUnsigned)
+        .thenComparingInt(runReader -> runReader.move);
+
+    /**
+     * A byte range of a PGN file.
+     *
+     * @param pgnPath     The file.
+     * @param startOffset The start of the range.
+     * @param endOffset   The end of the range, exclusive.
+     */
+    private record Range(Path pgnPath, long startOffset, long endOffset) { }
+
+    /**
+     * Totals for a build, reported at the end.
+     *
+     * @param games        The games replayed.
+     * @param positions    The positions tallied.
+     * @param illegalMoves The games cut short by a move that isn't legal or
+     *                     doesn't parse.
+     * @param entries      The entries written to the book.
+     */
+    public record Summary(long games, long positions, long illegalMoves, long entries) { }
+
+    /**
+     * An open-addressed hash table of tallies by position key and move, held
+     * in parallel arrays so it allocates nothing per entry.
+     */
+    private static final class TallyTable {
+        private final long[] keys;
+        private final int[] moves;
+        private final int[] gamesCounts;
+        private final long[] points;
+        private final int capacity;
+        private int entriesCount = 0;
+
+        /*
+         * Instances a TallyTable.
+         *
+         * @param entriesLimit The number of entries it's to hold before it's
+         *                     full, which is rounded down to a power of two;
+         *                     its capacity is twice that.
+         */
+        private TallyTable(final int entriesLimit) {
+            capacity = Integer.highestOneBit(entriesLimit) << 1;
+            keys = new long[capacity];
+            moves = new int[capacity];
+            gamesCounts = new int[capacity];
+            points = new long[capacity];
+        }
+
+        /*
+         * Adds a game to the tally of a move in a position.
+         *
+         * @param key        The position's key.
+         * @param move       The move, in the Polyglot encoding.
+         * @param gamePoints The points the move scored: 2, 1 or 0.
+         */
+        private void add(final long key, final int move, final int gamePoints) {
+            int slotIdx = (int) (mix(key ^ move) & (capacity - 1));
+            while (gamesCounts[slotIdx] != 0 && (keys[slotIdx] != key || moves[slotIdx] != move)) {
+                slotIdx = (slotIdx + 1) & (capacity - 1);
+            }
+            if (gamesCounts[slotIdx] == 0) {
+                keys[slotIdx] = key;
+                moves[slotIdx] = move;
+                entriesCount++;
+            }
+            gamesCounts[slotIdx]++;
+            points[slotIdx] += gamePoints;
+        }
+
+        /*
+         * Tests whether the table holds as many entries as it's meant to.
+         *
+         * @return True if it should be spilled, false otherwise.
+         */
+        private boolean isFull() {
+            return entriesCount >= capacity / 2;
+        }
+
+        /*
+         * Writes the table's entries to a new run file, in run order, and
+         * empties it.
+         *
+         * @param tempDirPath The directory to create the run file in.
+         * @return            The run file's path.
+         * @throws IOException If the file can't be written.
+         */
+        private Path spill(final Path tempDirPath) throws IOException {
+            Path runPath = Files.createTempFile(tempDirPath, "book-run-", ".tmp");
+            int[] sortedSlotIdxs = IntStream.range(0, capacity)
+                                            .filter(slotIdx -> gamesCounts[slotIdx] != 0)
+                                            .boxed()
+                                            .sorted(Comparator.<Integer, Long>comparing(slotIdx -> keys[slotIdx],
+                                                                                        Long::compareUnsigned)
+                                                              .thenComparingInt(slotIdx -> moves[slotIdx]))
+                                            .mapToInt(Integer::intValue)
+                                            .toArray();
+            try (DataOutputStream runStream = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(runPath), 1 << 16))) {
+                for (int slotIdx : sortedSlotIdxs) {
+                    runStream.writeLong(keys[slotIdx]);
+                    runStream.writeShort(moves[slotIdx]);
+                    runStream.writeInt(gamesCounts[slotIdx]);
+                    runStream.writeLong(points[slotIdx]);
+                }
+            }
+            Arrays.fill(gamesCounts, 0);
+            Arrays.fill(points, 0L);
+            entriesCount = 0;
+            return runPath;
+        }
+
+        /*
+         * Scrambles a key's bits, so entries spread evenly over the slots.
+         *
+         * @param value The value.
+         * @return      The scrambled value.
+         */
+        private static long mix(final long value) {
+            long mixed = value * 0x9E3779B97F4A7C15L;
+            return mixed ^ (mixed >>> 32);
+        }
+    }
+
+    /**
+     * Reads the tallies of a run file in order, one ahead.
+     */
+    private static final class RunReader {
+        private final DataInputStream runStream;
+        private long key;
+        private int move;
+        private int gamesCount;
+        private long points;
+
+        /*
+         * Opens a run file.
+         *
+         * @param runPath The file.
+         * @throws IOException If it can't be opened.
+         */
+        private RunReader(final Path runPath) throws IOException {
+            runStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(runPath), 1 << 16));
+        }
+
+        /*
+         * Reads the next tally.
+         *
+         * @return True if one was read, false at the end of the file, which is
+         *         then closed.
+         * @throws IOException If the file can't be read.
+         */
+        private boolean advance() throws IOException {
+            try {
+                key = runStream.readLong();
+                move = runStream.readUnsignedShort();
+                gamesCount = runStream.readInt();
+                points = runStream.readLong();
+                return true;
+            } catch (EOFException exception) {
+                runStream.close();
+                return false;
+            }
+        }
+    }
+
+    private BookBuilder() { }
+
+    /**
+     * Builds a book.
+     *
+     * @param pgnPaths     The PGN files to read.
+     * @param bookPath     The book file to write.
+     * @param plyLimit     The number of plies of each game to replay.
+     * @param minGames     The number of games a move must have been played in
+     *                     to be written.
+     * @param workersCount The number of threads to replay games on.
+     * @param tableEntries The number of tallies a worker holds before
+     *                     spilling them to disk.
+     * @param tempDirPath  The directory to write run files to. They're
+     *                     deleted before this returns.
+     * @return             A Summary object.
+     * @throws IOException If a file can't be read or written.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    public static Summary build(final List<Path> pgnPaths, final Path bookPath, final int plyLimit,
+                                final int minGames, final int workersCount, final int tableEntries,
+                                final Path tempDirPath) throws IOException, InterruptedException {
+        List<Range> ranges = splitIntoRanges(pgnPaths, workersCount * RANGES_PER_WORKER);
+        AtomicInteger nextRangeIdx = new AtomicInteger();
+        AtomicLong gamesCount = new AtomicLong();
+        AtomicLong positionsCount = new AtomicLong();
+        AtomicLong illegalMovesCount = new AtomicLong();
+        List<Path> runPaths = new ArrayList<>();
+        ExecutorService workerPool = Executors.newFixedThreadPool(workersCount);
+
+        try {
+            List<Callable<List<Path>>> workers = new ArrayList<>();
+            for (int workerIdx = 0; workerIdx < workersCount; workerIdx++) {
+                workers.add(() -> {
+                    TallyTable tallyTable = new TallyTable(tableEntries);
+                    List<Path> workerRunPaths = new ArrayList<>();
+                    int rangeIdx;
+                    while ((rangeIdx = nextRangeIdx.getAndIncrement()) < ranges.size()) {
+                        replayRange(ranges.get(rangeIdx), plyLimit, tallyTable, workerRunPaths, tempDirPath,
+                                    gamesCount, positionsCount, illegalMovesCount);
+                    }
+                    if (tallyTable.entriesCount > 0) {
+                        workerRunPaths.add(tallyTable.spill(tempDirPath));
+                    }
+                    return workerRunPaths;
+                });
+            }
+            for (Future<List<Path>> workerFuture : workerPool.invokeAll(workers)) {
+                try {
+                    runPaths.addAll(workerFuture.get());
+                } catch (ExecutionException exception) {
+                    if (exception.getCause() instanceof IOException ioException) {
+                        throw ioException;
+                    }
+                    throw new IllegalStateException(exception.getCause());
+                }
+            }
+
+            long entriesCount = mergeRuns(runPaths, bookPath, minGames);
+            return new Summary(gamesCount.get(), positionsCount.get(), illegalMovesCount.get(), entriesCount);
+        } finally {
+            workerPool.shutdownNow();
+            for (Path runPath : runPaths) {
+                Files.deleteIfExists(runPath);
+            }
+        }
+    }
+
+    /*
+     * Cuts PGN files into byte ranges of roughly equal size.
+     *
+     * @param pgnPaths     The files.
+     * @param rangesWanted The number of ranges to aim for across all files.
+     * @return             The ranges.
+     * @throws IOException If a file's size can't be read.
+     */
+    private static List<Range> splitIntoRanges(final List<Path> pgnPaths, final int rangesWanted)
+            throws IOException {
+        long totalBytes = 0;
+        for (Path pgnPath : pgnPaths) {
+            totalBytes += Files.size(pgnPath);
+        }
+        long rangeBytes = Math.max(MIN_RANGE_BYTES, totalBytes / rangesWanted);
+        List<Range> ranges = new ArrayList<>();
+
+        for (Path pgnPath : pgnPaths) {
+            long fileBytes = Files.size(pgnPath);
+            for (long startOffset = 0; startOffset < fileBytes; startOffset += rangeBytes) {
+                ranges.add(new Range(pgnPath, startOffset, Math.min(fileBytes, startOffset + rangeBytes)));
+            }
+        }
+
+        return ranges;
+    }
+
+    /*
+     * Replays the games starting in a range, tallying each position's move.
+     *
+     * @param range             The range.
+     * @param plyLimit          The number of plies of each game to replay.
+     * @param tallyTable        The worker's table.
+     * @param runPaths          The worker's run files, which a spill is added
+     *                          to.
+     * @param tempDirPath       The directory to write run files to.
+     * @param gamesCount        The count of games replayed.
+     * @param positionsCount    The count of positions tallied.
+     * @param illegalMovesCount The count of games cut short.
+     * @throws IOException If the file can't be read or a run can't be
+     *                     written.
+     */
+    private static void replayRange(final Range range, final int plyLimit, final TallyTable tallyTable,
+                                    final List<Path> runPaths, final Path tempDirPath, final AtomicLong gamesCount,
+                                    final AtomicLong positionsCount, final AtomicLong illegalMovesCount)
+            throws IOException {
+        try (PgnReader pgnReader = PgnReader.open(FileChannel.open(range.pgnPath(), StandardOpenOption.READ),
+                                                  range.startOffset(), range.endOffset())) {
+            for (PgnReader.Game game : pgnReader) {
+                int whitePoints = switch (game.result()) {
+                    case "1-0" -> 2;
+                    case "1/2-1/2" -> 1;
+                    case "0-1" -> 0;
+                    default -> -1;
+                };
+                if (whitePoints < 0) {
+                    continue;
+                }
+                GameReplay gameReplay;
+                try {
+                    gameReplay = game.replay();
+                } catch (IllegalArgumentException exception) {
+                    illegalMovesCount.incrementAndGet();
+                    continue;
+                }
+                gamesCount.incrementAndGet();
+
+                /* Positions are keyed without an en passant file, since
+                   that's how MinimaxRunner probes the book. */
+                while (gameReplay.getPlyIdx() < plyLimit && gameReplay.hasNext()) {
+                    int colorToMove = gameReplay.getColorToMove();
+                    long key = Zobrist.key(gameReplay.getBoardArray(), COLOR_ON_TOP, colorToMove,
+                                           gameReplay.getCastlingRights(), -1);
+                    int[] moveArray = gameReplay.next();
+                    tallyTable.add(key, PolyglotBook.encodeMove(moveArray, COLOR_ON_TOP),
+                                   colorToMove == BoardArrays.WHITE ? whitePoints : 2 - whitePoints);
+                    positionsCount.incrementAndGet();
+                    if (tallyTable.isFull()) {
+                        runPaths.add(tallyTable.spill(tempDirPath));
+                    }
+                }
+                if (gameReplay.getUnresolvedSan() != null && gameReplay.getPlyIdx() < plyLimit) {
+                    illegalMovesCount.incrementAndGet();
+                }
+            }
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    /*
+     * Merges run files into a book, combining the tallies of each move in
+     * each position and weighting the moves by their points.
+     *
+     * @param runPaths The run files.
+     * @param bookPath The book file to write.
+     * @param minGames The number of games a move must have been played in to
+     *                 be written.
+     * @return         The number of entries written.
+     * @throws IOException If a file can't be read or written.
+     */
+    private static long mergeRuns(final List<Path> runPaths, final Path bookPath, final int minGames)
+            throws IOException {
+        PriorityQueue<RunReader> runQueue = new PriorityQueue<>(Math.max(1, runPaths.size()), RUN_ORDER);
+        for (Path runPath : runPaths) {
+            RunReader runReader = new RunReader(runPath);
+            if (runReader.advance()) {
+                runQueue.add(runReader);
+            }
+        }
+
+        /* The moves of the position being merged, with their combined games
+           and points. A position has at most a couple of hundred moves. */
+        int[] positionMoves = new int[256];
+        long[] positionGames = new long[256];
+        long[] positionPoints = new long[256];
+        int positionMovesCount = 0;
+        long positionKey = 0;
+        long entriesCount = 0;
+
+        try (DataOutputStream bookStream = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(bookPath), 1 << 16))) {
+            while (!runQueue.isEmpty()) {
+                RunReader runReader = runQueue.poll();
+                if (positionMovesCount > 0 && runReader.key != positionKey) {
+                    entriesCount += writePosition(bookStream, positionKey, positionMoves, positionGames,
+                                                  positionPoints, positionMovesCount, minGames);
+                    positionMovesCount = 0;
+                }
+                positionKey = runReader.key;
+                if (positionMovesCount > 0 && positionMoves[positionMovesCount - 1] == runReader.move) {
+                    positionGames[positionMovesCount - 1] += runReader.gamesCount;
+                    positionPoints[positionMovesCount - 1] += runReader.points;
+                } else if (positionMovesCount < positionMoves.length) {
+                    positionMoves[positionMovesCount] = runReader.move;
+                    positionGames[positionMovesCount] = runReader.gamesCount;
+                    positionPoints[positionMovesCount] = runReader.points;
+                    positionMovesCount++;
+                }
+                if (runReader.advance()) {
+                    runQueue.add(runReader);
+                }
+            }
+            if (positionMovesCount > 0) {
+                entriesCount += writePosition(bookStream, positionKey, positionMoves, positionGames, positionPoints,
+                                              positionMovesCount, minGames);
+            }
+        } catch (IOException exception) {
+            for (RunReader runReader : runQueue) {
+                runReader.runStream.close();
+            }
+            throw exception;
+        }
+
+        return entriesCount;
+    }
+
+    /*
+     * Writes the book entries of one position, heaviest first. Weights are
+     * scaled down if need be to fit in 16 bits.
+     *
+     * @param bookStream The book file.
+     * @param key        The position's key.
+     * @param moves      The moves played in the position.
+     * @param games      The games each move was played in.
+     * @param points     The points each move scored.
+     * @param movesCount The number of moves.
+     * @param minGames   The number of games a move must have been played in
+     *                   to be written.
+     * @return           The number of entries written.
+     * @throws IOException If the file can't be written.
+     */
+    private static int writePosition(final DataOutputStream bookStream, final long key, final int[] moves,
+                                     final long[] games, final long[] points, final int movesCount,
+                                     final int minGames) throws IOException {
+        long maxPoints = 0;
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            maxPoints = Math.max(maxPoints, points[moveIdx]);
+        }
+        double weightScale = maxPoints > 0xFFFF ? (double) 0xFFFF / maxPoints : 1D;
+
+        Integer[] moveOrder = new Integer[movesCount];
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            moveOrder[moveIdx] = moveIdx;
+        }
+        Arrays.sort(moveOrder, Comparator.comparingLong((Integer moveIdx) -> points[moveIdx]).reversed());
+
+        int entriesCount = 0;
+        for (int moveIdx : moveOrder) {
+            int weight = (int) (points[moveIdx] * weightScale);
+            if (games[moveIdx] < minGames || weight == 0) {
+                continue;
+            }
+            bookStream.writeLong(key);
+            bookStream.writeShort(moves[moveIdx]);
+            bookStream.writeShort(weight);
+            bookStream.writeInt(0);
+            entriesCount++;
+        }
+        return entriesCount;
+    }
+
+    /**
+     * Main method. See the class documentation for the commandline syntax.
+     * The process exits with status 1 if the arguments don't parse.
+     *
+     * @param args The commandline arguments.
+     * @throws IOException If a file can't be read or written.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        String usage = """
+                       Usage: BookBuilder --output <book.bin> [--plies <n>] [--min-games <n>] [--workers <n>]
+                                          [--table-entries <n>] [--temp-dir <dir>] <file.pgn> ...""";
+        List<Path> pgnPaths = new ArrayList<>();
+        Path bookPath = null;
+        Path tempDirPath = Path.of(System.getProperty("java.io.tmpdir"));
+        int plyLimit = DEFAULT_PLY_LIMIT;
+        int minGames = 1;
+        int workersCount = Runtime.getRuntime().availableProcessors();
+        int tableEntries = DEFAULT_TABLE_ENTRIES;
+
+        try {
+            for (int argIdx = 0; argIdx < args.length; argIdx++) {
+                if (!args[argIdx].startsWith("--")) {
+                    pgnPaths.add(Path.of(args[argIdx]));
+                    continue;
+                } else if (argIdx + 1 >= args.length) {
+                    throw new IllegalArgumentException("option `" + args[argIdx] + "` has no value.");
+                }
+                String value = args[++argIdx];
+                switch (args[argIdx - 1]) {
+                    case "--output" -> bookPath = Path.of(value);
+                    case "--plies" -> plyLimit = Integer.parseInt(value);
+                    case "--min-games" -> minGames = Integer.parseInt(value);
+                    case "--workers" -> workersCount = Integer.parseInt(value);
+                    case "--table-entries" -> tableEntries = Integer.parseInt(value);
+                    case "--temp-dir" -> tempDirPath = Path.of(value);
+                    default -> throw new IllegalArgumentException("unknown option `" + args[argIdx - 1] + "`.");
+                }
+            }
+            if (bookPath == null) {
+                throw new IllegalArgumentException("--output is required.");
+            } else if (pgnPaths.isEmpty()) {
+                throw new IllegalArgumentException("no PGN files given.");
+            } else if (plyLimit < 1 || workersCount < 1 || tableEntries < 1) {
+                throw new IllegalArgumentException("--plies, --workers and --table-entries must be at least 1.");
+            }
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println(usage);
+            System.exit(1);
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        Summary summary = build(pgnPaths, bookPath, plyLimit, minGames, workersCount, tableEntries, tempDirPath);
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        System.err.printf("Replayed %d games (%d positions, %d cut short by an illegal move) in %.1f s; "
+                          + "wrote %d entries to %s%n", summary.games(), summary.positions(),
+                          summary.illegalMoves(), elapsedSeconds, summary.entries(), bookPath);
+    }
+}
@@ -8,22 +8,30 @@ package org.kmfahey.jchessgame;
  */
 public class CastlingNotPossibleException extends Exception {
 
+    /** Flag, that castling is illegal because an intervening space is occupied. */
+    public static final int INTERVENING_SPACE_OCCUPIED = 4;
+
+    /** Flag, that castling is illegal because the king is in check. */
+    public static final int KING_IN_CHECK = 5;
+
+    /** Flag, that castling is illegal because a square on the way is threatened. */
+    public static final int PATH_IS_THREATENED = 6;
+
+    /** Flag, that castling is illegal because the king or rook has already moved. */
+    public static final int PIECE_HAS_MOVED = 7;
+
     /**
      * An integer flag indicating the precise reason castling wasn't possible.
-     * Uses the int flag constants defined in the MovesLog.MoveError record
-     * class.
+     * Uses the int flag constants defined in this class.
      */
     private int reason = -1;
 
     /**
      * An accessor for the reason instance variable. Uses the
-     * int flag constants defined in the MovesLog.MoveError record class.
+     * int flag constants defined in this class.
      *
-     * @return Int flag, one of
-     *         MovesLog.MoveError.CASTLING_INTERVENING_SPACE_OCCUPIED,
-     *         MovesLog.MoveError.CASTLING_KING_IN_CHECK,
-     *         MovesLog.MoveError.CASTLING_PATH_IS_THREATENED, or
-     *         MovesLog.MoveError.CASTLING_PIECE_HAS_MOVED.
+     * @return Int flag, one of INTERVENING_SPACE_OCCUPIED, KING_IN_CHECK,
+     *         PATH_IS_THREATENED, or PIECE_HAS_MOVED.
      */
     public int getReason() {
         return reason;
@@ -51,11 +59,9 @@ public class CastlingNotPossibleException extends Exception {
      * message, and the reason code why castling is impossible.
      *
      * @param message   The detail message.
-     * @param reasonVal Int flag, the reason castling is impossible. One of 
-     *                  MovesLog.MoveError.CASTLING_INTERVENING_SPACE_OCCUPIED,
-     *                  MovesLog.MoveError.CASTLING_KING_IN_CHECK,
-     *                  MovesLog.MoveError.CASTLING_PATH_IS_THREATENED, or
-     *                  MovesLog.MoveError.CASTLING_PIECE_HAS_MOVED.
+     * @param reasonVal Int flag, the reason castling is impossible. One of
+     *                  INTERVENING_SPACE_OCCUPIED, KING_IN_CHECK,
+     *                  PATH_IS_THREATENED, or PIECE_HAS_MOVED.
      */
     public CastlingNotPossibleException(final String message, final int reasonVal) {
         super(message);
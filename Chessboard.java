@@ -4,13 +4,17 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.awt.Image;
 
 /**
  * Represents a chessboard, storing a data structure, an int[8][8] array,
  * that it uses to keep track of the state of the board. That structure is
  * available via Chessboard.getBoardArray() so it can be manipulated directly,
  * such as by methods in BoardsArray or MinimaxRunner.
+ * <p>
+ * Chessboard is part of the engine core, along with BoardArrays and
+ * MinimaxRunner, and like them has no dependency on java.desktop; it can be
+ * instanced on a machine with no display or graphics stack. The GUI looks up
+ * the icon for a piece from its piece int via ImagesManager.
  */
 public class Chessboard {
 
@@ -133,12 +137,6 @@ public class Chessboard {
         put("black-pawn",           BLACK | PAWN);
     }};
 
-    /**
-     * Associates each piece integer with the piece icon Image object to use for
-     * it.
-     */
-    private final HashMap<Integer, Image> pieceImages;
-
     /* Integer color values used to track which colors are set to certain
        relevant roles in the game. */
     private int colorOnTop;
@@ -153,28 +151,20 @@ public class Chessboard {
      */
     private int[][] boardArray;
 
-    /* These booleans are used to track if the kings or rooks have moved yet
-       during play. They're used by isCastlingPossible() to discover if a
-       castling move is allowed, since castling isn't allowed if either the
-       rook or the king has moved. */
-    private boolean blackKingsRookHasMoved = false;
-    private boolean blackQueensRookHasMoved = false;
-    private boolean whiteKingsRookHasMoved = false;
-    private boolean whiteQueensRookHasMoved = false;
-    private boolean blackKingHasMoved = false;
-    private boolean whiteKingHasMoved = false;
+    /* The castling rights still held, an or'd combination of the
+       BoardArrays.CASTLING_* flags. A right is lost when the king or the rook
+       involved moves, or the rook is captured. It's used by
+       isCastlingPossible() to discover if a castling move is allowed. */
+    private int castlingRights = BoardArrays.CASTLING_ALL;
 
     /**
      * Represents a Piece on the chessboard.
      *
-     * @param pieceInt   The piece's integer representation on the board.
-     * @param pieceImage An Image object of the icon for the piece sourced from
-     *                   ImagesManager.
-     * @param xCoord     The int of the piece's x coordinate on the board.
-     * @param yCoord     The int of the piece's x coordinate on the board.
-     * @see ImagesManager
+     * @param pieceInt The piece's integer representation on the board.
+     * @param xCoord   The int of the piece's x coordinate on the board.
+     * @param yCoord   The int of the piece's x coordinate on the board.
      */
-    public record Piece(int pieceInt, Image pieceImage, int xCoord, int yCoord) { }
+    public record Piece(int pieceInt, int xCoord, int yCoord) { }
 
     /**
      * Represents a possible move on the board. The method
@@ -205,6 +195,21 @@ public class Chessboard {
                 int toXCoord, int toYCoord, int capturedPieceInt, boolean isCastlingKingside,
                 boolean isCastlingQueenside, int promotedToPieceInt) {
 
+        /**
+         * Builds a Move object from a move array as populated by the
+         * generate*sMoves() methods in BoardArrays, which encode castling as
+         * the king moving onto its own rook's square.
+         *
+         * @param moveArray An int[7] move array.
+         * @return          The equivalent Move object.
+         */
+        public static Move fromMoveArray(final int[] moveArray) {
+            boolean isCastling = BoardArrays.isCastlingMove(moveArray);
+            return new Move(new Piece(moveArray[0], moveArray[1], moveArray[2]), moveArray[1], moveArray[2],
+                            moveArray[3], moveArray[4], moveArray[5], isCastling && moveArray[3] == 7,
+                            isCastling && moveArray[3] != 7, moveArray[6]);
+        }
+
         /**
          * Renders the object into a string that describes the move in algebraic
          * notation.
@@ -237,17 +242,15 @@ public class Chessboard {
     /**
      * Instantiates the Chessboard object.
      *
-     * @param imagesManager The program's ImagesManager object, which is used
-     *                      to retrieve piece images.
-     * @param playingColor  An integer representing the color the user is
-     *                      playing as, either BoardArrays.WHITE or
-     *                      BoardArrays.BLACK.
-     * @param onTopColor    An integer representing the color that's playing
-     *                      from the top of the board, either BoardArrays.WHITE
-     *                      or BoardArrays.BLACK.
+     * @param playingColor An integer representing the color the user is
+     *                     playing as, either BoardArrays.WHITE or
+     *                     BoardArrays.BLACK.
+     * @param onTopColor   An integer representing the color that's playing
+     *                     from the top of the board, either BoardArrays.WHITE
+     *                     or BoardArrays.BLACK.
      */
-    public Chessboard(final ImagesManager imagesManager, final int playingColor, final int onTopColor) {
-        this(null, imagesManager, playingColor, onTopColor);
+    public Chessboard(final int playingColor, final int onTopColor) {
+        this(null, playingColor, onTopColor);
     }
 
     /**
@@ -255,8 +258,6 @@ public class Chessboard {
      * the board array.
      *
      * @param boardArrayVal The value for the board array.
-     * @param imagesManager The program's ImagesManager object, which is used
-     *                      to retrieve piece images.
      * @param playingColor  An integer representing the color the user is
      *                      playing as, either BoardArrays.WHITE or
      *                      BoardArrays.BLACK.
@@ -264,27 +265,17 @@ public class Chessboard {
      *                      from the top of the board, either BoardArrays.WHITE
      *                      or BoardArrays.BLACK.
      */
-    public Chessboard(final int[][] boardArrayVal, final ImagesManager imagesManager, final int playingColor,
-                      final int onTopColor) {
+    public Chessboard(final int[][] boardArrayVal, final int playingColor, final int onTopColor) {
 
         setColors(playingColor, onTopColor);
 
         if (Objects.nonNull(boardArrayVal)) {
             boardArray = boardArrayVal;
+            castlingRights = BoardArrays.castlingRightsFromPlacement(boardArray, colorOnTop);
         } else {
             boardArray = new int[8][8];
             layOutPieces();
         }
-
-        /* We only need the ImagesManager object to instantiate Piece objects
-           with the correct Image 2nd argument. It's not saved to an instance
-           variable since it's never used again after this constructor. */
-
-        pieceImages = new HashMap<>();
-
-        for (int pieceInt : VALID_PIECE_INTS) {
-            pieceImages.put(pieceInt, imagesManager.getImageByPieceInt(pieceInt));
-        }
     }
 
     /**
@@ -334,6 +325,8 @@ public class Chessboard {
                 boardArray[xIdx][yIdx] = pieceInt;
             }
         }
+
+        castlingRights = BoardArrays.CASTLING_ALL;
     }
 
     /**
@@ -352,7 +345,9 @@ public class Chessboard {
 
     /**
      * Mutator for the boardArray instance variable that represents the
-     * chessboard in play.
+     * chessboard in play. The castling rights are reset to those the
+     * placement of the kings and rooks allows; if the true rights are known,
+     * as they are from a FEN, set them with setCastlingRights() afterwards.
      *
      * @param boardArrayVal The int[8][8] array to set the boardArray instance
      *                      variable to.
@@ -363,6 +358,27 @@ public class Chessboard {
         for (int xIdx = 0; xIdx < 8; xIdx++) {
             System.arraycopy(boardArrayVal[xIdx], 0, boardArray[xIdx], 0, 8);
         }
+
+        castlingRights = BoardArrays.castlingRightsFromPlacement(boardArray, colorOnTop);
+    }
+
+    /**
+     * Accessor for the castling rights still held by either color.
+     *
+     * @return An or'd combination of the BoardArrays.CASTLING_* flags.
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Mutator for the castling rights still held by either color.
+     *
+     * @param castlingRightsVal An or'd combination of the
+     *                          BoardArrays.CASTLING_* flags.
+     */
+    public void setCastlingRights(final int castlingRightsVal) {
+        castlingRights = castlingRightsVal & BoardArrays.CASTLING_ALL;
     }
 
     /**
@@ -433,8 +449,7 @@ public class Chessboard {
         if (boardArray[xCoord][yCoord] == 0) {
             return null;
         }
-        int pieceInt = boardArray[xCoord][yCoord];
-        return new Piece(pieceInt, pieceImages.get(pieceInt), xCoord, yCoord);
+        return new Piece(boardArray[xCoord][yCoord], xCoord, yCoord);
     }
 
     /**
@@ -478,11 +493,11 @@ public class Chessboard {
      *                    kingside castling, and queen indicates queenside
      *                    castling.
      * @return  Int failure mode flag, one of the
-     *          int flags defined in MovesLog.MoveError:
-     *          MovesLog.MoveError.CASTLING_INTERVENING_SPACE_OCCUPIED,
-     *          MovesLog.MoveError.CASTLING_KING_IN_CHECK,
-     *          MovesLog.MoveError.CASTLING_PATH_IS_THREATENED, or
-     *          MovesLog.MoveError.CASTLING_PIECE_HAS_MOVED.
+     *          int flags defined in CastlingNotPossibleException:
+     *          CastlingNotPossibleException.INTERVENING_SPACE_OCCUPIED,
+     *          CastlingNotPossibleException.KING_IN_CHECK,
+     *          CastlingNotPossibleException.PATH_IS_THREATENED, or
+     *          CastlingNotPossibleException.PIECE_HAS_MOVED.
      */
     public int isCastlingPossible(final int colorOfKing, final int kingOrQueen) throws IllegalArgumentException {
         switch (colorOfKing | kingOrQueen) {
@@ -490,20 +505,20 @@ public class Chessboard {
                 int yIdx = colorOnTop == BLACK ? 0 : 7;
                 /* One or both of the pieces have moved, so castling can't be
                    done. */
-                if (blackKingHasMoved || blackKingsRookHasMoved) {
-                    return MovesLog.MoveError.CASTLING_PIECE_HAS_MOVED;
+                if ((castlingRights & BoardArrays.CASTLING_BLACK_KINGSIDE) == 0) {
+                    return CastlingNotPossibleException.PIECE_HAS_MOVED;
                 /* One or more of the squares between the king and the rook are
                    occupied, so castling is impossible. */
                 } else if (boardArray[5][yIdx] != 0 || boardArray[6][yIdx] != 0) {
-                    return MovesLog.MoveError.CASTLING_INTERVENING_SPACE_OCCUPIED;
+                    return CastlingNotPossibleException.INTERVENING_SPACE_OCCUPIED;
                 } else {
                     for (int xIdx = 4; xIdx <= 6; xIdx++) {
                         if (BoardArrays.wouldKingBeInCheck(boardArray, xIdx, yIdx,
-                                                           colorPlaying, colorOnTop)) {
+                                                           colorOfKing, colorOnTop)) {
                             if ((boardArray[xIdx][yIdx] & KING) != 0) {
-                                return MovesLog.MoveError.CASTLING_KING_IN_CHECK;
+                                return CastlingNotPossibleException.KING_IN_CHECK;
                             } else {
-                                return MovesLog.MoveError.CASTLING_PATH_IS_THREATENED;
+                                return CastlingNotPossibleException.PATH_IS_THREATENED;
                             }
                         }
                     }
@@ -514,20 +529,22 @@ public class Chessboard {
                 int yIdx = colorOnTop == BLACK ? 0 : 7;
                 /* One or both of the pieces have moved, so castling can't be
                    done. */
-                if (blackKingHasMoved || blackQueensRookHasMoved) {
-                    return MovesLog.MoveError.CASTLING_PIECE_HAS_MOVED;
+                if ((castlingRights & BoardArrays.CASTLING_BLACK_QUEENSIDE) == 0) {
+                    return CastlingNotPossibleException.PIECE_HAS_MOVED;
                 /* One or more of the squares between the king and the rook are
                    occupied, so castling is impossible. */
                 } else if (boardArray[3][yIdx] != 0 || boardArray[2][yIdx] != 0 || boardArray[1][yIdx] != 0) {
-                    return MovesLog.MoveError.CASTLING_INTERVENING_SPACE_OCCUPIED;
+                    return CastlingNotPossibleException.INTERVENING_SPACE_OCCUPIED;
                 } else {
-                    for (int xIdx = 1; xIdx <= 4; xIdx++) {
+                    /* The b-file square only has to be empty, since the
+                       king never crosses it; only c to e have to be safe. */
+                    for (int xIdx = 2; xIdx <= 4; xIdx++) {
                         if (BoardArrays.wouldKingBeInCheck(boardArray, xIdx, yIdx,
-                                                           colorPlaying, colorOnTop)) {
+                                                           colorOfKing, colorOnTop)) {
                             if ((boardArray[xIdx][yIdx] & KING) != 0) {
-                                return MovesLog.MoveError.CASTLING_KING_IN_CHECK;
+                                return CastlingNotPossibleException.KING_IN_CHECK;
                             } else {
-                                return MovesLog.MoveError.CASTLING_PATH_IS_THREATENED;
+                                return CastlingNotPossibleException.PATH_IS_THREATENED;
                             }
                         }
                     }
@@ -538,20 +555,20 @@ public class Chessboard {
                 int yIdx = colorOnTop == WHITE ? 0 : 7;
                 /* One or both of the pieces have moved, so castling can't be
                    done. */
-                if (whiteKingHasMoved || whiteKingsRookHasMoved) {
-                    return MovesLog.MoveError.CASTLING_PIECE_HAS_MOVED;
+                if ((castlingRights & BoardArrays.CASTLING_WHITE_KINGSIDE) == 0) {
+                    return CastlingNotPossibleException.PIECE_HAS_MOVED;
                 /* One or more of the squares between the king and the rook are
                    occupied, so castling is impossible. */
                 } else if (boardArray[5][yIdx] != 0 || boardArray[6][yIdx] != 0) {
-                    return MovesLog.MoveError.CASTLING_INTERVENING_SPACE_OCCUPIED;
+                    return CastlingNotPossibleException.INTERVENING_SPACE_OCCUPIED;
                 } else {
                     for (int xIdx = 4; xIdx <= 6; xIdx++) {
                         if (BoardArrays.wouldKingBeInCheck(boardArray, xIdx, yIdx,
-                                                           colorPlaying, colorOnTop)) {
+                                                           colorOfKing, colorOnTop)) {
                             if ((boardArray[xIdx][yIdx] & KING) != 0) {
-                                return MovesLog.MoveError.CASTLING_KING_IN_CHECK;
+                                return CastlingNotPossibleException.KING_IN_CHECK;
                             } else {
-                                return MovesLog.MoveError.CASTLING_PATH_IS_THREATENED;
+                                return CastlingNotPossibleException.PATH_IS_THREATENED;
                             }
                         }
                     }
@@ -563,20 +580,22 @@ public class Chessboard {
                 int yIdx = colorOnTop == WHITE ? 0 : 7;
                 /* One or both of the pieces have moved, so castling can't be
                    done. */
-                if (whiteKingHasMoved || whiteQueensRookHasMoved) {
-                    return MovesLog.MoveError.CASTLING_PIECE_HAS_MOVED;
+                if ((castlingRights & BoardArrays.CASTLING_WHITE_QUEENSIDE) == 0) {
+                    return CastlingNotPossibleException.PIECE_HAS_MOVED;
                 /* One or more of the squares between the king and the rook are
                    occupied, so castling is impossible. */
                 } else if (boardArray[3][yIdx] != 0 || boardArray[2][yIdx] != 0 || boardArray[1][yIdx] != 0) {
-                    return MovesLog.MoveError.CASTLING_INTERVENING_SPACE_OCCUPIED;
+                    return CastlingNotPossibleException.INTERVENING_SPACE_OCCUPIED;
                 } else {
-                    for (int xIdx = 1; xIdx <= 4; xIdx++) {
+                    /* The b-file square only has to be empty, since the
+                       king never crosses it; only c to e have to be safe. */
+                    for (int xIdx = 2; xIdx <= 4; xIdx++) {
                         if (BoardArrays.wouldKingBeInCheck(boardArray, xIdx, yIdx,
-                                                           colorPlaying, colorOnTop)) {
+                                                           colorOfKing, colorOnTop)) {
                             if ((boardArray[xIdx][yIdx] & KING) != 0) {
-                                return MovesLog.MoveError.CASTLING_KING_IN_CHECK;
+                                return CastlingNotPossibleException.KING_IN_CHECK;
                             } else {
-                                return MovesLog.MoveError.CASTLING_PATH_IS_THREATENED;
+                                return CastlingNotPossibleException.PATH_IS_THREATENED;
                             }
                         }
                     }
@@ -615,12 +634,12 @@ public class Chessboard {
             throw new IllegalArgumentException("Invalid castling movePiece() parameters.");
         } else if (isCastlingKingside) {
             /* Castling is only possible if the rook and king both haven't
-               moved since the start of play. Boolean state variables are used
-               to track these conditions, and isCastlingPossible() checks
-               those values to see if castling can be done. The king also must
-               not be in check, their destination must not be threatened,
-               and the intervening squares must also not be threatened.
-               isCastlingPossible() checks those conditions as well. */
+               moved since the start of play. The castling rights flags track
+               that condition, and isCastlingPossible() checks them to see if
+               castling can be done. The king also must not be in check, their
+               destination must not be threatened, and the intervening squares
+               must also not be threatened. isCastlingPossible() checks those
+               conditions as well. */
             int castlingAssessment = isCastlingPossible(colorOfPiece, KING);
             if (castlingAssessment != 0) {
                 throw new CastlingNotPossibleException("Castling kingside is not possible for " + colorOfPieceStr, castlingAssessment);
@@ -630,12 +649,12 @@ public class Chessboard {
             kingNewXCoord = 6;
         } else if (isCastlingQueenside) {
             /* Castling is only possible if the rook and king both haven't
-               moved since the start of play. Boolean state variables are used
-               to track these conditions, and isCastlingPossible() checks
-               those values to see if castling can be done. The king also must
-               not be in check, their destination must not be threatened,
-               and the intervening squares must also not be threatened.
-               isCastlingPossible() checks those conditions as well. */
+               moved since the start of play. The castling rights flags track
+               that condition, and isCastlingPossible() checks them to see if
+               castling can be done. The king also must not be in check, their
+               destination must not be threatened, and the intervening squares
+               must also not be threatened. isCastlingPossible() checks those
+               conditions as well. */
             int castlingAssessment = isCastlingPossible(colorOfPiece, QUEEN);
             if (castlingAssessment != 0) {
                 throw new CastlingNotPossibleException("Castling queenside is not possible for " + colorOfPieceStr, castlingAssessment);
@@ -656,16 +675,6 @@ public class Chessboard {
         boardArray[rookXCoord][rookYCoord] = 0;
         boardArray[kingNewXCoord][kingYCoord] = boardArray[kingXCoord][kingYCoord];
         boardArray[kingXCoord][kingYCoord] = 0;
-
-        /* The state variables that indicate a rook or a king has moved are
-           updated. */
-        if (colorOfPiece == WHITE) {
-            whiteKingHasMoved = true;
-            whiteQueensRookHasMoved = true;
-        } else {
-            blackKingHasMoved = true;
-            blackQueensRookHasMoved = true;
-        }
     }
 
     /*
@@ -713,38 +722,6 @@ public class Chessboard {
             boardArray[toXCoord][toYCoord] = boardArray[fromXCoord][fromYCoord];
         }
         boardArray[fromXCoord][fromYCoord] = 0;
-
-        /* Castling is only possible if the king and the rook involved both
-           haven't moved since the start of play. This switch statement detects
-           if the piece is a king or rook, and updates the instance booleans
-           accordingly. */
-        switch (pieceInt) {
-            case BLACK | KING -> {
-                    if (!blackKingHasMoved) {
-                        blackKingHasMoved = true;
-                    }
-                }
-            case WHITE | KING -> {
-                    if (!whiteKingHasMoved) {
-                        whiteKingHasMoved = true;
-                    }
-                }
-            case BLACK | ROOK -> {
-                    if (!blackKingsRookHasMoved && fromXCoord == 0) {
-                        blackKingsRookHasMoved = true;
-                    } else if (!blackQueensRookHasMoved && fromXCoord == 7) {
-                        blackQueensRookHasMoved = true;
-                    }
-                }
-            case WHITE | ROOK -> {
-                    if (!whiteKingsRookHasMoved && fromXCoord == 0) {
-                        whiteKingsRookHasMoved = true;
-                    } else if (!whiteQueensRookHasMoved && fromXCoord == 7) {
-                        whiteQueensRookHasMoved = true;
-                    }
-                }
-            default -> { }
-        }
     }
 
     /**
@@ -769,6 +746,14 @@ public class Chessboard {
         } else {
             movePieceNonCastling(moveObj);
         }
+
+        /* Castling is only possible if the king and the rook involved both
+           haven't moved since the start of play, and the rook hasn't been
+           captured. Only the piece and the from and to squares are needed to
+           work out which rights the move loses. */
+        int[] moveArray = {moveObj.movingPiece().pieceInt(), moveObj.fromXCoord(), moveObj.fromYCoord(),
+                           moveObj.toXCoord(), moveObj.toYCoord(), 0, 0};
+        castlingRights = BoardArrays.updateCastlingRights(castlingRights, moveArray, colorOnTop);
     }
 
     /**
@@ -0,0 +1,194 @@
+package org.kmfahey.jchessgame;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads lines in Extended Position Description (EPD), the format test suites
+ * and position collections are distributed in. An EPD line has the first four
+ * fields of a FEN (placement, side to move, castling rights and en passant
+ * square) followed by operations, each an opcode and its operands ended by a
+ * semicolon, for instance:
+ * <pre>
+ *     r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - bm Bb5; id "Ruy Lopez";
+ * </pre>
+ * A full six-field FEN is accepted too, with or without operations after it,
+ * so a file can mix the two.
+ *
+ * @see Fen
+ */
+public final class Epd {
+
+    /**
+     * A position read from an EPD line, with its operations.
+     *
+     * @param fen        The position as a six-field FEN. The move counters
+     *                   come from the line's FEN fields if it has them, else
+     *                   from its hmvc and fmvn operations, else they're 0
+     *                   and 1.
+     * @param operations The operands of each operation, by opcode, in the
+     *                   order they appear. A single quoted operand has its
+     *                   quotes removed; otherwise the operands are as
+     *                   written, space-separated.
+     */
+    public record Entry(String fen, Map<String, String> operations) {
+
+        /**
+         * Accessor for the operands of an operation.
+         *
+         * @param opcode The opcode, for instance "bm".
+         * @return       The operands, or null if the line doesn't have that
+         *               operation.
+         */
+        public String operation(final String opcode) {
+            return operations.get(opcode);
+        }
+
+        /**
+         * Accessor for the position's id operation, used to label it.
+         *
+         * @return The id, or the FEN if the line has no id operation.
+         */
+        public String id() {
+            return operations.getOrDefault("id", fen);
+        }
+    }
+
+    private Epd() { }
+
+    /**
+     * Tests whether a line from an EPD or FEN file holds a position: blank
+     * lines and lines starting with # don't.
+     *
+     * @param line The line.
+     * @return     True if the line should be parsed, false if it should be
+     *             skipped.
+     */
+    public static boolean isPositionLine(final String line) {
+        String trimmedLine = line.strip();
+        return !trimmedLine.isEmpty() && !trimmedLine.startsWith("#");
+    }
+
+    /**
+     * Parses an EPD line, or a FEN line optionally followed by EPD
+     * operations.
+     *
+     * @param line The line.
+     * @return     An Entry object.
+     * @throws IllegalArgumentException If the line has fewer than four
+     *                                  fields, an operation has no opcode, a
+     *                                  quoted operand isn't closed, or the
+     *                                  position doesn't parse as a FEN.
+     */
+    public static Entry parse(final String line) throws IllegalArgumentException {
+        String trimmedLine = line.strip();
+        int charIdx = 0;
+        int[] fieldEnds = new int[6];
+        int fieldsCount = 0;
+
+        /* The first four fields are the position. The next two are taken as
+           FEN move counters if they're both numbers. */
+        while (fieldsCount < 6 && charIdx < trimmedLine.length()) {
+            int fieldStartIdx = charIdx;
+            while (charIdx < trimmedLine.length() && !Character.isWhitespace(trimmedLine.charAt(charIdx))) {
+                charIdx++;
+            }
+            if (fieldsCount >= 4 && !isNumber(trimmedLine, fieldStartIdx, charIdx)) {
+                charIdx = fieldStartIdx;
+                break;
+            }
+            fieldEnds[fieldsCount++] = charIdx;
+            while (charIdx < trimmedLine.length() && Character.isWhitespace(trimmedLine.charAt(charIdx))) {
+                charIdx++;
+            }
+        }
+        if (fieldsCount < 4) {
+            throw new IllegalArgumentException("EPD line `" + trimmedLine + "` doesn't have at least 4 fields.");
+        } else if (fieldsCount == 5) {
+            /* A lone number after the fourth field isn't a pair of move
+               counters, so it's read as an (invalid) operation. */
+            charIdx = fieldEnds[3];
+            fieldsCount = 4;
+        }
+
+        Map<String, String> operations = parseOperations(trimmedLine, charIdx);
+        String counters = fieldsCount == 6
+                          ? trimmedLine.substring(fieldEnds[3], fieldEnds[5]).strip().replaceAll("\\s+", " ")
+                          : operations.getOrDefault("hmvc", "0") + " " + operations.getOrDefault("fmvn", "1");
+        String fen = trimmedLine.substring(0, fieldEnds[3]).replaceAll("\\s+", " ") + " " + counters;
+        Fen.parse(fen);
+
+        return new Entry(fen, Collections.unmodifiableMap(operations));
+    }
+
+    /*
+     * Parses the operations part of an EPD line.
+     *
+     * @param line     The line.
+     * @param startIdx The index the operations start at.
+     * @return         The operands by opcode.
+     * @throws IllegalArgumentException If an operation has no opcode or a
+     *                                  quoted operand isn't closed.
+     */
+    private static Map<String, String> parseOperations(final String line, final int startIdx)
+            throws IllegalArgumentException {
+        Map<String, String> operations = new LinkedHashMap<>();
+        StringBuilder operationBuilder = new StringBuilder();
+        boolean inQuotes = false;
+
+        for (int charIdx = startIdx; charIdx <= line.length(); charIdx++) {
+            char opChar = charIdx < line.length() ? line.charAt(charIdx) : ';';
+            if (opChar == '"' && charIdx < line.length()) {
+                inQuotes = !inQuotes;
+            } else if (opChar == ';' && !inQuotes) {
+                String operation = operationBuilder.toString().strip();
+                operationBuilder.setLength(0);
+                if (operation.isEmpty()) {
+                    continue;
+                }
+                int spaceIdx = operation.indexOf(' ');
+                String opcode = spaceIdx < 0 ? operation : operation.substring(0, spaceIdx);
+                String operands = spaceIdx < 0 ? "" : operation.substring(spaceIdx + 1).strip();
+                if (!Character.isLetter(opcode.charAt(0))) {
+                    throw new IllegalArgumentException("EPD line `" + line + "` has operation `" + operation
+                                                       + "`, which doesn't start with an opcode.");
+                }
+                if (operands.length() > 1 && operands.startsWith("\"") && operands.endsWith("\"")
+                    && operands.indexOf('"', 1) == operands.length() - 1) {
+                    operands = operands.substring(1, operands.length() - 1);
+                }
+                operations.put(opcode, operands);
+                continue;
+            } else if (charIdx == line.length()) {
+                break;
+            }
+            operationBuilder.append(opChar);
+        }
+        if (inQuotes) {
+            throw new IllegalArgumentException("EPD line `" + line + "` has a quoted operand that isn't closed.");
+        }
+
+        return operations;
+    }
+
+    /*
+     * Tests whether a substring is a nonempty run of digits.
+     *
+     * @param line     The string.
+     * @param startIdx The index the substring starts at.
+     * @param endIdx   The index the substring ends before.
+     * @return         True if it's a number, false otherwise.
+     */
+    private static boolean isNumber(final String line, final int startIdx, final int endIdx) {
+        if (startIdx == endIdx) {
+            return false;
+        }
+        for (int charIdx = startIdx; charIdx < endIdx; charIdx++) {
+            if (!Character.isDigit(line.charAt(charIdx))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,356 @@
+package org.kmfahey.jchessgame;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs an EPD test suite, such as Win At Chess or the Bratko-Kopec test,
+ * against a MinimaxRunner configuration, as a repeatable measure of how fast
+ * the engine finds tactics. Each position is searched with a time or node
+ * limit; the position is solved if the engine's move is one of its bm (best
+ * move) operands and none of its am (avoid move) operands. The time and node
+ * count at which it's solved are those of the first iteration from which the
+ * engine's best move stayed correct to the end of the search.
+ * <p>
+ * Run from the commandline as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.EpdSuite [--time &lt;ms&gt; | --nodes &lt;n&gt;] [--engine &lt;spec&gt;]
+ *         [--thresholds &lt;ms,ms,...&gt;] [--concurrency &lt;n&gt;] &lt;suite.epd&gt;
+ * </pre>
+ * The default limit is 1000 ms per position, and the engine spec is as for
+ * Tournament; the search depth is unlimited unless the spec sets depth. A
+ * line is printed per position as it finishes, then the number of positions
+ * solved within each time threshold (by default 100, 250, 500 and 1000 ms and
+ * the limit). Positions are run in parallel, one search per worker, so
+ * running with fewer workers than cores keeps the timings comparable between
+ * runs.
+ *
+ * @see Epd
+ * @see Tournament
+ */
+public final class EpdSuite {
+
+    /** The time limit per position, in milliseconds, if not otherwise set. */
+    public static final long DEFAULT_TIME_MILLIS = 1000;
+
+    /* Positions are set up from FENs, which put white at the bottom. */
+    private static final int COLOR_ON_TOP = BoardArrays.BLACK;
+
+    /* The solve time thresholds reported, in milliseconds, if not otherwise
+       set; the limit is added to them. */
+    private static final long[] DEFAULT_THRESHOLDS_MILLIS = {100, 250, 500, 1000};
+
+    /* Set as the depth limit so that the time or node limit decides when each
+       search ends. */
+    private static final int UNLIMITED_DEPTH = 100;
+
+    /**
+     * The outcome of one position.
+     *
+     * @param id          The position's EPD id, or its FEN.
+     * @param expected    The position's bm and am operations, as written.
+     * @param playedMove  The engine's move, in SAN, or (none).
+     * @param solved      Whether the engine's move was correct.
+     * @param solveMillis The time at which the engine settled on a correct
+     *                    move, in milliseconds, or -1 if it didn't.
+     * @param solveNodes  The node count at which the engine settled on a
+     *                    correct move, or -1 if it didn't.
+     * @param depth       The depth of the deepest completed iteration.
+     */
+    public record PositionResult(String id, String expected, String playedMove, boolean solved, long solveMillis,
+                                 long solveNodes, int depth) {
+
+        /**
+         * Renders the result as a line of the report.
+         *
+         * @return The result line.
+         */
+        @Override
+        public String toString() {
+            return solved
+                   ? String.format("%-24s solved at %6d ms, %9d nodes (depth %d): %s", id, solveMillis, solveNodes,
+                                   depth, playedMove)
+                   : String.format("%-24s not solved (depth %d): played %s, expected %s", id, depth, playedMove,
+                                   expected);
+        }
+    }
+
+    private EpdSuite() { }
+
+    /**
+     * Searches one EPD position and checks the engine's move against its bm
+     * and am operations.
+     *
+     * @param entry        The position, which must have a bm or am
+     *                     operation.
+     * @param engineConfig The configuration to search with; its time and node
+     *                     budgets limit the search.
+     * @return             A PositionResult object.
+     * @throws IllegalArgumentException If the position has neither a bm nor
+     *                                  an am operation, or one of their moves
+     *                                  isn't legal in the position.
+     */
+    public static PositionResult runPosition(final Epd.Entry entry, final Tournament.EngineConfig engineConfig)
+            throws IllegalArgumentException {
+        Fen.Position position = Fen.parse(entry.fen());
+        int[][] boardArray = position.boardArray();
+        int colorToMove = position.colorToMove();
+        int[][] movesArray = new int[128][7];
+        int legalMovesCount = 0;
+
+        /* The legal moves are generated once, and the bm and am moves are
+           resolved to their indexes among them. */
+        int[][] generatedMovesArray = new int[128][7];
+        int generatedCount = BoardArrays.generatePossibleMoves(boardArray, generatedMovesArray, colorToMove,
+                                                               COLOR_ON_TOP);
+        for (int moveIdx = 0; moveIdx < generatedCount; moveIdx++) {
+            if (BoardArrays.isCastlingAllowed(generatedMovesArray[moveIdx], position.castlingRights())) {
+                movesArray[legalMovesCount++] = generatedMovesArray[moveIdx];
+            }
+        }
+        int movesCount = legalMovesCount;
+        boolean[] bestMoves = resolveMoves(entry, "bm", boardArray, movesArray, movesCount);
+        boolean[] avoidMoves = resolveMoves(entry, "am", boardArray, movesArray, movesCount);
+        if (bestMoves == null && avoidMoves == null) {
+            throw new IllegalArgumentException("position `" + entry.id() + "` has neither a bm nor an am "
+                                               + "operation.");
+        }
+
+        /* Each completed iteration's best move is checked. solveNanos and
+           solveNodes hold the time and node count of the first iteration of
+           the current run of correct ones, or -1 if the last one was
+           wrong. */
+        long[] solveNanos = {-1};
+        long[] solveNodes = {-1};
+        int[] lastDepth = {0};
+        Chessboard chessboard = new Chessboard(boardArray, colorToMove, COLOR_ON_TOP);
+        MinimaxRunner minimaxRunner = engineConfig.newRunner(chessboard, colorToMove);
+        minimaxRunner.setColors(colorToMove == BoardArrays.WHITE ? BoardArrays.BLACK : BoardArrays.WHITE,
+                                COLOR_ON_TOP);
+        minimaxRunner.setCastlingRights(position.castlingRights());
+        minimaxRunner.setIterationListener((depth, score, nodes, elapsedNanos, bestMoveArray) -> {
+            lastDepth[0] = depth;
+            if (!isCorrect(bestMoveArray, movesArray, movesCount, bestMoves, avoidMoves)) {
+                solveNanos[0] = -1;
+                solveNodes[0] = -1;
+            } else if (solveNanos[0] < 0) {
+                solveNanos[0] = elapsedNanos;
+                solveNodes[0] = nodes;
+            }
+        });
+
+        Chessboard.Move moveObj = minimaxRunner.algorithmTopLevel(1);
+        if (moveObj.movingPiece() == null) {
+            return new PositionResult(entry.id(), expectedMoves(entry), "(none)", false, -1, -1, lastDepth[0]);
+        }
+
+        int[] playedMoveArray = {moveObj.movingPiece().pieceInt(), moveObj.fromXCoord(), moveObj.fromYCoord(),
+                                 moveObj.toXCoord(), moveObj.toYCoord(), moveObj.capturedPieceInt(),
+                                 moveObj.promotedToPieceInt()};
+        boolean solved = isCorrect(playedMoveArray, movesArray, movesCount, bestMoves, avoidMoves)
+                         && solveNanos[0] >= 0;
+        return new PositionResult(entry.id(), expectedMoves(entry),
+                                  BoardArrays.moveArrayToSan(boardArray, playedMoveArray, COLOR_ON_TOP), solved,
+                                  solved ? solveNanos[0] / 1_000_000L : -1, solved ? solveNodes[0] : -1,
+                                  lastDepth[0]);
+    }
+
+    /*
+     * Resolves the moves of a bm or am operation to the legal moves they
+     * denote.
+     *
+     * @param entry      The EPD position.
+     * @param opcode     "bm" or "am".
+     * @param boardArray The position's board.
+     * @param movesArray The position's legal moves.
+     * @param movesCount The number of legal moves.
+     * @return           An array flagging the moves in movesArray the
+     *                   operation names, or null if the position doesn't have
+     *                   the operation.
+     * @throws IllegalArgumentException If a move the operation names isn't
+     *                                  legal.
+     */
+    private static boolean[] resolveMoves(final Epd.Entry entry, final String opcode, final int[][] boardArray,
+                                          final int[][] movesArray, final int movesCount)
+            throws IllegalArgumentException {
+        String operands = entry.operation(opcode);
+        if (operands == null) {
+            return null;
+        }
+
+        boolean[] namedMoves = new boolean[movesCount];
+        for (String moveStr : operands.split("\\s+")) {
+            int moveIdx = BoardArrays.findSanMove(boardArray, movesArray, movesCount, moveStr, COLOR_ON_TOP);
+            if (moveIdx < 0) {
+                throw new IllegalArgumentException("position `" + entry.id() + "` has " + opcode + " move `"
+                                                   + moveStr + "`, which isn't legal.");
+            }
+            namedMoves[moveIdx] = true;
+        }
+
+        return namedMoves;
+    }
+
+    /*
+     * Tests whether a move is one of the bm moves, if there are any, and none
+     * of the am moves.
+     *
+     * @param moveArray  The move.
+     * @param movesArray The position's legal moves.
+     * @param movesCount The number of legal moves.
+     * @param bestMoves  The bm flags, or null.
+     * @param avoidMoves The am flags, or null.
+     * @return           True if the move is correct, false otherwise.
+     */
+    private static boolean isCorrect(final int[] moveArray, final int[][] movesArray, final int movesCount,
+                                     final boolean[] bestMoves, final boolean[] avoidMoves) {
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            int[] legalMoveArray = movesArray[moveIdx];
+            if (legalMoveArray[1] == moveArray[1] && legalMoveArray[2] == moveArray[2]
+                && legalMoveArray[3] == moveArray[3] && legalMoveArray[4] == moveArray[4]
+                && (legalMoveArray[6] & ~(BoardArrays.WHITE | BoardArrays.BLACK | BoardArrays.LEFT
+                                          | BoardArrays.RIGHT))
+                   == (moveArray[6] & ~(BoardArrays.WHITE | BoardArrays.BLACK | BoardArrays.LEFT
+                                        | BoardArrays.RIGHT))) {
+                return (bestMoves == null || bestMoves[moveIdx]) && (avoidMoves == null || !avoidMoves[moveIdx]);
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Formats a position's bm and am operations for the report.
+     *
+     * @param entry The EPD position.
+     * @return      For instance "bm Qg6" or "am Qxb2".
+     */
+    private static String expectedMoves(final Epd.Entry entry) {
+        String bestMoves = entry.operation("bm");
+        String avoidMoves = entry.operation("am");
+        return (bestMoves != null ? "bm " + bestMoves : "")
+               + (bestMoves != null && avoidMoves != null ? ", " : "")
+               + (avoidMoves != null ? "am " + avoidMoves : "");
+    }
+
+    /**
+     * Main method. See the class documentation for the commandline syntax.
+     * The process exits with status 1 if the arguments or the suite don't
+     * parse.
+     *
+     * @param args The commandline arguments.
+     * @throws IOException If the suite file can't be read.
+     * @throws InterruptedException If interrupted while waiting for a
+     *                              position.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        String usage = """
+                       Usage: EpdSuite [--time <ms> | --nodes <n>] [--engine <spec>] [--thresholds <ms,ms,...>]
+                                       [--concurrency <n>] <suite.epd>""";
+        String engineSpec = "";
+        String limitSpec = "time=" + DEFAULT_TIME_MILLIS;
+        long timeLimitMillis = DEFAULT_TIME_MILLIS;
+        long[] thresholdsMillis = DEFAULT_THRESHOLDS_MILLIS;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        String suiteFileName = null;
+        Tournament.EngineConfig engineConfig;
+        List<Epd.Entry> entries = new ArrayList<>();
+
+        try {
+            for (int argIdx = 0; argIdx < args.length; argIdx++) {
+                if (!args[argIdx].startsWith("--")) {
+                    suiteFileName = args[argIdx];
+                    continue;
+                } else if (argIdx + 1 >= args.length) {
+                    throw new IllegalArgumentException("option `" + args[argIdx] + "` has no value.");
+                }
+                String value = args[++argIdx];
+                switch (args[argIdx - 1]) {
+                    case "--time" -> {
+                        timeLimitMillis = Long.parseLong(value);
+                        limitSpec = "time=" + timeLimitMillis;
+                    }
+                    case "--nodes" -> {
+                        timeLimitMillis = 0;
+                        limitSpec = "nodes=" + Long.parseLong(value);
+                    }
+                    case "--engine" -> engineSpec = value;
+                    case "--thresholds" -> thresholdsMillis = Arrays.stream(value.split(","))
+                                                                    .mapToLong(Long::parseLong).toArray();
+                    case "--concurrency" -> concurrency = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("unknown option `" + args[argIdx - 1] + "`.");
+                }
+            }
+            if (suiteFileName == null) {
+                throw new IllegalArgumentException("no suite file was given.");
+            }
+            engineConfig = Tournament.EngineConfig.parse("depth=" + UNLIMITED_DEPTH + "," + limitSpec + ","
+                                                         + engineSpec, "minimax");
+            for (String line : Files.readAllLines(Path.of(suiteFileName), StandardCharsets.UTF_8)) {
+                if (Epd.isPositionLine(line)) {
+                    entries.add(Epd.parse(line));
+                }
+            }
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println(usage);
+            System.exit(1);
+            return;
+        }
+
+        ExecutorService positionPool = Executors.newFixedThreadPool(concurrency);
+        CompletionService<PositionResult> positionCompletions = new ExecutorCompletionService<>(positionPool);
+        for (Epd.Entry entry : entries) {
+            positionCompletions.submit(() -> runPosition(entry, engineConfig));
+        }
+        positionPool.shutdown();
+
+        List<PositionResult> positionResults = new ArrayList<>();
+        for (int entryIdx = 0; entryIdx < entries.size(); entryIdx++) {
+            PositionResult positionResult;
+            try {
+                positionResult = positionCompletions.take().get();
+            } catch (ExecutionException exception) {
+                positionPool.shutdownNow();
+                System.err.println(exception.getCause().getMessage());
+                System.exit(1);
+                return;
+            }
+            positionResults.add(positionResult);
+            System.out.println(positionResult);
+        }
+
+        /* With a time limit, the limit itself is the last threshold; with a
+           node limit, the thresholds are reported as given. */
+        long limitMillis = timeLimitMillis;
+        long[] reportThresholdsMillis = limitMillis > 0
+                                        ? Arrays.stream(thresholdsMillis).filter(millis -> millis < limitMillis)
+                                                .toArray()
+                                        : thresholdsMillis;
+        if (limitMillis > 0) {
+            reportThresholdsMillis = Arrays.copyOf(reportThresholdsMillis, reportThresholdsMillis.length + 1);
+            reportThresholdsMillis[reportThresholdsMillis.length - 1] = limitMillis;
+        }
+        System.out.println();
+        for (long thresholdMillis : reportThresholdsMillis) {
+            long solvedCount = positionResults.stream()
+                                              .filter(result -> result.solved()
+                                                                && result.solveMillis() <= thresholdMillis)
+                                              .count();
+            System.out.printf("Solved within %6d ms: %4d of %d (%.1f%%)%n", thresholdMillis, solvedCount,
+                              positionResults.size(), 100D * solvedCount / positionResults.size());
+        }
+        long solvedCount = positionResults.stream().filter(PositionResult::solved).count();
+        System.out.printf("Solved in total:       %4d of %d (%.1f%%)%n", solvedCount, positionResults.size(),
+                          100D * solvedCount / positionResults.size());
+    }
+}
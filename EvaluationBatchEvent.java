@@ -0,0 +1,40 @@
+package org.kmfahey.jchessgame;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event summarizing a batch of board evaluations made
+ * by the search on one thread, batched the same way as
+ * MoveGenerationBatchEvent. It's disabled by default, and can be enabled in a
+ * JFR settings file under the name org.kmfahey.jchessgame.EvaluationBatch;
+ * when it's disabled the search doesn't time its evaluations at all.
+ *
+ * @see MoveGenerationBatchEvent
+ */
+@Name("org.kmfahey.jchessgame.EvaluationBatch")
+@Label("Evaluation Batch")
+@Category({"JChessGame", "AI"})
+@Description("A batch of board evaluations made by the search")
+@Enabled(false)
+@StackTrace(false)
+public class EvaluationBatchEvent extends Event {
+
+    /** The number of evaluations accumulated before an event is committed. */
+    public static final int BATCH_SIZE = 1024;
+
+    /** The number of evaluations in this batch. */
+    @Label("Evaluations")
+    public int calls;
+
+    /** The time spent inside the evaluations in this batch. */
+    @Label("Time In Calls")
+    @Timespan(Timespan.NANOSECONDS)
+    public long timeInCalls;
+}
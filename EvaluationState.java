@@ -0,0 +1,407 @@
+package org.kmfahey.jchessgame;
+
+import java.util.Arrays;
+
+/**
+ * The material and piece-square part of a board's evaluation, kept up to date
+ * as moves are made and unmade rather than recomputed from the board. It
+ * holds the number of pieces of each type of each color, the sums of the
+ * middlegame and of the endgame piece-square values of each color's pieces,
+ * and the game phase; a move only changes the terms of the one to three
+ * pieces it touches, so makeMove() and unmakeMove() are a few integer adds
+ * each, and reading the counts and the phase-blended sums back is O(1).
+ * <p>
+ * It also keeps the Zobrist key of the pieces on the board and the key of
+ * just the pawns, bitboards of each color's pawns and of every occupied
+ * square, which are xored and masked the same way as the pieces move. So
+ * the memoization of the evaluation and the pawn structure terms don't need
+ * the board scanned either.
+ * <p>
+ * A search makes moves on its board array with BoardArrays.makeMove() and
+ * unmakes them with BoardArrays.unmakeMove(); it has to call this class's
+ * makeMove() and unmakeMove() with the same move arrays alongside them, for
+ * the state to keep matching the board. verify() recomputes everything from
+ * the board and throws if it doesn't.
+ *
+ * @see EvaluationWeights
+ * @see MinimaxRunner#scoreBoard
+ */
+public final class EvaluationState {
+
+    /* These statements copy the piece int constants from BoardArrays to this
+       class for convenience. */
+    private static final int WHITE = BoardArrays.WHITE;
+    private static final int BLACK = BoardArrays.BLACK;
+    private static final int KING = BoardArrays.KING;
+    private static final int QUEEN = BoardArrays.QUEEN;
+    private static final int BISHOP = BoardArrays.BISHOP;
+    private static final int KNIGHT = BoardArrays.KNIGHT;
+    private static final int ROOK = BoardArrays.ROOK;
+    private static final int PAWN = BoardArrays.PAWN;
+
+    /* The indexes of the piece types in the counts and the piece-square
+       tables, in the order EvaluationWeights uses. */
+    private static final int KING_IDX = 0;
+    private static final int QUEEN_IDX = 1;
+    private static final int ROOK_IDX = 2;
+    private static final int BISHOP_IDX = 3;
+    private static final int KNIGHT_IDX = 4;
+    private static final int PAWN_IDX = 5;
+
+    /* The amount each piece type adds to the game phase. */
+    private static final int[] PHASE_WEIGHTS = {0, 4, 2, 1, 1, 0};
+
+    private final int colorOnTop;
+    private final EvaluationWeights weights;
+
+    /* The weights' tables, held directly so a lookup is two array
+       indexings. */
+    private final int[][] middlegameTables;
+    private final int[][] endgameTables;
+
+    /* The number of pieces of each type of each color, indexed by color (0
+       for white, 1 for black) and then by piece type index. */
+    private final int[][] piecesCounts = new int[2][6];
+
+    /* The sums of the middlegame and the endgame piece-square values of
+       each color's pieces, in centipawns, indexed by color. They're kept as
+       ints so that adding and subtracting them as moves are made and unmade
+       never drifts. */
+    private final int[] middlegameSums = new int[2];
+    private final int[] endgameSums = new int[2];
+
+    /* The game phase, the sum of PHASE_WEIGHTS over every piece. It can
+       exceed EvaluationWeights.PHASE_TOTAL after promotions. */
+    private int phase;
+
+    /* The Zobrist keys of every piece and of just the pawns, the xor of
+       Zobrist.pieceSquareKey() over them. */
+    private long piecesKey;
+    private long pawnsKey;
+
+    /* Bitboards, in PawnStructure's layout, of each color's pawns, indexed
+       by color, and of every occupied square. */
+    private final long[] pawnBitboards = new long[2];
+    private long occupiedBitboard;
+
+    /**
+     * Instances an EvaluationState, computing its counts and sums from a
+     * board.
+     *
+     * @param boardArray    The int[8][8] board representation.
+     * @param colorOnTopVal The color playing from the top of the board.
+     * @param weightsObj    The piece-square tables to sum.
+     */
+    public EvaluationState(final int[][] boardArray, final int colorOnTopVal, final EvaluationWeights weightsObj) {
+        colorOnTop = colorOnTopVal;
+        weights = weightsObj;
+        middlegameTables = weightsObj.middlegameTables();
+        endgameTables = weightsObj.endgameTables();
+        recompute(boardArray);
+    }
+
+    /**
+     * Recomputes the counts and sums from a board, discarding the current
+     * ones.
+     *
+     * @param boardArray The int[8][8] board representation.
+     */
+    public void recompute(final int[][] boardArray) {
+        for (int colorIdx = 0; colorIdx < 2; colorIdx++) {
+            Arrays.fill(piecesCounts[colorIdx], 0);
+            middlegameSums[colorIdx] = 0;
+            endgameSums[colorIdx] = 0;
+            pawnBitboards[colorIdx] = 0L;
+        }
+        phase = 0;
+        piecesKey = 0L;
+        pawnsKey = 0L;
+        occupiedBitboard = 0L;
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            for (int yIdx = 0; yIdx < 8; yIdx++) {
+                if (boardArray[xIdx][yIdx] != 0) {
+                    addPiece(boardArray[xIdx][yIdx], xIdx, yIdx);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the counts and sums for a move being made. It's called
+     * alongside BoardArrays.makeMove(), with the same move array.
+     *
+     * @param moveArray The int[7] move array.
+     */
+    public void makeMove(final int[] moveArray) {
+        int fromXIdx = moveArray[1];
+        int fromYIdx = moveArray[2];
+        int toXIdx = moveArray[3];
+        int toYIdx = moveArray[4];
+
+        if (BoardArrays.isCastlingMove(moveArray)) {
+            removePiece(moveArray[0], fromXIdx, fromYIdx);
+            removePiece(moveArray[5], toXIdx, toYIdx);
+            addPiece(moveArray[0], toXIdx == 7 ? 6 : 2, fromYIdx);
+            addPiece(moveArray[5], toXIdx == 7 ? 5 : 3, fromYIdx);
+        } else {
+            removePiece(moveArray[0], fromXIdx, fromYIdx);
+            if (moveArray[5] != 0) {
+                removePiece(moveArray[5], toXIdx, toYIdx);
+            }
+            addPiece(moveArray[6] != 0 ? moveArray[6] : moveArray[0], toXIdx, toYIdx);
+        }
+    }
+
+    /**
+     * Reverses the updates makeMove() made for a move. It's called alongside
+     * BoardArrays.unmakeMove(), with the same move array.
+     *
+     * @param moveArray The int[7] move array passed to makeMove().
+     */
+    public void unmakeMove(final int[] moveArray) {
+        int fromXIdx = moveArray[1];
+        int fromYIdx = moveArray[2];
+        int toXIdx = moveArray[3];
+        int toYIdx = moveArray[4];
+
+        if (BoardArrays.isCastlingMove(moveArray)) {
+            removePiece(moveArray[0], toXIdx == 7 ? 6 : 2, fromYIdx);
+            removePiece(moveArray[5], toXIdx == 7 ? 5 : 3, fromYIdx);
+            addPiece(moveArray[0], fromXIdx, fromYIdx);
+            addPiece(moveArray[5], toXIdx, toYIdx);
+        } else {
+            removePiece(moveArray[6] != 0 ? moveArray[6] : moveArray[0], toXIdx, toYIdx);
+            if (moveArray[5] != 0) {
+                addPiece(moveArray[5], toXIdx, toYIdx);
+            }
+            addPiece(moveArray[0], fromXIdx, fromYIdx);
+        }
+    }
+
+    /**
+     * Accessor for the number of pieces of one type of one color.
+     *
+     * @param color     BoardArrays.WHITE or BoardArrays.BLACK.
+     * @param pieceType The piece type flag, such as BoardArrays.ROOK.
+     * @return          The number of pieces.
+     */
+    public int getPieceCount(final int color, final int pieceType) {
+        return piecesCounts[colorIndex(color)][pieceTypeIndex(pieceType)];
+    }
+
+    /**
+     * Accessor for the game phase.
+     *
+     * @return The phase, from EvaluationWeights.PHASE_TOTAL in the opening
+     *         down to 0 with only kings and pawns left; never more than
+     *         PHASE_TOTAL.
+     */
+    public int getPhase() {
+        return Math.min(phase, EvaluationWeights.PHASE_TOTAL);
+    }
+
+    /**
+     * Accessor for the sum of the piece-square values of one color's pieces,
+     * blended from the middlegame and endgame sums by the game phase.
+     *
+     * @param color BoardArrays.WHITE or BoardArrays.BLACK.
+     * @return      The sum, in pawns.
+     */
+    public double getPieceSquareSum(final int color) {
+        int colorIdx = colorIndex(color);
+        int middlegamePhase = getPhase();
+        return (middlegameSums[colorIdx] * middlegamePhase
+                + endgameSums[colorIdx] * (EvaluationWeights.PHASE_TOTAL - middlegamePhase))
+               / (100D * EvaluationWeights.PHASE_TOTAL);
+    }
+
+    /**
+     * Accessor for the Zobrist key of the pieces on the board. It's the key
+     * Zobrist.key() gives the board with no castling rights, no en passant
+     * file and black to move.
+     *
+     * @return The key.
+     */
+    public long getPiecesKey() {
+        return piecesKey;
+    }
+
+    /**
+     * Accessor for the Zobrist key of the pawns on the board, which keys the
+     * pawn structure terms.
+     *
+     * @return The key.
+     */
+    public long getPawnsKey() {
+        return pawnsKey;
+    }
+
+    /**
+     * Accessor for the bitboard of one color's pawns.
+     *
+     * @param color BoardArrays.WHITE or BoardArrays.BLACK.
+     * @return      The bitboard, with the bits laid out as by
+     *              PawnStructure.squareBit().
+     */
+    public long getPawnBitboard(final int color) {
+        return pawnBitboards[colorIndex(color)];
+    }
+
+    /**
+     * Accessor for the bitboard of every occupied square.
+     *
+     * @return The bitboard, with the bits laid out as by
+     *         PawnStructure.squareBit().
+     */
+    public long getOccupiedBitboard() {
+        return occupiedBitboard;
+    }
+
+    /**
+     * Checks the counts, sums, keys and bitboards against ones recomputed
+     * from a board.
+     *
+     * @param boardArray The int[8][8] board the state should match.
+     * @throws IllegalStateException If they don't match.
+     */
+    public void verify(final int[][] boardArray) throws IllegalStateException {
+        EvaluationState recomputedState = new EvaluationState(boardArray, colorOnTop, weights);
+        for (int colorIdx = 0; colorIdx < 2; colorIdx++) {
+            if (!Arrays.equals(piecesCounts[colorIdx], recomputedState.piecesCounts[colorIdx])
+                || middlegameSums[colorIdx] != recomputedState.middlegameSums[colorIdx]
+                || endgameSums[colorIdx] != recomputedState.endgameSums[colorIdx]) {
+                throw new IllegalStateException("incremental evaluation state for " + (colorIdx == 0 ? "white"
+                                                : "black") + " doesn't match the board: counts "
+                                                + Arrays.toString(piecesCounts[colorIdx]) + " and sums "
+                                                + middlegameSums[colorIdx] + "/" + endgameSums[colorIdx]
+                                                + ", recomputed counts "
+                                                + Arrays.toString(recomputedState.piecesCounts[colorIdx])
+                                                + " and sums " + recomputedState.middlegameSums[colorIdx] + "/"
+                                                + recomputedState.endgameSums[colorIdx]);
+            }
+        }
+        if (phase != recomputedState.phase) {
+            throw new IllegalStateException("incremental game phase " + phase + " doesn't match the board's "
+                                            + recomputedState.phase);
+        }
+        if (piecesKey != recomputedState.piecesKey || pawnsKey != recomputedState.pawnsKey) {
+            throw new IllegalStateException("incremental keys " + Long.toHexString(piecesKey) + "/"
+                                            + Long.toHexString(pawnsKey) + " don't match the board's "
+                                            + Long.toHexString(recomputedState.piecesKey) + "/"
+                                            + Long.toHexString(recomputedState.pawnsKey));
+        }
+        if (!Arrays.equals(pawnBitboards, recomputedState.pawnBitboards)
+            || occupiedBitboard != recomputedState.occupiedBitboard) {
+            throw new IllegalStateException("incremental pawn and occupancy bitboards "
+                                            + Arrays.toString(pawnBitboards) + "/" + occupiedBitboard
+                                            + " don't match the board's "
+                                            + Arrays.toString(recomputedState.pawnBitboards) + "/"
+                                            + recomputedState.occupiedBitboard);
+        }
+    }
+
+    /*
+     * Adds a piece's terms to the counts, sums, keys and bitboards.
+     *
+     * @param pieceInt The piece int.
+     * @param xIdx     The x index of its square.
+     * @param yIdx     The y index of its square.
+     */
+    private void addPiece(final int pieceInt, final int xIdx, final int yIdx) {
+        int colorIdx = colorIndex(pieceInt & (WHITE | BLACK));
+        int typeIdx = pieceTypeIndex(pieceInt);
+        int squareIdx = tableSquareIndex(pieceInt, xIdx, yIdx);
+        piecesCounts[colorIdx][typeIdx]++;
+        middlegameSums[colorIdx] += middlegameTables[typeIdx][squareIdx];
+        endgameSums[colorIdx] += endgameTables[typeIdx][squareIdx];
+        phase += PHASE_WEIGHTS[typeIdx];
+
+        long pieceSquareKey = Zobrist.pieceSquareKey(pieceInt, xIdx, yIdx, colorOnTop);
+        long squareBit = PawnStructure.squareBit(xIdx, yIdx);
+        piecesKey ^= pieceSquareKey;
+        occupiedBitboard |= squareBit;
+        if (typeIdx == PAWN_IDX) {
+            pawnsKey ^= pieceSquareKey;
+            pawnBitboards[colorIdx] |= squareBit;
+        }
+    }
+
+    /*
+     * Removes a piece's terms from the counts, sums, keys and bitboards.
+     *
+     * @param pieceInt The piece int.
+     * @param xIdx     The x index of its square.
+     * @param yIdx     The y index of its square.
+     */
+    private void removePiece(final int pieceInt, final int xIdx, final int yIdx) {
+        int colorIdx = colorIndex(pieceInt & (WHITE | BLACK));
+        int typeIdx = pieceTypeIndex(pieceInt);
+        int squareIdx = tableSquareIndex(pieceInt, xIdx, yIdx);
+        piecesCounts[colorIdx][typeIdx]--;
+        middlegameSums[colorIdx] -= middlegameTables[typeIdx][squareIdx];
+        endgameSums[colorIdx] -= endgameTables[typeIdx][squareIdx];
+        phase -= PHASE_WEIGHTS[typeIdx];
+
+        long pieceSquareKey = Zobrist.pieceSquareKey(pieceInt, xIdx, yIdx, colorOnTop);
+        long squareBit = PawnStructure.squareBit(xIdx, yIdx);
+        piecesKey ^= pieceSquareKey;
+        occupiedBitboard &= ~squareBit;
+        if (typeIdx == PAWN_IDX) {
+            pawnsKey ^= pieceSquareKey;
+            pawnBitboards[colorIdx] &= ~squareBit;
+        }
+    }
+
+    /*
+     * Finds the index of a piece's square in the piece-square tables.
+     *
+     * @param pieceInt The piece int.
+     * @param xIdx     The x index of its square.
+     * @param yIdx     The y index of its square.
+     * @return         The index, 0 to 63.
+     */
+    int tableSquareIndex(final int pieceInt, final int xIdx, final int yIdx) {
+        /* The tables' rows run from rank 8 down, which is the board's y
+           order if black is on top. Black's pieces then take the mirrored
+           row. */
+        int rowIdx = colorOnTop == BLACK ? yIdx : 7 - yIdx;
+        if ((pieceInt & BLACK) != 0) {
+            rowIdx = 7 - rowIdx;
+        }
+        return rowIdx * 8 + xIdx;
+    }
+
+    /*
+     * Maps a color to its index in the counts and sums.
+     *
+     * @param color BoardArrays.WHITE or BoardArrays.BLACK.
+     * @return      0 for white, 1 for black.
+     */
+    private static int colorIndex(final int color) {
+        return color == WHITE ? 0 : 1;
+    }
+
+    /*
+     * Maps a piece int, or a bare piece type flag, to its type's index in the
+     * counts and tables.
+     *
+     * @param pieceInt The piece int or flag.
+     * @return         The index.
+     */
+    static int pieceTypeIndex(final int pieceInt) {
+        if ((pieceInt & PAWN) != 0) {
+            return PAWN_IDX;
+        } else if ((pieceInt & KNIGHT) != 0) {
+            return KNIGHT_IDX;
+        } else if ((pieceInt & BISHOP) != 0) {
+            return BISHOP_IDX;
+        } else if ((pieceInt & ROOK) != 0) {
+            return ROOK_IDX;
+        } else if ((pieceInt & QUEEN) != 0) {
+            return QUEEN_IDX;
+        } else if ((pieceInt & KING) != 0) {
+            return KING_IDX;
+        }
+        throw new IllegalArgumentException("`" + pieceInt + "` isn't a piece int.");
+    }
+}
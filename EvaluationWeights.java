@@ -0,0 +1,352 @@
+package org.kmfahey.jchessgame;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The piece-square tables of the evaluation: for each piece type a middlegame
+ * table and an endgame table, each giving a bonus or penalty in centipawns
+ * for a piece of that type standing on each square. EvaluationState blends a
+ * piece's middlegame and endgame values by the game phase, which runs from
+ * PHASE_TOTAL with all the minor and major pieces on the board down to 0 with
+ * none of them.
+ * <p>
+ * The default weights are built in. Others can be loaded from a weights
+ * file, so the tables can be tuned without recompiling. A weights file is
+ * text: one line per table, a name such as "knight.mg" or "knight.eg"
+ * followed by the table's 64 values separated by spaces, and blank lines
+ * and lines starting with # are ignored. All twelve tables must be given.
+ * Each table runs from white's side of the board: a8 to h8 first and a1 to
+ * h1 last. Black's pieces use them with the ranks mirrored.
+ * <p>
+ * Run as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.EvaluationWeights --output &lt;file&gt;
+ * </pre>
+ * to write the default weights to a file, as a starting point to edit.
+ *
+ * @see EvaluationState
+ * @see MinimaxRunner#setWeightsFile
+ */
+public final class EvaluationWeights {
+
+    /** The game phase with every knight, bishop, rook and queen of the
+        starting position on the board; each knight and bishop counts 1, each
+        rook 2 and each queen 4. */
+    public static final int PHASE_TOTAL = 24;
+
+    /* The names of the piece types in weights files, in the order of the
+       piece type indexes EvaluationState uses. */
+    private static final String[] PIECE_TYPE_NAMES = {"king", "queen", "rook", "bishop", "knight", "pawn"};
+
+    /* The middlegame tables of the default weights: Tomasz Michniewski's
+       "simplified evaluation function" tables. */
+    private static final int[][] DEFAULT_MIDDLEGAME_TABLES = {
+        {   // King
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+             20,  20,   0,   0,   0,   0,  20,  20,
+             20,  30,  10,   0,   0,  10,  30,  20
+        }, {   // Queen
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+             -5,   0,   5,   5,   5,   5,   0,  -5,
+              0,   0,   5,   5,   5,   5,   0,  -5,
+            -10,   5,   5,   5,   5,   5,   0, -10,
+            -10,   0,   5,   0,   0,   0,   0, -10,
+            -20, -10, -10,  -5,  -5, -10, -10, -20
+        }, {   // Rook
+              0,   0,   0,   0,   0,   0,   0,   0,
+              5,  10,  10,  10,  10,  10,  10,   5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+              0,   0,   0,   5,   5,   0,   0,   0
+        }, {   // Bishop
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   5,   5,  10,  10,   5,   5, -10,
+            -10,   0,  10,  10,  10,  10,   0, -10,
+            -10,  10,  10,  10,  10,  10,  10, -10,
+            -10,   5,   0,   0,   0,   0,   5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+        }, {   // Knight
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -30,   5,  15,  20,  20,  15,   5, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   5,  10,  15,  15,  10,   5, -30,
+            -40, -20,   0,   5,   5,   0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+        }, {   // Pawn
+              0,   0,   0,   0,   0,   0,   0,   0,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             10,  10,  20,  30,  30,  20,  10,  10,
+              5,   5,  10,  25,  25,  10,   5,   5,
+              0,   0,   0,  20,  20,   0,   0,   0,
+              5,  -5, -10,   0,   0, -10,  -5,   5,
+              5,  10,  10, -20, -20,  10,  10,   5,
+              0,   0,   0,   0,   0,   0,   0,   0
+        }
+    };
+
+    /* The endgame tables of the default weights that differ from the
+       middlegame ones. In the endgame the king should head for the center
+       rather than shelter behind its pawns, and a pawn is worth more the
+       closer it is to promoting, whatever its file. */
+    private static final int[] DEFAULT_ENDGAME_KING_TABLE = {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50
+    };
+    private static final int[] DEFAULT_ENDGAME_PAWN_TABLE = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         80,  80,  80,  80,  80,  80,  80,  80,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         30,  30,  30,  30,  30,  30,  30,  30,
+         15,  15,  15,  15,  15,  15,  15,  15,
+          5,   5,   5,   5,   5,   5,   5,   5,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0
+    };
+
+    /** The built-in weights. */
+    public static final EvaluationWeights DEFAULT = defaultWeights();
+
+    /* The tables, indexed by piece type index and then by square. */
+    private final int[][] middlegameTables;
+    private final int[][] endgameTables;
+
+    /**
+     * Instances an EvaluationWeights from its tables. The arrays are copied.
+     *
+     * @param middlegameTablesArr The six middlegame tables, in the order king,
+     *                            queen, rook, bishop, knight, pawn, each 64
+     *                            values in centipawns from a8 to h1.
+     * @param endgameTablesArr    The six endgame tables, in the same order
+     *                            and layout.
+     * @throws IllegalArgumentException If there aren't six tables of 64
+     *                                  values each.
+     */
+    public EvaluationWeights(final int[][] middlegameTablesArr, final int[][] endgameTablesArr)
+            throws IllegalArgumentException {
+        middlegameTables = copyTables(middlegameTablesArr);
+        endgameTables = copyTables(endgameTablesArr);
+    }
+
+    /**
+     * Loads weights from a weights file.
+     *
+     * @param weightsPath The path to the file.
+     * @return            An EvaluationWeights object.
+     * @throws IOException If the file can't be read or isn't a weights file.
+     */
+    public static EvaluationWeights load(final Path weightsPath) throws IOException {
+        int[][][] tables = new int[2][PIECE_TYPE_NAMES.length][];
+
+        try (BufferedReader weightsReader = Files.newBufferedReader(weightsPath, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = weightsReader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                int[] tableIdxs = parseTableName(fields[0]);
+                if (tableIdxs == null || fields.length != 65) {
+                    throw new IOException("`" + weightsPath + "` line " + lineNumber + " isn't a table name "
+                                          + "followed by 64 values.");
+                }
+                int[] table = new int[64];
+                try {
+                    for (int squareIdx = 0; squareIdx < 64; squareIdx++) {
+                        table[squareIdx] = Integer.parseInt(fields[squareIdx + 1]);
+                    }
+                } catch (NumberFormatException exception) {
+                    throw new IOException("`" + weightsPath + "` line " + lineNumber + " has a value that isn't "
+                                          + "an integer.", exception);
+                }
+                tables[tableIdxs[0]][tableIdxs[1]] = table;
+            }
+        }
+
+        for (int phaseIdx = 0; phaseIdx < 2; phaseIdx++) {
+            for (int typeIdx = 0; typeIdx < PIECE_TYPE_NAMES.length; typeIdx++) {
+                if (tables[phaseIdx][typeIdx] == null) {
+                    throw new IOException("`" + weightsPath + "` has no " + tableName(phaseIdx, typeIdx)
+                                          + " table.");
+                }
+            }
+        }
+        return new EvaluationWeights(tables[0], tables[1]);
+    }
+
+    /**
+     * Writes these weights to a weights file, in the format load() reads.
+     *
+     * @param weightsPath The path to the file, which is overwritten if it
+     *                    exists.
+     * @throws IOException If the file can't be written.
+     */
+    public void save(final Path weightsPath) throws IOException {
+        try (BufferedWriter weightsWriter = Files.newBufferedWriter(weightsPath, StandardCharsets.UTF_8)) {
+            weightsWriter.write("# JChessGame piece-square tables, in centipawns, from a8 to h1.");
+            weightsWriter.newLine();
+            for (int typeIdx = 0; typeIdx < PIECE_TYPE_NAMES.length; typeIdx++) {
+                for (int phaseIdx = 0; phaseIdx < 2; phaseIdx++) {
+                    int[] table = phaseIdx == 0 ? middlegameTables[typeIdx] : endgameTables[typeIdx];
+                    StringBuilder lineBuilder = new StringBuilder(tableName(phaseIdx, typeIdx));
+                    for (int value : table) {
+                        lineBuilder.append(' ').append(value);
+                    }
+                    weightsWriter.write(lineBuilder.toString());
+                    weightsWriter.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Accessor for one value of a middlegame table.
+     *
+     * @param typeIdx   The piece type index: 0 to 5 for king, queen, rook,
+     *                  bishop, knight and pawn.
+     * @param squareIdx The square, 0 to 63 from a8 to h1.
+     * @return          The value, in centipawns.
+     */
+    public int getMiddlegameValue(final int typeIdx, final int squareIdx) {
+        return middlegameTables[typeIdx][squareIdx];
+    }
+
+    /**
+     * Accessor for one value of an endgame table.
+     *
+     * @param typeIdx   The piece type index: 0 to 5 for king, queen, rook,
+     *                  bishop, knight and pawn.
+     * @param squareIdx The square, 0 to 63 from a8 to h1.
+     * @return          The value, in centipawns.
+     */
+    public int getEndgameValue(final int typeIdx, final int squareIdx) {
+        return endgameTables[typeIdx][squareIdx];
+    }
+
+    /*
+     * Accessors for the tables themselves, for EvaluationState to index
+     * directly. They're not to be modified.
+     *
+     * @return The tables, indexed by piece type index and then by square.
+     */
+    int[][] middlegameTables() {
+        return middlegameTables;
+    }
+
+    int[][] endgameTables() {
+        return endgameTables;
+    }
+
+    /*
+     * Builds the built-in weights.
+     *
+     * @return An EvaluationWeights object.
+     */
+    private static EvaluationWeights defaultWeights() {
+        int[][] endgameTables = copyTables(DEFAULT_MIDDLEGAME_TABLES);
+        endgameTables[0] = DEFAULT_ENDGAME_KING_TABLE;
+        endgameTables[PIECE_TYPE_NAMES.length - 1] = DEFAULT_ENDGAME_PAWN_TABLE;
+        return new EvaluationWeights(DEFAULT_MIDDLEGAME_TABLES, endgameTables);
+    }
+
+    /*
+     * Copies a set of tables, checking its dimensions.
+     *
+     * @param tables The tables.
+     * @return       The copy.
+     * @throws IllegalArgumentException If there aren't six tables of 64
+     *                                  values each.
+     */
+    private static int[][] copyTables(final int[][] tables) throws IllegalArgumentException {
+        if (tables.length != PIECE_TYPE_NAMES.length) {
+            throw new IllegalArgumentException("there must be " + PIECE_TYPE_NAMES.length + " tables; got "
+                                               + tables.length);
+        }
+        int[][] tablesCopy = new int[tables.length][];
+        for (int typeIdx = 0; typeIdx < tables.length; typeIdx++) {
+            if (tables[typeIdx].length != 64) {
+                throw new IllegalArgumentException("the " + PIECE_TYPE_NAMES[typeIdx] + " table must have 64 "
+                                                   + "values; got " + tables[typeIdx].length);
+            }
+            tablesCopy[typeIdx] = Arrays.copyOf(tables[typeIdx], 64);
+        }
+        return tablesCopy;
+    }
+
+    /*
+     * Builds the name a table has in a weights file.
+     *
+     * @param phaseIdx 0 for a middlegame table, 1 for an endgame table.
+     * @param typeIdx  The piece type index.
+     * @return         The name, such as "rook.eg".
+     */
+    private static String tableName(final int phaseIdx, final int typeIdx) {
+        return PIECE_TYPE_NAMES[typeIdx] + (phaseIdx == 0 ? ".mg" : ".eg");
+    }
+
+    /*
+     * Parses the name of a table in a weights file.
+     *
+     * @param name The name, such as "rook.eg".
+     * @return     An int[2] of the phase index and the piece type index, or
+     *             null if it isn't a table name.
+     */
+    private static int[] parseTableName(final String name) {
+        for (int typeIdx = 0; typeIdx < PIECE_TYPE_NAMES.length; typeIdx++) {
+            for (int phaseIdx = 0; phaseIdx < 2; phaseIdx++) {
+                if (name.equals(tableName(phaseIdx, typeIdx))) {
+                    return new int[] {phaseIdx, typeIdx};
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Main method. See the class documentation for the commandline syntax.
+     *
+     * @param args The commandline arguments.
+     */
+    public static void main(final String[] args) {
+        String usage = "Usage: EvaluationWeights --output <file>";
+        if (args.length != 2 || !args[0].equals("--output")) {
+            System.err.println(usage);
+            System.exit(1);
+            return;
+        }
+        try {
+            DEFAULT.save(Path.of(args[1]));
+        } catch (IOException exception) {
+            System.err.println("Couldn't write `" + args[1] + "`: " + exception.getMessage());
+            System.exit(1);
+        }
+    }
+}
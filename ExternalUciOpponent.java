@@ -0,0 +1,336 @@
+package org.kmfahey.jchessgame;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An Opponent that drives an external chess engine over the UCI protocol. The
+ * engine is started as a subprocess, and its standard in and out are used as
+ * the protocol's pipes. Its output is read on a background thread, so a move
+ * request returns at once and is completed when the engine's bestmove line
+ * arrives.
+ * <p>
+ * Each move is requested with a fixed movetime. If the engine hasn't replied
+ * by the move timeout it's sent stop, and the move is counted as a timeout;
+ * if it still hasn't replied after a further grace period, the request fails
+ * with a TimeoutException. The latency of every move and the number of
+ * timeouts are tracked, and summarized on standard error when the opponent is
+ * closed.
+ * <p>
+ * The position is sent as a FEN, with the castling rights the Chessboard has
+ * tracked. Since en passant captures aren't generated, an engine that plays
+ * one has its move rejected as illegal.
+ *
+ * @see UciEngine
+ */
+public class ExternalUciOpponent implements Opponent {
+
+    /** The movetime used if none is given, in milliseconds. */
+    public static final long DEFAULT_MOVE_TIME_MILLIS = 1000;
+
+    /* How long the engine has to answer uci at startup; how much longer than
+       the movetime it may take before it's sent stop; and how long after stop
+       it may take before the request fails. */
+    private static final long STARTUP_TIMEOUT_MILLIS = 10_000;
+    private static final long MOVE_TIMEOUT_SLACK_MILLIS = 1000;
+    private static final long STOP_GRACE_MILLIS = 1000;
+
+    /** The engine subprocess. */
+    private final Process engineProcess;
+
+    /** Writes commands to the engine's standard in. */
+    private final PrintStream toEngine;
+
+    /** Schedules the move timeouts. */
+    private final ScheduledExecutorService timeoutScheduler;
+
+    /** The movetime each move is requested with, in milliseconds. */
+    private final long moveTimeMillis;
+
+    /* Completed when the engine answers uci with uciok. */
+    private final CompletableFuture<Void> uciOk = new CompletableFuture<>();
+
+    /* The name the engine reported with id name, or its command if it
+       didn't report one. */
+    private volatile String engineName;
+
+    /* The outstanding move request, completed with the move string of the
+       engine's bestmove line. Guarded by synchronizing on this object. */
+    private CompletableFuture<String> pendingBestMove = null;
+
+    /* The number of bestmove lines still owed for requests that timed out.
+       The engine answers the stop those requests were sent with a bestmove
+       line, however late, and that line has to be discarded rather than
+       taken as the reply to the request after it. Guarded by synchronizing
+       on this object. */
+    private int staleBestMoveCount = 0;
+
+    /* The move statistics. */
+    private final AtomicLong moveCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /**
+     * Starts the engine and performs the UCI handshake.
+     *
+     * @param command           The command to start the engine with, and its
+     *                          arguments.
+     * @param moveTimeMillisVal The movetime to request each move with, in
+     *                          milliseconds.
+     * @throws IOException If the engine can't be started, or doesn't answer
+     *                     the handshake within 10 seconds.
+     */
+    public ExternalUciOpponent(final String[] command, final long moveTimeMillisVal) throws IOException {
+        moveTimeMillis = moveTimeMillisVal;
+        engineName = String.join(" ", command);
+        engineProcess = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        toEngine = new PrintStream(engineProcess.getOutputStream(), true, StandardCharsets.UTF_8);
+        timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "uci-opponent-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Thread readerThread = new Thread(this::readEngineOutput, "uci-opponent-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        send("uci");
+        try {
+            uciOk.get(STARTUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException exception) {
+            close();
+            throw new IOException("engine `" + engineName + "` didn't complete the UCI handshake", exception);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return engineName;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void newGame() {
+        send("ucinewgame");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletableFuture<Chessboard.Move> requestMove(final Chessboard chessboard, final int colorToMove,
+                                                          final int turnCount) {
+        int colorOnTop = chessboard.getColorOnTop();
+        int[][] boardArray = BoardArrays.copyBoardArray(chessboard.getBoardArray());
+        int castlingRights = chessboard.getCastlingRights();
+        String fen = Fen.toFen(boardArray, colorOnTop, colorToMove, castlingRights, 0, turnCount + 1);
+        CompletableFuture<String> bestMoveFuture = new CompletableFuture<>();
+        long requestStartNanos = System.nanoTime();
+
+        synchronized (this) {
+            pendingBestMove = bestMoveFuture;
+        }
+        send("position fen " + fen);
+        send("go movetime " + moveTimeMillis);
+
+        /* At the move timeout the engine is sent stop, which should make it
+           reply at once; if it still hasn't after the grace period, the
+           request fails, and the bestmove line the engine sends for it later
+           is discarded. */
+        timeoutScheduler.schedule(() -> {
+            if (bestMoveFuture.isDone()) {
+                return;
+            }
+            timeoutCount.incrementAndGet();
+            send("stop");
+            timeoutScheduler.schedule(() -> {
+                synchronized (this) {
+                    if (pendingBestMove != bestMoveFuture) {
+                        return;
+                    }
+                    pendingBestMove = null;
+                    staleBestMoveCount++;
+                }
+                bestMoveFuture.completeExceptionally(
+                    new TimeoutException("engine `" + engineName + "` didn't reply with a move"));
+            }, STOP_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        }, moveTimeMillis + MOVE_TIMEOUT_SLACK_MILLIS, TimeUnit.MILLISECONDS);
+
+        return bestMoveFuture.thenApply(bestMoveStr -> {
+            recordLatency(System.nanoTime() - requestStartNanos);
+            return longAlgNotnToMoveObj(bestMoveStr, boardArray, colorToMove, colorOnTop, castlingRights);
+        });
+    }
+
+    /**
+     * Accessor for the number of moves the engine has replied with.
+     *
+     * @return The count of moves.
+     */
+    public long getMoveCount() {
+        return moveCount.get();
+    }
+
+    /**
+     * Accessor for the number of moves the engine didn't reply to by the
+     * move timeout.
+     *
+     * @return The count of timeouts.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * Accessor for the mean time the engine took to reply with a move.
+     *
+     * @return The average latency in milliseconds, or 0 if no move has been
+     *         made yet.
+     */
+    public double getAverageMoveLatencyMillis() {
+        long moves = moveCount.get();
+        return moves == 0 ? 0D : totalLatencyNanos.get() / (moves * 1_000_000D);
+    }
+
+    /**
+     * Accessor for the longest time the engine took to reply with a move.
+     *
+     * @return The maximum latency in milliseconds.
+     */
+    public double getMaxMoveLatencyMillis() {
+        return maxLatencyNanos.get() / 1_000_000D;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        if (!engineProcess.isAlive()) {
+            return;
+        }
+        send("quit");
+        try {
+            if (!engineProcess.waitFor(1, TimeUnit.SECONDS)) {
+                engineProcess.destroy();
+            }
+        } catch (InterruptedException exception) {
+            engineProcess.destroy();
+            Thread.currentThread().interrupt();
+        }
+        timeoutScheduler.shutdownNow();
+        System.err.printf("%s: %d moves, average latency %.1f ms, max latency %.1f ms, %d timeouts%n", engineName,
+                          getMoveCount(), getAverageMoveLatencyMillis(), getMaxMoveLatencyMillis(),
+                          getTimeoutCount());
+    }
+
+    /*
+     * Runs on the reader thread: reads the engine's output line by line and
+     * completes the handshake and move futures. Lines it doesn't need, such
+     * as info lines, are ignored. If the engine exits, an outstanding move
+     * request fails.
+     */
+    private void readEngineOutput() {
+        BufferedReader fromEngine = new BufferedReader(new InputStreamReader(engineProcess.getInputStream(),
+                                                                             StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = fromEngine.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens[0].equals("uciok")) {
+                    uciOk.complete(null);
+                } else if (tokens[0].equals("id") && tokens.length > 2 && tokens[1].equals("name")) {
+                    engineName = line.trim().substring(line.trim().indexOf("name") + 5);
+                } else if (tokens[0].equals("bestmove") && tokens.length > 1) {
+                    CompletableFuture<String> bestMoveFuture;
+                    synchronized (this) {
+                        if (staleBestMoveCount > 0) {
+                            staleBestMoveCount--;
+                            bestMoveFuture = null;
+                        } else {
+                            bestMoveFuture = pendingBestMove;
+                            pendingBestMove = null;
+                        }
+                    }
+                    if (bestMoveFuture != null) {
+                        bestMoveFuture.complete(tokens[1]);
+                    }
+                }
+            }
+        } catch (IOException exception) {
+            assert true;
+        }
+
+        IOException exitException = new IOException("engine `" + engineName + "` exited");
+        uciOk.completeExceptionally(exitException);
+        synchronized (this) {
+            if (pendingBestMove != null) {
+                pendingBestMove.completeExceptionally(exitException);
+                pendingBestMove = null;
+            }
+        }
+    }
+
+    /*
+     * Adds a move's latency to the statistics.
+     *
+     * @param latencyNanos The time the engine took to reply, in nanoseconds.
+     */
+    private void recordLatency(final long latencyNanos) {
+        moveCount.incrementAndGet();
+        totalLatencyNanos.addAndGet(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    /*
+     * Converts the engine's move to a Chessboard.Move by matching it against
+     * the legal moves in the position.
+     *
+     * @param moveStr        The move in long algebraic notation.
+     * @param boardArray     A copy of the board the move was requested on.
+     * @param colorToMove    The color that's moving.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @param castlingRights The castling rights the position was sent with.
+     * @return               The matching Move object, or a Move with a null
+     *                       movingPiece if the engine reported no move.
+     * @throws IllegalStateException If the move isn't legal.
+     */
+    private Chessboard.Move longAlgNotnToMoveObj(final String moveStr, final int[][] boardArray,
+                                                 final int colorToMove, final int colorOnTop,
+                                                 final int castlingRights) throws IllegalStateException {
+        if (moveStr.equals("0000") || moveStr.equals("(none)")) {
+            return new Chessboard.Move(null, 0, 0, 0, 0, 0, false, false, 0);
+        }
+        int[][] movesArray = new int[128][7];
+        int movesCount = BoardArrays.generatePossibleMoves(boardArray, movesArray, colorToMove, colorOnTop);
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            int[] moveArray = movesArray[moveIdx];
+            if (BoardArrays.isCastlingAllowed(moveArray, castlingRights)
+                && BoardArrays.moveArrayToLongAlgNotn(moveArray, colorOnTop).equals(moveStr.toLowerCase())) {
+                return Chessboard.Move.fromMoveArray(moveArray);
+            }
+        }
+        throw new IllegalStateException("engine `" + engineName + "` played `" + moveStr + "`, which isn't a legal "
+                                        + "move in this position.");
+    }
+
+    /*
+     * Writes a command to the engine.
+     *
+     * @param command The command line.
+     */
+    private void send(final String command) {
+        toEngine.println(command);
+    }
+}
@@ -0,0 +1,412 @@
+package org.kmfahey.jchessgame;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation (FEN), the
+ * standard one-line position format used by test suites, position databases
+ * and the UCI protocol. A FEN has six space-separated fields: the piece
+ * placement, the side to move, the castling rights, the en passant target
+ * square, the halfmove clock and the fullmove number.
+ * <p>
+ * Parsing is a single pass over the characters, with no splitting and no
+ * intermediate strings; the only allocations are the Position record and,
+ * unless the caller supplies one to fill, the board array. Writing appends to
+ * a caller-supplied StringBuilder, so a stream of positions can be written
+ * through one buffer.
+ * <p>
+ * FEN lists the ranks from the 8th to the 1st. Boards are read and written
+ * for a given color on top: with black on top (the usual orientation, and the
+ * one every headless tool uses) the 8th rank is at y index 0; with white on
+ * top, as in the GUI when the player plays black, the board is flipped
+ * vertically. Knights on the a through d files are given the LEFT flag and
+ * knights on the e through h files the RIGHT flag, as in the starting layout.
+ *
+ * @see BoardArrays
+ */
+public final class Fen {
+
+    /* These statements copy the piece int constants from BoardArrays to this
+       class for convenience. */
+    private static final int BLACK = BoardArrays.BLACK;
+    private static final int WHITE = BoardArrays.WHITE;
+    private static final int KING = BoardArrays.KING;
+    private static final int QUEEN = BoardArrays.QUEEN;
+    private static final int BISHOP = BoardArrays.BISHOP;
+    private static final int KNIGHT = BoardArrays.KNIGHT;
+    private static final int ROOK = BoardArrays.ROOK;
+    private static final int PAWN = BoardArrays.PAWN;
+
+    /** The standard starting position. */
+    public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /**
+     * A position as described by a FEN.
+     *
+     * @param boardArray     The int[8][8] board.
+     * @param colorOnTop     The color playing from the top of the board, which
+     *                       the board array is laid out for.
+     * @param colorToMove    The color whose turn it is.
+     * @param castlingRights The castling rights, an or'd combination of the
+     *                       BoardArrays.CASTLING_* flags.
+     * @param enPassantFile  The file of the en passant target square, 0 for
+     *                       the a file through 7 for the h file, or -1 if
+     *                       there's none. It's retained so a FEN can be
+     *                       written back unchanged, but en passant captures
+     *                       aren't generated.
+     * @param halfmoveClock  The number of plies since the last capture or
+     *                       pawn move, for the fifty-move rule.
+     * @param fullmoveNumber The number of the current move, starting at 1 and
+     *                       incremented after black moves.
+     */
+    public record Position(int[][] boardArray, int colorOnTop, int colorToMove, int castlingRights,
+                           int enPassantFile, int halfmoveClock, int fullmoveNumber) {
+
+        /**
+         * Renders the position as a FEN.
+         *
+         * @return The position in Forsyth-Edwards Notation.
+         */
+        public String toFen() {
+            StringBuilder fenBuilder = new StringBuilder(90);
+            appendFen(fenBuilder, boardArray, colorOnTop, colorToMove, castlingRights, enPassantFile,
+                      halfmoveClock, fullmoveNumber);
+            return fenBuilder.toString();
+        }
+    }
+
+    private Fen() { }
+
+    /**
+     * Parses a FEN with black on top of the board.
+     *
+     * @param fen The position, in FEN.
+     * @return    A Position object with a new board array.
+     * @throws IllegalArgumentException If the FEN doesn't parse.
+     * @see #parse(CharSequence, int, int[][])
+     */
+    public static Position parse(final CharSequence fen) throws IllegalArgumentException {
+        return parse(fen, BLACK, new int[8][8]);
+    }
+
+    /**
+     * Parses a FEN into a board array supplied by the caller, so that many
+     * positions can be parsed without allocating a board for each. The
+     * placement and side to move are required; the castling rights and en
+     * passant fields default to "-" and the move counters to 0 and 1 if
+     * they're absent, as they are in EPD and in some hand-written FENs.
+     *
+     * @param fen        The position, in FEN.
+     * @param colorOnTop The color to lay the board out with on top.
+     * @param boardArray The int[8][8] array to fill; it's cleared first.
+     * @return           A Position object holding boardArray.
+     * @throws IllegalArgumentException If the placement doesn't have 8 ranks
+     *                                  of 8 squares, contains a character
+     *                                  that isn't a piece letter or digit,
+     *                                  lacks a king of either color, or any
+     *                                  other field is malformed.
+     */
+    public static Position parse(final CharSequence fen, final int colorOnTop, final int[][] boardArray)
+            throws IllegalArgumentException {
+        int fenLength = fen.length();
+        int charIdx = skipSpaces(fen, 0);
+        int rankIdx = 0;
+        int xIdx = 0;
+        int whiteKingsCount = 0;
+        int blackKingsCount = 0;
+
+        for (int clearXIdx = 0; clearXIdx < 8; clearXIdx++) {
+            for (int clearYIdx = 0; clearYIdx < 8; clearYIdx++) {
+                boardArray[clearXIdx][clearYIdx] = 0;
+            }
+        }
+
+        /* The piece placement field. */
+        for (; charIdx < fenLength && fen.charAt(charIdx) != ' '; charIdx++) {
+            char fenChar = fen.charAt(charIdx);
+            if (fenChar == '/') {
+                if (xIdx != 8 || ++rankIdx > 7) {
+                    throw malformed(fen, "the piece placement doesn't have 8 ranks of 8 squares");
+                }
+                xIdx = 0;
+                continue;
+            } else if (fenChar >= '1' && fenChar <= '8') {
+                xIdx += fenChar - '0';
+                if (xIdx > 8) {
+                    throw malformed(fen, "the piece placement doesn't have 8 ranks of 8 squares");
+                }
+                continue;
+            } else if (xIdx > 7) {
+                throw malformed(fen, "the piece placement doesn't have 8 ranks of 8 squares");
+            }
+            int pieceInt = pieceCharToPieceInt(fenChar, xIdx);
+            if (pieceInt == 0) {
+                throw malformed(fen, "the piece placement contains `" + fenChar + "`, which isn't a piece letter "
+                                     + "or a digit from 1 to 8");
+            } else if (pieceInt == (WHITE | KING)) {
+                whiteKingsCount++;
+            } else if (pieceInt == (BLACK | KING)) {
+                blackKingsCount++;
+            }
+            boardArray[xIdx][colorOnTop == WHITE ? 7 - rankIdx : rankIdx] = pieceInt;
+            xIdx++;
+        }
+        if (rankIdx != 7 || xIdx != 8) {
+            throw malformed(fen, "the piece placement doesn't have 8 ranks of 8 squares");
+        } else if (whiteKingsCount != 1 || blackKingsCount != 1) {
+            throw malformed(fen, "the piece placement doesn't have exactly one king of each color");
+        }
+
+        /* The side to move. */
+        charIdx = skipSpaces(fen, charIdx);
+        int colorToMove;
+        if (charIdx < fenLength && fen.charAt(charIdx) == 'w') {
+            colorToMove = WHITE;
+        } else if (charIdx < fenLength && fen.charAt(charIdx) == 'b') {
+            colorToMove = BLACK;
+        } else {
+            throw malformed(fen, "the side to move isn't `w` or `b`");
+        }
+        charIdx = expectFieldEnd(fen, charIdx + 1, "the side to move isn't `w` or `b`");
+
+        /* The castling rights. */
+        charIdx = skipSpaces(fen, charIdx);
+        int castlingRights = 0;
+        if (charIdx < fenLength && fen.charAt(charIdx) == '-') {
+            charIdx = expectFieldEnd(fen, charIdx + 1, "the castling rights don't parse");
+        } else {
+            for (; charIdx < fenLength && fen.charAt(charIdx) != ' '; charIdx++) {
+                castlingRights |= switch (fen.charAt(charIdx)) {
+                    case 'K' -> BoardArrays.CASTLING_WHITE_KINGSIDE;
+                    case 'Q' -> BoardArrays.CASTLING_WHITE_QUEENSIDE;
+                    case 'k' -> BoardArrays.CASTLING_BLACK_KINGSIDE;
+                    case 'q' -> BoardArrays.CASTLING_BLACK_QUEENSIDE;
+                    default -> throw malformed(fen, "the castling rights don't parse");
+                };
+            }
+        }
+
+        /* The en passant target square. */
+        charIdx = skipSpaces(fen, charIdx);
+        int enPassantFile = -1;
+        if (charIdx < fenLength && fen.charAt(charIdx) == '-') {
+            charIdx = expectFieldEnd(fen, charIdx + 1, "the en passant square doesn't parse");
+        } else if (charIdx + 1 < fenLength && fen.charAt(charIdx) >= 'a' && fen.charAt(charIdx) <= 'h'
+                   && (fen.charAt(charIdx + 1) == '3' || fen.charAt(charIdx + 1) == '6')) {
+            enPassantFile = fen.charAt(charIdx) - 'a';
+            charIdx = expectFieldEnd(fen, charIdx + 2, "the en passant square doesn't parse");
+        } else if (charIdx < fenLength) {
+            throw malformed(fen, "the en passant square doesn't parse");
+        }
+
+        /* The move counters. */
+        charIdx = skipSpaces(fen, charIdx);
+        int halfmoveClock = 0;
+        int fullmoveNumber = 1;
+        if (charIdx < fenLength) {
+            int fieldStartIdx = charIdx;
+            halfmoveClock = 0;
+            for (; charIdx < fenLength && fen.charAt(charIdx) != ' '; charIdx++) {
+                char digitChar = fen.charAt(charIdx);
+                if (digitChar < '0' || digitChar > '9' || charIdx - fieldStartIdx > 5) {
+                    throw malformed(fen, "the halfmove clock isn't a number");
+                }
+                halfmoveClock = halfmoveClock * 10 + digitChar - '0';
+            }
+            charIdx = skipSpaces(fen, charIdx);
+            if (charIdx < fenLength) {
+                fieldStartIdx = charIdx;
+                fullmoveNumber = 0;
+                for (; charIdx < fenLength && fen.charAt(charIdx) != ' '; charIdx++) {
+                    char digitChar = fen.charAt(charIdx);
+                    if (digitChar < '0' || digitChar > '9' || charIdx - fieldStartIdx > 5) {
+                        throw malformed(fen, "the fullmove number isn't a number");
+                    }
+                    fullmoveNumber = fullmoveNumber * 10 + digitChar - '0';
+                }
+                fullmoveNumber = Math.max(1, fullmoveNumber);
+            }
+        }
+        if (skipSpaces(fen, charIdx) < fenLength) {
+            throw malformed(fen, "it has more than 6 fields");
+        }
+
+        return new Position(boardArray, colorOnTop, colorToMove, castlingRights, enPassantFile, halfmoveClock,
+                            fullmoveNumber);
+    }
+
+    /**
+     * Renders a position as a FEN, with no en passant square.
+     *
+     * @param boardArray     The int[8][8] board.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @param colorToMove    The color whose turn it is.
+     * @param castlingRights The castling rights, an or'd combination of the
+     *                       BoardArrays.CASTLING_* flags.
+     * @param halfmoveClock  The number of plies since the last capture or
+     *                       pawn move.
+     * @param fullmoveNumber The fullmove number, starting at 1.
+     * @return               The position in Forsyth-Edwards Notation.
+     */
+    public static String toFen(final int[][] boardArray, final int colorOnTop, final int colorToMove,
+                               final int castlingRights, final int halfmoveClock, final int fullmoveNumber) {
+        StringBuilder fenBuilder = new StringBuilder(90);
+        appendFen(fenBuilder, boardArray, colorOnTop, colorToMove, castlingRights, -1, halfmoveClock,
+                  fullmoveNumber);
+        return fenBuilder.toString();
+    }
+
+    /**
+     * Appends a position, as a FEN, to a StringBuilder.
+     *
+     * @param fenBuilder     The StringBuilder to append to.
+     * @param boardArray     The int[8][8] board.
+     * @param colorOnTop     The color playing from the top of the board.
+     * @param colorToMove    The color whose turn it is.
+     * @param castlingRights The castling rights, an or'd combination of the
+     *                       BoardArrays.CASTLING_* flags.
+     * @param enPassantFile  The file of the en passant target square, or -1.
+     * @param halfmoveClock  The number of plies since the last capture or
+     *                       pawn move.
+     * @param fullmoveNumber The fullmove number, starting at 1.
+     */
+    public static void appendFen(final StringBuilder fenBuilder, final int[][] boardArray, final int colorOnTop,
+                                 final int colorToMove, final int castlingRights, final int enPassantFile,
+                                 final int halfmoveClock, final int fullmoveNumber) {
+        for (int rankIdx = 0; rankIdx < 8; rankIdx++) {
+            int yIdx = colorOnTop == WHITE ? 7 - rankIdx : rankIdx;
+            int emptySquares = 0;
+            if (rankIdx > 0) {
+                fenBuilder.append('/');
+            }
+            for (int xIdx = 0; xIdx < 8; xIdx++) {
+                int pieceInt = boardArray[xIdx][yIdx];
+                if (pieceInt == 0) {
+                    emptySquares++;
+                    continue;
+                }
+                if (emptySquares > 0) {
+                    fenBuilder.append((char) ('0' + emptySquares));
+                    emptySquares = 0;
+                }
+                fenBuilder.append(pieceIntToPieceChar(pieceInt));
+            }
+            if (emptySquares > 0) {
+                fenBuilder.append((char) ('0' + emptySquares));
+            }
+        }
+
+        fenBuilder.append(colorToMove == WHITE ? " w " : " b ");
+        if ((castlingRights & BoardArrays.CASTLING_ALL) == 0) {
+            fenBuilder.append('-');
+        } else {
+            if ((castlingRights & BoardArrays.CASTLING_WHITE_KINGSIDE) != 0) {
+                fenBuilder.append('K');
+            }
+            if ((castlingRights & BoardArrays.CASTLING_WHITE_QUEENSIDE) != 0) {
+                fenBuilder.append('Q');
+            }
+            if ((castlingRights & BoardArrays.CASTLING_BLACK_KINGSIDE) != 0) {
+                fenBuilder.append('k');
+            }
+            if ((castlingRights & BoardArrays.CASTLING_BLACK_QUEENSIDE) != 0) {
+                fenBuilder.append('q');
+            }
+        }
+        fenBuilder.append(' ');
+        if (enPassantFile < 0) {
+            fenBuilder.append('-');
+        } else {
+            fenBuilder.append((char) ('a' + enPassantFile)).append(colorToMove == WHITE ? '6' : '3');
+        }
+        fenBuilder.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+    }
+
+    /*
+     * Converts a FEN piece letter to a piece int.
+     *
+     * @param pieceChar The letter; uppercase for white, lowercase for black.
+     * @param xIdx      The x index of the piece's square, which decides a
+     *                  knight's chirality.
+     * @return          The piece int, or 0 if the letter isn't a piece.
+     */
+    private static int pieceCharToPieceInt(final char pieceChar, final int xIdx) {
+        int colorFlag = pieceChar >= 'a' ? BLACK : WHITE;
+        return switch (pieceChar) {
+            case 'K', 'k' -> colorFlag | KING;
+            case 'Q', 'q' -> colorFlag | QUEEN;
+            case 'R', 'r' -> colorFlag | ROOK;
+            case 'B', 'b' -> colorFlag | BISHOP;
+            case 'N', 'n' -> colorFlag | KNIGHT | (xIdx < 4 ? BoardArrays.LEFT : BoardArrays.RIGHT);
+            case 'P', 'p' -> colorFlag | PAWN;
+            default -> 0;
+        };
+    }
+
+    /*
+     * Converts a piece int to its FEN letter.
+     *
+     * @param pieceInt The piece int.
+     * @return         The letter; uppercase for white, lowercase for black.
+     */
+    private static char pieceIntToPieceChar(final int pieceInt) {
+        char pieceChar;
+        if ((pieceInt & KING) != 0) {
+            pieceChar = 'k';
+        } else if ((pieceInt & QUEEN) != 0) {
+            pieceChar = 'q';
+        } else if ((pieceInt & ROOK) != 0) {
+            pieceChar = 'r';
+        } else if ((pieceInt & BISHOP) != 0) {
+            pieceChar = 'b';
+        } else if ((pieceInt & KNIGHT) != 0) {
+            pieceChar = 'n';
+        } else {
+            pieceChar = 'p';
+        }
+        return (pieceInt & WHITE) != 0 ? Character.toUpperCase(pieceChar) : pieceChar;
+    }
+
+    /*
+     * Returns the index of the first character at or after charIdx that isn't
+     * a space or a tab.
+     *
+     * @param fen     The FEN.
+     * @param charIdx The index to start at.
+     * @return        The index of the next non-space character, or the FEN's
+     *                length.
+     */
+    private static int skipSpaces(final CharSequence fen, final int charIdx) {
+        int nextCharIdx = charIdx;
+        while (nextCharIdx < fen.length() && (fen.charAt(nextCharIdx) == ' ' || fen.charAt(nextCharIdx) == '\t')) {
+            nextCharIdx++;
+        }
+        return nextCharIdx;
+    }
+
+    /*
+     * Checks that a field ends at charIdx, at a space or the end of the FEN.
+     *
+     * @param fen     The FEN.
+     * @param charIdx The index just past the field's expected end.
+     * @param problem What's wrong with the field, if it doesn't end there.
+     * @return        charIdx.
+     * @throws IllegalArgumentException If the field continues.
+     */
+    private static int expectFieldEnd(final CharSequence fen, final int charIdx, final String problem)
+            throws IllegalArgumentException {
+        if (charIdx < fen.length() && fen.charAt(charIdx) != ' ' && fen.charAt(charIdx) != '\t') {
+            throw malformed(fen, problem);
+        }
+        return charIdx;
+    }
+
+    /*
+     * Builds the exception thrown for a FEN that doesn't parse.
+     *
+     * @param fen     The FEN.
+     * @param problem What's wrong with it.
+     * @return        An IllegalArgumentException object.
+     */
+    private static IllegalArgumentException malformed(final CharSequence fen, final String problem) {
+        return new IllegalArgumentException("FEN `" + fen + "` doesn't parse: " + problem + ".");
+    }
+}
@@ -0,0 +1,470 @@
+package org.kmfahey.jchessgame;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Replays the moves of a game, given in SAN, from its starting position,
+ * lazily: each move is resolved against the position when it's asked for,
+ * and the position is only advanced by next(). Between calls the accessors
+ * describe the position the next move is played from, so a caller can walk
+ * a game as its sequence of positions and moves:
+ * <pre>
+ *     GameReplay gameReplay = game.replay();
+ *     while (gameReplay.hasNext()) {
+ *         long key = gameReplay.getPositionKey();
+ *         int[] moveArray = gameReplay.next();
+ *     }
+ * </pre>
+ * SAN is resolved by parsing it and generating moves only for the pieces that
+ * could have made it, rather than by rendering every legal move in SAN and
+ * comparing strings, so a replay runs at move generation speed. Long
+ * algebraic moves ("g1f3") are accepted as well. En passant captures, which
+ * the move generator doesn't produce, are recognized here; see
+ * wasEnPassant().
+ * <p>
+ * A replay holds one board, which is updated in place, and an AttackMaps
+ * kept in step with it, which the move generator uses to test its candidate
+ * moves for check with lookups instead of tracing rays from the king. So it
+ * allocates nothing per move beyond the move array next() returns.
+ *
+ * @see PgnReader.Game#replay
+ */
+public final class GameReplay implements Iterator<int[]> {
+
+    /* Games are set up from FENs, which put white at the bottom. */
+    private static final int COLOR_ON_TOP = BoardArrays.BLACK;
+
+    /* These statements copy the piece int constants from BoardArrays to this
+       class for convenience. */
+    private static final int WHITE = BoardArrays.WHITE;
+    private static final int BLACK = BoardArrays.BLACK;
+    private static final int KING = BoardArrays.KING;
+    private static final int QUEEN = BoardArrays.QUEEN;
+    private static final int BISHOP = BoardArrays.BISHOP;
+    private static final int KNIGHT = BoardArrays.KNIGHT;
+    private static final int ROOK = BoardArrays.ROOK;
+    private static final int PAWN = BoardArrays.PAWN;
+    private static final int ANY_PIECE = KING | QUEEN | BISHOP | KNIGHT | ROOK | PAWN;
+
+    private final List<String> sanMoves;
+    private final int[][] boardArray;
+    private final AttackMaps attackMaps;
+    private final int[][] movesArray = new int[32][7];
+    private final int[] resolvedMoveArray = new int[7];
+    private int colorToMove;
+    private int castlingRights;
+    private int enPassantFile;
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    private int plyIdx = 0;
+
+    /* The ply whose move is in resolvedMoveArray, or -1; whether it's an en
+       passant capture; and whether the last move played was one. */
+    private int resolvedPlyIdx = -1;
+    private boolean isResolvedEnPassant = false;
+    private boolean wasLastMoveEnPassant = false;
+
+    /* The move that couldn't be resolved, if the replay stopped at one. */
+    private String unresolvedSan = null;
+
+    /**
+     * Instances a GameReplay.
+     *
+     * @param startingFen The position the game starts from.
+     * @param sanMovesVal The moves, in SAN.
+     * @throws IllegalArgumentException If the FEN doesn't parse.
+     */
+    public GameReplay(final String startingFen, final List<String> sanMovesVal) throws IllegalArgumentException {
+        Fen.Position position = Fen.parse(startingFen);
+        sanMoves = sanMovesVal;
+        boardArray = position.boardArray();
+        attackMaps = new AttackMaps(boardArray, COLOR_ON_TOP);
+        colorToMove = position.colorToMove();
+        castlingRights = position.castlingRights();
+        enPassantFile = position.enPassantFile();
+        halfmoveClock = position.halfmoveClock();
+        fullmoveNumber = position.fullmoveNumber();
+    }
+
+    /**
+     * Tests whether there's another move, resolving it if it hasn't been.
+     *
+     * @return True if there's a next move and it's legal in the current
+     *         position, false at the end of the game or if it isn't (in
+     *         which case getUnresolvedSan() returns it).
+     */
+    @Override
+    public boolean hasNext() {
+        if (resolvedPlyIdx == plyIdx) {
+            return true;
+        } else if (plyIdx >= sanMoves.size() || unresolvedSan != null) {
+            return false;
+        }
+        String san = sanMoves.get(plyIdx);
+        if (!resolveSan(san)) {
+            unresolvedSan = san;
+            return false;
+        }
+        resolvedPlyIdx = plyIdx;
+        return true;
+    }
+
+    /**
+     * Plays the next move, advancing the position past it.
+     *
+     * @return The move, an int[7] move array as the move generator makes
+     *         them. It's a copy, so the caller may keep it.
+     * @throws NoSuchElementException If hasNext() would return false.
+     */
+    @Override
+    public int[] next() throws NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("no legal move at ply " + plyIdx
+                                             + (unresolvedSan != null ? ": `" + unresolvedSan + "`" : ""));
+        }
+        int[] moveArray = resolvedMoveArray.clone();
+        boolean resetsClock = (moveArray[0] & PAWN) != 0
+                              || (moveArray[5] != 0 && !BoardArrays.isCastlingMove(moveArray));
+
+        attackMaps.makeMove(boardArray, moveArray);
+        if (isResolvedEnPassant) {
+            /* The attack maps don't know about the captured pawn, so they're
+               recomputed; en passant is rare enough for that to be cheap. */
+            boardArray[moveArray[3]][moveArray[2]] = 0;
+            attackMaps.recompute(boardArray);
+        }
+        wasLastMoveEnPassant = isResolvedEnPassant;
+        castlingRights = BoardArrays.updateCastlingRights(castlingRights, moveArray, COLOR_ON_TOP);
+        boolean isDoublePawnMove = (moveArray[0] & PAWN) != 0 && Math.abs(moveArray[4] - moveArray[2]) == 2;
+        enPassantFile = isDoublePawnMove ? moveArray[3] : -1;
+        halfmoveClock = resetsClock ? 0 : halfmoveClock + 1;
+        if (colorToMove == BLACK) {
+            fullmoveNumber++;
+        }
+        colorToMove = colorToMove == WHITE ? BLACK : WHITE;
+        plyIdx++;
+
+        return moveArray;
+    }
+
+    /**
+     * Accessor for the board. It's updated in place as moves are played, and
+     * must not be modified by the caller.
+     *
+     * @return The int[8][8] board, with black on top.
+     */
+    public int[][] getBoardArray() {
+        return boardArray;
+    }
+
+    /**
+     * Accessor for the side to move.
+     *
+     * @return BoardArrays.WHITE or BoardArrays.BLACK.
+     */
+    public int getColorToMove() {
+        return colorToMove;
+    }
+
+    /**
+     * Accessor for the castling rights.
+     *
+     * @return An or'd combination of the BoardArrays.CASTLING_* flags.
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Accessor for the file of a pawn that just moved two squares.
+     *
+     * @return The file, 0 to 7 for a to h, or -1.
+     */
+    public int getEnPassantFile() {
+        return enPassantFile;
+    }
+
+    /**
+     * Accessor for the number of moves played so far.
+     *
+     * @return The ply index of the next move, counting from 0.
+     */
+    public int getPlyIdx() {
+        return plyIdx;
+    }
+
+    /**
+     * Computes the Zobrist key of the current position.
+     *
+     * @return The key.
+     * @see Zobrist#key
+     */
+    public long getPositionKey() {
+        return Zobrist.key(boardArray, COLOR_ON_TOP, colorToMove, castlingRights, enPassantFile);
+    }
+
+    /**
+     * Renders the current position as a FEN.
+     *
+     * @return The position in Forsyth-Edwards Notation.
+     */
+    public String toFen() {
+        StringBuilder fenBuilder = new StringBuilder(90);
+        Fen.appendFen(fenBuilder, boardArray, COLOR_ON_TOP, colorToMove, castlingRights, enPassantFile,
+                      halfmoveClock, fullmoveNumber);
+        return fenBuilder.toString();
+    }
+
+    /**
+     * Tests whether the last move played was an en passant capture. Its move
+     * array looks like a pawn's diagonal move to an empty square, so the
+     * captured pawn, beside the from square, isn't removed by makeMove().
+     *
+     * @return True if it was, false otherwise.
+     */
+    public boolean wasEnPassant() {
+        return wasLastMoveEnPassant;
+    }
+
+    /**
+     * Accessor for the move the replay stopped at, if it stopped short of the
+     * end of the game because a move wasn't legal or didn't parse.
+     *
+     * @return The move as written, or null.
+     */
+    public String getUnresolvedSan() {
+        return unresolvedSan;
+    }
+
+    /*
+     * Resolves a move in SAN or long algebraic notation to the legal move it
+     * denotes, which is copied to resolvedMoveArray.
+     *
+     * @param san The move.
+     * @return    True if exactly one legal move matches, false otherwise.
+     */
+    private boolean resolveSan(final String san) {
+        int sanLength = san.length();
+        while (sanLength > 0 && "+#!?".indexOf(san.charAt(sanLength - 1)) >= 0) {
+            sanLength--;
+        }
+        if (sanLength < 2) {
+            return false;
+        }
+        isResolvedEnPassant = false;
+
+        if (san.startsWith("O-O") || san.startsWith("0-0")) {
+            return resolveCastling(sanLength >= 5 ? 0 : 7);
+        }
+
+        /* The promotion piece, if any, is after an = or is the last letter. */
+        int promotionType = 0;
+        char lastChar = san.charAt(sanLength - 1);
+        if ("QRBNqrbn".indexOf(lastChar) >= 0 && sanLength > 2) {
+            promotionType = pieceTypeOf(Character.toUpperCase(lastChar));
+            sanLength--;
+            if (san.charAt(sanLength - 1) == '=') {
+                sanLength--;
+            }
+        }
+        if (sanLength < 2) {
+            return false;
+        }
+
+        int toXIdx = san.charAt(sanLength - 2) - 'a';
+        int toYIdx = '8' - san.charAt(sanLength - 1);
+        if (toXIdx < 0 || toXIdx > 7 || toYIdx < 0 || toYIdx > 7) {
+            return false;
+        }
+
+        int charIdx = 0;
+        int pieceType = PAWN;
+        if ("KQRBN".indexOf(san.charAt(0)) >= 0) {
+            pieceType = pieceTypeOf(san.charAt(0));
+            charIdx = 1;
+        }
+        int fromXIdx = -1;
+        int fromYIdx = -1;
+        for (; charIdx < sanLength - 2; charIdx++) {
+            char sanChar = san.charAt(charIdx);
+            if (sanChar >= 'a' && sanChar <= 'h') {
+                fromXIdx = sanChar - 'a';
+            } else if (sanChar >= '1' && sanChar <= '8') {
+                fromYIdx = '8' - sanChar;
+            } else if (sanChar != 'x' && sanChar != '-' && sanChar != ':') {
+                return false;
+            }
+        }
+
+        /* In long algebraic notation the from square is given in full and
+           the piece isn't. A pawn move that doesn't give its file is a push
+           along the destination's file. */
+        if (pieceType == PAWN && fromXIdx >= 0 && fromYIdx >= 0) {
+            pieceType = ANY_PIECE;
+        } else if (pieceType == PAWN && fromXIdx < 0) {
+            fromXIdx = toXIdx;
+        }
+
+        int matchesCount = 0;
+        for (int xIdx = fromXIdx < 0 ? 0 : fromXIdx; xIdx <= (fromXIdx < 0 ? 7 : fromXIdx); xIdx++) {
+            for (int yIdx = fromYIdx < 0 ? 0 : fromYIdx; yIdx <= (fromYIdx < 0 ? 7 : fromYIdx); yIdx++) {
+                int pieceInt = boardArray[xIdx][yIdx];
+                if ((pieceInt & colorToMove) == 0 || (pieceInt & pieceType) == 0) {
+                    continue;
+                }
+                matchesCount += matchPieceMoves(xIdx, yIdx, toXIdx, toYIdx, promotionType);
+                if (matchesCount > 1) {
+                    return false;
+                }
+            }
+        }
+        if (matchesCount == 0 && pieceType == PAWN) {
+            return resolveEnPassant(fromXIdx, toXIdx, toYIdx);
+        }
+
+        return matchesCount == 1;
+    }
+
+    /*
+     * Generates the moves of one piece and copies any that go to a square
+     * (with a promotion, if one is given) to resolvedMoveArray. A castling
+     * move matches if the square is the king's castling destination.
+     *
+     * @param xIdx          The piece's x coordinate.
+     * @param yIdx          The piece's y coordinate.
+     * @param toXIdx        The destination's x coordinate.
+     * @param toYIdx        The destination's y coordinate.
+     * @param promotionType The piece type promoted to, or 0.
+     * @return              The number of moves that matched.
+     */
+    private int matchPieceMoves(final int xIdx, final int yIdx, final int toXIdx, final int toYIdx,
+                                final int promotionType) {
+        int movesCount = BoardArrays.generatePieceMoves(boardArray, movesArray, 0, xIdx, yIdx, colorToMove,
+                                                        COLOR_ON_TOP, attackMaps);
+        int matchesCount = 0;
+
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            int[] moveArray = movesArray[moveIdx];
+            boolean isCastling = BoardArrays.isCastlingMove(moveArray);
+            boolean isMatch;
+            if (isCastling) {
+                int kingToXIdx = moveArray[3] == 7 ? 6 : 2;
+                isMatch = toYIdx == moveArray[4] && (toXIdx == moveArray[3] || toXIdx == kingToXIdx)
+                          && BoardArrays.isCastlingAllowed(moveArray, castlingRights);
+            } else {
+                isMatch = moveArray[3] == toXIdx && moveArray[4] == toYIdx
+                          && (promotionType == 0 ? moveArray[6] == 0 : (moveArray[6] & promotionType) != 0);
+            }
+            if (isMatch) {
+                System.arraycopy(moveArray, 0, resolvedMoveArray, 0, 7);
+                matchesCount++;
+            }
+        }
+        clearMovesArray(movesCount);
+
+        return matchesCount;
+    }
+
+    /*
+     * Resolves a castling move.
+     *
+     * @param rookXIdx The x coordinate of the castling rook: 7 for kingside,
+     *                 0 for queenside.
+     * @return         True if castling that way is legal, false otherwise.
+     */
+    private boolean resolveCastling(final int rookXIdx) {
+        int backRankYIdx = colorToMove == WHITE ? 7 : 0;
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            if (boardArray[xIdx][backRankYIdx] != (colorToMove | KING)) {
+                continue;
+            }
+            int movesCount = BoardArrays.generatePieceMoves(boardArray, movesArray, 0, xIdx, backRankYIdx,
+                                                            colorToMove, COLOR_ON_TOP, attackMaps);
+            boolean isFound = false;
+            for (int moveIdx = 0; moveIdx < movesCount && !isFound; moveIdx++) {
+                if (BoardArrays.isCastlingMove(movesArray[moveIdx]) && movesArray[moveIdx][3] == rookXIdx
+                    && BoardArrays.isCastlingAllowed(movesArray[moveIdx], castlingRights)) {
+                    System.arraycopy(movesArray[moveIdx], 0, resolvedMoveArray, 0, 7);
+                    isFound = true;
+                }
+            }
+            clearMovesArray(movesCount);
+            return isFound;
+        }
+        return false;
+    }
+
+    /*
+     * Resolves a pawn capture onto an empty square as an en passant capture,
+     * if the last move was a two-square pawn move past that square and the
+     * capture doesn't leave the king in check.
+     *
+     * @param fromXIdx The capturing pawn's file.
+     * @param toXIdx   The destination's x coordinate.
+     * @param toYIdx   The destination's y coordinate.
+     * @return         True if it's a legal en passant capture, false
+     *                 otherwise.
+     */
+    private boolean resolveEnPassant(final int fromXIdx, final int toXIdx, final int toYIdx) {
+        int fromYIdx = colorToMove == WHITE ? 3 : 4;
+        int pawnInt = colorToMove | PAWN;
+        int capturedPawnInt = (colorToMove == WHITE ? BLACK : WHITE) | PAWN;
+        if (toXIdx != enPassantFile || Math.abs(toXIdx - fromXIdx) != 1
+            || toYIdx != (colorToMove == WHITE ? 2 : 5) || boardArray[toXIdx][toYIdx] != 0
+            || boardArray[fromXIdx][fromYIdx] != pawnInt || boardArray[toXIdx][fromYIdx] != capturedPawnInt) {
+            return false;
+        }
+
+        boardArray[fromXIdx][fromYIdx] = 0;
+        boardArray[toXIdx][fromYIdx] = 0;
+        boardArray[toXIdx][toYIdx] = pawnInt;
+        boolean isKingInCheck = BoardArrays.isKingInCheck(boardArray, colorToMove, COLOR_ON_TOP);
+        boardArray[toXIdx][toYIdx] = 0;
+        boardArray[toXIdx][fromYIdx] = capturedPawnInt;
+        boardArray[fromXIdx][fromYIdx] = pawnInt;
+        if (isKingInCheck) {
+            return false;
+        }
+
+        resolvedMoveArray[0] = pawnInt;
+        resolvedMoveArray[1] = fromXIdx;
+        resolvedMoveArray[2] = fromYIdx;
+        resolvedMoveArray[3] = toXIdx;
+        resolvedMoveArray[4] = toYIdx;
+        resolvedMoveArray[5] = 0;
+        resolvedMoveArray[6] = 0;
+        isResolvedEnPassant = true;
+        return true;
+    }
+
+    /*
+     * Converts a SAN piece letter to a piece type flag.
+     *
+     * @param pieceChar The letter: K, Q, R, B or N.
+     * @return          The BoardArrays piece type flag.
+     */
+    private static int pieceTypeOf(final char pieceChar) {
+        return switch (pieceChar) {
+            case 'K' -> KING;
+            case 'Q' -> QUEEN;
+            case 'R' -> ROOK;
+            case 'B' -> BISHOP;
+            default -> KNIGHT;
+        };
+    }
+
+    /*
+     * Zeroes the moves of movesArray that were filled in, as the move
+     * generator expects.
+     *
+     * @param movesCount The number of moves filled in.
+     */
+    private void clearMovesArray(final int movesCount) {
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            Arrays.fill(movesArray[moveIdx], 0);
+        }
+    }
+}
@@ -13,7 +13,9 @@ import javax.swing.JPanel;
 import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
 import javax.swing.Timer;
+import javax.management.JMException;
 import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * The frontend of the program, a JFrame subclass that presents as the GUI to
@@ -25,9 +27,13 @@ import java.io.IOException;
  * attempted.
  * <p>
  * The opposing AI is implemented using the minimax algorithm with the
- * alpha/beta pruning optimization. The user has the option to play either color
- * (with White always going first), and once a game is over the board can be
- * reset and another game run (with a fresh color choice) if the player wishes.
+ * alpha/beta pruning optimization; alternatively, an external UCI engine can
+ * be played against by passing its command with --engine. A game can start
+ * from the opening position, from a board CSV file, or from a position given
+ * in Forsyth-Edwards Notation with --fen. The user has the
+ * option to play either color (with White always going first), and once a
+ * game is over the board can be reset and another game run (with a fresh color
+ * choice) if the player wishes.
  */
 public class JChessGame extends JFrame implements ActionListener {
 
@@ -62,6 +68,30 @@ public class JChessGame extends JFrame implements ActionListener {
     /** Filename argument that was passed on the commandline, if any. */
     private String fileName = null;
 
+    /** Start position given on the commandline in Forsyth-Edwards Notation,
+        if any. */
+    private String fen = null;
+
+    /** Command of the external UCI engine to play against, or null to play
+        against the built-in minimax AI. */
+    private String[] engineCommand = null;
+
+    /** Movetime, in milliseconds, the external engine is given per move. */
+    private long engineMoveTimeMillis = ExternalUciOpponent.DEFAULT_MOVE_TIME_MILLIS;
+
+    /** Opening book the built-in AI plays from, or null if it has none. */
+    private PolyglotBook openingBook = null;
+
+    /** Endgame tables the built-in AI plays from, or null if it has none. */
+    private Bitbase bitbase = null;
+
+    /** Store of earlier searches the built-in AI consults and adds to, or
+        null if it has none. */
+    private AnalysisStore analysisStore = null;
+
+    /** Piece-square tables the built-in AI evaluates with. */
+    private EvaluationWeights evaluationWeights = EvaluationWeights.DEFAULT;
+
     /** Timer used to repeatedly prompt actionPerformed() to run until the
         color choice popup has returned and actionPerformed is able to run. */
     private Timer colorChoicePopupDelayTimer;
@@ -118,7 +148,151 @@ public class JChessGame extends JFrame implements ActionListener {
      * @see #setColorPlaying
      */
     public JChessGame(final String fileNameStr) throws IOException {
+        this(fileNameStr, null, null, ExternalUciOpponent.DEFAULT_MOVE_TIME_MILLIS);
+    }
+
+    /**
+     * Initializes the JChessGame object partway, as JChessGame(String) does,
+     * optionally starting from a FEN position and with the side the player
+     * plays against driven by an external UCI engine.
+     *
+     * @param fileNameStr        The filename of a board.csv file to load, or
+     *                           null to start from the standard opening
+     *                           position.
+     * @param fenStr             A position in Forsyth-Edwards Notation to
+     *                           start every game from, or null. If it's given
+     *                           it takes the place of the board file, and
+     *                           the AI moves first if it's the side to move.
+     * @param engineCommandArr   The command and arguments that start the UCI
+     *                           engine, or null to play against the built-in
+     *                           minimax AI.
+     * @param engineMoveTimeVal  The movetime, in milliseconds, the engine is
+     *                           given per move.
+     * @throws IOException If a board CSV file was given but an I/O error
+     *                     occurs reading from it.
+     * @throws IllegalArgumentException If the FEN doesn't parse.
+     * @see ExternalUciOpponent
+     * @see Fen
+     */
+    public JChessGame(final String fileNameStr, final String fenStr, final String[] engineCommandArr,
+                      final long engineMoveTimeVal) throws IOException, IllegalArgumentException {
+        this(fileNameStr, fenStr, engineCommandArr, engineMoveTimeVal, null);
+    }
+
+    /**
+     * Initializes the JChessGame object partway, as
+     * JChessGame(String, String, String[], long) does, with an opening book
+     * for the built-in AI to play from.
+     *
+     * @param fileNameStr        The filename of a board.csv file to load, or
+     *                           null to start from the standard opening
+     *                           position.
+     * @param fenStr             A position in Forsyth-Edwards Notation to
+     *                           start every game from, or null.
+     * @param engineCommandArr   The command and arguments that start the UCI
+     *                           engine, or null to play against the built-in
+     *                           minimax AI.
+     * @param engineMoveTimeVal  The movetime, in milliseconds, the engine is
+     *                           given per move.
+     * @param openingBookObj     The opening book the built-in AI plays from
+     *                           while the game is in it, or null.
+     * @throws IOException If a board CSV file was given but an I/O error
+     *                     occurs reading from it.
+     * @throws IllegalArgumentException If the FEN doesn't parse.
+     * @see PolyglotBook
+     */
+    public JChessGame(final String fileNameStr, final String fenStr, final String[] engineCommandArr,
+                      final long engineMoveTimeVal, final PolyglotBook openingBookObj)
+            throws IOException, IllegalArgumentException {
+        this(fileNameStr, fenStr, engineCommandArr, engineMoveTimeVal, openingBookObj, null, null);
+    }
+
+    /**
+     * Initializes the JChessGame object partway, as
+     * JChessGame(String, String, String[], long, PolyglotBook) does, with
+     * endgame tables for the built-in AI to play from and a store of its
+     * earlier searches as well.
+     *
+     * @param fileNameStr        The filename of a board.csv file to load, or
+     *                           null to start from the standard opening
+     *                           position.
+     * @param fenStr             A position in Forsyth-Edwards Notation to
+     *                           start every game from, or null.
+     * @param engineCommandArr   The command and arguments that start the UCI
+     *                           engine, or null to play against the built-in
+     *                           minimax AI.
+     * @param engineMoveTimeVal  The movetime, in milliseconds, the engine is
+     *                           given per move.
+     * @param openingBookObj     The opening book the built-in AI plays from
+     *                           while the game is in it, or null.
+     * @param bitbaseObj         The endgame tables the built-in AI plays from
+     *                           once the game reaches them, or null.
+     * @param analysisStoreObj   The store of earlier searches the built-in
+     *                           AI consults and adds to, or null.
+     * @throws IOException If a board CSV file was given but an I/O error
+     *                     occurs reading from it.
+     * @throws IllegalArgumentException If the FEN doesn't parse.
+     * @see Bitbase
+     * @see AnalysisStore
+     */
+    public JChessGame(final String fileNameStr, final String fenStr, final String[] engineCommandArr,
+                      final long engineMoveTimeVal, final PolyglotBook openingBookObj, final Bitbase bitbaseObj,
+                      final AnalysisStore analysisStoreObj) throws IOException, IllegalArgumentException {
+        this(fileNameStr, fenStr, engineCommandArr, engineMoveTimeVal, openingBookObj, bitbaseObj, analysisStoreObj,
+             null);
+    }
+
+    /**
+     * Initializes the JChessGame object partway, as
+     * JChessGame(String, String, String[], long, PolyglotBook, Bitbase,
+     * AnalysisStore) does, with the piece-square tables the built-in AI
+     * evaluates positions with as well.
+     *
+     * @param fileNameStr          The filename of a board.csv file to load,
+     *                             or null to start from the standard opening
+     *                             position.
+     * @param fenStr               A position in Forsyth-Edwards Notation to
+     *                             start every game from, or null.
+     * @param engineCommandArr     The command and arguments that start the
+     *                             UCI engine, or null to play against the
+     *                             built-in minimax AI.
+     * @param engineMoveTimeVal    The movetime, in milliseconds, the engine
+     *                             is given per move.
+     * @param openingBookObj       The opening book the built-in AI plays
+     *                             from while the game is in it, or null.
+     * @param bitbaseObj           The endgame tables the built-in AI plays
+     *                             from once the game reaches them, or null.
+     * @param analysisStoreObj     The store of earlier searches the built-in
+     *                             AI consults and adds to, or null.
+     * @param evaluationWeightsObj The piece-square tables the built-in AI
+     *                             evaluates with, or null for the built-in
+     *                             ones.
+     * @throws IOException If a board CSV file was given but an I/O error
+     *                     occurs reading from it.
+     * @throws IllegalArgumentException If the FEN doesn't parse.
+     * @see EvaluationWeights
+     */
+    public JChessGame(final String fileNameStr, final String fenStr, final String[] engineCommandArr,
+                      final long engineMoveTimeVal, final PolyglotBook openingBookObj, final Bitbase bitbaseObj,
+                      final AnalysisStore analysisStoreObj, final EvaluationWeights evaluationWeightsObj)
+            throws IOException, IllegalArgumentException {
         super("Chess Game");
+        openingBook = openingBookObj;
+        bitbase = bitbaseObj;
+        analysisStore = analysisStoreObj;
+        if (Objects.nonNull(evaluationWeightsObj)) {
+            evaluationWeights = evaluationWeightsObj;
+        }
+
+        /* The FEN is parsed once here so that a malformed one is reported
+           before any window is shown; it's parsed again for each game, since
+           the board's layout depends on the color the player chooses. */
+        if (Objects.nonNull(fenStr)) {
+            Fen.parse(fenStr);
+            fen = fenStr;
+        }
+        engineCommand = engineCommandArr;
+        engineMoveTimeMillis = engineMoveTimeVal;
 
         Dimension windowDims;
         float scalingProportion;
@@ -179,9 +353,9 @@ public class JChessGame extends JFrame implements ActionListener {
         coordinatesManager = new CoordinatesManager(scalingProportion);
 
         /*
-         * The ImagesManager object is instanced. Chessboard uses this to
-         * retrieve piece icons that BoardView will use to display the board's
-         * pieces with Graphics.drawImage().
+         * The ImagesManager object is instanced. BoardView uses this to
+         * retrieve the piece icons it displays the board's pieces with using
+         * Graphics.drawImage().
          */
         imagesManager = new ImagesManager("./images/", coordinatesManager.getSquareDimensions());
 
@@ -264,7 +438,27 @@ public class JChessGame extends JFrame implements ActionListener {
 
         colorChoicePopupDelayTimer.stop();
 
-        if (Objects.nonNull(fileName)) {
+        int colorToMove = BoardArrays.WHITE;
+        int startingTurnCount = 0;
+
+        if (Objects.nonNull(fen)) {
+            /*
+             * If a FEN was given on the commandline, every game starts from
+             * that position. The board is laid out for the color on top, and
+             * the FEN's castling rights replace those the Chessboard would
+             * infer from the placement of the kings and rooks.
+             */
+            Fen.Position fenPosition = Fen.parse(fen, colorOnTop, new int[8][8]);
+            colorToMove = fenPosition.colorToMove();
+            startingTurnCount = fenPosition.fullmoveNumber() - 1;
+            if (Objects.nonNull(chessboard)) {
+                chessboard.setColors(colorPlaying, colorOnTop);
+                chessboard.setBoardArray(fenPosition.boardArray());
+            } else {
+                chessboard = new Chessboard(fenPosition.boardArray(), colorPlaying, colorOnTop);
+            }
+            chessboard.setCastlingRights(fenPosition.castlingRights());
+        } else if (Objects.nonNull(fileName)) {
             /*
              * If the fileName string is set, then the constructor was passed
              * a filename as an argument. The expected file is a CSV file
@@ -310,7 +504,7 @@ public class JChessGame extends JFrame implements ActionListener {
                  * Otherwise this is a first run, so a new Chessboard object is
                  * instanced, with the imported boardArray as its 1st argument.
                  */
-                chessboard = new Chessboard(boardArray, imagesManager, colorPlaying, colorOnTop);
+                chessboard = new Chessboard(boardArray, colorPlaying, colorOnTop);
             }
         } else {
             if (Objects.nonNull(chessboard)) {
@@ -328,7 +522,7 @@ public class JChessGame extends JFrame implements ActionListener {
                  * Otherwise this is a first run, so a new Chessboard object is
                  * instanced.
                  */
-                chessboard = new Chessboard(imagesManager, colorPlaying, colorOnTop);
+                chessboard = new Chessboard(colorPlaying, colorOnTop);
             }
         }
 
@@ -370,15 +564,9 @@ public class JChessGame extends JFrame implements ActionListener {
         if (Objects.nonNull(boardView)) {
             /*
              * If the BoardView object is non-null, then this is a subsequent
-             * game. All it needs to know is whether the AI moves first (i.e. is
-             * playing White) or not.
+             * game, and it only needs the new colors.
              */
             boardView.setColors(colorPlaying, colorOnTop);
-            if (colorPlaying == BoardArrays.BLACK) {
-                boardView.aiMovesFirst();
-            } else {
-                boardView.repaint();
-            }
         } else {
             /*
              * Otherwise this is a first game, so GridBagConstraints are
@@ -393,11 +581,24 @@ public class JChessGame extends JFrame implements ActionListener {
             boardConstraints.gridwidth = 1;
             boardConstraints.insets = new Insets(20, 20, 20, 20);
 
-            boardView = new BoardView(this, coordinatesManager, chessboard, movesLog, colorPlaying);
+            boardView = new BoardView(this, coordinatesManager, imagesManager, chessboard, movesLog, colorPlaying,
+                                      createOpponent());
             gamePanel.add(boardView, boardConstraints);
             boardView.addMouseListener(boardView);
         }
 
+        /*
+         * Either way, BoardView needs to know the turn the game starts on and
+         * whether the AI moves first: when it's playing White from the
+         * opening, or it's the side to move in the FEN position.
+         */
+        boardView.setStartingTurn(startingTurnCount, colorToMove);
+        if (colorToMove != colorPlaying) {
+            boardView.aiMovesFirst();
+        } else {
+            boardView.repaint();
+        }
+
         validate();
         pack();
 
@@ -405,12 +606,58 @@ public class JChessGame extends JFrame implements ActionListener {
         setVisible(true);
     }
 
+    /* Instances the Opponent the player plays against: an ExternalUciOpponent
+       if an engine command was given on the commandline, otherwise a
+       MinimaxOpponent over this game's chessboard. If the engine can't be
+       started, the user is told and the built-in AI is used instead. */
+    private Opponent createOpponent() {
+        int colorOfAI = (colorPlaying == BoardArrays.WHITE) ? BoardArrays.BLACK : BoardArrays.WHITE;
+
+        if (Objects.nonNull(engineCommand)) {
+            try {
+                return new ExternalUciOpponent(engineCommand, engineMoveTimeMillis);
+            } catch (IOException exception) {
+                JOptionPane.showMessageDialog(this, "Couldn't start the UCI engine `" + String.join(" ", engineCommand)
+                                                    + "`:\n" + exception.getMessage()
+                                                    + "\nPlaying against the built-in AI instead.");
+            }
+        }
+
+        MinimaxRunner minimaxRunner = new MinimaxRunner(chessboard, colorOfAI);
+        minimaxRunner.setOpeningBook(openingBook);
+        minimaxRunner.setBitbase(bitbase);
+        minimaxRunner.setAnalysisStore(analysisStore);
+        minimaxRunner.setEvaluationWeights(evaluationWeights);
+
+        /* The runner is registered with the platform MBean server so its
+           counters and tunables can be watched and changed from a JMX console
+           while the game is running. A failure here doesn't affect play. */
+        try {
+            minimaxRunner.registerMBean("BoardView");
+        } catch (JMException exception) {
+            exception.printStackTrace();
+        }
+
+        return new MinimaxOpponent(minimaxRunner);
+    }
+
     /**
-     * Main method, which instantiates an object of this class. If an argument
-     * is passed on the commandline, it's assumed to be a filename and used as
-     * an argument to this class's constructor.
+     * Main method, which instantiates an object of this class. A filename
+     * argument, if given, is used to prime the board; alternatively,
+     * --fen "&lt;FEN&gt;" starts the game from a position in Forsyth-Edwards
+     * Notation. The options --engine "&lt;command&gt;" and
+     * --engine-movetime &lt;ms&gt; set an external UCI engine to play
+     * against, and the time it's given per move. The option
+     * --book &lt;file&gt; gives the built-in AI a Polyglot opening book,
+     * --bitbases &lt;dir&gt; gives it the endgame tables in a directory, and
+     * --analysis-store &lt;file&gt; has it keep its search results in a file,
+     * created if need be, to consult in later games. The option
+     * --weights &lt;file&gt; has it evaluate with the piece-square tables in
+     * a file EvaluationWeights wrote, instead of the built-in ones.
      *
-     * @param args Either a 0-length array, or a 1-length array comprised of a
+     * @param args The commandline arguments: optionally --fen, --engine,
+     *             --engine-movetime, --book, --bitbases, --analysis-store
+     *             and --weights with their values, and optionally the
      *             filename of a board.csv file to prime the board with.
      * @throws IOException If a file was passed as an argument on the
      *                     commandline indicating a board CSV file to load,
@@ -419,11 +666,66 @@ public class JChessGame extends JFrame implements ActionListener {
      */
     public static void main(final String[] args) throws IOException {
         JChessGame chessgame;
-        if (args.length > 0) {
-            String fileName = args[0];
-            chessgame = new JChessGame(fileName);
-        } else {
-            chessgame = new JChessGame();
+        String fileName = null;
+        String fen = null;
+        String[] engineCommand = null;
+        long engineMoveTimeMillis = ExternalUciOpponent.DEFAULT_MOVE_TIME_MILLIS;
+        PolyglotBook openingBook = null;
+        Bitbase bitbase = null;
+        AnalysisStore analysisStore = null;
+        EvaluationWeights evaluationWeights = null;
+
+        for (int argIdx = 0; argIdx < args.length; argIdx++) {
+            if (args[argIdx].equals("--fen") && argIdx + 1 < args.length) {
+                fen = args[++argIdx];
+            } else if (args[argIdx].equals("--engine") && argIdx + 1 < args.length) {
+                engineCommand = args[++argIdx].trim().split("\\s+");
+            } else if (args[argIdx].equals("--engine-movetime") && argIdx + 1 < args.length) {
+                engineMoveTimeMillis = Long.parseLong(args[++argIdx]);
+            } else if (args[argIdx].equals("--book") && argIdx + 1 < args.length) {
+                try {
+                    openingBook = PolyglotBook.open(Path.of(args[++argIdx]));
+                } catch (IOException exception) {
+                    System.err.println("Couldn't open the opening book: " + exception.getMessage());
+                    System.exit(1);
+                }
+            } else if (args[argIdx].equals("--bitbases") && argIdx + 1 < args.length) {
+                try {
+                    bitbase = Bitbase.open(Path.of(args[++argIdx]));
+                } catch (IOException exception) {
+                    System.err.println("Couldn't load the endgame bitbases: " + exception.getMessage());
+                    System.exit(1);
+                }
+            } else if (args[argIdx].equals("--analysis-store") && argIdx + 1 < args.length) {
+                try {
+                    analysisStore = AnalysisStore.open(Path.of(args[++argIdx]), AnalysisStore.DEFAULT_SIZE_MB);
+                } catch (IOException exception) {
+                    System.err.println("Couldn't open the analysis store: " + exception.getMessage());
+                    System.exit(1);
+                }
+            } else if (args[argIdx].equals("--weights") && argIdx + 1 < args.length) {
+                try {
+                    evaluationWeights = EvaluationWeights.load(Path.of(args[++argIdx]));
+                } catch (IOException exception) {
+                    System.err.println("Couldn't load the evaluation weights: " + exception.getMessage());
+                    System.exit(1);
+                }
+            } else {
+                fileName = args[argIdx];
+            }
+        }
+
+        if (Objects.nonNull(fen) && Objects.nonNull(fileName)) {
+            System.err.println("A board file and --fen can't both be given.");
+            System.exit(1);
+        }
+
+        try {
+            chessgame = new JChessGame(fileName, fen, engineCommand, engineMoveTimeMillis, openingBook, bitbase,
+                                       analysisStore, evaluationWeights);
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.exit(1);
         }
     }
 }
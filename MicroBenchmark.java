@@ -0,0 +1,587 @@
+package org.kmfahey.jchessgame;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A microbenchmark harness for the engine's hot paths: move generation (as a
+ * whole and per piece type), check detection, board evaluation and its
+ * components, and a fixed-depth search. Each benchmark is run on an opening,
+ * a middlegame and an endgame position.
+ * <p>
+ * Every benchmark is warmed up so the JIT compiler has settled, then timed
+ * over several fixed-length iterations; the mean throughput and its standard
+ * deviation are reported. The bytes allocated by the benchmarking thread
+ * during the timed iterations are divided by the number of operations to give
+ * the allocation per operation, and by the elapsed time to give the allocation
+ * rate. Results are written to standard out as a table.
+ * <p>
+ * The per-piece-type move generation and the check detection benchmarks time
+ * one pass over every piece (or every move) of the side to move, so their
+ * operations aren't comparable with generatePossibleMoves(). Move generation
+ * benchmarks include zeroing the moves array afterwards, which any caller
+ * reusing a moves array has to do. The search benchmark clears the
+ * evaluation cache before every operation so each search starts cold.
+ * <p>
+ * Run as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.MicroBenchmark [--warmup &lt;ms&gt;] [--iterations &lt;n&gt;] [--time &lt;ms&gt;]
+ *                                               [--depth &lt;plies&gt;] [&lt;filter&gt;]
+ * </pre>
+ * If a filter is given, only benchmarks whose "name/position" label contains
+ * it are run.
+ */
+public final class MicroBenchmark {
+
+    /* The color playing from the top of the board. FEN boards are laid out
+       with white at the bottom. */
+    private static final int COLOR_ON_TOP = BoardArrays.BLACK;
+
+    /* The positions every benchmark is run on, as name, FEN pairs. */
+    private static final String[][] POSITIONS = {
+        {"opening", "r1bqkbnr/pppp1ppp/2n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 3 3"},
+        {"middlegame", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"},
+        {"endgame", "8/5pk1/6p1/8/3R4/6P1/5PK1/r7 w - - 0 40"}
+    };
+
+    /* The piece types with a generate*sMoves() method, and those methods'
+       names and references. */
+    private static final int[] PIECE_TYPES = {
+        BoardArrays.PAWN, BoardArrays.ROOK, BoardArrays.KNIGHT, BoardArrays.BISHOP, BoardArrays.QUEEN, BoardArrays.KING
+    };
+    private static final String[] PIECE_TYPE_METHOD_NAMES = {
+        "generatePawnsMoves", "generateRooksMoves", "generateKnightsMoves", "generateBishopsMoves",
+        "generateQueensMoves", "generateKingsMoves"
+    };
+    private static final PieceMovesGenerator[] PIECE_TYPE_METHODS = {
+        BoardArrays::generatePawnsMoves, BoardArrays::generateRooksMoves, BoardArrays::generateKnightsMoves,
+        BoardArrays::generateBishopsMoves, BoardArrays::generateQueensMoves, BoardArrays::generateKingsMoves
+    };
+
+    /* The shared signature of BoardArrays' generate*sMoves() methods. */
+    @FunctionalInterface
+    private interface PieceMovesGenerator {
+        int generate(int[][] boardArray, int[][] movesArray, int moveIdx, int xIdx, int yIdx, int colorsTurnItIs,
+                     int colorOnTop);
+    }
+
+    /* The results of every operation are summed into this field, so the JIT
+       compiler can't discard the work as dead code. */
+    private static volatile double sink;
+
+    private final long warmupMillis;
+    private final int iterations;
+    private final long iterationMillis;
+    private final int searchDepth;
+    private final String filter;
+    private final com.sun.management.ThreadMXBean threadMXBean;
+
+    /**
+     * Initializes the harness.
+     *
+     * @param warmupMillisVal    How long to run each benchmark before timing
+     *                           it, in milliseconds.
+     * @param iterationsVal      How many timed iterations to run.
+     * @param iterationMillisVal How long each timed iteration runs, in
+     *                           milliseconds.
+     * @param searchDepthVal     The depth of the search benchmark.
+     * @param filterVal          Only benchmarks whose "name/position" label
+     *                           contains this string are run; null to run
+     *                           them all.
+     */
+    public MicroBenchmark(final long warmupMillisVal, final int iterationsVal, final long iterationMillisVal,
+                          final int searchDepthVal, final String filterVal) {
+        warmupMillis = warmupMillisVal;
+        iterations = iterationsVal;
+        iterationMillis = iterationMillisVal;
+        searchDepth = searchDepthVal;
+        filter = filterVal;
+
+        /* Allocation can only be measured if the JVM's thread MXBean supports
+           it; otherwise the allocation columns are left blank. */
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean sunThreadMXBean
+            && sunThreadMXBean.isThreadAllocatedMemorySupported()) {
+            sunThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+            threadMXBean = sunThreadMXBean;
+        } else {
+            threadMXBean = null;
+        }
+    }
+
+    /**
+     * Runs every benchmark on every position, printing a row per benchmark.
+     */
+    public void runAll() {
+        System.out.printf("%-28s %-11s %14s %12s %12s %10s%n",
+                          "Benchmark", "Position", "ops/s", "stdev", "B/op", "MB/s");
+
+        for (String[] position : POSITIONS) {
+            String positionName = position[0];
+            Fen.Position fenPosition = Fen.parse(position[1]);
+            int[][] boardArray = fenPosition.boardArray();
+            int colorToMove = fenPosition.colorToMove();
+            int otherColor = colorToMove == BoardArrays.WHITE ? BoardArrays.BLACK : BoardArrays.WHITE;
+            int[][] movesArray = new int[128][7];
+
+            String fen = position[1];
+            int[][] parseBoardArray = new int[8][8];
+            StringBuilder fenBuilder = new StringBuilder(90);
+            run("Fen.parse", positionName,
+                () -> Fen.parse(fen, COLOR_ON_TOP, parseBoardArray).fullmoveNumber());
+            run("Fen.appendFen", positionName, () -> {
+                fenBuilder.setLength(0);
+                Fen.appendFen(fenBuilder, boardArray, COLOR_ON_TOP, colorToMove, fenPosition.castlingRights(),
+                              fenPosition.enPassantFile(), fenPosition.halfmoveClock(), fenPosition.fullmoveNumber());
+                return fenBuilder.length();
+            });
+
+            run("generatePossibleMoves", positionName, () -> {
+                int movesCount = BoardArrays.generatePossibleMoves(boardArray, movesArray, colorToMove, COLOR_ON_TOP);
+                clearMovesArray(movesArray, movesCount);
+                return movesCount;
+            });
+
+            /* The search keeps AttackMaps up to date as it makes moves, and
+               generates moves with them, so their legality tests are
+               lookups. */
+            AttackMaps attackMaps = new AttackMaps(boardArray, COLOR_ON_TOP);
+            run("generatePossibleMoves (maps)", positionName, () -> {
+                int movesCount = BoardArrays.generatePossibleMoves(boardArray, movesArray, colorToMove, COLOR_ON_TOP,
+                                                                   attackMaps);
+                clearMovesArray(movesArray, movesCount);
+                return movesCount;
+            });
+
+            for (int typeIdx = 0; typeIdx < PIECE_TYPES.length; typeIdx++) {
+                int[][] pieceCoords = findPieces(boardArray, colorToMove, PIECE_TYPES[typeIdx]);
+                PieceMovesGenerator generator = PIECE_TYPE_METHODS[typeIdx];
+                if (pieceCoords.length == 0) {
+                    continue;
+                }
+                run(PIECE_TYPE_METHOD_NAMES[typeIdx], positionName, () -> {
+                    int movesCount = 0;
+                    for (int[] coords : pieceCoords) {
+                        movesCount = generator.generate(boardArray, movesArray, movesCount, coords[0], coords[1],
+                                                        colorToMove, COLOR_ON_TOP);
+                    }
+                    clearMovesArray(movesArray, movesCount);
+                    return movesCount;
+                });
+            }
+
+            /* The moves of the side to move, minus king moves (which are
+               checked with a different signature of wouldKingBeInCheck()),
+               are the candidates the check detection benchmark tests. */
+            int[][] candidateMoves = nonKingMoves(boardArray, colorToMove);
+            run("wouldKingBeInCheck", positionName, () -> {
+                int inCheckCount = 0;
+                for (int[] moveArray : candidateMoves) {
+                    if (BoardArrays.wouldKingBeInCheck(boardArray, moveArray[1], moveArray[2], moveArray[3],
+                                                       moveArray[4], colorToMove, COLOR_ON_TOP)) {
+                        inCheckCount++;
+                    }
+                }
+                return inCheckCount;
+            });
+            run("wouldKingBeInCheck (maps)", positionName, () -> {
+                int inCheckCount = 0;
+                for (int[] moveArray : candidateMoves) {
+                    if (attackMaps.wouldKingBeInCheck(boardArray, moveArray[1], moveArray[2], moveArray[3],
+                                                      moveArray[4], colorToMove)) {
+                        inCheckCount++;
+                    }
+                }
+                return inCheckCount;
+            });
+
+            /* Keeping the attack maps up to date is what the lookups cost
+               the search, so making and unmaking each candidate move is
+               timed too. */
+            run("AttackMaps make/unmake", positionName, () -> {
+                for (int[] moveArray : candidateMoves) {
+                    attackMaps.makeMove(boardArray, moveArray);
+                    attackMaps.unmakeMove(boardArray, moveArray);
+                }
+                return candidateMoves.length;
+            });
+
+            Chessboard chessboard = new Chessboard(BoardArrays.copyBoardArray(boardArray), otherColor, COLOR_ON_TOP);
+            MinimaxRunner minimaxRunner = new MinimaxRunner(chessboard, colorToMove);
+
+            run("evaluateBoard (memoized)", positionName,
+                () -> minimaxRunner.evaluateBoard(boardArray, colorToMove));
+            run("scoreBoard (uncached)", positionName,
+                () -> minimaxRunner.scoreBoard(boardArray, colorToMove));
+
+            /* The search keeps an EvaluationState and AttackMaps up to date
+               as it makes moves, so its evaluations don't pay for building
+               them. */
+            EvaluationState evaluationState = new EvaluationState(boardArray, COLOR_ON_TOP, EvaluationWeights.DEFAULT);
+            run("scoreBoard (incremental)", positionName,
+                () -> minimaxRunner.scoreBoard(boardArray, evaluationState, attackMaps, colorToMove));
+            /* The array-based and bitboard pawn-structure tallies are run on
+               the same board, each counting both colors' pawns from the board
+               array, so building the bitboards is part of what's timed. */
+            run("tallySpecialPawns (arrays)", positionName,
+                () -> tallySpecialPawns(boardArray, BoardArrays.WHITE)[0]
+                      + tallySpecialPawns(boardArray, BoardArrays.BLACK)[0]);
+            run("PawnStructure (bitboards)", positionName, () -> {
+                long whitePawns = PawnStructure.pawnsBitboard(boardArray, BoardArrays.WHITE);
+                long blackPawns = PawnStructure.pawnsBitboard(boardArray, BoardArrays.BLACK);
+                long occupied = PawnStructure.occupiedBitboard(boardArray);
+                return PawnStructure.countDoubled(whitePawns) + PawnStructure.countIsolated(whitePawns)
+                       + PawnStructure.countBlocked(whitePawns, occupied, COLOR_ON_TOP == BoardArrays.WHITE)
+                       + PawnStructure.countPassed(whitePawns, blackPawns, COLOR_ON_TOP == BoardArrays.WHITE)
+                       + PawnStructure.countDoubled(blackPawns) + PawnStructure.countIsolated(blackPawns)
+                       + PawnStructure.countBlocked(blackPawns, occupied, COLOR_ON_TOP == BoardArrays.BLACK)
+                       + PawnStructure.countPassed(blackPawns, whitePawns, COLOR_ON_TOP == BoardArrays.BLACK);
+            });
+            run("mobility (legal)", positionName,
+                () -> legalColorMobility(boardArray, colorToMove));
+            run("totalColorMobility", positionName,
+                () -> minimaxRunner.totalColorMobility(boardArray, colorToMove));
+
+            minimaxRunner.setMaxDepth(searchDepth);
+            minimaxRunner.setThreadCount(1);
+            run("algorithmTopLevel depth " + searchDepth, positionName, () -> {
+                minimaxRunner.clearEvaluationCache();
+                return minimaxRunner.algorithmTopLevel(1).toXCoord();
+            });
+        }
+    }
+
+    /*
+     * Warms up, times and prints one benchmark.
+     *
+     * @param benchmarkName The benchmark's name.
+     * @param positionName  The name of the position it's run on.
+     * @param operation     The operation to time; its return value is
+     *                      consumed so the work can't be optimized away.
+     */
+    private void run(final String benchmarkName, final String positionName, final DoubleSupplier operation) {
+        if (filter != null && !(benchmarkName + "/" + positionName).contains(filter)) {
+            return;
+        }
+
+        double localSink = 0;
+        double[] opsPerSecond = new double[iterations];
+        long totalOps = 0;
+        long totalNanos = 0;
+
+        /* The warmup also calibrates how many operations to run between reads
+           of the clock, so that reading it doesn't skew fast operations. */
+        long warmupStartNanos = System.nanoTime();
+        long warmupEndNanos = warmupStartNanos + warmupMillis * 1_000_000L;
+        long warmupOps = 0;
+        long nowNanos;
+        do {
+            localSink += operation.getAsDouble();
+            warmupOps++;
+            nowNanos = System.nanoTime();
+        } while (nowNanos < warmupEndNanos);
+        long opsPerMilli = warmupOps * 1_000_000L / Math.max(1, nowNanos - warmupStartNanos);
+        int batchSize = (int) Math.max(1, Math.min(100_000, opsPerMilli));
+
+        long allocatedBytesBefore = currentThreadAllocatedBytes();
+        for (int iterationIdx = 0; iterationIdx < iterations; iterationIdx++) {
+            long iterationOps = 0;
+            long iterationStartNanos = System.nanoTime();
+            long iterationEndNanos = iterationStartNanos + iterationMillis * 1_000_000L;
+            do {
+                for (int batchIdx = 0; batchIdx < batchSize; batchIdx++) {
+                    localSink += operation.getAsDouble();
+                }
+                iterationOps += batchSize;
+                nowNanos = System.nanoTime();
+            } while (nowNanos < iterationEndNanos);
+            opsPerSecond[iterationIdx] = iterationOps * 1e9 / (nowNanos - iterationStartNanos);
+            totalOps += iterationOps;
+            totalNanos += nowNanos - iterationStartNanos;
+        }
+        long allocatedBytes = currentThreadAllocatedBytes() - allocatedBytesBefore;
+        sink += localSink;
+
+        double meanOpsPerSecond = Arrays.stream(opsPerSecond).average().orElse(0D);
+        double variance = Arrays.stream(opsPerSecond)
+                                .map(rate -> (rate - meanOpsPerSecond) * (rate - meanOpsPerSecond))
+                                .sum() / Math.max(1, iterations - 1);
+        String bytesPerOpStr = "";
+        String allocRateStr = "";
+        if (threadMXBean != null) {
+            bytesPerOpStr = String.format("%.1f", (double) allocatedBytes / totalOps);
+            allocRateStr = String.format("%.1f", allocatedBytes / (totalNanos / 1e9) / (1024 * 1024));
+        }
+
+        System.out.printf("%-28s %-11s %14.1f %12.1f %12s %10s%n", benchmarkName, positionName, meanOpsPerSecond,
+                          Math.sqrt(variance), bytesPerOpStr, allocRateStr);
+    }
+
+    /*
+     * Returns the number of bytes allocated by the current thread so far, or
+     * 0 if that can't be measured.
+     *
+     * @return The current thread's allocated byte count.
+     */
+    private long currentThreadAllocatedBytes() {
+        return threadMXBean != null ? threadMXBean.getCurrentThreadAllocatedBytes() : 0L;
+    }
+
+    /*
+     * The array-based pawn-structure tally that MinimaxRunner.scoreBoard()
+     * used before PawnStructure, kept as it was so the two can be benchmarked
+     * against each other. It finds a color's pawns by scanning the board,
+     * then compares each with its neighbors in scan order to count doubled,
+     * isolated and blocked pawns.
+     *
+     * @param boardArray      The int[8][8] board representation to count pawns in.
+     * @param colorInQuestion The color of pawns to count.
+     * @return                A double[3] array of doubledPawnsCount,
+     *                        isolatedPawnsCount and blockedPawnsCount.
+     */
+    private static double[] tallySpecialPawns(final int[][] boardArray, final int colorInQuestion) {
+        int[][] tallyPawnsCoords = new int[8][2];
+        int[][] doubledPawnsCoords = new int[8][2];
+        double[] retval = new double[3];
+        double blockedPawnsCount = 0;
+        double doubledPawnsCount = 0;
+        double isolatedPawnsCount = 0;
+        int dblpIdx = 0;
+        int pawnsCount = 0;
+        int maxPawnIndex;
+
+        /* These loops traverse the int[8][8] boardArray detecting pawns of this
+           color and saving their coordinates to int[8][2] so that the rest
+           of the loops in this method can just iterate over the saved pawns
+           coordinates. */
+        for (int xIdx = 0, pawnIndex = 0; xIdx < 8; xIdx++) {
+            for (int yIdx = 0; yIdx < 8; yIdx++) {
+                if (boardArray[xIdx][yIdx] == (colorInQuestion | BoardArrays.PAWN)) {
+                    tallyPawnsCoords[pawnIndex][0] = xIdx;
+                    tallyPawnsCoords[pawnIndex][1] = yIdx;
+                    pawnIndex++;
+                    pawnsCount++;
+                }
+            }
+        }
+
+        maxPawnIndex = pawnsCount - 1;
+
+        /* Normally an isolated pawn is one where its neighboring pawns are each
+           more than one file away from them. */
+        switch (pawnsCount) {
+            /* But if there's only 1 pawn left it is by default isolated. */
+            case 1 -> isolatedPawnsCount++;
+            case 2 -> {
+                /* If there's two left, they're both isolated if their X indexes
+                   differ by more than 1. */
+                if (tallyPawnsCoords[1][0] - tallyPawnsCoords[0][0] > 1) {
+                    isolatedPawnsCount += 2;
+                }
+            }
+            default -> {
+                for (int pawnIndex = 0; pawnIndex < pawnsCount; pawnIndex++) {
+                    int thisPawnXIdx = tallyPawnsCoords[pawnIndex][0];
+
+                    /* If a pawn is the leftmost on the board, it's isolated
+                       if the difference between its X index and its right
+                       neighbor's X index is more than 1. */
+                    if (pawnIndex == 0) {
+                        int nextPawnXIdx = tallyPawnsCoords[pawnIndex + 1][0];
+                        if (nextPawnXIdx - thisPawnXIdx > 1) {
+                            isolatedPawnsCount++;
+                        }
+                    /* Vice versa, if it's rightmost on the board, it's isolated
+                       if its left neighbor's X index exceeds its X index by
+                       more than 1. */
+                    } else if (pawnIndex == maxPawnIndex) {
+                        int prevPawnXIdx = tallyPawnsCoords[pawnIndex - 1][0];
+                        if (prevPawnXIdx - thisPawnXIdx > 1) {
+                            isolatedPawnsCount++;
+                        }
+                    /* Otherwise, it's isolated if the difference between its x
+                       index and the previous pawn's x index, and the difference
+                       between the next pawn's x index and its x index, are both
+                       more than 1. */
+                    } else { // 0 < pawnIndex && pawnIndex < maxPawnIndex
+                        int prevPawnXIdx = tallyPawnsCoords[pawnIndex - 1][0];
+                        int nextPawnXIdx = tallyPawnsCoords[pawnIndex + 1][0];
+                        if (nextPawnXIdx - thisPawnXIdx > 1 && thisPawnXIdx - prevPawnXIdx > 1) {
+                            isolatedPawnsCount++;
+                        }
+                    }
+                }
+            }
+        }
+
+        /* This loop counts doubled pawns and blocked pawns. It tracks pawns
+           that are doubled in doubledPawnsCoords, so it can avoid
+           double-counting any. */
+        for (int pawnIndex = 0; pawnIndex < pawnsCount; pawnIndex++) {
+            int thisPawnXIdx = tallyPawnsCoords[pawnIndex][0];
+            int thisPawnYIdx = tallyPawnsCoords[pawnIndex][1];
+            if (pawnIndex > 0) {
+                int prevPawnXIdx = tallyPawnsCoords[pawnIndex - 1][0];
+                int prevPawnYIdx = tallyPawnsCoords[pawnIndex - 1][1];
+
+                /* The y values in this loop's calculations run two different
+                   ways depending on whether colorInQuestion is playing from
+                   the top of the board (== COLOR_ON_TOP) or from
+                   the bottom (!= COLOR_ON_TOP). If on top, yDiff is set to -1,
+                   otherwise +1. A successive piece's y index is calculated by
+                   adding yDiff to the earlier piece's y index. */
+                int yDiff = colorInQuestion == COLOR_ON_TOP ? -1 : +1;
+
+                /* Two successive pawns are doubled if their x indexes are equal
+                   and the difference between the first y index and the second
+                   equals yDiff (-1 if playing from the top of the board, +1 if
+                   from the bottom). */
+                if (thisPawnXIdx == prevPawnXIdx && thisPawnYIdx - prevPawnYIdx == yDiff) {
+
+                    /* Tripled pawns are a possibility. If two pawns'
+                       coordinates have already been stored to doubledPawnsCoord
+                       (ie. dblpIdx > 1), its last coords are checked for
+                       equality with the first doubled pawn. If they match, only
+                       the second doubled pawn is counted and stored. Otherwise,
+                       both are counted and stored. */
+                    if (dblpIdx <= 1 || doubledPawnsCoords[dblpIdx - 1][0] != prevPawnXIdx
+                            || doubledPawnsCoords[dblpIdx - 1][1] != prevPawnYIdx) {
+                        doubledPawnsCoords[dblpIdx][0] = prevPawnXIdx;
+                        doubledPawnsCoords[dblpIdx][1] = prevPawnYIdx;
+                        dblpIdx++;
+                        doubledPawnsCount++;
+
+                    }
+                    doubledPawnsCoords[dblpIdx][0] = thisPawnXIdx;
+                    doubledPawnsCoords[dblpIdx][1] = thisPawnYIdx;
+                    dblpIdx++;
+                    doubledPawnsCount++;
+                }
+
+                int nextSquareYIdx = thisPawnYIdx + yDiff;
+                int nextSquarePieceInt = boardArray[thisPawnXIdx][nextSquareYIdx];
+                /* If the square ahead of this square is occupied, and it's
+                   not a pawn on this side, then this pawn is blocked and
+                   blockedPawnsCount is incremented. */
+                if (nextSquarePieceInt != 0 && (nextSquarePieceInt ^ colorInQuestion) != BoardArrays.PAWN) {
+                    blockedPawnsCount++;
+                }
+            }
+        }
+
+        /* This method has 3 doubles to return, so they're packed into a double[3]
+           array and that's the return value. */
+        retval[0] = doubledPawnsCount;
+        retval[1] = isolatedPawnsCount;
+        retval[2] = blockedPawnsCount;
+        return retval;
+    }
+
+    /*
+     * The legal-move mobility count that MinimaxRunner.totalColorMobility()
+     * made before it counted pseudo-legal moves, kept as it was so the two
+     * can be benchmarked against each other. It generates the moves of every
+     * piece of the color, each one tested for legality.
+     *
+     * @param boardArray     The board array to calculate moves on.
+     * @param colorsTurnItIs The color to calculate moves for.
+     * @return               A double, the total number of moves possible.
+     */
+    private static double legalColorMobility(final int[][] boardArray, final int colorsTurnItIs) {
+        int[][] movesArray = new int[128][7];
+        double moveIdx = 0;
+
+        /* Iterating across the board, stopping when a friendly
+           piece is encountered. For each friendly piece,
+           BoardArrays.generatePieceMoves() is called, and the new value for
+           moveIdx is set to its return value. */
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            for (int yIdx = 0; yIdx < 8; yIdx++) {
+                if ((boardArray[xIdx][yIdx] & colorsTurnItIs) == 0) {
+                    continue;
+                }
+                moveIdx = BoardArrays.generatePieceMoves(boardArray, movesArray, (int) moveIdx,
+                                                         xIdx, yIdx, colorsTurnItIs, COLOR_ON_TOP);
+            }
+        }
+
+        /* The index of the first empty array in the int[][7] movesArray is also
+           the length of the used arrays, so that is returned. */
+        return moveIdx;
+    }
+
+    /*
+     * Finds the coordinates of every piece of the given color and type.
+     *
+     * @param boardArray The int[8][8] board to search.
+     * @param color      The color of the pieces.
+     * @param pieceType  The piece type flag, such as BoardArrays.KNIGHT.
+     * @return           An array of int[2] x, y coordinate pairs.
+     */
+    private static int[][] findPieces(final int[][] boardArray, final int color, final int pieceType) {
+        List<int[]> pieceCoords = new ArrayList<>();
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            for (int yIdx = 0; yIdx < 8; yIdx++) {
+                if ((boardArray[xIdx][yIdx] & color) != 0 && (boardArray[xIdx][yIdx] & pieceType) != 0) {
+                    pieceCoords.add(new int[] {xIdx, yIdx});
+                }
+            }
+        }
+        return pieceCoords.toArray(new int[0][]);
+    }
+
+    /*
+     * Generates the moves of the given color, leaving out king moves.
+     *
+     * @param boardArray The int[8][8] board to generate moves on.
+     * @param color      The color to generate moves for.
+     * @return           The moves, each an int[7] move array.
+     */
+    private static int[][] nonKingMoves(final int[][] boardArray, final int color) {
+        int[][] movesArray = new int[128][7];
+        int movesCount = BoardArrays.generatePossibleMoves(boardArray, movesArray, color, COLOR_ON_TOP);
+        return Arrays.stream(movesArray, 0, movesCount)
+                     .filter(moveArray -> (moveArray[0] & BoardArrays.KING) == 0)
+                     .toArray(int[][]::new);
+    }
+
+    /*
+     * Zeroes the used part of a moves array, which BoardArrays' generate
+     * methods require before it's reused.
+     *
+     * @param movesArray The moves array.
+     * @param movesCount The number of entries used.
+     */
+    private static void clearMovesArray(final int[][] movesArray, final int movesCount) {
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            Arrays.fill(movesArray[moveIdx], 0);
+        }
+    }
+
+    /**
+     * Main method. See the class documentation for the commandline syntax.
+     *
+     * @param args The commandline arguments.
+     */
+    public static void main(final String[] args) {
+        long warmupMillis = 2000;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        int searchDepth = 3;
+        String filter = null;
+
+        for (int argIdx = 0; argIdx < args.length; argIdx++) {
+            switch (args[argIdx]) {
+                case "--warmup" -> warmupMillis = Long.parseLong(args[++argIdx]);
+                case "--iterations" -> iterations = Integer.parseInt(args[++argIdx]);
+                case "--time" -> iterationMillis = Long.parseLong(args[++argIdx]);
+                case "--depth" -> searchDepth = Integer.parseInt(args[++argIdx]);
+                default -> filter = args[argIdx];
+            }
+        }
+
+        new MicroBenchmark(warmupMillis, iterations, iterationMillis, searchDepth, filter).runAll();
+    }
+}
@@ -0,0 +1,76 @@
+package org.kmfahey.jchessgame;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An Opponent that runs this program's own MinimaxRunner. Each search runs
+ * on a dedicated background thread. The runner's move latency and other
+ * counters are available through its MBean.
+ *
+ * @see MinimaxRunner
+ */
+public class MinimaxOpponent implements Opponent {
+
+    /** The runner that computes the moves. */
+    private final MinimaxRunner minimaxRunner;
+
+    /** Runs the searches off the caller's thread. */
+    private final ExecutorService searchExecutor;
+
+    /**
+     * Initializes the MinimaxOpponent object.
+     *
+     * @param minimaxRunnerObj The MinimaxRunner to compute moves with. Its
+     *                         Chessboard must be the one passed to
+     *                         requestMove().
+     */
+    public MinimaxOpponent(final MinimaxRunner minimaxRunnerObj) {
+        minimaxRunner = minimaxRunnerObj;
+        searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "minimax-opponent");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Accessor for the MinimaxRunner this opponent uses.
+     *
+     * @return The MinimaxRunner object.
+     */
+    public MinimaxRunner getMinimaxRunner() {
+        return minimaxRunner;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return "JChessGame minimax";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void newGame() {
+        assert true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletableFuture<Chessboard.Move> requestMove(final Chessboard chessboard, final int colorToMove,
+                                                          final int turnCount) {
+        int colorOfPlayer = colorToMove == BoardArrays.WHITE ? BoardArrays.BLACK : BoardArrays.WHITE;
+        minimaxRunner.setColors(colorOfPlayer, chessboard.getColorOnTop());
+        minimaxRunner.setCastlingRights(chessboard.getCastlingRights());
+        minimaxRunner.prepareSearch();
+        return CompletableFuture.supplyAsync(() -> minimaxRunner.algorithmTopLevel(turnCount), searchExecutor);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        minimaxRunner.stopSearch();
+        searchExecutor.shutdown();
+    }
+}
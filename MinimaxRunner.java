@@ -1,17 +1,50 @@
 package org.kmfahey.jchessgame;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * Implements the minimax algorithm with alpha/beta pruning. The frontend method
  * to the algorithm is algorithmTopLevel(), Its constructor accepts a Chessboard
  * object, and that object's boardArray is what the algorithm uses to calculate
  * its moves.
+ * <p>
+ * The object keeps cumulative counters of the searches it has run, and its
+ * search tunables (maximum depth, time budget, thread count and evaluation
+ * cache size) can be changed between searches. Both are exposed over JMX via
+ * the MinimaxRunnerMBean interface once registerMBean() has been called.
+ * <p>
+ * A search in progress can be cut short from another thread with
+ * stopSearch(), and an IterationListener can be set to be told the outcome of
+ * each iteration as it completes, which is how a protocol front end such as
+ * UciEngine streams its progress.
+ * <p>
+ * When a Java Flight Recorder recording is running, each search, each
+ * iteration of it, and batches of its move generation and evaluation calls
+ * are recorded as custom events, each of which can be switched on or off in
+ * the recording's settings.
  *
  * @see MinimaxRunner#algorithmTopLevel
  * @see #algorithmTopLevel
+ * @see MinimaxRunnerMBean
+ * @see SearchEvent
  */
-public class MinimaxRunner {
+public class MinimaxRunner implements MinimaxRunnerMBean {
 
     /* These statements copy the piece int constants from BoardArrays to this
        class for convenience. */
@@ -37,15 +70,73 @@ public class MinimaxRunner {
     /** Flag for left-facing knights. */
     public static final int LEFT = BoardArrays.LEFT;     
 
-    /* These three indexes are stored as a convenience so the return value
-       from tallySpecialPawns() is readable in tallySpecialPawns() and
-       evaluateBoard(). */
-    private static final int DOUBLED = 0;
-    private static final int ISOLATED = 1;
-    private static final int BLOCKED = 2;
+    /** The domain of the JMX ObjectName that registerMBean() registers
+        under. */
+    public static final String MBEAN_DOMAIN = "org.kmfahey.jchessgame";
 
-    /* This mapping is used to memoize results of evaluateBoard(). */
-    private final HashMap<String, Double> evaluateBoardMemoizeMap;
+    /* The number of entries in the pawn hash table, a power of two. Each is
+       two longs, so the table takes 256KB. */
+    private static final int PAWN_HASH_ENTRIES = 1 << 14;
+
+    /* Set in every pawn hash data word, so an empty entry never matches. */
+    private static final long PAWN_HASH_FILLED = 1L << 62;
+
+    /* The number of most recent search latencies retained to compute the
+       p99 latency from. */
+    private static final int LATENCY_SAMPLES_LENGTH = 1000;
+
+    /* The score of a position the bitbase says is won, before adjusting for
+       the distance to mate. It's well clear of anything evaluateBoard()
+       returns, so a known win is preferred to any amount of material. */
+    private static final double BITBASE_WIN_SCORE = 1000D;
+
+    /* Each thread that runs the search accumulates its move generation and
+       evaluation calls into its own batch events, which are committed to JFR
+       when full. */
+    private static final ThreadLocal<MoveGenerationBatchEvent> MOVE_GENERATION_BATCH_EVENT
+            = ThreadLocal.withInitial(MoveGenerationBatchEvent::new);
+    private static final ThreadLocal<EvaluationBatchEvent> EVALUATION_BATCH_EVENT
+            = ThreadLocal.withInitial(EvaluationBatchEvent::new);
+
+    /**
+     * Receives the outcome of each completed iteration of a search. It's
+     * called on the thread running the search, between iterations, so it
+     * should return promptly.
+     *
+     * @see MinimaxRunner#setIterationListener
+     */
+    @FunctionalInterface
+    public interface IterationListener {
+
+        /**
+         * Called when an iteration of the search completes.
+         *
+         * @param depth         The depth of the iteration, in plies.
+         * @param score         The score of the best move, from the point of
+         *                      view of the color the AI is playing.
+         * @param nodes         The number of nodes searched so far in this
+         *                      search.
+         * @param elapsedNanos  The time since the search started, in
+         *                      nanoseconds.
+         * @param bestMoveArray The best move found, an int[7] move array. It's
+         *                      a copy, so the listener may keep it.
+         */
+        void iterationCompleted(int depth, double score, long nodes, long elapsedNanos, int[] bestMoveArray);
+    }
+
+    /* This mapping is used to memoize results of evaluateBoard(), by the
+       board's Zobrist key with the side to move folded in. It's a concurrent
+       map since the search may be split across several threads. */
+    private final ConcurrentHashMap<Long, Double> evaluateBoardMemoizeMap;
+
+    /* The pawn hash table, which caches the doubled, isolated and passed
+       pawn tallies of both colors by the pawns' Zobrist key. Entry i is at
+       2 * i: the key xored with the data word, then the data word, so an
+       entry torn by two threads writing it at once fails to match its key and
+       is recomputed. The data word packs one count per byte, white's doubled,
+       isolated and passed counts in bytes 0-2 and black's in bytes 3-5, and
+       sets PAWN_HASH_FILLED so a filled entry is never all zero. */
+    private final long[] pawnHashTable = new long[2 * PAWN_HASH_ENTRIES];
 
     /* These three ints store relevant colors that decide how the algorithm
        picks sides and processes moves. */
@@ -53,8 +144,79 @@ public class MinimaxRunner {
     private int colorOfPlayer;
     private int colorOnTop;
 
-    /** The default depth value used by the algorithm. */
-    private final int algorithmStartingDepth;
+    /* The search tunables. They're volatile since they may be set over JMX
+       from another thread; algorithmTopLevel() reads each one once when it
+       starts, so a change only takes effect at the next search. */
+    private volatile int maxDepth;
+    private volatile long timeBudgetMillis;
+    private volatile int threadCount;
+    private volatile int hashSize;
+    private volatile long nodeBudget;
+
+    /* Whether every evaluation checks the incrementally kept material and
+       piece-square state and attack maps against the board, a debugging
+       aid. */
+    private volatile boolean isIncrementalEvaluationChecked = false;
+
+    /* The piece-square tables the evaluation uses, and the file they were
+       loaded from, or the empty string for the built-in ones. */
+    private volatile EvaluationWeights evaluationWeights = EvaluationWeights.DEFAULT;
+    private volatile String weightsFile = "";
+
+    /* The castling rights of the position being searched, an or'd combination
+       of the BoardArrays.CASTLING_* flags. Root castling moves whose right has
+       been lost are discarded. */
+    private volatile int castlingRights;
+
+    /* Told the outcome of each iteration; null if nobody's listening. */
+    private volatile IterationListener iterationListener = null;
+
+    /* The opening book probed before searching; null if there's none. */
+    private volatile PolyglotBook openingBook = null;
+
+    /* The endgame tables probed at the root and at every node; null if
+       there are none. */
+    private volatile Bitbase bitbase = null;
+
+    /* The store of earlier searches' results, consulted before searching and
+       written to after; null if there's none. */
+    private volatile AnalysisStore analysisStore = null;
+
+    /* The cumulative counters exposed via MinimaxRunnerMBean. The latency
+       samples are a ring buffer of the most recent searches' durations in
+       nanoseconds, guarded by synchronizing on the array. */
+    private final AtomicLong searchCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final LongAdder nodeCount = new LongAdder();
+    private final LongAdder evaluateBoardLookups = new LongAdder();
+    private final LongAdder evaluateBoardHits = new LongAdder();
+    private final LongAdder pawnHashLookups = new LongAdder();
+    private final LongAdder pawnHashHits = new LongAdder();
+    private final long[] latencySamples = new long[LATENCY_SAMPLES_LENGTH];
+    private long latencySamplesCount = 0;
+
+    /* Per-search state. The node count is reset at the start of every search.
+       searchDeadlineNanos and searchNodeLimit are checked at every node, and
+       once either is passed searchAborted is set, which unwinds the search.
+       Neither is armed until the first iteration is complete. stopRequested
+       is set by stopSearch(); if the limits are already armed it aborts the
+       search directly, otherwise the search stops after the first iteration.
+       It's cleared by prepareSearch(), not by the search itself, so a stop
+       that comes in before a search on another thread gets going isn't
+       lost.
+       rootBestScore is the best score found by the last root iteration. */
+    private final LongAdder searchNodeCount = new LongAdder();
+    private volatile long searchDeadlineNanos = Long.MAX_VALUE;
+    private volatile long searchNodeLimit = Long.MAX_VALUE;
+    private volatile boolean searchLimitsArmed = false;
+    private volatile boolean stopRequested = false;
+    private volatile boolean searchAborted = false;
+    private double rootBestScore;
+
+    /* The pool used when the search is split across threads. It's created
+       when first needed and recreated if the thread count changes. */
+    private ExecutorService searchThreadPool = null;
+    private int searchThreadPoolSize = 0;
 
     /** Object whose boardArray instance variable the algorithm calculates its
         moves on. */
@@ -75,8 +237,13 @@ public class MinimaxRunner {
         colorOfAI = aiColor;
         colorOfPlayer = colorOfAI == WHITE ? BLACK : WHITE;
         colorOnTop = chessboard.getColorOnTop();
-        algorithmStartingDepth = 4;
-        evaluateBoardMemoizeMap = new HashMap<>();
+        maxDepth = 4;
+        timeBudgetMillis = 0;
+        threadCount = 1;
+        hashSize = 1 << 20;
+        nodeBudget = 0;
+        castlingRights = BoardArrays.CASTLING_ALL;
+        evaluateBoardMemoizeMap = new ConcurrentHashMap<>();
     }
 
     /**
@@ -95,9 +262,380 @@ public class MinimaxRunner {
         colorOfAI = (colorOfPlayer == BoardArrays.WHITE) ? BoardArrays.BLACK : BoardArrays.WHITE;
     }
 
+    /**
+     * Registers this object with the platform MBean server, so its counters
+     * and tunables can be viewed and changed from a JMX console. If an MBean
+     * is already registered under the same name, it's replaced.
+     *
+     * @param name The value of the name key of the ObjectName to register
+     *             under, which distinguishes this runner from any others.
+     * @return     The ObjectName the object was registered under.
+     * @throws JMException If the name is malformed or the MBean server
+     *                     refuses the registration.
+     * @see MinimaxRunnerMBean
+     */
+    public ObjectName registerMBean(final String name) throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(MBEAN_DOMAIN + ":type=MinimaxRunner,name=" + ObjectName.quote(name));
+        if (mBeanServer.isRegistered(objectName)) {
+            mBeanServer.unregisterMBean(objectName);
+        }
+        mBeanServer.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSearchCount() {
+        return searchCount.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getNodeCount() {
+        return nodeCount.sum();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getAverageMoveLatencyMillis() {
+        long searches = searchCount.get();
+        return searches == 0 ? 0D : totalLatencyNanos.get() / (searches * 1_000_000D);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getP99MoveLatencyMillis() {
+        long[] samplesCopy;
+        synchronized (latencySamples) {
+            int samplesUsed = (int) Math.min(latencySamplesCount, LATENCY_SAMPLES_LENGTH);
+            samplesCopy = Arrays.copyOf(latencySamples, samplesUsed);
+        }
+        if (samplesCopy.length == 0) {
+            return 0D;
+        }
+        Arrays.sort(samplesCopy);
+        int p99Index = (int) Math.ceil(0.99D * samplesCopy.length) - 1;
+        return samplesCopy[p99Index] / 1_000_000D;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEvaluationCacheSize() {
+        return evaluateBoardMemoizeMap.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getEvaluationCacheHitRate() {
+        long lookups = evaluateBoardLookups.sum();
+        return lookups == 0 ? 0D : (double) evaluateBoardHits.sum() / lookups;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getPawnHashHitRate() {
+        long lookups = pawnHashLookups.sum();
+        return lookups == 0 ? 0D : (double) pawnHashHits.sum() / lookups;
+    }
+
+    /*
+     * Accessor for the number of pawn hash lookups, so a benchmark can total
+     * them over several runners.
+     *
+     * @return The number of lookups.
+     */
+    long getPawnHashLookups() {
+        return pawnHashLookups.sum();
+    }
+
+    /*
+     * Accessor for the number of pawn hash lookups that hit.
+     *
+     * @return The number of hits.
+     */
+    long getPawnHashHits() {
+        return pawnHashHits.sum();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setMaxDepth(final int maxDepthVal) {
+        if (maxDepthVal < 1) {
+            throw new IllegalArgumentException("maximum depth must be at least 1; got " + maxDepthVal);
+        }
+        maxDepth = maxDepthVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setTimeBudgetMillis(final long timeBudgetMillisVal) {
+        if (timeBudgetMillisVal < 0) {
+            throw new IllegalArgumentException("time budget can't be negative; got " + timeBudgetMillisVal);
+        }
+        timeBudgetMillis = timeBudgetMillisVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setThreadCount(final int threadCountVal) {
+        if (threadCountVal < 1) {
+            throw new IllegalArgumentException("thread count must be at least 1; got " + threadCountVal);
+        }
+        threadCount = threadCountVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getHashSize() {
+        return hashSize;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setHashSize(final int hashSizeVal) {
+        if (hashSizeVal < 1) {
+            throw new IllegalArgumentException("hash size must be at least 1; got " + hashSizeVal);
+        }
+        hashSize = hashSizeVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getNodeBudget() {
+        return nodeBudget;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setNodeBudget(final long nodeBudgetVal) {
+        if (nodeBudgetVal < 0) {
+            throw new IllegalArgumentException("node budget can't be negative; got " + nodeBudgetVal);
+        }
+        nodeBudget = nodeBudgetVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isIncrementalEvaluationChecked() {
+        return isIncrementalEvaluationChecked;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setIncrementalEvaluationChecked(final boolean isCheckedVal) {
+        isIncrementalEvaluationChecked = isCheckedVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getWeightsFile() {
+        return weightsFile;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setWeightsFile(final String weightsFileVal) {
+        if (weightsFileVal.isEmpty()) {
+            setEvaluationWeights(EvaluationWeights.DEFAULT);
+        } else {
+            try {
+                setEvaluationWeights(EvaluationWeights.load(Path.of(weightsFileVal)));
+            } catch (IOException | InvalidPathException exception) {
+                throw new IllegalArgumentException("couldn't load evaluation weights from `" + weightsFileVal
+                                                   + "`: " + exception.getMessage(), exception);
+            }
+        }
+        weightsFile = weightsFileVal;
+    }
+
+    /**
+     * Accessor for the piece-square tables the evaluation uses.
+     *
+     * @return The EvaluationWeights object.
+     */
+    public EvaluationWeights getEvaluationWeights() {
+        return evaluationWeights;
+    }
+
+    /**
+     * Mutator for the piece-square tables the evaluation uses. Memoized
+     * evaluations are discarded, since they were scored with the old tables;
+     * a search already running keeps the tables it started with.
+     *
+     * @param evaluationWeightsObj The EvaluationWeights object.
+     */
+    public void setEvaluationWeights(final EvaluationWeights evaluationWeightsObj) {
+        evaluationWeights = evaluationWeightsObj;
+        weightsFile = "";
+        evaluateBoardMemoizeMap.clear();
+    }
+
+    /**
+     * Accessor for the castling rights of the position being searched.
+     *
+     * @return An or'd combination of the BoardArrays.CASTLING_* flags.
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Mutator for the castling rights of the position being searched. A
+     * castling move at the root whose right has been lost isn't considered.
+     * By default every right is held, so any castling move the squares
+     * permit is considered.
+     *
+     * @param castlingRightsVal An or'd combination of the
+     *                          BoardArrays.CASTLING_* flags.
+     */
+    public void setCastlingRights(final int castlingRightsVal) {
+        castlingRights = castlingRightsVal & BoardArrays.CASTLING_ALL;
+    }
+
+    /**
+     * Mutator for the listener told the outcome of each iteration of a
+     * search.
+     *
+     * @param listener The listener, or null to stop listening.
+     */
+    public void setIterationListener(final IterationListener listener) {
+        iterationListener = listener;
+    }
+
+    /**
+     * Accessor for the opening book.
+     *
+     * @return The PolyglotBook object, or null if there's none.
+     */
+    public PolyglotBook getOpeningBook() {
+        return openingBook;
+    }
+
+    /**
+     * Mutator for the opening book. While the position is in the book,
+     * algorithmTopLevel() plays a book move, picked at random by weight,
+     * instead of searching.
+     *
+     * @param openingBookObj The PolyglotBook object, or null to search every
+     *                       position.
+     */
+    public void setOpeningBook(final PolyglotBook openingBookObj) {
+        openingBook = openingBookObj;
+    }
+
+    /**
+     * Accessor for the endgame tables.
+     *
+     * @return The Bitbase object, or null if there's none.
+     */
+    public Bitbase getBitbase() {
+        return bitbase;
+    }
+
+    /**
+     * Mutator for the endgame tables. Once the board is down to an ending
+     * they cover, algorithmTopLevel() plays the move they say is best instead
+     * of searching, and the search scores any position it reaches in them
+     * exactly instead of evaluating or searching it further.
+     *
+     * @param bitbaseObj The Bitbase object, or null to search every position.
+     */
+    public void setBitbase(final Bitbase bitbaseObj) {
+        bitbase = bitbaseObj;
+    }
+
+    /**
+     * Accessor for the analysis store.
+     *
+     * @return The AnalysisStore object, or null if there's none.
+     */
+    public AnalysisStore getAnalysisStore() {
+        return analysisStore;
+    }
+
+    /**
+     * Mutator for the analysis store. If the position was searched at least
+     * as deep as the maximum depth in an earlier search, algorithmTopLevel()
+     * plays the move found then instead of searching; if it was searched less
+     * deep, that move is searched first. Each search's result is stored.
+     *
+     * @param analysisStoreObj The AnalysisStore object, or null to search
+     *                         every position from scratch.
+     */
+    public void setAnalysisStore(final AnalysisStore analysisStoreObj) {
+        analysisStore = analysisStoreObj;
+    }
+
+    /**
+     * Asks the search in progress to stop as soon as possible; it then
+     * returns the best move of the deepest completed iteration. It's meant to
+     * be called from another thread than the one running the search. The
+     * first iteration is always completed so there's a move to return, so if
+     * the search is still on it, it stops once it's done. If the search
+     * hasn't started yet, it stops after its first iteration once it does,
+     * unless prepareSearch() is called first.
+     */
+    public void stopSearch() {
+        stopRequested = true;
+        if (searchLimitsArmed) {
+            searchAborted = true;
+        }
+    }
+
+    /**
+     * Clears any stop requested of an earlier search. A caller that runs
+     * algorithmTopLevel() on another thread calls this before starting that
+     * thread, so that a stopSearch() call made after it's started but before
+     * the search gets going still stops the search.
+     */
+    public void prepareSearch() {
+        searchLimitsArmed = false;
+        stopRequested = false;
+        searchAborted = false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void resetStatistics() {
+        searchCount.set(0);
+        totalLatencyNanos.set(0);
+        nodeCount.reset();
+        evaluateBoardLookups.reset();
+        evaluateBoardHits.reset();
+        pawnHashLookups.reset();
+        pawnHashHits.reset();
+        synchronized (latencySamples) {
+            latencySamplesCount = 0;
+        }
+    }
+
     /**
      * Implements the minimax algorithm with the alpha/beta optimization. The
-     * default recursion depth is 4 calls.
+     * search is run by iterative deepening, one full search per depth from 1
+     * up to the maximum depth (by default 4), and the best move of the deepest
+     * completed iteration is returned. If a time budget or node budget is set
+     * and it runs out, or stopSearch() is called, the iteration in progress is
+     * abandoned; the first iteration is always completed so there's a move to
+     * return.
      *
      * @param turnCount The number of the turn it is, counting from 0.
      * @return          A Chessboard.Move object describing the move that the
@@ -119,14 +657,38 @@ public class MinimaxRunner {
         int toXIdx;
         int toYIdx;
         int useableMovesCount;
-        double alpha = Double.NEGATIVE_INFINITY;
-        double bestScore = Double.NEGATIVE_INFINITY;
-        double beta = Double.POSITIVE_INFINITY;
-        double thisScore;
+        long searchStartNanos = System.nanoTime();
+        long deadlineNanos;
+        long nodeLimit;
+        int depthCompleted = 0;
+        SearchEvent searchEvent = new SearchEvent();
+
+        searchEvent.begin();
+        searchNodeCount.reset();
+        searchAborted = false;
+
+        /* The tunables are each read once, so that a change made over JMX
+           while this search is running only applies to the next one. */
+        int depthLimit = maxDepth;
+        long timeBudget = timeBudgetMillis;
+        int threadsToUse = threadCount;
+        long nodesBudget = nodeBudget;
+        IterationListener listener = iterationListener;
+        PolyglotBook book = openingBook;
+        Bitbase endgameBitbase = bitbase;
+        AnalysisStore store = analysisStore;
+        EvaluationWeights weights = evaluationWeights;
+
+        /* If the evaluation cache has outgrown its capacity (which can happen
+           if the capacity was lowered), it's cleared before starting. */
+        if (evaluateBoardMemoizeMap.size() > hashSize) {
+            evaluateBoardMemoizeMap.clear();
+        }
 
         boardArray = chessboard.getBoardArray();
 
-        movesArrayUsedLength = BoardArrays.generatePossibleMoves(boardArray, movesArray, colorOfAI, colorOnTop);
+        movesArrayUsedLength = generatePossibleMoves(boardArray, movesArray, colorOfAI, null);
+        movesArrayUsedLength = removeDisallowedCastling(movesArray, movesArrayUsedLength, castlingRights);
         useableMovesCount = movesArrayUsedLength;
 
         if (movesArrayUsedLength == 0) {
@@ -134,6 +696,8 @@ public class MinimaxRunner {
                happens if the king is in checkmate. So the game is over and
                the AI concedes defeat. The algorithm returns a Chessboard.Move
                object with a null movedPiece attribute as a signal value. */
+            recordSearch(System.nanoTime() - searchStartNanos);
+            commitSearchEvent(searchEvent, depthLimit, timeBudget, threadsToUse, 0, null);
             return new Chessboard.Move(null, 0, 0, 0, 0, 0, false, false, 0);
         }
 
@@ -145,29 +709,114 @@ public class MinimaxRunner {
             BoardArrays.shuffleMovesArray(movesArray, movesArrayUsedLength);
         }
 
-        /* The main loop of the top-level phase of the minimax algorithm.
-           algorithmExecutor() implements the given move on the board,
-           calls algorithmLowerLevel(), reverses the move, and returns the
-           score returned by algorithmLowerLevel(). During this for loop
-           highest-scoring move is found and that's the one the algorithm will
-           indicate as the AI's move this turn. */
-        for (int moveIdx = 0; moveIdx < movesArrayUsedLength; moveIdx++) {
-            try {
-                thisScore = algorithmCallExecutor(boardArray, true, movesArray[moveIdx],
-                                                  (colorOfAI == WHITE ? BLACK : WHITE),
-                                                  algorithmStartingDepth, alpha, beta);
-            } catch (KingIsInCheckException | CastlingNotPossibleException exception) {
-                thisScore = Double.NEGATIVE_INFINITY;
+        /* If the position is in the opening book, a book move is played and
+           the search is skipped. The engine doesn't track en passant, so the
+           position is keyed without an en passant file. */
+        int bookMoveIdx = -1;
+        if (book != null) {
+            long positionKey = Zobrist.key(boardArray, colorOnTop, colorOfAI, castlingRights, -1);
+            bookMoveIdx = book.chooseMove(positionKey, movesArray, movesArrayUsedLength, colorOnTop);
+        }
+        if (bookMoveIdx >= 0) {
+            bestMoveArray = movesArray[bookMoveIdx];
+        }
+
+        /* Likewise if the position is in the endgame tables, the move they
+           rate best is played. */
+        int bitbaseMoveIdx = -1;
+        if (bookMoveIdx < 0 && endgameBitbase != null) {
+            bitbaseMoveIdx = chooseBitbaseMove(endgameBitbase, boardArray, movesArray, movesArrayUsedLength);
+        }
+        if (bitbaseMoveIdx >= 0) {
+            bestMoveArray = movesArray[bitbaseMoveIdx];
+        }
+
+        /* If the position was searched deep enough before, the move found
+           then is played; if not as deep, it's searched first, since it's
+           likely still the best and a good first move prunes the rest. */
+        long storeKey = 0L;
+        if (store != null && bestMoveArray == null) {
+            storeKey = Zobrist.key(boardArray, colorOnTop, colorOfAI, castlingRights, -1);
+            AnalysisStore.Entry storedEntry = store.probe(storeKey);
+            int storedMoveIdx = storedEntry == null ? -1
+                                : findEncodedMove(movesArray, movesArrayUsedLength, storedEntry.move());
+            if (storedMoveIdx >= 0 && storedEntry.depth() >= depthLimit) {
+                bestMoveArray = movesArray[storedMoveIdx];
+                depthCompleted = storedEntry.depth();
+                if (listener != null) {
+                    listener.iterationCompleted(storedEntry.depth(), storedEntry.score(), 0L,
+                                                System.nanoTime() - searchStartNanos, bestMoveArray.clone());
+                }
+            } else if (storedMoveIdx > 0) {
+                int[] storedMoveArray = movesArray[storedMoveIdx];
+                movesArray[storedMoveIdx] = movesArray[0];
+                movesArray[0] = storedMoveArray;
             }
-            if (thisScore >= bestScore) {
-                bestScore = thisScore;
-                bestMoveArray = movesArray[moveIdx];
+        }
+        boolean isMoveKnown = bestMoveArray != null;
+        double bestScore = 0D;
+
+        /* The deadline and node limit aren't armed until the first iteration
+           is complete, so that there's always a move to return. */
+        deadlineNanos = timeBudget > 0 ? searchStartNanos + timeBudget * 1_000_000L : Long.MAX_VALUE;
+        nodeLimit = nodesBudget > 0 ? nodesBudget : Long.MAX_VALUE;
+        searchDeadlineNanos = Long.MAX_VALUE;
+        searchNodeLimit = Long.MAX_VALUE;
+
+        /* The iterative deepening loop. Each iteration searches every root
+           move to the iteration's depth; if the iteration was cut short by the
+           deadline its result is discarded, since the moves it didn't get to
+           haven't been scored. */
+        for (int depth = 1; !isMoveKnown && depth <= depthLimit; depth++) {
+            SearchIterationEvent iterationEvent = new SearchIterationEvent();
+            long iterationStartNodes = searchNodeCount.sum();
+
+            iterationEvent.begin();
+            int bestMoveIdx = threadsToUse > 1
+                              ? searchRootParallel(boardArray, movesArray, movesArrayUsedLength, depth, weights,
+                                                   threadsToUse)
+                              : searchRoot(boardArray, movesArray, movesArrayUsedLength, depth, weights);
+            iterationEvent.end();
+            if (iterationEvent.shouldCommit()) {
+                iterationEvent.depth = depth;
+                iterationEvent.nodes = searchNodeCount.sum() - iterationStartNodes;
+                iterationEvent.aborted = searchAborted;
+                iterationEvent.bestMove = searchAborted ? null : moveArrayToAlgNotn(movesArray[bestMoveIdx]);
+                iterationEvent.commit();
             }
-            if (thisScore > alpha) {
-                alpha = thisScore;
+
+            if (searchAborted) {
+                break;
+            }
+            bestMoveArray = movesArray[bestMoveIdx];
+            bestScore = rootBestScore;
+            depthCompleted = depth;
+            if (listener != null) {
+                listener.iterationCompleted(depth, rootBestScore, searchNodeCount.sum(),
+                                            System.nanoTime() - searchStartNanos, bestMoveArray.clone());
+            }
+
+            /* The limits are armed before stopRequested is read, so that a
+               stopSearch() call racing with this either sees them armed or
+               is seen here. */
+            searchDeadlineNanos = deadlineNanos;
+            searchNodeLimit = nodeLimit;
+            searchLimitsArmed = true;
+            if (stopRequested || System.nanoTime() > deadlineNanos || searchNodeCount.sum() >= nodeLimit) {
+                break;
             }
         }
 
+        /* The limits are disarmed once the search is over, so a stopSearch()
+           made between searches only sets stopRequested, which the next
+           search sees, instead of aborting it outright. */
+        searchLimitsArmed = false;
+        recordSearch(System.nanoTime() - searchStartNanos);
+
+        if (store != null && !isMoveKnown && depthCompleted > 0) {
+            store.store(storeKey, PolyglotBook.encodeMove(bestMoveArray, colorOnTop), depthCompleted, bestScore);
+        }
+
         /* If the AI has no usable moves, that means it needs to concede. A null
            Move object is returned as a signal value. */
         if (useableMovesCount == 0) {
@@ -205,28 +854,462 @@ public class MinimaxRunner {
                                           toXIdx, toYIdx, capturedPieceInt, isCastlingKingside, isCastlingQueenside,
                                           promotedToPieceInt);
 
+        commitSearchEvent(searchEvent, depthLimit, timeBudget, threadsToUse, depthCompleted, bestMoveObj);
+
         return bestMoveObj;
     }
 
+    /*
+     * Fills in and commits the JFR event for a search, if it's enabled and the
+     * search took long enough to pass the event's threshold.
+     *
+     * @param searchEvent    The event, which was begun when the search started.
+     * @param depthLimit     The maximum depth the search was configured for.
+     * @param timeBudget     The time budget the search was configured with.
+     * @param threadsToUse   The number of threads the search was split across.
+     * @param depthCompleted The depth of the deepest completed iteration.
+     * @param bestMoveObj    The move selected, or null if the AI had none.
+     */
+    private void commitSearchEvent(final SearchEvent searchEvent, final int depthLimit, final long timeBudget,
+                                   final int threadsToUse, final int depthCompleted,
+                                   final Chessboard.Move bestMoveObj) {
+        searchEvent.end();
+        if (!searchEvent.shouldCommit()) {
+            return;
+        }
+        searchEvent.color = colorOfAI == WHITE ? "white" : "black";
+        searchEvent.depthCompleted = depthCompleted;
+        searchEvent.maxDepth = depthLimit;
+        searchEvent.threadCount = threadsToUse;
+        searchEvent.timeBudget = timeBudget;
+        searchEvent.nodes = searchNodeCount.sum();
+        searchEvent.bestMove = bestMoveObj != null ? bestMoveObj.toString() : null;
+        searchEvent.commit();
+    }
+
+    /*
+     * Picks the root move the endgame tables rate best: the quickest mate if
+     * the position is won, a drawing move if it's drawn, and the slowest mate
+     * if it's lost.
+     *
+     * @param endgameBitbase The tables.
+     * @param boardArray     The int[8][8] array that represents the chessboard.
+     * @param movesArray     The root moves.
+     * @param movesCount     The number of moves used in movesArray.
+     * @return               The index in movesArray of the move picked, or -1
+     *                       if the position isn't in the tables.
+     */
+    private int chooseBitbaseMove(final Bitbase endgameBitbase, final int[][] boardArray, final int[][] movesArray,
+                                  final int movesCount) {
+        if (endgameBitbase.probe(boardArray, colorOnTop, colorOfAI) == Bitbase.NOT_FOUND) {
+            return -1;
+        }
+        int bestMoveIdx = -1;
+        int bestValue = Integer.MIN_VALUE;
+
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            BoardArrays.makeMove(boardArray, movesArray[moveIdx]);
+            int replyValue = endgameBitbase.probe(boardArray, colorOnTop, colorOfPlayer);
+            BoardArrays.unmakeMove(boardArray, movesArray[moveIdx]);
+
+            /* The reply's value is from the other side's point of view, and
+               a ply further from mate. A move that leaves the tables, by
+               promoting to a knight or bishop, is counted as a draw. */
+            int moveValue;
+            if (replyValue == Bitbase.NOT_FOUND || replyValue == Bitbase.DRAW) {
+                moveValue = Bitbase.DRAW;
+            } else {
+                moveValue = replyValue < 0 ? -replyValue - 1 : -replyValue + 1;
+            }
+            if (moveValue > bestValue) {
+                bestValue = moveValue;
+                bestMoveIdx = moveIdx;
+            }
+        }
+        return bestMoveIdx;
+    }
+
+    /*
+     * Finds the root move with an encoding.
+     *
+     * @param movesArray  The root moves.
+     * @param movesCount  The number of moves used in movesArray.
+     * @param encodedMove The move, in PolyglotBook's 16-bit encoding.
+     * @return            The index in movesArray of the move, or -1 if it
+     *                    isn't there.
+     */
+    private int findEncodedMove(final int[][] movesArray, final int movesCount, final int encodedMove) {
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            if (PolyglotBook.encodeMove(movesArray[moveIdx], colorOnTop) == encodedMove) {
+                return moveIdx;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Works out the distance to mate of an iteration's score, if the score
+     * came from the endgame tables. Such a score is BITBASE_WIN_SCORE plus the
+     * table's value, which falls by one for each ply to mate, plus the depth
+     * left where the tables were probed. So the plies to mate from the root
+     * follow from the score and the depth of the iteration.
+     *
+     * @param score The score of the iteration's best move, as passed to
+     *              IterationListener.iterationCompleted().
+     * @param depth The depth of the iteration.
+     * @return      The number of plies to mate from the root position,
+     *              positive if the side searched for mates and negative if
+     *              it's mated, or 0 if the score didn't come from the
+     *              tables.
+     */
+    public static int bitbaseMatePlies(final double score, final int depth) {
+        if (Double.isInfinite(score) || Math.abs(score) < BITBASE_WIN_SCORE) {
+            return 0;
+        }
+        int matePlies = depth - (int) Math.round(Math.abs(score) - BITBASE_WIN_SCORE - Bitbase.MATE_VALUE);
+        return score > 0 ? matePlies : -matePlies;
+    }
+
+    /*
+     * Converts a value returned by Bitbase.probe() to a search score. Scores
+     * are from the point of view of the AI's color, and a win found nearer the
+     * root (with more depth left) scores higher, so the search heads for the
+     * quickest mate and puts off the slowest.
+     *
+     * @param probeValue     The value, which isn't Bitbase.NOT_FOUND.
+     * @param colorsTurnItIs The side to move in the position probed.
+     * @param depth          The depth left at the node.
+     * @return               The score.
+     */
+    private double bitbaseScore(final int probeValue, final int colorsTurnItIs, final int depth) {
+        int valueForAI = colorsTurnItIs == colorOfAI ? probeValue : -probeValue;
+        if (valueForAI == Bitbase.DRAW) {
+            return 0D;
+        }
+        return valueForAI > 0 ? BITBASE_WIN_SCORE + valueForAI + depth : -BITBASE_WIN_SCORE + valueForAI - depth;
+    }
+
+    /*
+     * Renders a moveArray as its from and to squares in algebraic notation,
+     * for instance "e2e4".
+     *
+     * @param moveArray The int[7] move array to render.
+     * @return          The move's from and to squares, concatenated.
+     */
+    private static String moveArrayToAlgNotn(final int[] moveArray) {
+        return BoardArrays.coordsToAlgNotn(moveArray[1], moveArray[2])
+               + BoardArrays.coordsToAlgNotn(moveArray[3], moveArray[4]);
+    }
+
+    /*
+     * Runs one iteration of the top level of the algorithm on the calling
+     * thread. algorithmCallExecutor() implements each root move on the board,
+     * calls algorithmLowerLevel(), reverses the move, and returns the score
+     * returned by algorithmLowerLevel(). The highest-scoring move is the one
+     * the algorithm will indicate as the AI's move this turn.
+     *
+     * @param boardArray   The int[8][8] array that represents the chessboard.
+     * @param movesArray   The root moves, as generated by
+     *                     BoardArrays.generatePossibleMoves().
+     * @param movesCount   The number of moves used in movesArray.
+     * @param depth        The depth of this iteration.
+     * @param weights      The evaluation weights to score positions with.
+     * @return             The index in movesArray of the best move found.
+     */
+    private int searchRoot(final int[][] boardArray, final int[][] movesArray, final int movesCount,
+                           final int depth, final EvaluationWeights weights) {
+        double alpha = Double.NEGATIVE_INFINITY;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        double beta = Double.POSITIVE_INFINITY;
+        double thisScore;
+        int bestMoveIdx = 0;
+        EvaluationState evaluationState = new EvaluationState(boardArray, colorOnTop, weights);
+        AttackMaps attackMaps = new AttackMaps(boardArray, colorOnTop);
+
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            try {
+                thisScore = algorithmCallExecutor(boardArray, evaluationState, attackMaps, true, movesArray[moveIdx],
+                                                  (colorOfAI == WHITE ? BLACK : WHITE), depth, alpha, beta);
+            } catch (KingIsInCheckException | CastlingNotPossibleException exception) {
+                thisScore = Double.NEGATIVE_INFINITY;
+            }
+            if (searchAborted) {
+                commitBatchEvents();
+                return bestMoveIdx;
+            }
+            if (thisScore >= bestScore) {
+                bestScore = thisScore;
+                bestMoveIdx = moveIdx;
+            }
+            if (thisScore > alpha) {
+                alpha = thisScore;
+            }
+        }
+
+        rootBestScore = bestScore;
+        commitBatchEvents();
+        return bestMoveIdx;
+    }
+
+    /*
+     * Runs one iteration of the top level of the algorithm with the root moves
+     * split across a pool of threads. Each root move is searched on its own
+     * copy of the board. The alpha value is shared between the threads, so a
+     * move that starts after a good score was found elsewhere still gets the
+     * benefit of the cutoff.
+     *
+     * @param boardArray   The int[8][8] array that represents the chessboard.
+     *                     It isn't modified.
+     * @param movesArray   The root moves, as generated by
+     *                     BoardArrays.generatePossibleMoves().
+     * @param movesCount   The number of moves used in movesArray.
+     * @param depth        The depth of this iteration.
+     * @param weights      The evaluation weights to score positions with.
+     * @param threadsToUse The number of threads to split the moves across.
+     * @return             The index in movesArray of the best move found.
+     */
+    private int searchRootParallel(final int[][] boardArray, final int[][] movesArray, final int movesCount,
+                                   final int depth, final EvaluationWeights weights, final int threadsToUse) {
+        ExecutorService threadPool = getSearchThreadPool(threadsToUse);
+        AtomicLong sharedAlphaBits = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+        double[] scores = new double[movesCount];
+        List<Future<?>> futures = new ArrayList<>(movesCount);
+        double bestScore = Double.NEGATIVE_INFINITY;
+        int bestMoveIdx = 0;
+
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            final int taskMoveIdx = moveIdx;
+            futures.add(threadPool.submit(() -> {
+                int[][] boardArrayCopy = BoardArrays.copyBoardArray(boardArray);
+                EvaluationState evaluationState = new EvaluationState(boardArrayCopy, colorOnTop, weights);
+                AttackMaps attackMaps = new AttackMaps(boardArrayCopy, colorOnTop);
+                double alpha = Double.longBitsToDouble(sharedAlphaBits.get());
+                double thisScore;
+                try {
+                    thisScore = algorithmCallExecutor(boardArrayCopy, evaluationState, attackMaps, true,
+                                                      movesArray[taskMoveIdx], (colorOfAI == WHITE ? BLACK : WHITE),
+                                                      depth, alpha, Double.POSITIVE_INFINITY);
+                } catch (KingIsInCheckException | CastlingNotPossibleException exception) {
+                    thisScore = Double.NEGATIVE_INFINITY;
+                }
+                scores[taskMoveIdx] = thisScore;
+
+                /* The shared alpha is raised if this score bests it. */
+                long currentAlphaBits = sharedAlphaBits.get();
+                while (thisScore > Double.longBitsToDouble(currentAlphaBits)
+                       && !sharedAlphaBits.compareAndSet(currentAlphaBits, Double.doubleToLongBits(thisScore))) {
+                    currentAlphaBits = sharedAlphaBits.get();
+                }
+                commitBatchEvents();
+            }));
+        }
+
+        /* Waiting on every task. An exception thrown inside a task is
+           rethrown here, so it surfaces the same as in a single-threaded
+           search. */
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("search interrupted", exception);
+            } catch (ExecutionException exception) {
+                if (exception.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException(exception.getCause());
+            }
+        }
+
+        /* The same tie-breaking as searchRoot(): the last of several
+           equally-scored moves wins. */
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            if (scores[moveIdx] >= bestScore) {
+                bestScore = scores[moveIdx];
+                bestMoveIdx = moveIdx;
+            }
+        }
+        rootBestScore = bestScore;
+
+        return bestMoveIdx;
+    }
+
+    /*
+     * Removes from the root moves any castling move the castling rights don't
+     * allow, shifting the moves after it down so the used part of the array
+     * stays contiguous.
+     *
+     * @param movesArray        The root moves.
+     * @param movesCount        The number of moves used in movesArray.
+     * @param castlingRightsArg The castling rights of the position.
+     * @return                  The number of moves left.
+     */
+    private static int removeDisallowedCastling(final int[][] movesArray, final int movesCount,
+                                                final int castlingRightsArg) {
+        int keptCount = 0;
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            if (BoardArrays.isCastlingAllowed(movesArray[moveIdx], castlingRightsArg)) {
+                System.arraycopy(movesArray[moveIdx], 0, movesArray[keptCount], 0, 7);
+                keptCount++;
+            }
+        }
+        for (int moveIdx = keptCount; moveIdx < movesCount; moveIdx++) {
+            Arrays.fill(movesArray[moveIdx], 0);
+        }
+        return keptCount;
+    }
+
+    /*
+     * Returns the thread pool used by searchRootParallel(), creating it (or
+     * replacing it, if the thread count has changed since it was created).
+     * The threads are daemon threads so an idle pool never keeps the JVM
+     * alive.
+     *
+     * @param threadsToUse The number of threads the pool should have.
+     * @return             An ExecutorService with that many threads.
+     */
+    private synchronized ExecutorService getSearchThreadPool(final int threadsToUse) {
+        if (searchThreadPool == null || searchThreadPoolSize != threadsToUse) {
+            if (searchThreadPool != null) {
+                searchThreadPool.shutdown();
+            }
+            searchThreadPool = Executors.newFixedThreadPool(threadsToUse, runnable -> {
+                Thread thread = new Thread(runnable, "minimax-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+            searchThreadPoolSize = threadsToUse;
+        }
+        return searchThreadPool;
+    }
+
+    /*
+     * Adds a completed search to the cumulative counters.
+     *
+     * @param latencyNanos The time the search took, in nanoseconds.
+     */
+    private void recordSearch(final long latencyNanos) {
+        searchCount.incrementAndGet();
+        totalLatencyNanos.addAndGet(latencyNanos);
+        nodeCount.add(searchNodeCount.sum());
+        synchronized (latencySamples) {
+            latencySamples[(int) (latencySamplesCount % LATENCY_SAMPLES_LENGTH)] = latencyNanos;
+            latencySamplesCount++;
+        }
+    }
+
+    /*
+     * Empties the memoization map used by evaluateBoard(), so that a benchmark
+     * can time searches that start from a cold cache.
+     */
+    void clearEvaluationCache() {
+        evaluateBoardMemoizeMap.clear();
+    }
+
+    /*
+     * Calls BoardArrays.generatePossibleMoves(), accumulating the call into
+     * this thread's MoveGenerationBatchEvent if that event is enabled. A full
+     * batch is committed and replaced by a fresh one.
+     *
+     * @param boardArray  The int[8][8] array that represents the chessboard.
+     * @param movesArray  The int[128][7] array to save the moves to.
+     * @param colorToMove The color to generate moves for.
+     * @param attackMaps  The attack maps of boardArray, or null to test the
+     *                    moves' legality by tracing from the king.
+     * @return            The number of moves generated.
+     */
+    private int generatePossibleMoves(final int[][] boardArray, final int[][] movesArray, final int colorToMove,
+                                      final AttackMaps attackMaps) {
+        MoveGenerationBatchEvent batchEvent = MOVE_GENERATION_BATCH_EVENT.get();
+        if (!batchEvent.isEnabled()) {
+            return BoardArrays.generatePossibleMoves(boardArray, movesArray, colorToMove, colorOnTop, attackMaps);
+        }
+        if (batchEvent.calls == 0) {
+            batchEvent.begin();
+        }
+        long callStartNanos = System.nanoTime();
+        int movesCount = BoardArrays.generatePossibleMoves(boardArray, movesArray, colorToMove, colorOnTop,
+                                                           attackMaps);
+        batchEvent.timeInCalls += System.nanoTime() - callStartNanos;
+        batchEvent.movesGenerated += movesCount;
+        if (++batchEvent.calls >= MoveGenerationBatchEvent.BATCH_SIZE) {
+            batchEvent.commit();
+            MOVE_GENERATION_BATCH_EVENT.remove();
+        }
+        return movesCount;
+    }
+
+    /*
+     * Calls evaluateBoard(), accumulating the call into this thread's
+     * EvaluationBatchEvent if that event is enabled. A full batch is committed
+     * and replaced by a fresh one.
+     *
+     * @param boardArray      The int[8][8] array used to represent the chessboard.
+     * @param evaluationState The material and piece-square state of
+     *                        boardArray.
+     * @param attackMaps      The attack maps of boardArray.
+     * @param colorsTurnItIs  The color to evaluate the board for.
+     * @return                The score returned by evaluateBoard().
+     */
+    private double evaluateBoardProfiled(final int[][] boardArray, final EvaluationState evaluationState,
+                                         final AttackMaps attackMaps, final int colorsTurnItIs) {
+        EvaluationBatchEvent batchEvent = EVALUATION_BATCH_EVENT.get();
+        if (!batchEvent.isEnabled()) {
+            return evaluateBoard(boardArray, evaluationState, attackMaps, colorsTurnItIs);
+        }
+        if (batchEvent.calls == 0) {
+            batchEvent.begin();
+        }
+        long callStartNanos = System.nanoTime();
+        double score = evaluateBoard(boardArray, evaluationState, attackMaps, colorsTurnItIs);
+        batchEvent.timeInCalls += System.nanoTime() - callStartNanos;
+        if (++batchEvent.calls >= EvaluationBatchEvent.BATCH_SIZE) {
+            batchEvent.commit();
+            EVALUATION_BATCH_EVENT.remove();
+        }
+        return score;
+    }
+
+    /*
+     * Commits this thread's partial batch events, if any, so that calls made
+     * during a search aren't held over into the next one.
+     */
+    private static void commitBatchEvents() {
+        MoveGenerationBatchEvent moveGenerationBatchEvent = MOVE_GENERATION_BATCH_EVENT.get();
+        if (moveGenerationBatchEvent.calls > 0) {
+            moveGenerationBatchEvent.commit();
+            MOVE_GENERATION_BATCH_EVENT.remove();
+        }
+        EvaluationBatchEvent evaluationBatchEvent = EVALUATION_BATCH_EVENT.get();
+        if (evaluationBatchEvent.calls > 0) {
+            evaluationBatchEvent.commit();
+            EVALUATION_BATCH_EVENT.remove();
+        }
+    }
+
     /*
      * This method implements the levels of the minimax algorithm after the 1st
      * call. Alpha/beta pruning is done.
      *
-     * @param boardArray     The int[8][8] array that represents the chessboard.
-     * @param maximize       A boolean, true if this level of the algorithm is
-     *                       a maximizing step, false if it's a minimizing step.
-     * @param depth          The depth counter, which is decremented with each
-     *                       successive recursive call. When it reaches zero,
-     *                       this method returns the result of applying the
-     *                       evaluateBoard() method to boardArray instead of
-     *                       its normal logic.
-     * @param colorsTurnItIs An integer, indicating which side of the game this
-     *                       level of the algorithm is calculating for. Either
-     *                       BoardArrays.BLACK or BoardArrays.WHITE.
-     * @param alphaArg       The value for alpha.
-     * @param betaArg        The value for beta.
-     */
-    private double algorithmLowerLevel(final int[][] boardArray, final boolean maximize, final int depth,
+     * @param boardArray      The int[8][8] array that represents the chessboard.
+     * @param evaluationState The material and piece-square state of
+     *                        boardArray.
+     * @param attackMaps      The attack maps of boardArray.
+     * @param maximize        A boolean, true if this level of the algorithm is
+     *                        a maximizing step, false if it's a minimizing step.
+     * @param depth           The depth counter, which is decremented with each
+     *                        successive recursive call. When it reaches zero,
+     *                        this method returns the result of applying the
+     *                        evaluateBoard() method to boardArray instead of
+     *                        its normal logic.
+     * @param colorsTurnItIs  An integer, indicating which side of the game this
+     *                        level of the algorithm is calculating for. Either
+     *                        BoardArrays.BLACK or BoardArrays.WHITE.
+     * @param alphaArg        The value for alpha.
+     * @param betaArg         The value for beta.
+     */
+    private double algorithmLowerLevel(final int[][] boardArray, final EvaluationState evaluationState,
+                                       final AttackMaps attackMaps, final boolean maximize, final int depth,
                                        final int colorsTurnItIs, final double alphaArg, final double betaArg) {
         double bestScore;
         double thisScore;
@@ -235,10 +1318,36 @@ public class MinimaxRunner {
         int[][] movesArray = new int[128][7];
         int movesArrayUsedLength;
 
+        /* The node is counted, and if the search has run past its deadline or
+           its node limit it's aborted. The value returned once the search is
+           aborted is meaningless; algorithmTopLevel() discards the
+           iteration. */
+        searchNodeCount.increment();
+        if (searchAborted) {
+            return 0D;
+        } else if (System.nanoTime() > searchDeadlineNanos
+                   || searchNodeLimit != Long.MAX_VALUE && searchNodeCount.sum() >= searchNodeLimit) {
+            searchAborted = true;
+            return 0D;
+        }
+
+        /* If the position is in the endgame tables, its exact score is
+           returned without searching it. The tables only hold positions with
+           three pieces, so the probe, which scans the board, is skipped
+           unless the occupancy evaluationState keeps says there are that
+           few. */
+        Bitbase endgameBitbase = bitbase;
+        if (endgameBitbase != null && Long.bitCount(evaluationState.getOccupiedBitboard()) <= 3) {
+            int probeValue = endgameBitbase.probe(boardArray, colorOnTop, colorsTurnItIs);
+            if (probeValue != Bitbase.NOT_FOUND) {
+                return bitbaseScore(probeValue, colorsTurnItIs, depth);
+            }
+        }
+
         /* If the depth counter has decreased to 0, the value of evaluateBoard()
            is returned rather than recursing any further. */
         if (depth == 0) {
-            return evaluateBoard(boardArray, colorsTurnItIs);
+            return evaluateBoardProfiled(boardArray, evaluationState, attackMaps, colorsTurnItIs);
         }
 
         /* bestScore is initialized to the worst possible score for the
@@ -246,7 +1355,7 @@ public class MinimaxRunner {
         bestScore = maximize ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
 
         /* Moves are calculated and saved to movesArray. */
-        movesArrayUsedLength = BoardArrays.generatePossibleMoves(boardArray, movesArray, colorsTurnItIs, colorOnTop);
+        movesArrayUsedLength = generatePossibleMoves(boardArray, movesArray, colorsTurnItIs, attackMaps);
 
         /* BoardArrays.generatePossibleMoves() only returns a 0 if the king is
            in checkmate. That's the worst possible outcome if it was generating
@@ -261,13 +1370,17 @@ public class MinimaxRunner {
         for (int moveIdx = 0; moveIdx < movesArrayUsedLength; moveIdx++) {
             /* The score is returned from the lower level call. */
             try {
-                thisScore = algorithmCallExecutor(boardArray, !maximize, movesArray[moveIdx],
-                                                  (colorsTurnItIs == WHITE ? BLACK : WHITE), depth, alpha, beta);
+                thisScore = algorithmCallExecutor(boardArray, evaluationState, attackMaps, !maximize,
+                                                  movesArray[moveIdx], (colorsTurnItIs == WHITE ? BLACK : WHITE),
+                                                  depth, alpha, beta);
             } catch (KingIsInCheckException | CastlingNotPossibleException exception) {
                 thisScore = maximize ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
             }
             /* If the score returned is the best possible score, further calls
                are skipped, and it's returned directly. */
+            if (searchAborted) {
+                return 0D;
+            }
             if (maximize ? thisScore == Double.POSITIVE_INFINITY : thisScore == Double.NEGATIVE_INFINITY) {
                 return thisScore;
             }
@@ -299,122 +1412,65 @@ public class MinimaxRunner {
      * which has the same logic when algorithmTopLevel() does it and when
      * algorithmLowerLevel() does it, so it's refactored into its own method.
      *
-     * @param boardArray     The int[8][8] array used to model the chessboard.
-     * @param maximize       A boolean, whether this step of the algorithm is
-     *                       maximizing the score (if true) or minimizing it (if
-     *                       false).
-     * @param moveArray      The array representing the individual move to execute.
-     * @param colorsTurnItIs The color whose turn is being modelled in the call
-     *                       of algorithmLowerLevel().
-     * @param depth          A number that decreases by 1 each successive
-     *                       recursive call. When algorithmLowerLevel() is
-     *                       called with depth=0, it returns the result of
-     *                       evaluateBoard() rather than conducting its normal
-     *                       logic.
-     * @param alpha          The value for alpha.
-     * @param beta           The value for beta.
-     */
-    private double algorithmCallExecutor(final int[][] boardArray, final boolean maximize,
-                                         final int[] moveArray, final int colorsTurnItIs,
-                                         final int depth, final double alpha, final double beta
+     * @param boardArray      The int[8][8] array used to model the chessboard.
+     * @param evaluationState The material and piece-square state of
+     *                        boardArray, which is updated alongside it.
+     * @param attackMaps      The attack maps of boardArray, which make the
+     *                        moves on it.
+     * @param maximize        A boolean, whether this step of the algorithm is
+     *                        maximizing the score (if true) or minimizing it (if
+     *                        false).
+     * @param moveArray       The array representing the individual move to execute.
+     * @param colorsTurnItIs  The color whose turn is being modelled in the call
+     *                        of algorithmLowerLevel().
+     * @param depth           A number that decreases by 1 each successive
+     *                        recursive call. When algorithmLowerLevel() is
+     *                        called with depth=0, it returns the result of
+     *                        evaluateBoard() rather than conducting its normal
+     *                        logic.
+     * @param alpha           The value for alpha.
+     * @param beta            The value for beta.
+     */
+    private double algorithmCallExecutor(final int[][] boardArray, final EvaluationState evaluationState,
+                                         final AttackMaps attackMaps, final boolean maximize, final int[] moveArray,
+                                         final int colorsTurnItIs, final int depth, final double alpha,
+                                         final double beta
                                          ) throws IllegalArgumentException, KingIsInCheckException,
                                                   CastlingNotPossibleException {
         // opposing color = (colorsTurnItIs == WHITE ? BLACK : WHITE)
-        int movedPieceInt = moveArray[0];
-        int fromXIdx = moveArray[1];
-        int fromYIdx = moveArray[2];
-        int toXIdx = moveArray[3];
-        int toYIdx = moveArray[4];
-        int capturedPieceInt = moveArray[5];
-        int savedPieceNo1;
-        int savedPieceNo2;
-        boolean isCastlingKingside = false;
-        boolean isCastlingQueenside = false;
+        int movingColor = colorsTurnItIs == WHITE ? BLACK : WHITE;
         double retval;
         String thisColorStr = colorsTurnItIs == WHITE ? "black" : "white";
-        Chessboard.Move moveObj;
 
         /* The same boardArray is passed down the call stack and reused by
            every step of the algorithm, to avoid having to clone it each time.
            That means I need to execute this moveArray's move on the board,
            execute the recursive call, and then undo the move so the board can
-           be reused. savedPiece holds whatever was at the square the piece
-           was moved to so it can be restored. */
-
-        if ((movedPieceInt & ROOK) != 0 && (capturedPieceInt & KING) != 0
-            && (movedPieceInt & WHITE) == (capturedPieceInt & WHITE)) {
-            if (toXIdx != 0 && toXIdx !=  7) {
-                throw new IllegalArgumentException("algorithmCallExecutor() called with a moveArray that indicated "
-                                                   + "castling but the Rook isn't in position");
-            }
-            if (toXIdx == 7) {
-                isCastlingKingside = true;
-                savedPieceNo1 = boardArray[5][toYIdx];
-                savedPieceNo2 = boardArray[6][fromYIdx];
-            } else {
-                isCastlingQueenside = true;
-                savedPieceNo1 = boardArray[2][toYIdx];
-                savedPieceNo2 = boardArray[3][fromYIdx];
-            }
-
-            moveObj = new Chessboard.Move(chessboard.getPieceAtCoords(fromXIdx, fromYIdx),
-                                          fromXIdx, fromYIdx, toXIdx, toYIdx,
-                                          capturedPieceInt, isCastlingKingside, isCastlingQueenside, 0);
-
-            /* The boardArray being used is the same one this chessboard
-               object manipulates internally when movePiece() is called. Here
-               movePiece() is used because castling depends on state information
-               (whether the king or rook has moved so far, which makes castling
-               impossible) that's tracked internally by the Chessboard object. */
-            chessboard.movePiece(moveObj);
-
-            retval = algorithmLowerLevel(boardArray, maximize, depth - 1, colorsTurnItIs, alpha, beta);
-
-            if (isCastlingKingside) {
-                // moved pierce is boardArray[6][toYIdx];
-                // captured piece is boardArray[5][fromYIdx];
-                boardArray[6][toYIdx] = savedPieceNo1;
-                boardArray[6][fromYIdx] = savedPieceNo2;
-            } else {
-                // moved piece is boardArray[3][toYIdx];
-                // captured piece is boardArray[2][fromYIdx];
-                boardArray[2][toYIdx] = savedPieceNo1;
-                boardArray[3][fromYIdx] = savedPieceNo2;
-            }
-        } else if (moveArray[6] != 0) {
-            /* The 7th element in a moveArray is only nonzero if the move is a
-               pawn being promoted. */
-            if (BoardArrays.wouldKingBeInCheck(boardArray, fromXIdx, fromYIdx, toXIdx, toYIdx, colorsTurnItIs, colorOnTop)) {
-                throw new KingIsInCheckException("Move would place " + thisColorStr + "'s king in check or "
-                                                 + thisColorStr + "'s King is in check and this move doesn't fix that. "
-                                                 + "Move can't be made.");
-            }
-
-            int promotedFromPieceInt = boardArray[fromXIdx][fromYIdx];
-            savedPieceNo1 = boardArray[toXIdx][toYIdx];
-            boardArray[toXIdx][toYIdx] = moveArray[6];
-            boardArray[fromXIdx][fromYIdx] = 0;
-
-            retval = algorithmLowerLevel(boardArray, maximize, depth - 1, colorsTurnItIs, alpha, beta);
-
-            boardArray[fromXIdx][fromYIdx] = promotedFromPieceInt;
-            boardArray[toXIdx][toYIdx] = savedPieceNo1;
-        } else {
-            if (BoardArrays.wouldKingBeInCheck(boardArray, fromXIdx, fromYIdx, toXIdx, toYIdx, colorsTurnItIs, colorOnTop)) {
-                throw new KingIsInCheckException("Move would place " + thisColorStr + "'s king in check or "
-                                                 + thisColorStr + "'s King is in check and this move doesn't fix that. "
-                                                 + "Move can't be made.");
-            }
-
-            savedPieceNo1 = boardArray[toXIdx][toYIdx];
-            boardArray[toXIdx][toYIdx] = moveArray[0];
-            boardArray[fromXIdx][fromYIdx] = 0;
+           be reused. The attack maps make and unmake the move the way
+           BoardArrays.makeMove() and BoardArrays.unmakeMove() do, handling
+           promotion and castling, and since they only touch boardArray the
+           search never mutates the Chessboard object, which lets it run on
+           several threads at once. The evaluation state is updated with
+           the board, so evaluateBoard() never has to recount the material. */
+        attackMaps.makeMove(boardArray, moveArray);
+
+        /* colorsTurnItIs is the color that moves next, so it's the moving
+           color's king that mustn't be left in check. The move generator
+           already discards such moves; with the attack maps up to date this
+           safeguard is a lookup. */
+        if (attackMaps.isKingInCheck(movingColor)) {
+            attackMaps.unmakeMove(boardArray, moveArray);
+            throw new KingIsInCheckException("Move would place " + thisColorStr + "'s king in check or "
+                                             + thisColorStr + "'s King is in check and this move doesn't fix that. "
+                                             + "Move can't be made.");
+        }
+        evaluationState.makeMove(moveArray);
 
-            retval = algorithmLowerLevel(boardArray, maximize, depth - 1, colorsTurnItIs, alpha, beta);
+        retval = algorithmLowerLevel(boardArray, evaluationState, attackMaps, maximize, depth - 1, colorsTurnItIs,
+                                     alpha, beta);
 
-            boardArray[fromXIdx][fromYIdx] = boardArray[toXIdx][toYIdx];
-            boardArray[toXIdx][toYIdx] = savedPieceNo1;
-        }
+        evaluationState.unmakeMove(moveArray);
+        attackMaps.unmakeMove(boardArray, moveArray);
 
         return retval;
     }
@@ -429,94 +1485,121 @@ public class MinimaxRunner {
      * @param colorsTurnItIs An integer indicating which color the AI is
      *                       playing (either BoardArrays.WHITE or BoardArrays.BLACK).
      */
-    private double evaluateBoard(final int[][] boardArray, final int colorsTurnItIs) {
-        /* This statement derives from the boardArray a string value that is
-           guaranteed to be unique for that board configuration, so that this
-           method's memoization HashMap evaluateBoardMemoizeMap can store
-           the board's score with that key. The format() statement creates a
-           200-character hexadecimal string that comprises each element of
-           boardArray, in order, in hex.
-
-           Doing it as one big call to String.format avoids the overhead of
-           having to instance a StringJoiner object, and use 2 for loops with 64
-           calls to StringJoiner.add() to populate it. It's ugly but definitely
-           faster.  */
-        String boardStr = String.format("""
-                        %03x%03x%03x%03x%03x%03x%03x%03x
-                        %03x%03x%03x%03x%03x%03x%03x%03x
-                        %03x%03x%03x%03x%03x%03x%03x%03x
-                        %03x%03x%03x%03x%03x%03x%03x%03x
-                        %03x%03x%03x%03x%03x%03x%03x%03x
-                        %03x%03x%03x%03x%03x%03x%03x%03x
-                        %03x%03x%03x%03x%03x%03x%03x%03x
-                        %03x%03x%03x%03x%03x%03x%03x%03x""",
-            boardArray[0][0], boardArray[0][1], boardArray[0][2], boardArray[0][3], boardArray[0][4], boardArray[0][5], boardArray[0][6], boardArray[0][7],
-            boardArray[1][0], boardArray[1][1], boardArray[1][2], boardArray[1][3], boardArray[1][4], boardArray[1][5], boardArray[1][6], boardArray[1][7],
-            boardArray[2][0], boardArray[2][1], boardArray[2][2], boardArray[2][3], boardArray[2][4], boardArray[2][5], boardArray[2][6], boardArray[2][7],
-            boardArray[3][0], boardArray[3][1], boardArray[3][2], boardArray[3][3], boardArray[3][4], boardArray[3][5], boardArray[3][6], boardArray[3][7],
-            boardArray[4][0], boardArray[4][1], boardArray[4][2], boardArray[4][3], boardArray[4][4], boardArray[4][5], boardArray[4][6], boardArray[4][7],
-            boardArray[5][0], boardArray[5][1], boardArray[5][2], boardArray[5][3], boardArray[5][4], boardArray[5][5], boardArray[5][6], boardArray[5][7],
-            boardArray[6][0], boardArray[6][1], boardArray[6][2], boardArray[6][3], boardArray[6][4], boardArray[6][5], boardArray[6][6], boardArray[6][7],
-            boardArray[7][0], boardArray[7][1], boardArray[7][2], boardArray[7][3], boardArray[7][4], boardArray[7][5], boardArray[7][6], boardArray[7][7]);
-
-        /* The boardStr value is used to memoize the return values of this
-           method to evaluateBoardMemoizeMap. */
-        if (evaluateBoardMemoizeMap.containsKey(boardStr)) {
-            return evaluateBoardMemoizeMap.get(boardStr);
+    double evaluateBoard(final int[][] boardArray, final int colorsTurnItIs) {
+        return evaluateBoard(boardArray, new EvaluationState(boardArray, colorOnTop, evaluationWeights),
+                             new AttackMaps(boardArray, colorOnTop), colorsTurnItIs);
+    }
+
+    /*
+     * Evaluates a board whose material and piece-square state and attack
+     * maps are being kept up to date by the caller, as the search does.
+     *
+     * @param boardArray      The int[8][8] array used to represent the chessboard.
+     * @param evaluationState The material and piece-square state of
+     *                        boardArray.
+     * @param attackMaps      The attack maps of boardArray.
+     * @param colorsTurnItIs  An integer indicating which color the AI is
+     *                        playing (either BoardArrays.WHITE or
+     *                        BoardArrays.BLACK).
+     */
+    private double evaluateBoard(final int[][] boardArray, final EvaluationState evaluationState,
+                                 final AttackMaps attackMaps, final int colorsTurnItIs) {
+        /* The score is memoized by the Zobrist key of the pieces, which
+           evaluationState keeps up to date as moves are made, so finding the
+           key costs nothing. The score is relative to colorsTurnItIs, so that
+           color is folded into the key as well; otherwise the same board
+           reached with the other side to move would pick up a score of the
+           wrong sign. */
+        long boardKey = evaluationState.getPiecesKey() ^ Zobrist.sideToMoveKey(colorsTurnItIs);
+        evaluateBoardLookups.increment();
+        Double memoizedScore = evaluateBoardMemoizeMap.get(boardKey);
+        if (memoizedScore != null) {
+            evaluateBoardHits.increment();
+            return memoizedScore;
         }
 
-        int otherColor = colorsTurnItIs == WHITE ? BLACK : WHITE;
-        int whiteIndex = 0;
-        int blackIndex = 1;
-        int kingIndex = 0;
-        int queenIndex = 1;
-        int rookIndex = 2;
-        int bishopIndex = 3;
-        int knightIndex = 4;
-        int pawnIndex = 5;
+        double totalScore = scoreBoard(boardArray, evaluationState, attackMaps, colorsTurnItIs);
 
-        int thisColorIndex = colorsTurnItIs == WHITE ? whiteIndex : blackIndex;
-        int otherColorIndex = colorsTurnItIs == WHITE ? blackIndex : whiteIndex;
+        /* When the map reaches its capacity it's cleared, rather than evicting
+           entries one at a time, which would need bookkeeping on every
+           lookup. */
+        if (evaluateBoardMemoizeMap.size() >= hashSize) {
+            evaluateBoardMemoizeMap.clear();
+        }
+        evaluateBoardMemoizeMap.put(boardKey, totalScore);
+        return totalScore;
+    }
 
-        double[][] piecesCounts = new double[2][6];
+    /*
+     * Computes the score that evaluateBoard() memoizes. It's separate from
+     * evaluateBoard() so it can be benchmarked without the memoization.
+     *
+     * @param boardArray     The int[8][8] array used to represent the chessboard.
+     * @param colorsTurnItIs An integer indicating which color the score is
+     *                       relative to (either BoardArrays.WHITE or
+     *                       BoardArrays.BLACK).
+     * @return               The score; higher is better for colorsTurnItIs.
+     */
+    double scoreBoard(final int[][] boardArray, final int colorsTurnItIs) {
+        return scoreBoard(boardArray, new EvaluationState(boardArray, colorOnTop, evaluationWeights),
+                          new AttackMaps(boardArray, colorOnTop), colorsTurnItIs);
+    }
 
-        /* A highly-valued component of the calculation is whether a side's king
-           is in check or not, so that's computed for both sides. */
-        int whiteKingNotInCheckBonus = BoardArrays.isKingInCheck(boardArray, WHITE, colorOnTop) ? 0 : 1;
-        int blackKingNotInCheckBonus = BoardArrays.isKingInCheck(boardArray, BLACK, colorOnTop) ? 0 : 1;
-
-        /* Switch statement's case values must be constants at compile time, so
-           the piece integer values are used, and they're all stored to an array
-           by key indexes, where they can be recovered from later. */
-        for (int[] boardRow : boardArray) {
-            for (int pieceInt : boardRow) {
-                switch (pieceInt) {
-                    case WHITE | KING:           piecesCounts[whiteIndex][kingIndex] = whiteKingNotInCheckBonus;
-                    case WHITE | QUEEN:          piecesCounts[whiteIndex][queenIndex]++; break;
-                    case WHITE | ROOK:           piecesCounts[whiteIndex][rookIndex]++; break;
-                    case WHITE | BISHOP:         piecesCounts[whiteIndex][bishopIndex]++; break;
-                    case WHITE | KNIGHT | RIGHT: case WHITE | KNIGHT | LEFT:
-                                                 piecesCounts[whiteIndex][knightIndex]++; break;
-                    case WHITE | PAWN:           piecesCounts[whiteIndex][pawnIndex]++; break;
-                    case BLACK | KING:           piecesCounts[blackIndex][kingIndex] = blackKingNotInCheckBonus;
-                    case BLACK | QUEEN:          piecesCounts[blackIndex][queenIndex]++; break;
-                    case BLACK | ROOK:           piecesCounts[blackIndex][rookIndex]++; break;
-                    case BLACK | BISHOP:         piecesCounts[blackIndex][bishopIndex]++; break;
-                    case BLACK | KNIGHT | RIGHT: case BLACK | KNIGHT | LEFT:
-                                                 piecesCounts[blackIndex][knightIndex]++; break;
-                    case BLACK | PAWN:           piecesCounts[blackIndex][pawnIndex]++; break;
-                    default: break;
-                }
-            }
-        }
+    /*
+     * Computes the score that evaluateBoard() memoizes from a board, its
+     * material and piece-square state, and its attack maps. The material,
+     * piece-square and pawn structure terms are read from the state and
+     * whether the kings are in check from the attack maps; the board is only
+     * scanned for the mobility.
+     *
+     * @param boardArray      The int[8][8] array used to represent the chessboard.
+     * @param evaluationState The material and piece-square state of
+     *                        boardArray.
+     * @param attackMaps      The attack maps of boardArray.
+     * @param colorsTurnItIs  An integer indicating which color the score is
+     *                        relative to (either BoardArrays.WHITE or
+     *                        BoardArrays.BLACK).
+     * @return                The score; higher is better for colorsTurnItIs.
+     * @throws IllegalStateException If the incremental evaluation is being
+     *                               checked and evaluationState or attackMaps
+     *                               doesn't match boardArray.
+     */
+    double scoreBoard(final int[][] boardArray, final EvaluationState evaluationState, final AttackMaps attackMaps,
+                      final int colorsTurnItIs) throws IllegalStateException {
+        int otherColor = colorsTurnItIs == WHITE ? BLACK : WHITE;
 
-        /* Three special values are calculated for the pawns in play (see
-           tallySpecialPawns() for more info) by this method and returned as a
-           double[3] array. */
-        double[] thisColorSpecialPawnsTallies = tallySpecialPawns(boardArray, colorsTurnItIs);
-        double[] otherColorSpecialPawnsTallies = tallySpecialPawns(boardArray, otherColor);
+        if (isIncrementalEvaluationChecked) {
+            evaluationState.verify(boardArray);
+            attackMaps.verify(boardArray);
+        }
 
-        double specialPawnScore = getSpecialPawnScore(thisColorSpecialPawnsTallies, otherColorSpecialPawnsTallies);
+        /* A highly-valued component of the calculation is whether a side's king
+           is in check or not, so that's looked up for both sides. */
+        int thisKingNotInCheckBonus = attackMaps.isKingInCheck(colorsTurnItIs) ? 0 : 1;
+        int otherKingNotInCheckBonus = attackMaps.isKingInCheck(otherColor) ? 0 : 1;
+
+        /* The pawns' key, for the pawn hash table, and the bitboards of each
+           color's pawns and of every occupied square, for PawnStructure to
+           count from, are kept by evaluationState. */
+        long whitePawns = evaluationState.getPawnBitboard(WHITE);
+        long blackPawns = evaluationState.getPawnBitboard(BLACK);
+        long occupied = evaluationState.getOccupiedBitboard();
+
+        /* Each color's doubled, isolated and blocked pawns count against it,
+           and its passed pawns for it (see PawnStructure for more info). The
+           doubled, isolated and passed tallies only depend on the pawns, so
+           they come from the pawn hash table; whether a pawn is blocked
+           depends on the other pieces too, so that's counted every time. */
+        long pawnTallies = lookUpPawnTallies(whitePawns, blackPawns, evaluationState.getPawnsKey());
+        int whitePenalties = (int) (pawnTallies & 0xff) + (int) (pawnTallies >>> 8 & 0xff)
+                             - (int) (pawnTallies >>> 16 & 0xff)
+                             + PawnStructure.countBlocked(whitePawns, occupied, colorOnTop == WHITE);
+        int blackPenalties = (int) (pawnTallies >>> 24 & 0xff) + (int) (pawnTallies >>> 32 & 0xff)
+                             - (int) (pawnTallies >>> 40 & 0xff)
+                             + PawnStructure.countBlocked(blackPawns, occupied, colorOnTop == BLACK);
+
+        double specialPawnScore = colorsTurnItIs == WHITE ? getSpecialPawnScore(whitePenalties, blackPenalties)
+                                                          : getSpecialPawnScore(blackPenalties, whitePenalties);
 
         /* Mobility is the total number of moves available to that color. */
         double thisColorMobility = totalColorMobility(boardArray, colorsTurnItIs);
@@ -527,36 +1610,44 @@ public class MinimaxRunner {
            outshines every other value in this calculation by a wide margin. If
            a move would put the player's side's king in check, that move will be
            weighted far above every other possible move. */
-        double kingScore = 200D * (piecesCounts[thisColorIndex][kingIndex]
-                                   - piecesCounts[otherColorIndex][kingIndex]);
+        double kingScore = 200D * (thisKingNotInCheckBonus - otherKingNotInCheckBonus);
 
         /* These weighted scores are calculated from the difference between the
-           number of pieces in play for each color. */
-        double queenScore = 9D * (piecesCounts[thisColorIndex][queenIndex]
-                                  - piecesCounts[otherColorIndex][queenIndex]);
-        double rookScore = 5D * (piecesCounts[thisColorIndex][rookIndex]
-                                 - piecesCounts[otherColorIndex][rookIndex]);
-        double bishopScore = 3D * (piecesCounts[thisColorIndex][bishopIndex]
-                                   - piecesCounts[otherColorIndex][bishopIndex]);
-        double knightScore = 3D * (piecesCounts[thisColorIndex][knightIndex]
-                                   - piecesCounts[otherColorIndex][knightIndex]);
-        double generalPawnScore = (piecesCounts[thisColorIndex][pawnIndex]
-                                   - piecesCounts[otherColorIndex][pawnIndex]);
-
-        double totalScore = (kingScore + queenScore + rookScore + bishopScore
-                            + knightScore + generalPawnScore + specialPawnScore
-                            + mobilityScore);
-        evaluateBoardMemoizeMap.put(boardStr, totalScore);
-        return totalScore;
+           number of pieces in play for each color, which evaluationState
+           keeps count of. */
+        double queenScore = 9D * (evaluationState.getPieceCount(colorsTurnItIs, QUEEN)
+                                  - evaluationState.getPieceCount(otherColor, QUEEN));
+        double rookScore = 5D * (evaluationState.getPieceCount(colorsTurnItIs, ROOK)
+                                 - evaluationState.getPieceCount(otherColor, ROOK));
+        double bishopScore = 3D * (evaluationState.getPieceCount(colorsTurnItIs, BISHOP)
+                                   - evaluationState.getPieceCount(otherColor, BISHOP));
+        double knightScore = 3D * (evaluationState.getPieceCount(colorsTurnItIs, KNIGHT)
+                                   - evaluationState.getPieceCount(otherColor, KNIGHT));
+        double generalPawnScore = (evaluationState.getPieceCount(colorsTurnItIs, PAWN)
+                                   - evaluationState.getPieceCount(otherColor, PAWN));
+
+        /* The piece-square score rewards pieces standing on good squares for
+           their type. */
+        double pieceSquareScore = evaluationState.getPieceSquareSum(colorsTurnItIs)
+                                  - evaluationState.getPieceSquareSum(otherColor);
+
+        return (kingScore + queenScore + rookScore + bishopScore
+                + knightScore + generalPawnScore + specialPawnScore
+                + mobilityScore + pieceSquareScore);
     }
 
-    private static double getSpecialPawnScore(double[] thisColorSpecialPawnsTallies, double[] otherColorSpecialPawnsTallies) {
-        double thisColorSpecialPawnScore = (-thisColorSpecialPawnsTallies[ISOLATED]
-                                            - thisColorSpecialPawnsTallies[BLOCKED]
-                                            - thisColorSpecialPawnsTallies[DOUBLED]);
-        double otherColorSpecialPawnScore = (-otherColorSpecialPawnsTallies[ISOLATED]
-                                             - otherColorSpecialPawnsTallies[BLOCKED]
-                                             - otherColorSpecialPawnsTallies[DOUBLED]);
+    /*
+     * Computes the special pawn score from each color's total of isolated,
+     * blocked and doubled pawns, less its passed pawns.
+     *
+     * @param thisColorPenalties  The total for the color the score is
+     *                            relative to.
+     * @param otherColorPenalties The total for the other color.
+     * @return                    The score.
+     */
+    private static double getSpecialPawnScore(final int thisColorPenalties, final int otherColorPenalties) {
+        double thisColorSpecialPawnScore = -thisColorPenalties;
+        double otherColorSpecialPawnScore = -otherColorPenalties;
 
         /* Since the special pawn score is a penalty-- a negative number--
            then the following computation will work out to a positive
@@ -566,164 +1657,44 @@ public class MinimaxRunner {
     }
 
     /*
-     * This is a utility method that handles some logic needed by
-     * evaluateBoard(). It reviews the positions of all the friendly pawns on the
-     * board, noting pawns which are blocked (a piece of either side that isn't
-     * a friendly pawn occupies the square ahead of them), doubled (two pawns in
-     * a row), or isolated (no pawns in the files to either side). It returns
-     * those values in a double[3] array.
-     *
-     * @param boardArray      The int[8][8] board representation to count pawns in.
-     * @param colorInQuestion The color of pawns to count.
-     * @param colorOnTop      Which color is playing from the top the board (the
-     *                        lowest y values).
-     * @return                A double[3] array of doubledPawnsCount,
-     *                        blockedPawnsCount, and isolatedPawnsCount.
-     * @see #evaluateBoard
+     * Looks up the doubled, isolated and passed pawn tallies of both colors
+     * in the pawn hash table, counting them with PawnStructure and storing
+     * them if they aren't there.
+     *
+     * @param whitePawns The bitboard of white's pawns.
+     * @param blackPawns The bitboard of black's pawns.
+     * @param pawnKey    The xor of Zobrist.pieceSquareKey() over every pawn
+     *                   on the board.
+     * @return           The tallies, a byte each: white's doubled, isolated
+     *                   and passed pawns in the low three bytes, then black's.
      */
-    private double[] tallySpecialPawns(final int[][] boardArray, final int colorInQuestion) {
-        int[][] tallyPawnsCoords = new int[8][2];
-        int[][] doubledPawnsCoords = new int[8][2];
-        double[] retval = new double[3];
-        double blockedPawnsCount = 0;
-        double doubledPawnsCount = 0;
-        double isolatedPawnsCount = 0;
-        int dblpIdx = 0;
-        int pawnsCount = 0;
-        int maxPawnIndex;
-
-        /* These loops traverse the int[8][8] boardArray detecting pawns of this
-           color and saving their coordinates to int[8][2] so that the rest
-           of the loops in this method can just iterate over the saved pawns
-           coordinates. */
-        for (int xIdx = 0, pawnIndex = 0; xIdx < 8; xIdx++) {
-            for (int yIdx = 0; yIdx < 8; yIdx++) {
-                if (boardArray[xIdx][yIdx] == (colorInQuestion | PAWN)) {
-                    tallyPawnsCoords[pawnIndex][0] = xIdx;
-                    tallyPawnsCoords[pawnIndex][1] = yIdx;
-                    pawnIndex++;
-                    pawnsCount++;
-                }
-            }
-        }
-
-        maxPawnIndex = pawnsCount - 1;
-
-        /* Normally an isolated pawn is one where its neighboring pawns are each
-           more than one file away from them. */
-        switch (pawnsCount) {
-            /* But if there's only 1 pawn left it is by default isolated. */
-            case 1 -> isolatedPawnsCount++;
-            case 2 -> {
-                /* If there's two left, they're both isolated if their X indexes
-                   differ by more than 1. */
-                if (tallyPawnsCoords[1][0] - tallyPawnsCoords[0][0] > 1) {
-                    isolatedPawnsCount += 2;
-                }
-            }
-            default -> {
-                for (int pawnIndex = 0; pawnIndex < pawnsCount; pawnIndex++) {
-                    int thisPawnXIdx = tallyPawnsCoords[pawnIndex][0];
-
-                    /* If a pawn is the leftmost on the board, it's isolated
-                       if the difference between its X index and its right
-                       neighbor's X index is more than 1. */
-                    if (pawnIndex == 0) {
-                        int nextPawnXIdx = tallyPawnsCoords[pawnIndex + 1][0];
-                        if (nextPawnXIdx - thisPawnXIdx > 1) {
-                            isolatedPawnsCount++;
-                        }
-                    /* Vice versa, if it's rightmost on the board, it's isolated
-                       if its left neighbor's X index exceeds its X index by
-                       more than 1. */
-                    } else if (pawnIndex == maxPawnIndex) {
-                        int prevPawnXIdx = tallyPawnsCoords[pawnIndex - 1][0];
-                        if (prevPawnXIdx - thisPawnXIdx > 1) {
-                            isolatedPawnsCount++;
-                        }
-                    /* Otherwise, it's isolated if the difference between its x
-                       index and the previous pawn's x index, and the difference
-                       between the next pawn's x index and its x index, are both
-                       more than 1. */
-                    } else { // 0 < pawnIndex && pawnIndex < maxPawnIndex
-                        int prevPawnXIdx = tallyPawnsCoords[pawnIndex - 1][0];
-                        int nextPawnXIdx = tallyPawnsCoords[pawnIndex + 1][0];
-                        if (nextPawnXIdx - thisPawnXIdx > 1 && thisPawnXIdx - prevPawnXIdx > 1) {
-                            isolatedPawnsCount++;
-                        }
-                    }
-                }
-            }
+    private long lookUpPawnTallies(final long whitePawns, final long blackPawns, final long pawnKey) {
+        int entryIdx = 2 * (int) (pawnKey & (PAWN_HASH_ENTRIES - 1));
+        long dataWord = pawnHashTable[entryIdx + 1];
+        pawnHashLookups.increment();
+        if (dataWord != 0 && (pawnHashTable[entryIdx] ^ dataWord) == pawnKey) {
+            pawnHashHits.increment();
+            return dataWord;
         }
 
-        /* This loop counts doubled pawns and blocked pawns. It tracks pawns
-           that are doubled in doubledPawnsCoords, so it can avoid
-           double-counting any. */
-        for (int pawnIndex = 0; pawnIndex < pawnsCount; pawnIndex++) {
-            int thisPawnXIdx = tallyPawnsCoords[pawnIndex][0];
-            int thisPawnYIdx = tallyPawnsCoords[pawnIndex][1];
-            if (pawnIndex > 0) {
-                int prevPawnXIdx = tallyPawnsCoords[pawnIndex - 1][0];
-                int prevPawnYIdx = tallyPawnsCoords[pawnIndex - 1][1];
-
-                /* The y values in this loop's calculations run two different
-                   ways depending on whether colorInQuestion is playing from
-                   the top of the board (== instance var colorOnTop) or from
-                   the bottom (!= colorOnTop). If on top, yDiff is set to -1,
-                   otherwise +1. A successive piece's y index is calculated by
-                   adding yDiff to the earlier piece's y index. */
-                int yDiff = colorInQuestion == colorOnTop ? -1 : +1;
-
-                /* Two successive pawns are doubled if their x indexes are equal
-                   and the difference between the first y index and the second
-                   equals yDiff (-1 if playing from the top of the board, +1 if
-                   from the bottom). */
-                if (thisPawnXIdx == prevPawnXIdx && thisPawnYIdx - prevPawnYIdx == yDiff) {
-
-                    /* Tripled pawns are a possibility. If two pawns'
-                       coordinates have already been stored to doubledPawnsCoord
-                       (ie. dblpIdx > 1), its last coords are checked for
-                       equality with the first doubled pawn. If they match, only
-                       the second doubled pawn is counted and stored. Otherwise,
-                       both are counted and stored. */
-                    if (dblpIdx <= 1 || doubledPawnsCoords[dblpIdx - 1][0] != prevPawnXIdx
-                            || doubledPawnsCoords[dblpIdx - 1][1] != prevPawnYIdx) {
-                        doubledPawnsCoords[dblpIdx][0] = prevPawnXIdx;
-                        doubledPawnsCoords[dblpIdx][1] = prevPawnYIdx;
-                        dblpIdx++;
-                        doubledPawnsCount++;
-
-                    }
-                    doubledPawnsCoords[dblpIdx][0] = thisPawnXIdx;
-                    doubledPawnsCoords[dblpIdx][1] = thisPawnYIdx;
-                    dblpIdx++;
-                    doubledPawnsCount++;
-                }
-
-                int nextSquareYIdx = thisPawnYIdx + yDiff;
-                int nextSquarePieceInt = boardArray[thisPawnXIdx][nextSquareYIdx];
-                /* If the square ahead of this square is occupied, and it's
-                   not a pawn on this side, then this pawn is blocked and
-                   blockedPawnsCount is incremented. */
-                if (nextSquarePieceInt != 0 && (nextSquarePieceInt ^ colorInQuestion) != PAWN) {
-                    blockedPawnsCount++;
-                }
-            }
-        }
-
-        /* This method has 3 doubles to return, so they're packed into a double[3]
-           array and that's the return value. */
-        retval[DOUBLED] = doubledPawnsCount;
-        retval[BLOCKED] = blockedPawnsCount;
-        retval[ISOLATED] = isolatedPawnsCount;
-        return retval;
+        dataWord = PAWN_HASH_FILLED | (long) PawnStructure.countDoubled(whitePawns)
+                   | (long) PawnStructure.countIsolated(whitePawns) << 8
+                   | (long) PawnStructure.countPassed(whitePawns, blackPawns, colorOnTop == WHITE) << 16
+                   | (long) PawnStructure.countDoubled(blackPawns) << 24
+                   | (long) PawnStructure.countIsolated(blackPawns) << 32
+                   | (long) PawnStructure.countPassed(blackPawns, whitePawns, colorOnTop == BLACK) << 40;
+        pawnHashTable[entryIdx] = pawnKey ^ dataWord;
+        pawnHashTable[entryIdx + 1] = dataWord;
+        return dataWord;
     }
 
     /*
      * This method is subordinate to evaluateBoard. It calculates the number
-     * of moves possible for every friendly piece on the board and returns the
-     * total number of moves (which is equal to the index of the first empty
-     * array in an int[][7] movesArray).
+     * of pseudo-legal moves of every friendly piece on the board, the moves
+     * they could make if their king could be left in check. That skips the
+     * legality test of every move that generating them would do, which made
+     * mobility cost about two full move generations per evaluation, and
+     * allocates nothing.
      *
      * @param boardArray     The board array to calculate moves on.
      * @param colorsTurnItIs An integer representing the color to calculate
@@ -731,29 +1702,11 @@ public class MinimaxRunner {
      *                       BoardArrays.BLACK).
      * @return               A double, the total number of moves possible.
      * @see #evaluateBoard
+     * @see BoardArrays#countPseudoLegalMoves
      */
-    private double totalColorMobility(final int[][] boardArray, final int colorsTurnItIs) {
-        int[][] movesArray = new int[128][7];
-        double moveIdx = 0;
-
-        /* Iterating across the board, stopping when a friendly
-           piece is encountered. For each friendly piece,
-           BoardArrays.generatePieceMoves() is called, and the new value for
-           moveIdx is set to its return value. */
-        for (int xIdx = 0; xIdx < 8; xIdx++) {
-            for (int yIdx = 0; yIdx < 8; yIdx++) {
-                if ((boardArray[xIdx][yIdx] & colorsTurnItIs) == 0) {
-                    continue;
-                }
-                moveIdx = BoardArrays.generatePieceMoves(boardArray, movesArray, (int) moveIdx,
-                                                                  xIdx, yIdx, colorsTurnItIs, colorOnTop);
-            }
-        }
-
-        /* The index of the first empty array in the int[][7] movesArray is also
-           the length of the used arrays, so that is returned. It's returned as
-           a double because the calculations in evaluateBoard() are all done in
-           doubles. */
-        return moveIdx;
+    double totalColorMobility(final int[][] boardArray, final int colorsTurnItIs) {
+        /* It's returned as a double because the calculations in
+           evaluateBoard() are all done in doubles. */
+        return BoardArrays.countPseudoLegalMoves(boardArray, colorsTurnItIs, colorOnTop);
     }
 }
@@ -0,0 +1,192 @@
+package org.kmfahey.jchessgame;
+
+/**
+ * The management interface of MinimaxRunner, exposed over JMX so that a
+ * long-running game can be watched and tuned from a standard JMX console
+ * (such as JConsole or VisualVM) without restarting it. The read-only
+ * attributes are cumulative counters kept by the runner since it was
+ * instanced (or since resetStatistics() was last called). The writable
+ * attributes are the search tunables; a change takes effect at the start of
+ * the next search, never partway through one.
+ *
+ * @see MinimaxRunner#registerMBean
+ */
+public interface MinimaxRunnerMBean {
+
+    /**
+     * Accessor for the number of searches (calls to algorithmTopLevel()) run.
+     *
+     * @return The cumulative count of searches.
+     */
+    long getSearchCount();
+
+    /**
+     * Accessor for the number of nodes the algorithm has visited across all
+     * searches.
+     *
+     * @return The cumulative count of nodes searched.
+     */
+    long getNodeCount();
+
+    /**
+     * Accessor for the mean time taken to pick a move.
+     *
+     * @return The average latency of algorithmTopLevel() in milliseconds, or
+     *         0 if no search has been run yet.
+     */
+    double getAverageMoveLatencyMillis();
+
+    /**
+     * Accessor for the 99th percentile of the time taken to pick a move,
+     * computed over the most recent searches.
+     *
+     * @return The p99 latency of algorithmTopLevel() in milliseconds, or 0 if
+     *         no search has been run yet.
+     */
+    double getP99MoveLatencyMillis();
+
+    /**
+     * Accessor for the number of board evaluations currently memoized.
+     *
+     * @return The number of entries in the evaluation cache.
+     */
+    int getEvaluationCacheSize();
+
+    /**
+     * Accessor for the fraction of board evaluations that were answered from
+     * the evaluation cache.
+     *
+     * @return The hit rate, between 0.0 and 1.0.
+     */
+    double getEvaluationCacheHitRate();
+
+    /**
+     * Accessor for the fraction of board evaluations whose doubled, isolated
+     * and passed pawn tallies were found in the pawn hash table.
+     *
+     * @return The hit rate, between 0.0 and 1.0.
+     */
+    double getPawnHashHitRate();
+
+    /**
+     * Accessor for the maximum search depth, in plies.
+     *
+     * @return The maximum depth the algorithm searches to.
+     */
+    int getMaxDepth();
+
+    /**
+     * Mutator for the maximum search depth, in plies.
+     *
+     * @param maxDepthVal The new maximum depth; must be at least 1.
+     */
+    void setMaxDepth(int maxDepthVal);
+
+    /**
+     * Accessor for the time budget of a search.
+     *
+     * @return The time budget in milliseconds; 0 means unlimited.
+     */
+    long getTimeBudgetMillis();
+
+    /**
+     * Mutator for the time budget of a search. Once the budget is spent, the
+     * search stops and the best move of the deepest completed iteration is
+     * played.
+     *
+     * @param timeBudgetMillisVal The new time budget in milliseconds; 0 means
+     *                            unlimited.
+     */
+    void setTimeBudgetMillis(long timeBudgetMillisVal);
+
+    /**
+     * Accessor for the node budget of a search.
+     *
+     * @return The maximum number of nodes a search visits; 0 means unlimited.
+     */
+    long getNodeBudget();
+
+    /**
+     * Mutator for the node budget of a search. Once the budget is spent, the
+     * search stops and the best move of the deepest completed iteration is
+     * played.
+     *
+     * @param nodeBudgetVal The new node budget; 0 means unlimited.
+     */
+    void setNodeBudget(long nodeBudgetVal);
+
+    /**
+     * Accessor for whether every evaluation checks the material and
+     * piece-square state and the attack maps the search keeps up to date as
+     * it makes and unmakes moves against a full recompute from the board.
+     *
+     * @return True if the check is made.
+     */
+    boolean isIncrementalEvaluationChecked();
+
+    /**
+     * Mutator for whether every evaluation checks the incrementally kept
+     * material and piece-square state and attack maps against a full
+     * recompute, throwing an IllegalStateException if they differ. It's a
+     * debugging aid; the check costs a few scans of the board per evaluation.
+     *
+     * @param isCheckedVal True to make the check.
+     */
+    void setIncrementalEvaluationChecked(boolean isCheckedVal);
+
+    /**
+     * Accessor for the file the evaluation's piece-square tables were loaded
+     * from.
+     *
+     * @return The path, or the empty string if the built-in tables are used.
+     */
+    String getWeightsFile();
+
+    /**
+     * Mutator for the file the evaluation's piece-square tables are loaded
+     * from, in the format EvaluationWeights.save() writes. The file is read
+     * once, here; the next search uses its tables.
+     *
+     * @param weightsFileVal The path, or the empty string to go back to the
+     *                       built-in tables.
+     * @throws IllegalArgumentException If the file can't be read or isn't a
+     *                                  weights file.
+     */
+    void setWeightsFile(String weightsFileVal);
+
+    /**
+     * Accessor for the number of threads the search is split across.
+     *
+     * @return The number of search threads.
+     */
+    int getThreadCount();
+
+    /**
+     * Mutator for the number of threads the search is split across.
+     *
+     * @param threadCountVal The new number of search threads; must be at
+     *                       least 1.
+     */
+    void setThreadCount(int threadCountVal);
+
+    /**
+     * Accessor for the capacity of the evaluation cache.
+     *
+     * @return The maximum number of entries in the evaluation cache.
+     */
+    int getHashSize();
+
+    /**
+     * Mutator for the capacity of the evaluation cache. When the cache fills
+     * up it's cleared.
+     *
+     * @param hashSizeVal The new maximum number of entries; must be at least
+     *                    1.
+     */
+    void setHashSize(int hashSizeVal);
+
+    /**
+     * Zeroes all the cumulative counters.
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,49 @@
+package org.kmfahey.jchessgame;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event summarizing a batch of calls to
+ * BoardArrays.generatePossibleMoves() made by the search on one thread. The
+ * search makes far too many calls to record an event for each one, so calls
+ * are accumulated into batches of BATCH_SIZE (the last batch of a search may
+ * be smaller). The event's duration is the wall time the batch spanned, and
+ * timeInCalls is the part of it spent generating moves. It's disabled by
+ * default, and can be enabled in a JFR settings file under the name
+ * org.kmfahey.jchessgame.MoveGenerationBatch; when it's disabled the search
+ * doesn't time its calls at all.
+ *
+ * @see BoardArrays#generatePossibleMoves
+ * @see EvaluationBatchEvent
+ */
+@Name("org.kmfahey.jchessgame.MoveGenerationBatch")
+@Label("Move Generation Batch")
+@Category({"JChessGame", "AI"})
+@Description("A batch of move generation calls made by the search")
+@Enabled(false)
+@StackTrace(false)
+public class MoveGenerationBatchEvent extends Event {
+
+    /** The number of calls accumulated before an event is committed. */
+    public static final int BATCH_SIZE = 1024;
+
+    /** The number of calls in this batch. */
+    @Label("Calls")
+    public int calls;
+
+    /** The total number of moves returned by the calls in this batch. */
+    @Label("Moves Generated")
+    public long movesGenerated;
+
+    /** The time spent inside the calls in this batch. */
+    @Label("Time In Calls")
+    @Timespan(Timespan.NANOSECONDS)
+    public long timeInCalls;
+}
@@ -59,16 +59,17 @@ public class MovesLog extends JTextArea {
         public static final int IS_A_FRIENDLY_PIECE = 3;   
 
         /** Flag, that castling is illegal because an intervening space is occupied. */
-        public static final int CASTLING_INTERVENING_SPACE_OCCUPIED = 4;
+        public static final int CASTLING_INTERVENING_SPACE_OCCUPIED =
+                CastlingNotPossibleException.INTERVENING_SPACE_OCCUPIED;
 
         /** Flag, that castling is illegal because the king is in check. */
-        public static final int CASTLING_KING_IN_CHECK = 5;
+        public static final int CASTLING_KING_IN_CHECK = CastlingNotPossibleException.KING_IN_CHECK;
 
         /** Flag, that castling is illegal because a square on the way is threatened. */
-        public static final int CASTLING_PATH_IS_THREATENED = 6;
+        public static final int CASTLING_PATH_IS_THREATENED = CastlingNotPossibleException.PATH_IS_THREATENED;
 
         /** Flag, that castling is illegal because a square on the way is threatened. */
-        public static final int CASTLING_PIECE_HAS_MOVED = 7;
+        public static final int CASTLING_PIECE_HAS_MOVED = CastlingNotPossibleException.PIECE_HAS_MOVED;
 
         /**
          * Renders the error and the Chessboard.Move object it references in
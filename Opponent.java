@@ -0,0 +1,53 @@
+package org.kmfahey.jchessgame;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The side of the game the user plays against. BoardView asks its Opponent
+ * for a move whenever it's the opponent's turn; the move is computed
+ * asynchronously so the GUI stays responsive while the opponent thinks.
+ * <p>
+ * Two implementations are provided: MinimaxOpponent, which runs this
+ * program's MinimaxRunner in-process, and ExternalUciOpponent, which drives
+ * another chess engine over the UCI protocol as a subprocess.
+ *
+ * @see MinimaxOpponent
+ * @see ExternalUciOpponent
+ * @see BoardView
+ */
+public interface Opponent extends AutoCloseable {
+
+    /**
+     * Accessor for a short name for the opponent, for display.
+     *
+     * @return The opponent's name.
+     */
+    String getName();
+
+    /**
+     * Notifies the opponent that a new game is starting, so it can discard
+     * anything it has retained from the previous game.
+     */
+    void newGame();
+
+    /**
+     * Asks the opponent for its move in the position on the chessboard. The
+     * board mustn't be modified until the returned future completes.
+     *
+     * @param chessboard  The Chessboard holding the position.
+     * @param colorToMove The color the opponent is playing, whose turn it is.
+     * @param turnCount   The number of the turn it is, counting from 0.
+     * @return            A future completed with the move chosen. A Move with
+     *                    a null movingPiece means the opponent has no legal
+     *                    move and concedes. The future completes
+     *                    exceptionally with a TimeoutException if the
+     *                    opponent took too long to reply.
+     */
+    CompletableFuture<Chessboard.Move> requestMove(Chessboard chessboard, int colorToMove, int turnCount);
+
+    /**
+     * Releases any threads or processes the opponent holds.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,196 @@
+package org.kmfahey.jchessgame;
+
+/**
+ * Counts the pawn-structure features the evaluation scores (doubled,
+ * isolated, blocked and passed pawns) from bitboards: longs with one bit per
+ * square, set where there's a pawn of one color. A square's bit is
+ * yIdx * 8 + xIdx in board coordinates, so a file is every eighth bit and
+ * moving a pawn one square along its file is a shift by 8. Each feature is
+ * then a few ands, shifts and popcounts against precomputed file masks,
+ * rather than a scan over the board.
+ * <p>
+ * Since the bits follow the board's coordinates rather than ranks, which way
+ * a color's pawns advance depends on which color is playing from the top of
+ * the board; the methods that need it take that as a flag.
+ *
+ * @see MinimaxRunner#scoreBoard
+ */
+public final class PawnStructure {
+
+    /* The squares of each file, indexed by x coordinate. */
+    private static final long[] FILE_MASKS = new long[8];
+
+    /* The squares of the files to either side of each file, indexed by x
+       coordinate. */
+    private static final long[] ADJACENT_FILES_MASKS = new long[8];
+
+    /* Every square but those of the leftmost and rightmost files, which a
+       one-file shift would wrap around the board from. */
+    private static final long NOT_LEFT_FILE_MASK;
+    private static final long NOT_RIGHT_FILE_MASK;
+
+    static {
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            FILE_MASKS[xIdx] = 0x0101010101010101L << xIdx;
+        }
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            ADJACENT_FILES_MASKS[xIdx] = (xIdx > 0 ? FILE_MASKS[xIdx - 1] : 0L)
+                                         | (xIdx < 7 ? FILE_MASKS[xIdx + 1] : 0L);
+        }
+        NOT_LEFT_FILE_MASK = ~FILE_MASKS[0];
+        NOT_RIGHT_FILE_MASK = ~FILE_MASKS[7];
+    }
+
+    private PawnStructure() { }
+
+    /**
+     * Computes the bit of a square.
+     *
+     * @param xIdx The square's x coordinate.
+     * @param yIdx The square's y coordinate.
+     * @return     A long with only that square's bit set.
+     */
+    public static long squareBit(final int xIdx, final int yIdx) {
+        return 1L << (yIdx << 3 | xIdx);
+    }
+
+    /**
+     * Builds the bitboard of one color's pawns from a board array.
+     *
+     * @param boardArray The int[8][8] board representation.
+     * @param color      The color of the pawns, BoardArrays.WHITE or
+     *                   BoardArrays.BLACK.
+     * @return           The bitboard.
+     */
+    public static long pawnsBitboard(final int[][] boardArray, final int color) {
+        long pawns = 0L;
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            for (int yIdx = 0; yIdx < 8; yIdx++) {
+                if (boardArray[xIdx][yIdx] == (color | BoardArrays.PAWN)) {
+                    pawns |= squareBit(xIdx, yIdx);
+                }
+            }
+        }
+        return pawns;
+    }
+
+    /**
+     * Builds the bitboard of every occupied square from a board array.
+     *
+     * @param boardArray The int[8][8] board representation.
+     * @return           The bitboard.
+     */
+    public static long occupiedBitboard(final int[][] boardArray) {
+        long occupied = 0L;
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            for (int yIdx = 0; yIdx < 8; yIdx++) {
+                if (boardArray[xIdx][yIdx] != 0) {
+                    occupied |= squareBit(xIdx, yIdx);
+                }
+            }
+        }
+        return occupied;
+    }
+
+    /**
+     * Counts doubled pawns: pawns that share their file with another pawn of
+     * their color. Every pawn on such a file is counted, so two pawns on a
+     * file count 2 and three count 3.
+     *
+     * @param pawns The bitboard of one color's pawns.
+     * @return      The number of doubled pawns.
+     */
+    public static int countDoubled(final long pawns) {
+        int doubledCount = 0;
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            int filePawnsCount = Long.bitCount(pawns & FILE_MASKS[xIdx]);
+            if (filePawnsCount > 1) {
+                doubledCount += filePawnsCount;
+            }
+        }
+        return doubledCount;
+    }
+
+    /**
+     * Counts isolated pawns: pawns with no pawn of their color on either
+     * neighboring file.
+     *
+     * @param pawns The bitboard of one color's pawns.
+     * @return      The number of isolated pawns.
+     */
+    public static int countIsolated(final long pawns) {
+        int isolatedCount = 0;
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            if ((pawns & ADJACENT_FILES_MASKS[xIdx]) == 0) {
+                isolatedCount += Long.bitCount(pawns & FILE_MASKS[xIdx]);
+            }
+        }
+        return isolatedCount;
+    }
+
+    /**
+     * Counts blocked pawns: pawns whose square ahead is occupied by anything
+     * but another pawn of their color.
+     *
+     * @param pawns       The bitboard of one color's pawns.
+     * @param occupied    The bitboard of every occupied square.
+     * @param isOnTopSide Whether the pawns' color is playing from the top of
+     *                    the board, so they advance toward higher y indexes.
+     * @return            The number of blocked pawns.
+     */
+    public static int countBlocked(final long pawns, final long occupied, final boolean isOnTopSide) {
+        long blockers = occupied & ~pawns;
+        return Long.bitCount(pawns & (isOnTopSide ? blockers >>> 8 : blockers << 8));
+    }
+
+    /**
+     * Counts passed pawns: pawns with no opposing pawn ahead of them on their
+     * file or either neighboring file, so none can stop or capture them on the
+     * way to promoting.
+     *
+     * @param pawns         The bitboard of one color's pawns.
+     * @param opposingPawns The bitboard of the other color's pawns.
+     * @param isOnTopSide   Whether the pawns' color is playing from the top
+     *                      of the board, so they advance toward higher y
+     *                      indexes.
+     * @return              The number of passed pawns.
+     */
+    public static int countPassed(final long pawns, final long opposingPawns, final boolean isOnTopSide) {
+        /* The squares ahead of the opposing pawns, as they advance, are the
+           squares a pawn on the same file can't pass them from. Widened by a
+           file each way, they're every square a pawn isn't passed on. */
+        long opposingSpans = isOnTopSide ? fillTowardLowerY(opposingPawns >>> 8)
+                                         : fillTowardHigherY(opposingPawns << 8);
+        long unpassedSquares = opposingSpans | (opposingSpans & NOT_RIGHT_FILE_MASK) << 1
+                               | (opposingSpans & NOT_LEFT_FILE_MASK) >>> 1;
+        return Long.bitCount(pawns & ~unpassedSquares);
+    }
+
+    /*
+     * Extends every set bit along its file toward higher y indexes.
+     *
+     * @param bitboard The bitboard to fill.
+     * @return         The filled bitboard.
+     */
+    private static long fillTowardHigherY(final long bitboard) {
+        long filled = bitboard;
+        filled |= filled << 8;
+        filled |= filled << 16;
+        filled |= filled << 32;
+        return filled;
+    }
+
+    /*
+     * Extends every set bit along its file toward lower y indexes.
+     *
+     * @param bitboard The bitboard to fill.
+     * @return         The filled bitboard.
+     */
+    private static long fillTowardLowerY(final long bitboard) {
+        long filled = bitboard;
+        filled |= filled >>> 8;
+        filled |= filled >>> 16;
+        filled |= filled >>> 32;
+        return filled;
+    }
+}
@@ -0,0 +1,362 @@
+package org.kmfahey.jchessgame;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implements perft (performance test), which walks the tree of legal moves
+ * from a position to a fixed depth and counts the leaf nodes. Comparing those
+ * counts with known-correct figures verifies BoardArrays.generatePossibleMoves()
+ * and the methods it delegates to, and timing the walk measures how fast they
+ * are. Moves are executed with BoardArrays.makeMove() and reversed with
+ * BoardArrays.unmakeMove(), so those are exercised too.
+ * <p>
+ * BoardArrays' move generation doesn't know about castling rights (Chessboard
+ * tracks them), so this class tracks them itself and discards castling moves
+ * whose right has been lost. It doesn't generate en passant captures, so the
+ * reference positions are only searched to depths where no en passant
+ * capture is possible.
+ * <p>
+ * Run from the commandline as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.Perft --fen &lt;depth&gt; "&lt;FEN&gt;"
+ *     java org.kmfahey.jchessgame.Perft --csv &lt;depth&gt; &lt;board.csv&gt; &lt;white|black&gt; [&lt;on top&gt;]
+ *     java org.kmfahey.jchessgame.Perft --suite
+ * </pre>
+ * The first two print the node count under each root move (the "divide"
+ * output used to track down a discrepancy), then the total and the nodes per
+ * second. The third runs every position in REFERENCE_POSITIONS and reports
+ * whether each count matches.
+ *
+ * @see BoardArrays#generatePossibleMoves
+ */
+public final class Perft {
+
+    /* These statements copy the piece int constants from BoardArrays to this
+       class for convenience. */
+    private static final int BLACK = BoardArrays.BLACK;
+    private static final int WHITE = BoardArrays.WHITE;
+
+    /** Castling rights flag: white may castle with the rook on the h file. */
+    public static final int WHITE_KINGSIDE = BoardArrays.CASTLING_WHITE_KINGSIDE;
+    /** Castling rights flag: white may castle with the rook on the a file. */
+    public static final int WHITE_QUEENSIDE = BoardArrays.CASTLING_WHITE_QUEENSIDE;
+    /** Castling rights flag: black may castle with the rook on the h file. */
+    public static final int BLACK_KINGSIDE = BoardArrays.CASTLING_BLACK_KINGSIDE;
+    /** Castling rights flag: black may castle with the rook on the a file. */
+    public static final int BLACK_QUEENSIDE = BoardArrays.CASTLING_BLACK_QUEENSIDE;
+
+    /**
+     * A position with known-correct perft counts.
+     *
+     * @param name           A short name for the position.
+     * @param fen            The position in Forsyth-Edwards Notation.
+     * @param expectedCounts The correct node counts, for depth 1 at index 0,
+     *                       depth 2 at index 1, and so on.
+     */
+    public record ReferencePosition(String name, String fen, long[] expectedCounts) { }
+
+    /** The reference suite, from the perft results tabulated at
+        chessprogramming.org. Each is cut off at the deepest depth that has no
+        en passant captures. */
+    public static final List<ReferencePosition> REFERENCE_POSITIONS = List.of(
+        new ReferencePosition("start", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                              new long[] {20, 400, 8_902, 197_281}),
+        new ReferencePosition("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                              new long[] {48}),
+        new ReferencePosition("position 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                              new long[] {14, 191}),
+        new ReferencePosition("position 4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                              new long[] {6, 264}),
+        new ReferencePosition("position 5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                              new long[] {44, 1_486, 62_379}),
+        new ReferencePosition("position 6",
+                              "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                              new long[] {46, 2_079, 89_890})
+    );
+
+    /* The board the tree is walked on. It's modified while a walk is in
+       progress and restored by the time it finishes. */
+    private final int[][] boardArray;
+    private final int colorOnTop;
+    private final int colorToMove;
+    private final int castlingRights;
+
+    /* One moves array per ply, so the walk doesn't allocate. They're grown as
+       needed by ensureMovesArrays(). */
+    private int[][][] movesArrays = new int[0][][];
+
+    /**
+     * Initializes a Perft object for the given position.
+     *
+     * @param boardArrayVal     The int[8][8] board to walk the move tree of.
+     *                          It's copied, so the caller's array isn't
+     *                          modified.
+     * @param colorOnTopVal     The color playing from the top of the board.
+     * @param colorToMoveVal    The color whose turn it is.
+     * @param castlingRightsVal The castling rights, an Or'd combination of
+     *                          WHITE_KINGSIDE, WHITE_QUEENSIDE, BLACK_KINGSIDE
+     *                          and BLACK_QUEENSIDE.
+     */
+    public Perft(final int[][] boardArrayVal, final int colorOnTopVal, final int colorToMoveVal,
+                 final int castlingRightsVal) {
+        boardArray = BoardArrays.copyBoardArray(boardArrayVal);
+        colorOnTop = colorOnTopVal;
+        colorToMove = colorToMoveVal;
+        castlingRights = castlingRightsVal;
+    }
+
+    /**
+     * Builds a Perft object from a position in Forsyth-Edwards Notation. The
+     * en passant field is accepted but ignored, and the move counters are
+     * optional.
+     *
+     * @param fen The position, in FEN.
+     * @return    A Perft object for that position.
+     * @throws IllegalArgumentException If the FEN can't be parsed.
+     */
+    public static Perft fromFen(final String fen) throws IllegalArgumentException {
+        Fen.Position position = Fen.parse(fen);
+        return new Perft(position.boardArray(), position.colorOnTop(), position.colorToMove(),
+                         position.castlingRights());
+    }
+
+    /**
+     * Counts the leaf nodes of the move tree to the given depth.
+     *
+     * @param depth The depth to walk the tree to, in plies.
+     * @return      The number of leaf nodes.
+     */
+    public long countNodes(final int depth) {
+        ensureMovesArrays(depth);
+        return perft(colorToMove, castlingRights, depth);
+    }
+
+    /**
+     * Counts the leaf nodes of the move tree to the given depth, broken down
+     * by the root move they descend from.
+     *
+     * @param depth The depth to walk the tree to, in plies; at least 1.
+     * @return      A map from each legal root move (in the from-square,
+     *              to-square notation of moveToString()) to the number of leaf
+     *              nodes under it, in the order the moves were generated.
+     */
+    public Map<String, Long> divide(final int depth) {
+        Map<String, Long> divideCounts = new LinkedHashMap<>();
+        int otherColor = colorToMove == WHITE ? BLACK : WHITE;
+
+        ensureMovesArrays(depth);
+        int[][] movesArray = movesArrays[depth];
+        int movesCount = BoardArrays.generatePossibleMoves(boardArray, movesArray, colorToMove, colorOnTop);
+
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            int[] moveArray = movesArray[moveIdx];
+            if (!BoardArrays.isCastlingAllowed(moveArray, castlingRights)) {
+                continue;
+            }
+            BoardArrays.makeMove(boardArray, moveArray);
+            int newCastlingRights = BoardArrays.updateCastlingRights(castlingRights, moveArray, colorOnTop);
+            long nodes = perft(otherColor, newCastlingRights, depth - 1);
+            BoardArrays.unmakeMove(boardArray, moveArray);
+            divideCounts.put(moveToString(moveArray), nodes);
+        }
+
+        clearMovesArray(movesArray, movesCount);
+        return divideCounts;
+    }
+
+    /**
+     * Renders a move array in the from-square, to-square notation that perft
+     * tools conventionally use for divide output, for instance "e2e4".
+     *
+     * @param moveArray An int[7] move array, as populated by the
+     *                  generate*sMoves() methods in BoardArrays.
+     * @return          The move in from-square, to-square notation.
+     * @see BoardArrays#moveArrayToLongAlgNotn
+     */
+    public static String moveToString(final int[] moveArray) {
+        return BoardArrays.moveArrayToLongAlgNotn(moveArray);
+    }
+
+    /*
+     * The recursive tree walk. At depth 1 the legal moves are counted without
+     * being executed, since each is a leaf.
+     *
+     * @param colorsTurnItIs    The color to move at this ply.
+     * @param castlingRightsArg The castling rights at this ply.
+     * @param depth             The number of plies left to walk.
+     * @return                  The number of leaf nodes under this position.
+     */
+    private long perft(final int colorsTurnItIs, final int castlingRightsArg, final int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        int otherColor = colorsTurnItIs == WHITE ? BLACK : WHITE;
+        int[][] movesArray = movesArrays[depth];
+        int movesCount = BoardArrays.generatePossibleMoves(boardArray, movesArray, colorsTurnItIs, colorOnTop);
+        long nodes = 0;
+
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            int[] moveArray = movesArray[moveIdx];
+            if (!BoardArrays.isCastlingAllowed(moveArray, castlingRightsArg)) {
+                continue;
+            }
+            if (depth == 1) {
+                nodes++;
+                continue;
+            }
+            BoardArrays.makeMove(boardArray, moveArray);
+            int newCastlingRights = BoardArrays.updateCastlingRights(castlingRightsArg, moveArray, colorOnTop);
+            nodes += perft(otherColor, newCastlingRights, depth - 1);
+            BoardArrays.unmakeMove(boardArray, moveArray);
+        }
+
+        clearMovesArray(movesArray, movesCount);
+        return nodes;
+    }
+
+    /*
+     * Makes sure there's a moves array for every ply down to the given depth.
+     *
+     * @param depth The depth about to be walked.
+     */
+    private void ensureMovesArrays(final int depth) {
+        if (movesArrays.length <= depth) {
+            int oldLength = movesArrays.length;
+            movesArrays = Arrays.copyOf(movesArrays, depth + 1);
+            for (int plyIdx = oldLength; plyIdx <= depth; plyIdx++) {
+                movesArrays[plyIdx] = new int[128][7];
+            }
+        }
+    }
+
+    /*
+     * Zeroes the used part of a moves array. BoardArrays' generate*sMoves()
+     * methods refuse to overwrite a nonzero entry, so a moves array has to be
+     * cleared before it's reused.
+     *
+     * @param movesArray The moves array.
+     * @param movesCount The number of entries used.
+     */
+    private static void clearMovesArray(final int[][] movesArray, final int movesCount) {
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            Arrays.fill(movesArray[moveIdx], 0);
+        }
+    }
+
+    /*
+     * Runs a divide on one position and prints the per-move counts, the total
+     * and the nodes per second.
+     *
+     * @param perft The position.
+     * @param depth The depth to walk to.
+     */
+    private static void runDivide(final Perft perft, final int depth) {
+        long startNanos = System.nanoTime();
+        Map<String, Long> divideCounts = perft.divide(depth);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long totalNodes = 0;
+
+        for (Map.Entry<String, Long> divideEntry : divideCounts.entrySet()) {
+            System.out.println(divideEntry.getKey() + ": " + divideEntry.getValue());
+            totalNodes += divideEntry.getValue();
+        }
+        System.out.println();
+        System.out.println("Moves: " + divideCounts.size());
+        System.out.println("Nodes: " + totalNodes);
+        System.out.printf("Time: %.3f s%n", elapsedNanos / 1e9);
+        System.out.printf("Nodes/second: %.0f%n", totalNodes / (elapsedNanos / 1e9));
+    }
+
+    /*
+     * Runs every position in REFERENCE_POSITIONS to every depth it has a count
+     * for, printing a line per depth.
+     *
+     * @return True if every count matched, false otherwise.
+     */
+    private static boolean runSuite() {
+        boolean allPassed = true;
+        long suiteNodes = 0;
+        long suiteNanos = 0;
+
+        for (ReferencePosition referencePosition : REFERENCE_POSITIONS) {
+            Perft perft = fromFen(referencePosition.fen());
+            for (int depth = 1; depth <= referencePosition.expectedCounts().length; depth++) {
+                long expectedNodes = referencePosition.expectedCounts()[depth - 1];
+                long startNanos = System.nanoTime();
+                long nodes = perft.countNodes(depth);
+                long elapsedNanos = System.nanoTime() - startNanos;
+                boolean passed = nodes == expectedNodes;
+                allPassed &= passed;
+                suiteNodes += nodes;
+                suiteNanos += elapsedNanos;
+                System.out.printf("%-12s depth %d: %12d expected %12d  %s  %10.0f nodes/s%n",
+                                  referencePosition.name(), depth, nodes, expectedNodes, passed ? "ok  " : "FAIL",
+                                  nodes / (elapsedNanos / 1e9));
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%s; %d nodes in %.3f s, %.0f nodes/s%n", allPassed ? "All counts match" : "MISMATCHES",
+                          suiteNodes, suiteNanos / 1e9, suiteNodes / (suiteNanos / 1e9));
+        return allPassed;
+    }
+
+    /*
+     * Parses a color name given on the commandline.
+     *
+     * @param colorStr Either "white" or "black".
+     * @return         BoardArrays.WHITE or BoardArrays.BLACK.
+     * @throws IllegalArgumentException If the string is neither.
+     */
+    private static int parseColor(final String colorStr) throws IllegalArgumentException {
+        return switch (colorStr.toLowerCase()) {
+            case "white" -> WHITE;
+            case "black" -> BLACK;
+            default -> throw new IllegalArgumentException("`" + colorStr + "` isn't `white` or `black`.");
+        };
+    }
+
+    /**
+     * Main method. See the class documentation for the commandline syntax.
+     * The process exits with status 1 if the arguments don't parse or, with
+     * --suite, if any count doesn't match.
+     *
+     * @param args The commandline arguments.
+     * @throws IOException If a board CSV file can't be read.
+     * @throws BoardArrayFileParsingException If a board CSV file doesn't
+     *                                        parse.
+     */
+    public static void main(final String[] args) throws IOException, BoardArrayFileParsingException {
+        String usage = """
+                       Usage: Perft --fen <depth> "<FEN>"
+                              Perft --csv <depth> <board.csv> <white|black> [<color on top>]
+                              Perft --suite""";
+
+        if (args.length == 1 && args[0].equals("--suite")) {
+            System.exit(runSuite() ? 0 : 1);
+        } else if (args.length >= 3 && args[0].equals("--fen")) {
+            int depth = Integer.parseInt(args[1]);
+            String fen = String.join(" ", Arrays.copyOfRange(args, 2, args.length));
+            runDivide(fromFen(fen), depth);
+        } else if ((args.length == 4 || args.length == 5) && args[0].equals("--csv")) {
+            int depth = Integer.parseInt(args[1]);
+            int[][] csvBoardArray = BoardArrays.loadBoardArrayFromFile(args[2]);
+            int csvColorToMove = parseColor(args[3]);
+            int csvColorOnTop = args.length == 5 ? parseColor(args[4]) : BLACK;
+
+            /* A CSV board carries no castling rights, so they're assumed
+               present for every rook still in its corner, which is what the
+               game itself assumes. */
+            runDivide(new Perft(csvBoardArray, csvColorOnTop, csvColorToMove,
+                                WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE), depth);
+        } else {
+            System.err.println(usage);
+            System.exit(1);
+        }
+    }
+}
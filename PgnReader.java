@@ -0,0 +1,553 @@
+package org.kmfahey.jchessgame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads games from a file in Portable Game Notation (PGN), one at a time, so
+ * a file of any size is read in constant memory. Each game is returned with
+ * its tags, its moves as the SAN strings they're written as, and its result,
+ * and can be replayed move by move with a GameReplay. Comments, variations,
+ * numeric annotation glyphs, move numbers and escape lines are skipped.
+ * <p>
+ * Games can be read from a stream, a Reader, or a file, which is memory-mapped
+ * a window at a time rather than read through a buffer; the reader is
+ * Iterable, so its games can be looped over directly.
+ * <p>
+ * A reader can be limited to a byte range of a file, so that several threads
+ * can split a large file between them: it then returns the games whose first
+ * line starts in that range, which may run past its end. A game is taken to
+ * start at its first tag, so in a ranged reader games without tags are only
+ * found at the start of the file.
+ *
+ * @see BoardArrays#findSanMove
+ */
+public final class PgnReader implements Closeable, Iterable<PgnReader.Game> {
+
+    /**
+     * A game read from a PGN file.
+     *
+     * @param tags        The tag pairs, by name, in the order they appear.
+     * @param sanMoves    The moves of the main line, in SAN as written,
+     *                    without move numbers or annotation glyphs.
+     * @param result      The game termination marker: "1-0", "0-1",
+     *                    "1/2-1/2" or "*". If the movetext has none, the
+     *                    Result tag's value is used.
+     * @param startOffset The byte offset in the file of the game's first line.
+     */
+    public record Game(Map<String, String> tags, List<String> sanMoves, String result, long startOffset) {
+
+        /**
+         * Accessor for a tag's value.
+         *
+         * @param tagName The tag's name, for instance "White".
+         * @return        The value, or null if the game doesn't have the tag.
+         */
+        public String tag(final String tagName) {
+            return tags.get(tagName);
+        }
+
+        /**
+         * Accessor for the position the game starts from.
+         *
+         * @return The FEN tag's value, or the standard starting position if
+         *         the game doesn't have one.
+         */
+        public String startingFen() {
+            return tags.getOrDefault("FEN", Fen.START_POSITION);
+        }
+
+        /**
+         * Starts a replay of the game's moves.
+         *
+         * @return A GameReplay object at the game's starting position.
+         * @throws IllegalArgumentException If the game's FEN tag doesn't
+         *                                  parse.
+         */
+        public GameReplay replay() throws IllegalArgumentException {
+            return new GameReplay(startingFen(), sanMoves);
+        }
+    }
+
+    /**
+     * Presents a Reader as a stream of its characters encoded in UTF-8, so a
+     * PgnReader can read text that's already been decoded.
+     */
+    private static final class ReaderInputStream extends InputStream {
+        private final Reader reader;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final CharBuffer charBuffer = CharBuffer.allocate(1 << 13).flip();
+        private final ByteBuffer byteBuffer = ByteBuffer.allocate(1 << 15).flip();
+        private boolean isReaderDone = false;
+
+        /*
+         * Instances a ReaderInputStream.
+         *
+         * @param readerObj The Reader.
+         */
+        private ReaderInputStream(final Reader readerObj) {
+            reader = readerObj;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] oneByte = new byte[1];
+            return read(oneByte, 0, 1) < 0 ? -1 : oneByte[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int bytesOffset, final int bytesLength) throws IOException {
+            while (!byteBuffer.hasRemaining()) {
+                if (isReaderDone && !charBuffer.hasRemaining()) {
+                    return -1;
+                }
+                charBuffer.compact();
+                int charsRead = isReaderDone ? -1 : reader.read(charBuffer);
+                isReaderDone = charsRead < 0;
+                charBuffer.flip();
+                byteBuffer.clear();
+                encoder.encode(charBuffer, byteBuffer, isReaderDone);
+                byteBuffer.flip();
+            }
+            int bytesCopied = Math.min(bytesLength, byteBuffer.remaining());
+            byteBuffer.get(bytes, bytesOffset, bytesCopied);
+            return bytesCopied;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /* The number of bytes before the start of a range that are read to tell
+       whether the line before the range's first full line is a tag. */
+    private static final int LOOKBACK_BYTES = 256;
+
+    /* The size of the buffer a stream is read through, and of the windows a
+       file is mapped in. */
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long MAP_WINDOW_BYTES = 1L << 26;
+
+    /* Where the bytes come from: a stream, read through streamBuffer, or a
+       file, mapped a window at a time. One of inputStream and fileChannel is
+       null. buffer is whichever is being read from. */
+    private final InputStream inputStream;
+    private final FileChannel fileChannel;
+    private final ByteBuffer streamBuffer;
+    private ByteBuffer buffer;
+    private long nextWindowOffset;
+
+    private final long endOffset;
+    private long offset;
+
+    /* The bytes of the line being read. It grows to fit the longest line. */
+    private byte[] lineBytes = new byte[256];
+
+    /* The offset of the start of the last line read, and a line that was read
+       but belongs to the next game. */
+    private long lineStartOffset = 0;
+    private String pushedBackLine = null;
+
+    /* Set for a ranged reader that starts partway into the file, until the
+       first game starting in the range has been found; previousLineWasTag
+       says whether the line before the one being looked at is a tag. */
+    private boolean seekingGameStart = false;
+    private boolean previousLineWasTag = false;
+
+    /**
+     * Instances a PgnReader over a stream, which is read to its end. The
+     * stream is buffered internally, so it needn't be.
+     *
+     * @param inputStreamObj The stream, in UTF-8.
+     */
+    public PgnReader(final InputStream inputStreamObj) {
+        inputStream = inputStreamObj;
+        fileChannel = null;
+        streamBuffer = ByteBuffer.allocate(BUFFER_BYTES).flip();
+        buffer = streamBuffer;
+        offset = 0L;
+        endOffset = Long.MAX_VALUE;
+    }
+
+    /**
+     * Instances a PgnReader over a Reader, which is read to its end. Game
+     * offsets count the bytes of the text encoded in UTF-8.
+     *
+     * @param reader The Reader.
+     */
+    public PgnReader(final Reader reader) {
+        this(new ReaderInputStream(reader));
+    }
+
+    /*
+     * Instances a PgnReader over a file, from an offset.
+     *
+     * @param fileChannelObj The file.
+     * @param startOffset    The offset to start reading at.
+     * @param endOffsetVal   The offset at or after which a game isn't read.
+     */
+    private PgnReader(final FileChannel fileChannelObj, final long startOffset, final long endOffsetVal) {
+        inputStream = null;
+        fileChannel = fileChannelObj;
+        streamBuffer = null;
+        buffer = ByteBuffer.allocate(0);
+        nextWindowOffset = startOffset;
+        offset = startOffset;
+        endOffset = endOffsetVal;
+    }
+
+    /**
+     * Instances a PgnReader over a whole file, memory-mapped.
+     *
+     * @param pgnPath The file.
+     * @return        A PgnReader object.
+     * @throws IOException If the file can't be opened.
+     */
+    public static PgnReader open(final Path pgnPath) throws IOException {
+        return new PgnReader(FileChannel.open(pgnPath, StandardOpenOption.READ), 0L, Long.MAX_VALUE);
+    }
+
+    /**
+     * Instances a PgnReader that reads the games starting in a byte range of
+     * a file, memory-mapped. The ranges [0, a), [a, b), [b, size) of a file
+     * between them return every game in it exactly once.
+     *
+     * @param fileChannel The file. Closing the reader closes it.
+     * @param startOffset The start of the range.
+     * @param endOffset   The end of the range, exclusive.
+     * @return            A PgnReader object.
+     * @throws IOException If the file can't be read.
+     */
+    public static PgnReader open(final FileChannel fileChannel, final long startOffset, final long endOffset)
+            throws IOException {
+        PgnReader pgnReader = new PgnReader(fileChannel, Math.max(0L, startOffset - LOOKBACK_BYTES), endOffset);
+        if (startOffset > 0) {
+            pgnReader.alignToLineStart(startOffset);
+        }
+        return pgnReader;
+    }
+
+    /**
+     * Returns an iterator over the games not yet read. It reads ahead by one
+     * game, and wraps an IOException in an UncheckedIOException.
+     *
+     * @return An Iterator of Game objects.
+     */
+    @Override
+    public Iterator<Game> iterator() {
+        return new Iterator<>() {
+            private Game nextGame = null;
+
+            @Override
+            public boolean hasNext() {
+                if (nextGame == null) {
+                    try {
+                        nextGame = PgnReader.this.next();
+                    } catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                }
+                return nextGame != null;
+            }
+
+            @Override
+            public Game next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Game game = nextGame;
+                nextGame = null;
+                return game;
+            }
+        };
+    }
+
+    /**
+     * Reads the next game.
+     *
+     * @return A Game object, or null if there are no more games.
+     * @throws IOException If the stream can't be read.
+     */
+    public Game next() throws IOException {
+        String line;
+
+        /* Blank lines, escape lines and, for a ranged reader, the tail of a
+           game that started before the range are skipped. */
+        while (true) {
+            line = nextLine();
+            if (line == null) {
+                return null;
+            }
+            boolean isTagLine = line.startsWith("[");
+            boolean isSkipped = line.isBlank() || line.startsWith("%")
+                                || (seekingGameStart && (!isTagLine || previousLineWasTag));
+            previousLineWasTag = isTagLine;
+            if (!isSkipped) {
+                break;
+            }
+        }
+        seekingGameStart = false;
+        if (lineStartOffset >= endOffset) {
+            return null;
+        }
+
+        long gameStartOffset = lineStartOffset;
+        Map<String, String> tags = new LinkedHashMap<>();
+        while (line != null && line.startsWith("[")) {
+            parseTag(line, tags);
+            line = nextLine();
+        }
+
+        List<String> sanMoves = new ArrayList<>();
+        String result = null;
+        boolean[] inComment = {false};
+        int[] variationDepth = {0};
+        while (line != null && result == null) {
+            if (line.startsWith("[") && !inComment[0]) {
+                pushedBackLine = line;
+                break;
+            } else if (!line.startsWith("%")) {
+                result = parseMovetextLine(line, sanMoves, inComment, variationDepth);
+            }
+            if (result == null) {
+                line = nextLine();
+            }
+        }
+        if (result == null) {
+            result = tags.getOrDefault("Result", "*");
+        }
+
+        return new Game(Collections.unmodifiableMap(tags), Collections.unmodifiableList(sanMoves), result,
+                        gameStartOffset);
+    }
+
+    /**
+     * Closes the underlying stream or file.
+     *
+     * @throws IOException If closing it fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (inputStream != null) {
+            inputStream.close();
+        } else {
+            fileChannel.close();
+        }
+    }
+
+    /*
+     * Parses a tag pair line, [Name "Value"], into a map. A line that isn't
+     * of that form is ignored.
+     *
+     * @param line The line.
+     * @param tags The map to add the tag to.
+     */
+    private static void parseTag(final String line, final Map<String, String> tags) {
+        int quoteIdx = line.indexOf('"');
+        int closingQuoteIdx = line.lastIndexOf('"');
+        if (quoteIdx < 0 || closingQuoteIdx <= quoteIdx) {
+            return;
+        }
+        String tagName = line.substring(1, quoteIdx).strip();
+        String tagValue = line.substring(quoteIdx + 1, closingQuoteIdx).replace("\\\"", "\"").replace("\\\\", "\\");
+        tags.put(tagName, tagValue);
+    }
+
+    /*
+     * Parses one line of movetext, adding the moves of the main line to a
+     * list. Brace comments and variations can span lines, so their state is
+     * carried from line to line in the one-element arrays.
+     *
+     * @param line           The line.
+     * @param sanMoves       The list to add moves to.
+     * @param inComment      Whether a brace comment is open.
+     * @param variationDepth The number of variations open.
+     * @return               The game termination marker, if the line has
+     *                       one in the main line, else null.
+     */
+    private static String parseMovetextLine(final String line, final List<String> sanMoves,
+                                            final boolean[] inComment, final int[] variationDepth) {
+        int charIdx = 0;
+        int lineLength = line.length();
+
+        while (charIdx < lineLength) {
+            char lineChar = line.charAt(charIdx);
+            if (inComment[0]) {
+                int closingIdx = line.indexOf('}', charIdx);
+                if (closingIdx < 0) {
+                    return null;
+                }
+                inComment[0] = false;
+                charIdx = closingIdx + 1;
+                continue;
+            }
+            switch (lineChar) {
+                case '{' -> {
+                    inComment[0] = true;
+                    charIdx++;
+                    continue;
+                }
+                case ';' -> {
+                    return null;
+                }
+                case '(' -> {
+                    variationDepth[0]++;
+                    charIdx++;
+                    continue;
+                }
+                case ')' -> {
+                    variationDepth[0] = Math.max(0, variationDepth[0] - 1);
+                    charIdx++;
+                    continue;
+                }
+                default -> { }
+            }
+            if (Character.isWhitespace(lineChar)) {
+                charIdx++;
+                continue;
+            }
+
+            int tokenStartIdx = charIdx;
+            while (charIdx < lineLength && "{}();".indexOf(line.charAt(charIdx)) < 0
+                   && !Character.isWhitespace(line.charAt(charIdx))) {
+                charIdx++;
+            }
+            if (variationDepth[0] > 0) {
+                continue;
+            }
+            String token = line.substring(tokenStartIdx, charIdx);
+            switch (token) {
+                case "1-0", "0-1", "1/2-1/2", "*" -> {
+                    return token;
+                }
+                default -> { }
+            }
+
+            /* A move number may be joined to its move, as in "1.e4" or
+               "12...Nf6". Castling written with zeroes starts with a digit
+               too, but has no period. */
+            int moveStartIdx = 0;
+            if (Character.isDigit(token.charAt(0)) && token.indexOf('.') >= 0) {
+                moveStartIdx = token.lastIndexOf('.') + 1;
+            }
+            if (moveStartIdx < token.length() && Character.isLetterOrDigit(token.charAt(moveStartIdx))) {
+                sanMoves.add(moveStartIdx == 0 ? token : token.substring(moveStartIdx));
+            }
+        }
+
+        return null;
+    }
+
+    /*
+     * Reads bytes up to the first line that starts at or after an offset,
+     * noting whether the line before it is a tag.
+     *
+     * @param startOffset The offset.
+     * @throws IOException If the stream can't be read.
+     */
+    private void alignToLineStart(final long startOffset) throws IOException {
+        int lastSignificantByte = '\n';
+        int readByte;
+
+        while ((readByte = readByte()) >= 0) {
+            if (readByte == '\n' && offset >= startOffset) {
+                break;
+            } else if (readByte == '\n') {
+                lastSignificantByte = '\n';
+            } else if (readByte != ' ' && readByte != '\t' && readByte != '\r') {
+                lastSignificantByte = readByte;
+            }
+        }
+        seekingGameStart = true;
+        previousLineWasTag = lastSignificantByte == ']';
+    }
+
+    /*
+     * Reads the next line, or returns the line pushed back.
+     *
+     * @return The line, without its line ending, or null at the end of the
+     *         stream.
+     * @throws IOException If the stream can't be read.
+     */
+    private String nextLine() throws IOException {
+        if (pushedBackLine != null) {
+            String line = pushedBackLine;
+            pushedBackLine = null;
+            return line;
+        }
+
+        lineStartOffset = offset;
+        int lineLength = 0;
+        int readByte;
+        while ((readByte = readByte()) >= 0 && readByte != '\n') {
+            if (lineLength == lineBytes.length) {
+                byte[] grownLineBytes = new byte[lineBytes.length * 2];
+                System.arraycopy(lineBytes, 0, grownLineBytes, 0, lineLength);
+                lineBytes = grownLineBytes;
+            }
+            lineBytes[lineLength++] = (byte) readByte;
+        }
+        if (readByte < 0 && lineLength == 0) {
+            return null;
+        } else if (lineLength > 0 && lineBytes[lineLength - 1] == '\r') {
+            lineLength--;
+        }
+
+        return new String(lineBytes, 0, lineLength, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Reads one byte.
+     *
+     * @return The byte, 0 to 255, or -1 at the end of the input.
+     * @throws IOException If the input can't be read.
+     */
+    private int readByte() throws IOException {
+        if (!buffer.hasRemaining() && !refillBuffer()) {
+            return -1;
+        }
+        offset++;
+        return buffer.get() & 0xFF;
+    }
+
+    /*
+     * Reads the next block of a stream into the buffer, or maps the next
+     * window of a file.
+     *
+     * @return True if there are more bytes, false at the end of the input.
+     * @throws IOException If the input can't be read.
+     */
+    private boolean refillBuffer() throws IOException {
+        if (inputStream != null) {
+            int bytesRead = inputStream.read(streamBuffer.array(), 0, BUFFER_BYTES);
+            streamBuffer.clear().limit(Math.max(0, bytesRead));
+            return bytesRead > 0;
+        }
+        long fileBytes = fileChannel.size();
+        if (nextWindowOffset >= fileBytes) {
+            return false;
+        }
+        long windowBytes = Math.min(MAP_WINDOW_BYTES, fileBytes - nextWindowOffset);
+        buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, nextWindowOffset, windowBytes);
+        nextWindowOffset += windowBytes;
+        return true;
+    }
+}
@@ -0,0 +1,189 @@
+package org.kmfahey.jchessgame;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An opening book in the Polyglot .bin format, probed straight from a
+ * memory-mapped file. The file is a sequence of 16-byte big-endian entries,
+ * each a 64-bit position key, a 16-bit move, a 16-bit weight and a 32-bit
+ * learn value (which is ignored), sorted by key, so the entries for a
+ * position are found by binary search. Nothing is read into the heap: the
+ * operating system pages in the parts of the file that are probed, and the
+ * pages are shared by every book opened on the same file, so the several
+ * runners of a tournament can each have one at no extra cost.
+ * <p>
+ * A move is packed as the to file in bits 0-2, the to rank in bits 3-5, the
+ * from file in bits 6-8, the from rank in bits 9-11 and the promotion piece in
+ * bits 12-14 (0 for none, then knight, bishop, rook and queen), with files
+ * and ranks counted from a1. Castling is the king moving onto its own rook's
+ * square, just as BoardArrays encodes it.
+ * <p>
+ * Positions are keyed with Zobrist.key(), whose random numbers are the ones
+ * published with Polyglot, so books built by other Polyglot tools can be
+ * probed, and books built by BookBuilder can be used by other programs.
+ *
+ * @see Zobrist
+ * @see MinimaxRunner#setOpeningBook
+ */
+public final class PolyglotBook {
+
+    /** The length of a book entry, in bytes. */
+    public static final int ENTRY_BYTES = 16;
+
+    /* The offsets of the fields within an entry. */
+    private static final int MOVE_OFFSET = 8;
+    private static final int WEIGHT_OFFSET = 10;
+
+    /* The mapped file. Only absolute gets are used on it, which don't touch
+       its position, so it's safe to probe from several threads at once. */
+    private final MappedByteBuffer bookBuffer;
+    private final int entriesCount;
+
+    /*
+     * Instances a PolyglotBook over a mapped file.
+     *
+     * @param bookBufferObj The mapped file.
+     */
+    private PolyglotBook(final MappedByteBuffer bookBufferObj) {
+        bookBuffer = bookBufferObj;
+        entriesCount = bookBuffer.capacity() / ENTRY_BYTES;
+    }
+
+    /**
+     * Opens a book file and maps it into memory. The mapping stays valid
+     * after this returns and is released once the PolyglotBook is garbage
+     * collected.
+     *
+     * @param bookPath The path to the .bin file.
+     * @return         A PolyglotBook object.
+     * @throws IOException If the file can't be opened or mapped, is larger
+     *                     than 2GB, or isn't a whole number of entries long.
+     */
+    public static PolyglotBook open(final Path bookPath) throws IOException {
+        try (FileChannel bookChannel = FileChannel.open(bookPath, StandardOpenOption.READ)) {
+            long bookBytes = bookChannel.size();
+            if (bookBytes > Integer.MAX_VALUE) {
+                throw new IOException("opening book `" + bookPath + "` is larger than 2GB.");
+            } else if (bookBytes % ENTRY_BYTES != 0) {
+                throw new IOException("opening book `" + bookPath + "` is " + bookBytes + " bytes long, which isn't "
+                                      + "a multiple of " + ENTRY_BYTES + "; it isn't a Polyglot book.");
+            }
+            return new PolyglotBook(bookChannel.map(FileChannel.MapMode.READ_ONLY, 0, bookBytes));
+        }
+    }
+
+    /**
+     * Accessor for the number of entries in the book.
+     *
+     * @return The number of entries.
+     */
+    public int getEntriesCount() {
+        return entriesCount;
+    }
+
+    /**
+     * Picks a book move for a position, at random in proportion to the
+     * weights of the position's entries. Entries with a weight of 0, and
+     * entries whose move isn't among the legal moves given, are never picked.
+     *
+     * @param positionKey The position's key, from Zobrist.key().
+     * @param movesArray  The legal moves in the position, as int[7] move
+     *                    arrays.
+     * @param movesCount  The number of moves in movesArray.
+     * @param colorOnTop  The color playing from the top of the board.
+     * @return            The index in movesArray of the move picked, or -1
+     *                    if the position isn't in the book.
+     */
+    public int chooseMove(final long positionKey, final int[][] movesArray, final int movesCount,
+                          final int colorOnTop) {
+        int firstEntryIdx = findFirstEntry(positionKey);
+        int[] entryMoveIdxs = new int[movesCount];
+        int[] entryWeights = new int[movesCount];
+        int candidatesCount = 0;
+        int totalWeight = 0;
+
+        for (int entryIdx = firstEntryIdx;
+             entryIdx < entriesCount && bookBuffer.getLong(entryIdx * ENTRY_BYTES) == positionKey; entryIdx++) {
+            int weight = Short.toUnsignedInt(bookBuffer.getShort(entryIdx * ENTRY_BYTES + WEIGHT_OFFSET));
+            int bookMove = Short.toUnsignedInt(bookBuffer.getShort(entryIdx * ENTRY_BYTES + MOVE_OFFSET));
+            if (weight == 0 || candidatesCount == movesCount) {
+                continue;
+            }
+            for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+                if (encodeMove(movesArray[moveIdx], colorOnTop) == bookMove) {
+                    entryMoveIdxs[candidatesCount] = moveIdx;
+                    entryWeights[candidatesCount] = weight;
+                    candidatesCount++;
+                    totalWeight += weight;
+                    break;
+                }
+            }
+        }
+
+        if (totalWeight == 0) {
+            return -1;
+        }
+        int weightPick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (int candidateIdx = 0; candidateIdx < candidatesCount; candidateIdx++) {
+            weightPick -= entryWeights[candidateIdx];
+            if (weightPick < 0) {
+                return entryMoveIdxs[candidateIdx];
+            }
+        }
+        return entryMoveIdxs[candidatesCount - 1];
+    }
+
+    /**
+     * Packs a move array into the 16-bit Polyglot move encoding.
+     *
+     * @param moveArray  An int[7] move array.
+     * @param colorOnTop The color playing from the top of the board.
+     * @return           The encoded move.
+     */
+    public static int encodeMove(final int[] moveArray, final int colorOnTop) {
+        int fromRankIdx = colorOnTop == BoardArrays.BLACK ? 7 - moveArray[2] : moveArray[2];
+        int toRankIdx = colorOnTop == BoardArrays.BLACK ? 7 - moveArray[4] : moveArray[4];
+        int promotedToPieceInt = moveArray[6];
+        int promotionCode;
+        if (promotedToPieceInt == 0) {
+            promotionCode = 0;
+        } else if ((promotedToPieceInt & BoardArrays.KNIGHT) != 0) {
+            promotionCode = 1;
+        } else if ((promotedToPieceInt & BoardArrays.BISHOP) != 0) {
+            promotionCode = 2;
+        } else if ((promotedToPieceInt & BoardArrays.ROOK) != 0) {
+            promotionCode = 3;
+        } else {
+            promotionCode = 4;
+        }
+        return moveArray[3] | toRankIdx << 3 | moveArray[1] << 6 | fromRankIdx << 9 | promotionCode << 12;
+    }
+
+    /*
+     * Finds the first entry with a key by binary search. Keys are compared
+     * unsigned, which is the order Polyglot books are sorted in.
+     *
+     * @param positionKey The key to look for.
+     * @return            The index of the first entry whose key isn't less
+     *                    than positionKey, which is entriesCount if there's
+     *                    none.
+     */
+    private int findFirstEntry(final long positionKey) {
+        int lowIdx = 0;
+        int highIdx = entriesCount;
+        while (lowIdx < highIdx) {
+            int middleIdx = (lowIdx + highIdx) >>> 1;
+            if (Long.compareUnsigned(bookBuffer.getLong(middleIdx * ENTRY_BYTES), positionKey) < 0) {
+                lowIdx = middleIdx + 1;
+            } else {
+                highIdx = middleIdx;
+            }
+        }
+        return lowIdx;
+    }
+}
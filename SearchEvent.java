@@ -0,0 +1,56 @@
+package org.kmfahey.jchessgame;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event covering one call to
+ * MinimaxRunner.algorithmTopLevel(), from move generation at the root to the
+ * selection of the AI's move. It can be enabled or disabled in a JFR settings
+ * file under the name org.kmfahey.jchessgame.Search.
+ *
+ * @see MinimaxRunner#algorithmTopLevel
+ * @see SearchIterationEvent
+ */
+@Name("org.kmfahey.jchessgame.Search")
+@Label("Search")
+@Category({"JChessGame", "AI"})
+@Description("A search for the AI's move")
+@StackTrace(false)
+public class SearchEvent extends Event {
+
+    /** The color the AI is searching for, either "white" or "black". */
+    @Label("Color")
+    public String color;
+
+    /** The depth of the deepest iteration that was completed. */
+    @Label("Depth Completed")
+    public int depthCompleted;
+
+    /** The maximum depth the search was configured for. */
+    @Label("Max Depth")
+    public int maxDepth;
+
+    /** The number of threads the search was split across. */
+    @Label("Threads")
+    public int threadCount;
+
+    /** The time budget the search was configured with; 0 means unlimited. */
+    @Label("Time Budget")
+    @Timespan(Timespan.MILLISECONDS)
+    public long timeBudget;
+
+    /** The number of nodes visited by the search. */
+    @Label("Nodes")
+    public long nodes;
+
+    /** The move the search selected, in algebraic notation, or null if the AI
+        had no moves. */
+    @Label("Best Move")
+    public String bestMove;
+}
@@ -0,0 +1,43 @@
+package org.kmfahey.jchessgame;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event covering one iteration of the iterative
+ * deepening loop in MinimaxRunner.algorithmTopLevel(). It can be enabled or
+ * disabled in a JFR settings file under the name
+ * org.kmfahey.jchessgame.SearchIteration.
+ *
+ * @see MinimaxRunner#algorithmTopLevel
+ * @see SearchEvent
+ */
+@Name("org.kmfahey.jchessgame.SearchIteration")
+@Label("Search Iteration")
+@Category({"JChessGame", "AI"})
+@Description("One iteration of iterative deepening")
+@StackTrace(false)
+public class SearchIterationEvent extends Event {
+
+    /** The depth this iteration searched to. */
+    @Label("Depth")
+    public int depth;
+
+    /** The number of nodes visited during this iteration. */
+    @Label("Nodes")
+    public long nodes;
+
+    /** The best move found by this iteration, as from and to squares in
+        algebraic notation; null if the iteration was aborted. */
+    @Label("Best Move")
+    public String bestMove;
+
+    /** Whether the iteration was cut short by the time budget, in which case
+        its result was discarded. */
+    @Label("Aborted")
+    public boolean aborted;
+}
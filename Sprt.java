@@ -0,0 +1,288 @@
+package org.kmfahey.jchessgame;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a sequential probability ratio test (SPRT) between a baseline and a
+ * candidate MinimaxRunner configuration, for checking that an engine change
+ * doesn't cost playing strength. Game pairs (one game with each side as
+ * white, from the same opening) are played until the evidence is strong
+ * enough to accept one of two hypotheses: H0, that the candidate is elo0
+ * stronger than the baseline, or H1, that it's elo1 stronger. The test stops
+ * as soon as either is accepted, so a clear result takes few games and only a
+ * close one takes many.
+ * <p>
+ * The log-likelihood ratio is computed with the generalized SPRT's normal
+ * approximation over the pentanomial distribution of pair scores (0, 0.5, 1,
+ * 1.5 or 2 points per pair), which accounts for the correlation between the
+ * two games of a pair. H1 is accepted when the ratio reaches
+ * ln((1 - beta) / alpha), and H0 when it falls to ln(beta / (1 - alpha)),
+ * once at least 20 pairs have been played.
+ * <p>
+ * Run from the commandline as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.Sprt --baseline &lt;spec&gt; --candidate &lt;spec&gt; [--elo0 &lt;elo&gt;]
+ *         [--elo1 &lt;elo&gt;] [--alpha &lt;p&gt;] [--beta &lt;p&gt;] [--max-games &lt;n&gt;] [--openings &lt;file&gt;]
+ *         [--pgn &lt;file&gt;] [--concurrency &lt;n&gt;] [--max-plies &lt;n&gt;]
+ * </pre>
+ * Engine specs, openings files and adjudication are as for Tournament. The
+ * defaults are elo0 0, elo1 5 and alpha and beta 0.05. The process exits with
+ * status 0 if H1 is accepted, 1 if H0 is accepted, and 2 if --max-games was
+ * reached first or the arguments don't parse, so it can gate a change in a
+ * script.
+ *
+ * @see Tournament
+ */
+public final class Sprt {
+
+    /** The Elo gain of the null hypothesis, if not otherwise set. */
+    public static final double DEFAULT_ELO0 = 0D;
+
+    /** The Elo gain of the alternative hypothesis, if not otherwise set. */
+    public static final double DEFAULT_ELO1 = 5D;
+
+    /** The false positive and false negative rates, if not otherwise set. */
+    public static final double DEFAULT_ERROR_RATE = 0.05D;
+
+    /* The normal approximation the ratio is computed with is poor over a
+       handful of pairs, whose scores may barely vary, so no hypothesis is
+       accepted before this many pairs have been played. */
+    private static final long MIN_PAIRS = 20;
+
+    /* The exit statuses. */
+    private static final int EXIT_H1_ACCEPTED = 0;
+    private static final int EXIT_H0_ACCEPTED = 1;
+    private static final int EXIT_INCONCLUSIVE = 2;
+
+    private Sprt() { }
+
+    /**
+     * Computes the log-likelihood ratio of H1 (the candidate is elo1
+     * stronger) against H0 (it's elo0 stronger), given the pair scores so far.
+     *
+     * @param pentanomialCounts The number of game pairs in which the candidate
+     *                          scored 0, 0.5, 1, 1.5 and 2 points, at indexes
+     *                          0 through 4.
+     * @param elo0              The Elo gain of H0.
+     * @param elo1              The Elo gain of H1.
+     * @return                  The log-likelihood ratio; 0 if the pair scores
+     *                          don't vary yet, since there's no evidence
+     *                          either way until they do.
+     */
+    public static double logLikelihoodRatio(final long[] pentanomialCounts, final double elo0, final double elo1) {
+        long pairsCount = 0;
+        double scoreSum = 0D;
+
+        for (int pairScoreIdx = 0; pairScoreIdx < 5; pairScoreIdx++) {
+            pairsCount += pentanomialCounts[pairScoreIdx];
+            scoreSum += pentanomialCounts[pairScoreIdx] * pairScoreIdx / 4D;
+        }
+        if (pairsCount == 0) {
+            return 0D;
+        }
+
+        double meanScore = scoreSum / pairsCount;
+        double variance = 0D;
+        for (int pairScoreIdx = 0; pairScoreIdx < 5; pairScoreIdx++) {
+            variance += pentanomialCounts[pairScoreIdx] * Math.pow(pairScoreIdx / 4D - meanScore, 2);
+        }
+        variance /= pairsCount;
+        if (variance == 0D) {
+            return 0D;
+        }
+
+        double score0 = eloToPointsFraction(elo0);
+        double score1 = eloToPointsFraction(elo1);
+        return pairsCount * (score1 - score0) * (2D * meanScore - score0 - score1) / (2D * variance);
+    }
+
+    /*
+     * Converts an Elo difference to the expected points per game, using the
+     * logistic model.
+     *
+     * @param elo The Elo difference.
+     * @return    The expected points per game, between 0 and 1.
+     */
+    private static double eloToPointsFraction(final double elo) {
+        return 1D / (1D + Math.pow(10D, -elo / 400D));
+    }
+
+    /**
+     * Main method. See the class documentation for the commandline syntax.
+     * Progress is printed as each pair finishes, then the hypothesis
+     * accepted and the candidate's Elo difference from the baseline.
+     *
+     * @param args The commandline arguments.
+     * @throws IOException If the openings file can't be read or the PGN file
+     *                     can't be written.
+     * @throws InterruptedException If interrupted while waiting for games.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        String usage = """
+                       Usage: Sprt --baseline <spec> --candidate <spec> [--elo0 <elo>] [--elo1 <elo>]
+                                   [--alpha <p>] [--beta <p>] [--max-games <n>] [--openings <file>]
+                                   [--pgn <file>] [--concurrency <n>] [--max-plies <n>]""";
+        Tournament.EngineConfig baseline = null;
+        Tournament.EngineConfig candidate = null;
+        double elo0 = DEFAULT_ELO0;
+        double elo1 = DEFAULT_ELO1;
+        double alpha = DEFAULT_ERROR_RATE;
+        double beta = DEFAULT_ERROR_RATE;
+        long maxGames = Long.MAX_VALUE;
+        List<String> openingFens = List.of(Fen.START_POSITION);
+        String pgnFileName = null;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        int maxPlies = Tournament.DEFAULT_MAX_PLIES;
+
+        try {
+            for (int argIdx = 0; argIdx < args.length; argIdx += 2) {
+                if (argIdx + 1 >= args.length) {
+                    throw new IllegalArgumentException("option `" + args[argIdx] + "` has no value.");
+                }
+                String value = args[argIdx + 1];
+                switch (args[argIdx]) {
+                    case "--baseline" -> baseline = Tournament.EngineConfig.parse(value, "baseline");
+                    case "--candidate" -> candidate = Tournament.EngineConfig.parse(value, "candidate");
+                    case "--elo0" -> elo0 = Double.parseDouble(value);
+                    case "--elo1" -> elo1 = Double.parseDouble(value);
+                    case "--alpha" -> alpha = Double.parseDouble(value);
+                    case "--beta" -> beta = Double.parseDouble(value);
+                    case "--max-games" -> maxGames = Long.parseLong(value);
+                    case "--openings" -> openingFens = Tournament.loadOpenings(value);
+                    case "--pgn" -> pgnFileName = value;
+                    case "--concurrency" -> concurrency = Integer.parseInt(value);
+                    case "--max-plies" -> maxPlies = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("unknown option `" + args[argIdx] + "`.");
+                }
+            }
+            if (Objects.isNull(baseline) || Objects.isNull(candidate)) {
+                throw new IllegalArgumentException("both --baseline and --candidate are required.");
+            } else if (elo1 <= elo0) {
+                throw new IllegalArgumentException("elo1 must be greater than elo0.");
+            } else if (alpha <= 0D || alpha >= 1D || beta <= 0D || beta >= 1D) {
+                throw new IllegalArgumentException("alpha and beta must be between 0 and 1.");
+            } else if (openingFens.isEmpty()) {
+                throw new IllegalArgumentException("the openings file has no positions.");
+            }
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println(usage);
+            System.exit(EXIT_INCONCLUSIVE);
+            return;
+        }
+
+        double lowerBound = Math.log(beta / (1D - alpha));
+        double upperBound = Math.log((1D - beta) / alpha);
+        String event = "SPRT " + candidate.name() + " vs " + baseline.name();
+
+        /* The workers are daemon threads, so that the games still in progress
+           when the test concludes don't keep the process alive. */
+        ExecutorService pairPool = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "sprt-game-pair");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Tournament.GameResult[]> pairCompletions = new ExecutorCompletionService<>(pairPool);
+
+        /* The number of pairs in flight is kept to the number of workers, so
+           few games are wasted when the test stops. */
+        long pairsSubmitted = 0;
+        long maxPairs = Math.max(1, maxGames / 2);
+        for (; pairsSubmitted < Math.min(concurrency, maxPairs); pairsSubmitted++) {
+            submitPair(pairCompletions, openingFens, pairsSubmitted, baseline, candidate, maxPlies);
+        }
+
+        long[] pentanomialCounts = new long[5];
+        Tournament.Score score = new Tournament.Score(0, 0, 0);
+        double llr = 0D;
+        int exitStatus = EXIT_INCONCLUSIVE;
+        int round = 0;
+
+        try (PrintWriter pgnWriter = Objects.nonNull(pgnFileName)
+                                     ? new PrintWriter(Files.newBufferedWriter(Path.of(pgnFileName),
+                                                                               StandardCharsets.UTF_8))
+                                     : null) {
+            for (long pairsCompleted = 0; pairsCompleted < pairsSubmitted; pairsCompleted++) {
+                Tournament.GameResult[] pairResults;
+                try {
+                    pairResults = pairCompletions.take().get();
+                } catch (ExecutionException exception) {
+                    throw new IllegalStateException("a game failed", exception.getCause());
+                }
+
+                /* The candidate plays white in the first game of the pair and
+                   black in the second. */
+                double firstPoints = pairResults[0].whitePoints();
+                double secondPoints = 1D - pairResults[1].whitePoints();
+                score = score.plus(firstPoints).plus(secondPoints);
+                pentanomialCounts[(int) Math.round((firstPoints + secondPoints) * 2D)]++;
+                llr = logLikelihoodRatio(pentanomialCounts, elo0, elo1);
+
+                if (Objects.nonNull(pgnWriter)) {
+                    pgnWriter.print(pairResults[0].toPgn(event, ++round));
+                    pgnWriter.print(pairResults[1].toPgn(event, ++round));
+                    pgnWriter.flush();
+                }
+                System.out.printf("Pairs %d: %d - %d - %d  pentanomial [%d, %d, %d, %d, %d]  LLR %.2f (%.2f, %.2f)%n",
+                                  pairsCompleted + 1, score.wins(), score.losses(), score.draws(),
+                                  pentanomialCounts[0], pentanomialCounts[1], pentanomialCounts[2],
+                                  pentanomialCounts[3], pentanomialCounts[4], llr, lowerBound, upperBound);
+
+                if (pairsCompleted + 1 >= MIN_PAIRS && llr >= upperBound) {
+                    exitStatus = EXIT_H1_ACCEPTED;
+                    break;
+                } else if (pairsCompleted + 1 >= MIN_PAIRS && llr <= lowerBound) {
+                    exitStatus = EXIT_H0_ACCEPTED;
+                    break;
+                } else if (pairsSubmitted < maxPairs) {
+                    submitPair(pairCompletions, openingFens, pairsSubmitted++, baseline, candidate, maxPlies);
+                }
+            }
+        }
+        pairPool.shutdownNow();
+
+        switch (exitStatus) {
+            case EXIT_H1_ACCEPTED -> System.out.printf("H1 accepted: %s gains at least %.1f Elo over %s.%n",
+                                                       candidate.name(), elo1, baseline.name());
+            case EXIT_H0_ACCEPTED -> System.out.printf("H0 accepted: %s doesn't gain %.1f Elo over %s.%n",
+                                                       candidate.name(), elo1, baseline.name());
+            default -> System.out.printf("Inconclusive after %d games.%n", score.games());
+        }
+        System.out.printf("Elo difference of %s vs %s: %.1f +/- %.1f (95%%) over %d games%n", candidate.name(),
+                          baseline.name(), score.eloDifference(), score.eloErrorMargin(), score.games());
+        System.exit(exitStatus);
+    }
+
+    /*
+     * Submits a game pair: the candidate plays white then black, from the
+     * same opening.
+     *
+     * @param pairCompletions The completion service to submit to.
+     * @param openingFens     The openings, used in turn.
+     * @param pairIdx         The pair's index, which chooses its opening.
+     * @param baseline        The baseline configuration.
+     * @param candidate       The candidate configuration.
+     * @param maxPlies        The ply limit of each game.
+     */
+    private static void submitPair(final CompletionService<Tournament.GameResult[]> pairCompletions,
+                                   final List<String> openingFens, final long pairIdx,
+                                   final Tournament.EngineConfig baseline, final Tournament.EngineConfig candidate,
+                                   final int maxPlies) {
+        String openingFen = openingFens.get((int) (pairIdx % openingFens.size()));
+        pairCompletions.submit(() -> new Tournament.GameResult[] {
+            Tournament.playGame(openingFen, candidate, baseline, maxPlies),
+            Tournament.playGame(openingFen, baseline, candidate, maxPlies)
+        });
+    }
+}
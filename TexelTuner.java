@@ -0,0 +1,647 @@
+package org.kmfahey.jchessgame;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tunes the evaluation's piece-square tables against the results of real
+ * games, by Texel's method: each position's evaluation is mapped to an
+ * expected score with a logistic curve, and the tables are adjusted to
+ * minimize the mean squared difference between the expected scores and the
+ * results of the games the positions came from.
+ * <p>
+ * The piece-square score is linear in the tables, so each position is
+ * reduced once, as it's loaded, to what the tables' part of its evaluation
+ * depends on: the rest of its evaluation, its game phase, its result, and
+ * the table entries its pieces stand on. That takes a few dozen bytes a
+ * position, so millions fit in memory, and an epoch (one gradient step over
+ * every position) costs a few dozen adds a position, split across a pool of
+ * workers. The step sizes are adapted per table entry with Adam, since some
+ * squares are stood on in nearly every position and some in almost none.
+ * <p>
+ * The positions should be quiet, with no captures or checks pending, since
+ * they're scored without a search; any with a king in check are skipped.
+ * Each line is an EPD or FEN with the result as a c9 operation, as in
+ * <pre>
+ *     rnbqkb1r/pp1p1ppp/4pn2/2p5/2P5/2N2N2/PP1PPPPP/R1BQKB1R w KQkq - c9 "1/2-1/2";
+ * </pre>
+ * or a FEN followed by the result in brackets, as "[1.0]", "[0.5]" or
+ * "[0.0]"; results are from white's point of view. Blank lines and lines
+ * starting with # are skipped.
+ * <p>
+ * Run from the commandline as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.TexelTuner --positions &lt;file&gt; --output &lt;file&gt;
+ *         [--weights &lt;file&gt;] [--epochs &lt;n&gt;] [--learning-rate &lt;r&gt;] [--k &lt;k&gt;]
+ *         [--workers &lt;n&gt;]
+ * </pre>
+ * which starts from the tables in the --weights file, or the built-in ones,
+ * and writes the tuned tables to the --output file in the format
+ * EvaluationWeights reads. The logistic curve's scaling constant is fitted
+ * to the starting tables unless --k gives it. The error is reported after
+ * every epoch.
+ *
+ * @see EvaluationWeights
+ */
+public final class TexelTuner {
+
+    /* Positions are set up from FENs, which put white at the bottom. */
+    private static final int COLOR_ON_TOP = BoardArrays.BLACK;
+
+    /* The number of entries in a phase's tables, and the flag marking a
+       feature as one of black's pieces, which counts against white. */
+    private static final int TABLE_ENTRIES = 6 * 64;
+    private static final int BLACK_FEATURE_FLAG = 0x200;
+    private static final int TABLE_INDEX_MASK = BLACK_FEATURE_FLAG - 1;
+
+    /* The value of each result code: a loss, a draw and a win for white. */
+    private static final double[] RESULT_VALUES = {0D, 0.5D, 1D};
+
+    /* The number of lines read and parsed across the workers at a time. */
+    private static final int LOAD_BATCH_LINES = 1 << 16;
+
+    /* The positions are cut into about this many chunks per worker, so that
+       a worker that finishes early can take another. */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private static final int DEFAULT_EPOCHS = 100;
+    private static final double DEFAULT_LEARNING_RATE = 1D;
+
+    /* Adam's decay rates for its gradient averages, and the term that keeps
+       it from dividing by zero. */
+    private static final double ADAM_BETA1 = 0.9D;
+    private static final double ADAM_BETA2 = 0.999D;
+    private static final double ADAM_EPSILON = 1e-8D;
+
+    /* The range the scaling constant is searched in, and the width it's
+       narrowed to. */
+    private static final double K_SEARCH_LOW = 0.05D;
+    private static final double K_SEARCH_HIGH = 5D;
+    private static final double K_SEARCH_TOLERANCE = 1e-4D;
+
+    /**
+     * The positions being tuned against, in a compact form. Position i's
+     * features, each a table index (piece type index * 64 + square index)
+     * with BLACK_FEATURE_FLAG set for black's pieces, are
+     * features[featureStarts[i]] to features[featureStarts[i + 1] - 1].
+     */
+    private static final class PositionSet {
+        private int count = 0;
+        private int featuresCount = 0;
+        private long skippedCount = 0;
+        private float[] baseScores = new float[1024];
+        private byte[] phases = new byte[1024];
+        private byte[] results = new byte[1024];
+        private int[] featureStarts = new int[1025];
+        private short[] features = new short[32 * 1024];
+
+        /*
+         * Adds a position.
+         *
+         * @param baseScore     The position's evaluation from white's point of
+         *                      view, less its piece-square score, in pawns.
+         * @param phase         Its game phase.
+         * @param result        Its result code, an index into RESULT_VALUES.
+         * @param positionFeats An array holding its features.
+         * @param featsStart    The index of its first feature.
+         * @param featsCount    The number of its features.
+         */
+        private void add(final double baseScore, final int phase, final int result, final short[] positionFeats,
+                         final int featsStart, final int featsCount) {
+            if (count == baseScores.length) {
+                int capacity = count * 2;
+                baseScores = Arrays.copyOf(baseScores, capacity);
+                phases = Arrays.copyOf(phases, capacity);
+                results = Arrays.copyOf(results, capacity);
+                featureStarts = Arrays.copyOf(featureStarts, capacity + 1);
+            }
+            if (featuresCount + featsCount > features.length) {
+                features = Arrays.copyOf(features, Math.max(features.length * 2, featuresCount + featsCount));
+            }
+            baseScores[count] = (float) baseScore;
+            phases[count] = (byte) phase;
+            results[count] = (byte) result;
+            System.arraycopy(positionFeats, featsStart, features, featuresCount, featsCount);
+            featuresCount += featsCount;
+            count++;
+            featureStarts[count] = featuresCount;
+        }
+
+        /*
+         * Adds every position of another set, and its skipped count.
+         *
+         * @param otherSet The other set.
+         */
+        private void addAll(final PositionSet otherSet) {
+            for (int posIdx = 0; posIdx < otherSet.count; posIdx++) {
+                int featuresStart = otherSet.featureStarts[posIdx];
+                add(otherSet.baseScores[posIdx], otherSet.phases[posIdx], otherSet.results[posIdx], otherSet.features,
+                    featuresStart, otherSet.featureStarts[posIdx + 1] - featuresStart);
+            }
+            skippedCount += otherSet.skippedCount;
+        }
+
+        /*
+         * Estimates the memory the positions take.
+         *
+         * @return The size of the used parts of the arrays, in bytes.
+         */
+        private long footprintBytes() {
+            return (long) count * (Float.BYTES + 2 + Integer.BYTES) + (long) featuresCount * Short.BYTES;
+        }
+    }
+
+    /**
+     * A worker's board and runner, which positions are parsed into and
+     * scored with. Each worker thread keeps one for the whole run.
+     */
+    private static final class Worker {
+        private final Chessboard chessboard = new Chessboard(new int[8][8], BoardArrays.WHITE, COLOR_ON_TOP);
+        private final MinimaxRunner minimaxRunner = new MinimaxRunner(chessboard, BoardArrays.WHITE);
+        private final short[] positionFeatures = new short[64];
+    }
+
+    /**
+     * Sums a quantity over a range of positions.
+     */
+    @FunctionalInterface
+    private interface ChunkSum {
+
+        /**
+         * Adds a range of positions' terms to an array of sums.
+         *
+         * @param startIdx The index of the first position.
+         * @param endIdx   The index after the last position.
+         * @param sums     The sums to add to.
+         */
+        void accumulate(int startIdx, int endIdx, double[] sums);
+    }
+
+    private TexelTuner() { }
+
+    /**
+     * Loads labeled positions from a file, parsing and reducing them across
+     * a pool of workers.
+     *
+     * @param positionsPath  The path to the file.
+     * @param startWeights   The tables the positions' piece-square scores
+     *                       are computed with, to take them out of their
+     *                       evaluations.
+     * @param workerPool     The pool to parse the positions on.
+     * @param workersCount   The number of threads in the pool.
+     * @return               The positions. Lines that don't parse, and
+     *                       positions with a king in check, are counted in
+     *                       its skippedCount.
+     * @throws IOException If the file can't be read.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    private static PositionSet loadPositions(final Path positionsPath, final EvaluationWeights startWeights,
+                                             final ExecutorService workerPool, final int workersCount)
+            throws IOException, InterruptedException {
+        ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+        PositionSet positionSet = new PositionSet();
+        List<String> batchLines = new ArrayList<>(LOAD_BATCH_LINES);
+
+        try (BufferedReader positionsReader = Files.newBufferedReader(positionsPath, StandardCharsets.UTF_8)) {
+            String line;
+            boolean isAtEnd = false;
+            while (!isAtEnd) {
+                batchLines.clear();
+                while (batchLines.size() < LOAD_BATCH_LINES && (line = positionsReader.readLine()) != null) {
+                    if (Epd.isPositionLine(line)) {
+                        batchLines.add(line);
+                    }
+                }
+                isAtEnd = batchLines.size() < LOAD_BATCH_LINES;
+
+                /* The batch is cut into a chunk per worker, and the chunks'
+                   positions are added in order, so the set's order follows
+                   the file's. */
+                int chunkLength = (batchLines.size() + workersCount - 1) / workersCount;
+                List<Callable<PositionSet>> chunkTasks = new ArrayList<>();
+                for (int chunkStartIdx = 0; chunkStartIdx < batchLines.size(); chunkStartIdx += chunkLength) {
+                    List<String> chunkLines = batchLines.subList(chunkStartIdx,
+                                                                 Math.min(batchLines.size(),
+                                                                          chunkStartIdx + chunkLength));
+                    chunkTasks.add(() -> {
+                        PositionSet chunkSet = new PositionSet();
+                        for (String chunkLine : chunkLines) {
+                            addPosition(workers.get(), chunkLine, startWeights, chunkSet);
+                        }
+                        return chunkSet;
+                    });
+                }
+                for (Future<PositionSet> chunkFuture : workerPool.invokeAll(chunkTasks)) {
+                    try {
+                        positionSet.addAll(chunkFuture.get());
+                    } catch (ExecutionException exception) {
+                        throw new IllegalStateException(exception.getCause());
+                    }
+                }
+            }
+        }
+        return positionSet;
+    }
+
+    /*
+     * Parses a labeled position and adds it to a set, or counts it as
+     * skipped if it doesn't parse or a king is in check.
+     *
+     * @param worker       The calling thread's Worker.
+     * @param line         The line, an EPD or FEN with a result.
+     * @param startWeights The tables to take the piece-square score out of
+     *                     the position's evaluation with.
+     * @param positionSet  The set to add it to.
+     */
+    private static void addPosition(final Worker worker, final String line, final EvaluationWeights startWeights,
+                                    final PositionSet positionSet) {
+        int[][] boardArray = worker.chessboard.getBoardArray();
+        int result;
+        try {
+            String fen;
+            int bracketIdx = line.indexOf('[');
+            if (bracketIdx >= 0) {
+                int closingIdx = line.indexOf(']', bracketIdx);
+                fen = Epd.parse(line.substring(0, bracketIdx)).fen();
+                result = parseResult(line.substring(bracketIdx + 1, closingIdx < 0 ? line.length() : closingIdx));
+            } else {
+                Epd.Entry entry = Epd.parse(line);
+                fen = entry.fen();
+                result = parseResult(entry.operation("c9"));
+            }
+            Fen.parse(fen, COLOR_ON_TOP, boardArray);
+        } catch (IllegalArgumentException exception) {
+            positionSet.skippedCount++;
+            return;
+        }
+
+        AttackMaps attackMaps = new AttackMaps(boardArray, COLOR_ON_TOP);
+        if (attackMaps.isKingInCheck(BoardArrays.WHITE) || attackMaps.isKingInCheck(BoardArrays.BLACK)) {
+            positionSet.skippedCount++;
+            return;
+        }
+
+        EvaluationState evaluationState = new EvaluationState(boardArray, COLOR_ON_TOP, startWeights);
+        double baseScore = worker.minimaxRunner.scoreBoard(boardArray, evaluationState, attackMaps, BoardArrays.WHITE)
+                           - (evaluationState.getPieceSquareSum(BoardArrays.WHITE)
+                              - evaluationState.getPieceSquareSum(BoardArrays.BLACK));
+
+        short[] positionFeatures = worker.positionFeatures;
+        int featuresCount = 0;
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            for (int yIdx = 0; yIdx < 8; yIdx++) {
+                int pieceInt = boardArray[xIdx][yIdx];
+                if (pieceInt == 0) {
+                    continue;
+                }
+                int tableIdx = EvaluationState.pieceTypeIndex(pieceInt) * 64
+                               + evaluationState.tableSquareIndex(pieceInt, xIdx, yIdx);
+                positionFeatures[featuresCount++] = (short) ((pieceInt & BoardArrays.BLACK) != 0
+                                                             ? tableIdx | BLACK_FEATURE_FLAG : tableIdx);
+            }
+        }
+        positionSet.add(baseScore, evaluationState.getPhase(), result, positionFeatures, 0, featuresCount);
+    }
+
+    /*
+     * Parses a game result.
+     *
+     * @param resultStr The result, as 1-0, 1/2-1/2 or 0-1, or as 1.0, 0.5
+     *                  or 0.0.
+     * @return          The result code, an index into RESULT_VALUES.
+     * @throws IllegalArgumentException If the result is missing or isn't
+     *                                  one of those.
+     */
+    private static int parseResult(final String resultStr) throws IllegalArgumentException {
+        if (resultStr == null) {
+            throw new IllegalArgumentException("the position has no result.");
+        }
+        return switch (resultStr.strip()) {
+            case "1-0", "1.0", "1" -> 2;
+            case "1/2-1/2", "0.5" -> 1;
+            case "0-1", "0.0", "0" -> 0;
+            default -> throw new IllegalArgumentException("`" + resultStr + "` isn't a game result.");
+        };
+    }
+
+    /*
+     * Computes a quantity summed over every position, split across a pool of
+     * workers.
+     *
+     * @param workerPool   The pool.
+     * @param workersCount The number of threads in the pool.
+     * @param positionSet  The positions.
+     * @param sumsLength   The number of sums.
+     * @param chunkSum     The computation.
+     * @return             The sums.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    private static double[] sumOverPositions(final ExecutorService workerPool, final int workersCount,
+                                             final PositionSet positionSet, final int sumsLength,
+                                             final ChunkSum chunkSum) throws InterruptedException {
+        int chunksCount = workersCount * CHUNKS_PER_WORKER;
+        int chunkLength = Math.max(1, (positionSet.count + chunksCount - 1) / chunksCount);
+        List<Callable<double[]>> chunkTasks = new ArrayList<>();
+
+        for (int chunkStartIdx = 0; chunkStartIdx < positionSet.count; chunkStartIdx += chunkLength) {
+            int startIdx = chunkStartIdx;
+            int endIdx = Math.min(positionSet.count, chunkStartIdx + chunkLength);
+            chunkTasks.add(() -> {
+                double[] chunkSums = new double[sumsLength];
+                chunkSum.accumulate(startIdx, endIdx, chunkSums);
+                return chunkSums;
+            });
+        }
+
+        double[] sums = new double[sumsLength];
+        for (Future<double[]> chunkFuture : workerPool.invokeAll(chunkTasks)) {
+            try {
+                double[] chunkSums = chunkFuture.get();
+                for (int sumIdx = 0; sumIdx < sumsLength; sumIdx++) {
+                    sums[sumIdx] += chunkSums[sumIdx];
+                }
+            } catch (ExecutionException exception) {
+                throw new IllegalStateException(exception.getCause());
+            }
+        }
+        return sums;
+    }
+
+    /*
+     * Adds a range of positions' squared errors, and optionally their error
+     * gradients, to an array of sums.
+     *
+     * @param positionSet The positions.
+     * @param params      The middlegame tables' entries followed by the
+     *                    endgame tables', in centipawns.
+     * @param scalingK    The logistic curve's scaling constant.
+     * @param startIdx    The index of the first position.
+     * @param endIdx      The index after the last position.
+     * @param sums        The sums: the gradient with respect to each entry
+     *                    of params, if it's to be computed, and then the
+     *                    squared error.
+     */
+    private static void accumulateError(final PositionSet positionSet, final double[] params, final double scalingK,
+                                        final int startIdx, final int endIdx, final double[] sums) {
+        boolean isGradientComputed = sums.length > 1;
+        double scoreScale = 1D / (100D * EvaluationWeights.PHASE_TOTAL);
+        double exponentScale = scalingK * Math.log(10D) / 4D;
+        short[] features = positionSet.features;
+        int[] featureStarts = positionSet.featureStarts;
+
+        for (int posIdx = startIdx; posIdx < endIdx; posIdx++) {
+            int phase = positionSet.phases[posIdx];
+            int endgamePhase = EvaluationWeights.PHASE_TOTAL - phase;
+            double middlegameSum = 0D;
+            double endgameSum = 0D;
+            for (int featureIdx = featureStarts[posIdx]; featureIdx < featureStarts[posIdx + 1]; featureIdx++) {
+                int feature = features[featureIdx];
+                int tableIdx = feature & TABLE_INDEX_MASK;
+                if ((feature & BLACK_FEATURE_FLAG) == 0) {
+                    middlegameSum += params[tableIdx];
+                    endgameSum += params[TABLE_ENTRIES + tableIdx];
+                } else {
+                    middlegameSum -= params[tableIdx];
+                    endgameSum -= params[TABLE_ENTRIES + tableIdx];
+                }
+            }
+
+            /* The expected score is 1 / (1 + 10^(-K * score / 4)), so a
+               pawn's advantage is worth about what 100 Elo is. */
+            double score = positionSet.baseScores[posIdx]
+                           + (middlegameSum * phase + endgameSum * endgamePhase) * scoreScale;
+            double expectedScore = 1D / (1D + Math.exp(-exponentScale * score));
+            double residual = RESULT_VALUES[positionSet.results[posIdx]] - expectedScore;
+            sums[sums.length - 1] += residual * residual;
+            if (!isGradientComputed) {
+                continue;
+            }
+
+            double scoreSlope = -2D * residual * expectedScore * (1D - expectedScore) * exponentScale * scoreScale;
+            double middlegameSlope = scoreSlope * phase;
+            double endgameSlope = scoreSlope * endgamePhase;
+            for (int featureIdx = featureStarts[posIdx]; featureIdx < featureStarts[posIdx + 1]; featureIdx++) {
+                int feature = features[featureIdx];
+                int tableIdx = feature & TABLE_INDEX_MASK;
+                if ((feature & BLACK_FEATURE_FLAG) == 0) {
+                    sums[tableIdx] += middlegameSlope;
+                    sums[TABLE_ENTRIES + tableIdx] += endgameSlope;
+                } else {
+                    sums[tableIdx] -= middlegameSlope;
+                    sums[TABLE_ENTRIES + tableIdx] -= endgameSlope;
+                }
+            }
+        }
+    }
+
+    /*
+     * Computes the mean squared error of the positions' expected scores.
+     *
+     * @param workerPool   The pool to compute it on.
+     * @param workersCount The number of threads in the pool.
+     * @param positionSet  The positions.
+     * @param params       The tables' entries, as for accumulateError().
+     * @param scalingK     The logistic curve's scaling constant.
+     * @return             The mean squared error.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    private static double meanError(final ExecutorService workerPool, final int workersCount,
+                                    final PositionSet positionSet, final double[] params, final double scalingK)
+            throws InterruptedException {
+        double[] sums = sumOverPositions(workerPool, workersCount, positionSet, 1,
+                                         (startIdx, endIdx, chunkSums) -> accumulateError(positionSet, params,
+                                                                                         scalingK, startIdx, endIdx,
+                                                                                         chunkSums));
+        return sums[0] / positionSet.count;
+    }
+
+    /*
+     * Finds the scaling constant that minimizes the error with the starting
+     * tables, by golden-section search; the error is unimodal in it.
+     *
+     * @param workerPool   The pool to compute the errors on.
+     * @param workersCount The number of threads in the pool.
+     * @param positionSet  The positions.
+     * @param params       The tables' entries, as for accumulateError().
+     * @return             The scaling constant.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    private static double fitScalingK(final ExecutorService workerPool, final int workersCount,
+                                      final PositionSet positionSet, final double[] params)
+            throws InterruptedException {
+        double invPhi = (Math.sqrt(5D) - 1D) / 2D;
+        double lowK = K_SEARCH_LOW;
+        double highK = K_SEARCH_HIGH;
+        double leftK = highK - invPhi * (highK - lowK);
+        double rightK = lowK + invPhi * (highK - lowK);
+        double leftError = meanError(workerPool, workersCount, positionSet, params, leftK);
+        double rightError = meanError(workerPool, workersCount, positionSet, params, rightK);
+
+        while (highK - lowK > K_SEARCH_TOLERANCE) {
+            if (leftError < rightError) {
+                highK = rightK;
+                rightK = leftK;
+                rightError = leftError;
+                leftK = highK - invPhi * (highK - lowK);
+                leftError = meanError(workerPool, workersCount, positionSet, params, leftK);
+            } else {
+                lowK = leftK;
+                leftK = rightK;
+                leftError = rightError;
+                rightK = lowK + invPhi * (highK - lowK);
+                rightError = meanError(workerPool, workersCount, positionSet, params, rightK);
+            }
+        }
+        return (lowK + highK) / 2D;
+    }
+
+    /*
+     * Builds an EvaluationWeights from the tuned tables' entries, rounded to
+     * whole centipawns.
+     *
+     * @param params The tables' entries, as for accumulateError().
+     * @return       An EvaluationWeights object.
+     */
+    private static EvaluationWeights toWeights(final double[] params) {
+        int[][] middlegameTables = new int[6][64];
+        int[][] endgameTables = new int[6][64];
+        for (int tableIdx = 0; tableIdx < TABLE_ENTRIES; tableIdx++) {
+            middlegameTables[tableIdx / 64][tableIdx % 64] = (int) Math.round(params[tableIdx]);
+            endgameTables[tableIdx / 64][tableIdx % 64] = (int) Math.round(params[TABLE_ENTRIES + tableIdx]);
+        }
+        return new EvaluationWeights(middlegameTables, endgameTables);
+    }
+
+    /**
+     * Main method. See the class documentation for the commandline syntax.
+     * The process exits with status 1 if the arguments don't parse or the
+     * starting weights can't be loaded.
+     *
+     * @param args The commandline arguments.
+     * @throws IOException If the positions can't be read or the weights
+     *                     can't be written.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        String usage = """
+                       Usage: TexelTuner --positions <file> --output <file> [--weights <file>] [--epochs <n>]
+                              [--learning-rate <r>] [--k <k>] [--workers <n>]""";
+        Path positionsPath = null;
+        Path outputPath = null;
+        EvaluationWeights startWeights = EvaluationWeights.DEFAULT;
+        int epochsCount = DEFAULT_EPOCHS;
+        double learningRate = DEFAULT_LEARNING_RATE;
+        double scalingK = 0D;
+        int workersCount = Runtime.getRuntime().availableProcessors();
+
+        try {
+            for (int argIdx = 0; argIdx < args.length; argIdx++) {
+                if (argIdx + 1 >= args.length) {
+                    throw new IllegalArgumentException("option `" + args[argIdx] + "` has no value.");
+                }
+                String value = args[++argIdx];
+                switch (args[argIdx - 1]) {
+                    case "--positions" -> positionsPath = Path.of(value);
+                    case "--output" -> outputPath = Path.of(value);
+                    case "--weights" -> startWeights = EvaluationWeights.load(Path.of(value));
+                    case "--epochs" -> epochsCount = Integer.parseInt(value);
+                    case "--learning-rate" -> learningRate = Double.parseDouble(value);
+                    case "--k" -> scalingK = Double.parseDouble(value);
+                    case "--workers" -> workersCount = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("unknown option `" + args[argIdx - 1] + "`.");
+                }
+            }
+            if (positionsPath == null || outputPath == null) {
+                throw new IllegalArgumentException("--positions and --output are required.");
+            } else if (epochsCount < 0) {
+                throw new IllegalArgumentException("--epochs can't be negative.");
+            } else if (!(learningRate > 0D)) {
+                throw new IllegalArgumentException("--learning-rate must be positive.");
+            } else if (scalingK < 0D) {
+                throw new IllegalArgumentException("--k must be positive.");
+            } else if (workersCount < 1) {
+                throw new IllegalArgumentException("--workers must be at least 1.");
+            }
+        } catch (IllegalArgumentException | IOException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println(usage);
+            System.exit(1);
+            return;
+        }
+
+        ExecutorService workerPool = Executors.newFixedThreadPool(workersCount, runnable -> {
+            Thread thread = new Thread(runnable, "texel-tuner-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long startNanos = System.nanoTime();
+        PositionSet positionSet = loadPositions(positionsPath, startWeights, workerPool, workersCount);
+        System.err.printf("Loaded %d positions (%.1f MB) in %.1f s; skipped %d%n", positionSet.count,
+                          positionSet.footprintBytes() / (double) (1 << 20), (System.nanoTime() - startNanos) / 1e9,
+                          positionSet.skippedCount);
+        if (positionSet.count == 0) {
+            System.err.println("There are no positions to tune against.");
+            System.exit(1);
+            return;
+        }
+
+        double[] params = new double[2 * TABLE_ENTRIES];
+        for (int tableIdx = 0; tableIdx < TABLE_ENTRIES; tableIdx++) {
+            params[tableIdx] = startWeights.getMiddlegameValue(tableIdx / 64, tableIdx % 64);
+            params[TABLE_ENTRIES + tableIdx] = startWeights.getEndgameValue(tableIdx / 64, tableIdx % 64);
+        }
+        if (scalingK == 0D) {
+            scalingK = fitScalingK(workerPool, workersCount, positionSet, params);
+        }
+        System.err.printf("K %.4f, starting error %.6f%n", scalingK,
+                          meanError(workerPool, workersCount, positionSet, params, scalingK));
+
+        double[] firstMoments = new double[params.length];
+        double[] secondMoments = new double[params.length];
+        double epochK = scalingK;
+        for (int epoch = 1; epoch <= epochsCount; epoch++) {
+            long epochStartNanos = System.nanoTime();
+            double[] sums = sumOverPositions(workerPool, workersCount, positionSet, params.length + 1,
+                                             (startIdx, endIdx, chunkSums) -> accumulateError(positionSet, params,
+                                                                                             epochK, startIdx,
+                                                                                             endIdx, chunkSums));
+
+            /* The error reported is the one before this epoch's step, which
+               the gradient was computed from too. */
+            double firstBiasCorrection = 1D - Math.pow(ADAM_BETA1, epoch);
+            double secondBiasCorrection = 1D - Math.pow(ADAM_BETA2, epoch);
+            for (int paramIdx = 0; paramIdx < params.length; paramIdx++) {
+                double gradient = sums[paramIdx] / positionSet.count;
+                firstMoments[paramIdx] = ADAM_BETA1 * firstMoments[paramIdx] + (1D - ADAM_BETA1) * gradient;
+                secondMoments[paramIdx] = ADAM_BETA2 * secondMoments[paramIdx]
+                                          + (1D - ADAM_BETA2) * gradient * gradient;
+                params[paramIdx] -= learningRate * (firstMoments[paramIdx] / firstBiasCorrection)
+                                    / (Math.sqrt(secondMoments[paramIdx] / secondBiasCorrection) + ADAM_EPSILON);
+            }
+            System.err.printf("Epoch %d/%d: error %.6f, %.2f s%n", epoch, epochsCount,
+                              sums[params.length] / positionSet.count, (System.nanoTime() - epochStartNanos) / 1e9);
+        }
+
+        EvaluationWeights tunedWeights = toWeights(params);
+        tunedWeights.save(outputPath);
+        double[] roundedParams = new double[params.length];
+        for (int paramIdx = 0; paramIdx < params.length; paramIdx++) {
+            roundedParams[paramIdx] = Math.round(params[paramIdx]);
+        }
+        System.err.printf("Final error %.6f; wrote %s in %.1f s%n",
+                          meanError(workerPool, workersCount, positionSet, roundedParams, scalingK), outputPath,
+                          (System.nanoTime() - startNanos) / 1e9);
+    }
+}
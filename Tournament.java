@@ -0,0 +1,654 @@
+package org.kmfahey.jchessgame;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Plays games between two MinimaxRunner configurations without the GUI, so
+ * that a change to the engine can be checked for its effect on playing
+ * strength over many games. Games are played concurrently, one per worker
+ * thread, each with its own board and its own pair of runners.
+ * <p>
+ * Each opening position is played twice, once with each configuration as
+ * white, so that an unbalanced opening favors neither. Games are adjudicated
+ * by the rules: checkmate, stalemate, threefold repetition, the fifty-move
+ * rule and insufficient material; a game that reaches the ply limit is
+ * adjudicated a draw. Each game is written to a PGN file as it finishes, and
+ * the final score is reported as an Elo difference with a 95% confidence
+ * interval.
+ * <p>
+ * Run from the commandline as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.Tournament --engine1 &lt;spec&gt; --engine2 &lt;spec&gt; [--games &lt;n&gt;]
+ *         [--openings &lt;file&gt;] [--pgn &lt;file&gt;] [--concurrency &lt;n&gt;] [--max-plies &lt;n&gt;]
+ * </pre>
+ * An engine spec is a comma-separated list of settings, for instance
+ * "name=base,depth=3" or "name=deep,depth=5,time=200". The settings are name
+ * and the aliases depth, time (in milliseconds), nodes, hash, threads and
+ * weights (a piece-square tables file, as EvaluationWeights writes), or
+ * the name of any writable attribute of MinimaxRunnerMBean, so a tunable or
+ * feature switch added there can be set here without changing this class.
+ * The openings file holds one FEN or EPD position per line; blank lines and
+ * lines starting with # are skipped. Without one, every game starts from the
+ * standard opening position, and variety comes from the shuffling of equally
+ * scored moves on each side's first move.
+ *
+ * @see MinimaxRunner
+ * @see MinimaxRunnerMBean
+ */
+public final class Tournament {
+
+    /* These statements copy the piece int constants from BoardArrays to this
+       class for convenience. */
+    private static final int BLACK = BoardArrays.BLACK;
+    private static final int WHITE = BoardArrays.WHITE;
+
+    /** The number of plies after which a game is adjudicated a draw, if not
+        otherwise set. */
+    public static final int DEFAULT_MAX_PLIES = 400;
+
+    /* Positions are set up from FENs, which put white at the bottom. */
+    private static final int COLOR_ON_TOP = BoardArrays.BLACK;
+
+    /* The evaluation cache capacity each runner gets unless its spec sets
+       hash. Every concurrent game holds two runners, so the MinimaxRunner
+       default of 1M entries per runner would use too much memory. */
+    private static final int DEFAULT_HASH_SIZE = 1 << 16;
+
+    /* The two-sided 95% quantile of the normal distribution. */
+    private static final double Z_95 = 1.959964;
+
+    /* Abbreviations accepted in engine specs for MinimaxRunnerMBean
+       attributes. */
+    private static final Map<String, String> SETTING_ALIASES = Map.of(
+        "depth", "MaxDepth",
+        "time", "TimeBudgetMillis",
+        "nodes", "NodeBudget",
+        "hash", "HashSize",
+        "threads", "ThreadCount",
+        "weights", "WeightsFile"
+    );
+
+    /**
+     * A MinimaxRunner configuration, as given on the commandline.
+     *
+     * @param name     The name the configuration is reported and recorded in
+     *                 PGN under.
+     * @param settings The MinimaxRunnerMBean attributes to set, by attribute
+     *                 name, as strings.
+     */
+    public record EngineConfig(String name, Map<String, String> settings) {
+
+        /**
+         * Parses an engine spec, such as "name=base,depth=3,time=200". The
+         * settings are checked against MinimaxRunnerMBean's attributes, so a
+         * misspelled one is reported before any game starts.
+         *
+         * @param spec        The spec.
+         * @param defaultName The name to use if the spec doesn't set one.
+         * @return            An EngineConfig object.
+         * @throws IllegalArgumentException If a setting isn't of the form
+         *                                  key=value or doesn't name a
+         *                                  writable attribute.
+         */
+        public static EngineConfig parse(final String spec, final String defaultName)
+                throws IllegalArgumentException {
+            String configName = defaultName;
+            Map<String, String> configSettings = new LinkedHashMap<>();
+
+            for (String setting : spec.split(",")) {
+                if (setting.isBlank()) {
+                    continue;
+                }
+                int equalsIdx = setting.indexOf('=');
+                if (equalsIdx <= 0) {
+                    throw new IllegalArgumentException("engine setting `" + setting + "` isn't of the form "
+                                                       + "key=value.");
+                }
+                String key = setting.substring(0, equalsIdx).trim();
+                String value = setting.substring(equalsIdx + 1).trim();
+                if (key.equals("name")) {
+                    configName = value;
+                    continue;
+                }
+                String attributeName = SETTING_ALIASES.getOrDefault(key.toLowerCase(), key);
+                findSetter(attributeName);
+                configSettings.put(attributeName, value);
+            }
+
+            return new EngineConfig(configName, configSettings);
+        }
+
+        /**
+         * Instances a MinimaxRunner with this configuration.
+         *
+         * @param chessboard The Chessboard object the runner searches.
+         * @param aiColor    The color the runner plays.
+         * @return           The MinimaxRunner object.
+         * @throws IllegalArgumentException If a setting's value doesn't parse
+         *                                  as the attribute's type or is
+         *                                  rejected by its mutator.
+         */
+        public MinimaxRunner newRunner(final Chessboard chessboard, final int aiColor)
+                throws IllegalArgumentException {
+            MinimaxRunner minimaxRunner = new MinimaxRunner(chessboard, aiColor);
+            minimaxRunner.setHashSize(DEFAULT_HASH_SIZE);
+            for (Map.Entry<String, String> setting : settings.entrySet()) {
+                applySetting(minimaxRunner, setting.getKey(), setting.getValue());
+            }
+            return minimaxRunner;
+        }
+    }
+
+    /**
+     * The outcome of one game.
+     *
+     * @param whiteName   The name of the configuration that played white.
+     * @param blackName   The name of the configuration that played black.
+     * @param openingFen  The position the game started from, in FEN.
+     * @param sanMoves    The moves played, in standard algebraic notation.
+     * @param result      The result, in PGN form: "1-0", "0-1" or "1/2-1/2".
+     * @param termination Why the game ended, for instance "checkmate" or
+     *                    "threefold repetition".
+     */
+    public record GameResult(String whiteName, String blackName, String openingFen, List<String> sanMoves,
+                             String result, String termination) {
+
+        /**
+         * Accessor for the points white scored.
+         *
+         * @return 1 for a white win, 0.5 for a draw, 0 for a black win.
+         */
+        public double whitePoints() {
+            return switch (result) {
+                case "1-0" -> 1D;
+                case "0-1" -> 0D;
+                default -> 0.5D;
+            };
+        }
+
+        /**
+         * Renders the game in PGN.
+         *
+         * @param event The Event tag's value.
+         * @param round The Round tag's value, the game's number.
+         * @return      The game as a PGN string, ending in a blank line.
+         */
+        public String toPgn(final String event, final int round) {
+            StringBuilder pgnBuilder = new StringBuilder();
+            String[] fenFields = openingFen.trim().split("\\s+");
+            int fullmoveNumber = fenFields.length > 5 ? Integer.parseInt(fenFields[5]) : 1;
+            boolean blackMovesFirst = fenFields[1].equals("b");
+
+            pgnBuilder.append("[Event \"").append(event).append("\"]\n")
+                      .append("[Site \"?\"]\n")
+                      .append("[Date \"").append(LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd")))
+                      .append("\"]\n")
+                      .append("[Round \"").append(round).append("\"]\n")
+                      .append("[White \"").append(whiteName).append("\"]\n")
+                      .append("[Black \"").append(blackName).append("\"]\n")
+                      .append("[Result \"").append(result).append("\"]\n");
+            if (!openingFen.equals(Fen.START_POSITION)) {
+                pgnBuilder.append("[SetUp \"1\"]\n")
+                          .append("[FEN \"").append(openingFen).append("\"]\n");
+            }
+            pgnBuilder.append("[PlyCount \"").append(sanMoves.size()).append("\"]\n")
+                      .append("[Termination \"").append(termination.equals("ply limit") ? "adjudication" : "normal")
+                      .append("\"]\n\n");
+
+            /* The movetext is wrapped at 79 columns. */
+            List<String> tokens = new ArrayList<>();
+            for (int plyIdx = 0; plyIdx < sanMoves.size(); plyIdx++) {
+                boolean isWhiteMove = (plyIdx % 2 == 0) != blackMovesFirst;
+                int moveNumber = fullmoveNumber + (plyIdx + (blackMovesFirst ? 1 : 0)) / 2;
+                if (isWhiteMove) {
+                    tokens.add(moveNumber + ".");
+                } else if (plyIdx == 0) {
+                    tokens.add(moveNumber + "...");
+                }
+                tokens.add(sanMoves.get(plyIdx));
+            }
+            tokens.add("{" + termination + "}");
+            tokens.add(result);
+
+            int lineLength = 0;
+            for (String token : tokens) {
+                if (lineLength > 0 && lineLength + 1 + token.length() > 79) {
+                    pgnBuilder.append('\n');
+                    lineLength = 0;
+                } else if (lineLength > 0) {
+                    pgnBuilder.append(' ');
+                    lineLength++;
+                }
+                pgnBuilder.append(token);
+                lineLength += token.length();
+            }
+
+            return pgnBuilder.append("\n\n").toString();
+        }
+    }
+
+    /**
+     * A match score, from the point of view of one of the two configurations,
+     * with the Elo difference it implies.
+     *
+     * @param wins   The number of games won.
+     * @param draws  The number of games drawn.
+     * @param losses The number of games lost.
+     */
+    public record Score(int wins, int draws, int losses) {
+
+        /**
+         * Returns the score with one more game's outcome added.
+         *
+         * @param points The points scored in the game: 1, 0.5 or 0.
+         * @return       A new Score object.
+         */
+        public Score plus(final double points) {
+            return points == 1D ? new Score(wins + 1, draws, losses)
+                   : points == 0D ? new Score(wins, draws, losses + 1)
+                   : new Score(wins, draws + 1, losses);
+        }
+
+        /**
+         * Accessor for the number of games played.
+         *
+         * @return The number of games.
+         */
+        public int games() {
+            return wins + draws + losses;
+        }
+
+        /**
+         * Accessor for the fraction of the available points scored.
+         *
+         * @return The points scored divided by the games played, or 0.5 if
+         *         none have been.
+         */
+        public double pointsFraction() {
+            return games() == 0 ? 0.5D : (wins + draws / 2D) / games();
+        }
+
+        /**
+         * Computes the Elo difference implied by the score, using the
+         * logistic model.
+         *
+         * @return The Elo difference; positive if this side is stronger. It's
+         *         infinite if every game was won or every game lost.
+         */
+        public double eloDifference() {
+            return pointsFractionToElo(pointsFraction());
+        }
+
+        /**
+         * Computes the half-width of the 95% confidence interval of the Elo
+         * difference, from the variance of the per-game points.
+         *
+         * @return The error margin, in Elo; not finite if the score or its
+         *         interval reaches 0 or 1, as it does after few games.
+         */
+        public double eloErrorMargin() {
+            int gameCount = games();
+            double mean = pointsFraction();
+            double variance = (wins * Math.pow(1D - mean, 2) + draws * Math.pow(0.5D - mean, 2)
+                               + losses * Math.pow(mean, 2)) / gameCount;
+            double standardError = Math.sqrt(variance / gameCount);
+            double upperElo = pointsFractionToElo(mean + Z_95 * standardError);
+            double lowerElo = pointsFractionToElo(mean - Z_95 * standardError);
+            return (upperElo - lowerElo) / 2D;
+        }
+
+        /*
+         * Converts an expected score to an Elo difference.
+         *
+         * @param fraction The expected points per game, between 0 and 1.
+         * @return         The Elo difference.
+         */
+        private static double pointsFractionToElo(final double fraction) {
+            if (fraction >= 1D) {
+                return Double.POSITIVE_INFINITY;
+            } else if (fraction <= 0D) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            return -400D * Math.log10(1D / fraction - 1D);
+        }
+    }
+
+    private Tournament() { }
+
+    /**
+     * Plays one game between two configurations to its end.
+     *
+     * @param openingFen The position to start from, in FEN.
+     * @param white      The configuration playing white.
+     * @param black      The configuration playing black.
+     * @param maxPlies   The number of plies after which the game is
+     *                   adjudicated a draw.
+     * @return           A GameResult object.
+     * @throws IllegalArgumentException If the FEN doesn't parse, or a
+     *                                  configuration's settings are invalid.
+     */
+    public static GameResult playGame(final String openingFen, final EngineConfig white, final EngineConfig black,
+                                      final int maxPlies) throws IllegalArgumentException {
+        Fen.Position opening = Fen.parse(openingFen);
+        int[][] boardArray = opening.boardArray();
+        int colorToMove = opening.colorToMove();
+        int castlingRights = opening.castlingRights();
+        int halfmoveClock = opening.halfmoveClock();
+        int[][] movesArray = new int[128][7];
+        List<String> sanMoves = new ArrayList<>();
+        Map<String, Integer> positionCounts = new HashMap<>();
+
+        /* Both runners search the same Chessboard, whose board array is the
+           one moves are made on here. */
+        Chessboard chessboard = new Chessboard(boardArray, WHITE, COLOR_ON_TOP);
+        MinimaxRunner whiteRunner = white.newRunner(chessboard, WHITE);
+        MinimaxRunner blackRunner = black.newRunner(chessboard, BLACK);
+
+        while (true) {
+            int otherColor = colorToMove == WHITE ? BLACK : WHITE;
+            String winningResult = colorToMove == WHITE ? "0-1" : "1-0";
+
+            /* The draw rules are checked first, then whether the side to move
+               has any legal move. */
+            String positionKey = Arrays.deepToString(boardArray) + colorToMove + "/" + castlingRights;
+            if (positionCounts.merge(positionKey, 1, Integer::sum) >= 3) {
+                return new GameResult(white.name(), black.name(), openingFen, sanMoves, "1/2-1/2",
+                                      "threefold repetition");
+            } else if (halfmoveClock >= 100) {
+                return new GameResult(white.name(), black.name(), openingFen, sanMoves, "1/2-1/2",
+                                      "fifty-move rule");
+            } else if (isInsufficientMaterial(boardArray)) {
+                return new GameResult(white.name(), black.name(), openingFen, sanMoves, "1/2-1/2",
+                                      "insufficient material");
+            }
+
+            int movesCount = BoardArrays.generatePossibleMoves(boardArray, movesArray, colorToMove, COLOR_ON_TOP);
+            int legalMovesCount = 0;
+            for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+                if (BoardArrays.isCastlingAllowed(movesArray[moveIdx], castlingRights)) {
+                    legalMovesCount++;
+                }
+            }
+            if (legalMovesCount == 0) {
+                clearMovesArray(movesArray, movesCount);
+                return BoardArrays.isKingInCheck(boardArray, colorToMove, COLOR_ON_TOP)
+                       ? new GameResult(white.name(), black.name(), openingFen, sanMoves, winningResult, "checkmate")
+                       : new GameResult(white.name(), black.name(), openingFen, sanMoves, "1/2-1/2", "stalemate");
+            } else if (sanMoves.size() >= maxPlies) {
+                clearMovesArray(movesArray, movesCount);
+                return new GameResult(white.name(), black.name(), openingFen, sanMoves, "1/2-1/2", "ply limit");
+            }
+
+            MinimaxRunner minimaxRunner = colorToMove == WHITE ? whiteRunner : blackRunner;
+            minimaxRunner.setColors(otherColor, COLOR_ON_TOP);
+            minimaxRunner.setCastlingRights(castlingRights);
+            Chessboard.Move moveObj = minimaxRunner.algorithmTopLevel(sanMoves.size() / 2);
+
+            /* The move is matched against the legal moves, so that the move
+               array made is the generator's own, and a move that isn't legal
+               loses the game rather than corrupting the board. */
+            int[] moveArray = null;
+            for (int moveIdx = 0; moveIdx < movesCount && Objects.nonNull(moveObj.movingPiece()); moveIdx++) {
+                int[] candidateMoveArray = movesArray[moveIdx];
+                if (BoardArrays.isCastlingAllowed(candidateMoveArray, castlingRights)
+                    && candidateMoveArray[1] == moveObj.fromXCoord() && candidateMoveArray[2] == moveObj.fromYCoord()
+                    && candidateMoveArray[3] == moveObj.toXCoord() && candidateMoveArray[4] == moveObj.toYCoord()
+                    && (candidateMoveArray[6] & ~(WHITE | BLACK | BoardArrays.LEFT | BoardArrays.RIGHT))
+                       == (moveObj.promotedToPieceInt() & ~(WHITE | BLACK | BoardArrays.LEFT | BoardArrays.RIGHT))) {
+                    moveArray = candidateMoveArray.clone();
+                    break;
+                }
+            }
+            clearMovesArray(movesArray, movesCount);
+            if (Objects.isNull(moveArray)) {
+                return new GameResult(white.name(), black.name(), openingFen, sanMoves, winningResult,
+                                      "illegal move " + moveObj);
+            }
+
+            sanMoves.add(BoardArrays.moveArrayToSan(boardArray, moveArray, COLOR_ON_TOP));
+            boolean resetsClock = (moveArray[0] & BoardArrays.PAWN) != 0
+                                  || (moveArray[5] != 0 && !BoardArrays.isCastlingMove(moveArray));
+            BoardArrays.makeMove(boardArray, moveArray);
+            castlingRights = BoardArrays.updateCastlingRights(castlingRights, moveArray, COLOR_ON_TOP);
+            halfmoveClock = resetsClock ? 0 : halfmoveClock + 1;
+            colorToMove = otherColor;
+        }
+    }
+
+    /**
+     * Reads an openings file: one FEN or EPD position per line, skipping
+     * blank lines and lines starting with #. EPD operations after the fourth
+     * field are discarded, and missing move counters are filled in.
+     *
+     * @param fileName The file's name.
+     * @return         The positions, as FENs.
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If a position doesn't parse.
+     */
+    public static List<String> loadOpenings(final String fileName) throws IOException, IllegalArgumentException {
+        List<String> openingFens = new ArrayList<>();
+
+        for (String line : Files.readAllLines(Path.of(fileName), StandardCharsets.UTF_8)) {
+            if (Epd.isPositionLine(line)) {
+                openingFens.add(Epd.parse(line).fen());
+            }
+        }
+
+        return openingFens;
+    }
+
+    /*
+     * Tests whether neither side has enough material left to checkmate: each
+     * side has only its king, plus at most one bishop or knight between them.
+     *
+     * @param boardArray The int[8][8] array that represents the chessboard.
+     * @return           True if the position is a dead draw, false otherwise.
+     */
+    private static boolean isInsufficientMaterial(final int[][] boardArray) {
+        int minorPiecesCount = 0;
+
+        for (int xIdx = 0; xIdx < 8; xIdx++) {
+            for (int yIdx = 0; yIdx < 8; yIdx++) {
+                int pieceInt = boardArray[xIdx][yIdx];
+                if ((pieceInt & (BoardArrays.PAWN | BoardArrays.ROOK | BoardArrays.QUEEN)) != 0) {
+                    return false;
+                } else if ((pieceInt & (BoardArrays.BISHOP | BoardArrays.KNIGHT)) != 0) {
+                    minorPiecesCount++;
+                }
+            }
+        }
+
+        return minorPiecesCount <= 1;
+    }
+
+    /*
+     * Zeroes the used part of a moves array, which the generate*sMoves()
+     * methods require before it's reused.
+     *
+     * @param movesArray The moves array.
+     * @param movesCount The number of entries used.
+     */
+    private static void clearMovesArray(final int[][] movesArray, final int movesCount) {
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            Arrays.fill(movesArray[moveIdx], 0);
+        }
+    }
+
+    /*
+     * Finds the MinimaxRunnerMBean mutator for an attribute.
+     *
+     * @param attributeName The attribute's name; case is ignored.
+     * @return              The mutator method.
+     * @throws IllegalArgumentException If there's no such writable attribute.
+     */
+    private static Method findSetter(final String attributeName) throws IllegalArgumentException {
+        for (Method method : MinimaxRunnerMBean.class.getMethods()) {
+            if (method.getName().equalsIgnoreCase("set" + attributeName) && method.getParameterCount() == 1) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("`" + attributeName + "` isn't a writable MinimaxRunnerMBean "
+                                           + "attribute.");
+    }
+
+    /*
+     * Sets a MinimaxRunnerMBean attribute on a runner from its string value.
+     *
+     * @param minimaxRunner The runner.
+     * @param attributeName The attribute's name.
+     * @param value         The value, as given in the engine spec.
+     * @throws IllegalArgumentException If the value doesn't parse as the
+     *                                  attribute's type or is rejected.
+     */
+    private static void applySetting(final MinimaxRunner minimaxRunner, final String attributeName,
+                                     final String value) throws IllegalArgumentException {
+        Method setter = findSetter(attributeName);
+        Class<?> valueType = setter.getParameterTypes()[0];
+
+        try {
+            Object parsedValue;
+            if (valueType == int.class) {
+                parsedValue = Integer.parseInt(value);
+            } else if (valueType == long.class) {
+                parsedValue = Long.parseLong(value);
+            } else if (valueType == double.class) {
+                parsedValue = Double.parseDouble(value);
+            } else if (valueType == boolean.class) {
+                parsedValue = Boolean.parseBoolean(value) || value.equals("on") || value.equals("1");
+            } else {
+                parsedValue = value;
+            }
+            setter.invoke(minimaxRunner, parsedValue);
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("`" + value + "` isn't a valid value for " + attributeName + ".",
+                                               exception);
+        } catch (InvocationTargetException exception) {
+            throw new IllegalArgumentException("`" + value + "` was rejected for " + attributeName + ": "
+                                               + exception.getCause().getMessage(), exception.getCause());
+        } catch (IllegalAccessException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Main method. See the class documentation for the commandline syntax.
+     * Progress is printed as each game finishes, then the final score and
+     * Elo difference from engine1's point of view. The process exits with
+     * status 1 if the arguments don't parse.
+     *
+     * @param args The commandline arguments.
+     * @throws IOException If the openings file can't be read or the PGN file
+     *                     can't be written.
+     * @throws InterruptedException If interrupted while waiting for games.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        String usage = """
+                       Usage: Tournament --engine1 <spec> --engine2 <spec> [--games <n>] [--openings <file>]
+                                         [--pgn <file>] [--concurrency <n>] [--max-plies <n>]""";
+        EngineConfig engine1 = null;
+        EngineConfig engine2 = null;
+        int gamesCount = 100;
+        List<String> openingFens = List.of(Fen.START_POSITION);
+        String pgnFileName = null;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        int maxPlies = DEFAULT_MAX_PLIES;
+
+        try {
+            for (int argIdx = 0; argIdx < args.length; argIdx += 2) {
+                if (argIdx + 1 >= args.length) {
+                    throw new IllegalArgumentException("option `" + args[argIdx] + "` has no value.");
+                }
+                String value = args[argIdx + 1];
+                switch (args[argIdx]) {
+                    case "--engine1" -> engine1 = EngineConfig.parse(value, "engine1");
+                    case "--engine2" -> engine2 = EngineConfig.parse(value, "engine2");
+                    case "--games" -> gamesCount = Integer.parseInt(value);
+                    case "--openings" -> openingFens = loadOpenings(value);
+                    case "--pgn" -> pgnFileName = value;
+                    case "--concurrency" -> concurrency = Integer.parseInt(value);
+                    case "--max-plies" -> maxPlies = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("unknown option `" + args[argIdx] + "`.");
+                }
+            }
+            if (Objects.isNull(engine1) || Objects.isNull(engine2)) {
+                throw new IllegalArgumentException("both --engine1 and --engine2 are required.");
+            } else if (openingFens.isEmpty()) {
+                throw new IllegalArgumentException("the openings file has no positions.");
+            }
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println(usage);
+            System.exit(1);
+            return;
+        }
+
+        String event = engine1.name() + " vs " + engine2.name();
+        ExecutorService gamePool = Executors.newFixedThreadPool(concurrency);
+        CompletionService<Map.Entry<Integer, GameResult>> gameCompletions
+                = new ExecutorCompletionService<>(gamePool);
+
+        /* Games are played in pairs from the same opening with colors
+           reversed. */
+        for (int gameIdx = 0; gameIdx < gamesCount; gameIdx++) {
+            String openingFen = openingFens.get((gameIdx / 2) % openingFens.size());
+            EngineConfig white = gameIdx % 2 == 0 ? engine1 : engine2;
+            EngineConfig black = gameIdx % 2 == 0 ? engine2 : engine1;
+            int round = gameIdx + 1;
+            int gameMaxPlies = maxPlies;
+            gameCompletions.submit(() -> Map.entry(round, playGame(openingFen, white, black, gameMaxPlies)));
+        }
+        gamePool.shutdown();
+
+        Score score = new Score(0, 0, 0);
+        try (PrintWriter pgnWriter = Objects.nonNull(pgnFileName)
+                                     ? new PrintWriter(Files.newBufferedWriter(Path.of(pgnFileName),
+                                                                               StandardCharsets.UTF_8))
+                                     : null) {
+            for (int gameIdx = 0; gameIdx < gamesCount; gameIdx++) {
+                Map.Entry<Integer, GameResult> completedGame;
+                try {
+                    completedGame = gameCompletions.take().get();
+                } catch (ExecutionException exception) {
+                    gamePool.shutdownNow();
+                    throw new IllegalStateException("a game failed", exception.getCause());
+                }
+                int round = completedGame.getKey();
+                GameResult gameResult = completedGame.getValue();
+                boolean engine1IsWhite = round % 2 == 1;
+                score = score.plus(engine1IsWhite ? gameResult.whitePoints() : 1D - gameResult.whitePoints());
+
+                if (Objects.nonNull(pgnWriter)) {
+                    pgnWriter.print(gameResult.toPgn(event, round));
+                    pgnWriter.flush();
+                }
+                System.out.printf("Game %d (%s vs %s): %s {%s}  Score of %s vs %s: %d - %d - %d [%.3f] %d%n",
+                                  round, gameResult.whiteName(), gameResult.blackName(), gameResult.result(),
+                                  gameResult.termination(), engine1.name(), engine2.name(), score.wins(),
+                                  score.losses(), score.draws(), score.pointsFraction(), score.games());
+            }
+        }
+
+        System.out.printf("Elo difference of %s vs %s: %.1f +/- %.1f (95%%)%n", engine1.name(), engine2.name(),
+                          score.eloDifference(), score.eloErrorMargin());
+    }
+}
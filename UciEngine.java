@@ -0,0 +1,755 @@
+package org.kmfahey.jchessgame;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Runs the engine as a Universal Chess Interface (UCI) engine, reading
+ * commands on standard in and writing responses on standard out, so it can
+ * be driven by tournament managers and analysis GUIs. The search itself is
+ * MinimaxRunner's; this class keeps track of the position, turns each go
+ * command into MinimaxRunner tunables, and runs the search on its own thread
+ * so stop, ponderhit and isready are answered while it's in progress.
+ * <p>
+ * The commands supported are uci, debug (which turns on checking the
+ * incrementally kept evaluation state), isready, setoption (the Hash,
+ * Threads, BookFile, BitbaseDir, AnalysisFile and WeightsFile options),
+ * ucinewgame, position (startpos or fen, with or without moves), go (depth,
+ * movetime, wtime, btime, winc, binc, movestogo, nodes, infinite and ponder),
+ * stop, ponderhit and quit. While searching, an info
+ * line with the depth, score, nodes, nps, time and pv is written as each
+ * iteration completes.
+ * <p>
+ * Some limitations follow from the engine. En passant isn't generated, so
+ * the en passant field of a FEN is ignored and an en passant capture in a
+ * moves list is rejected. MinimaxRunner keeps no principal variation, so the
+ * pv is the best root move only. A forced mate is scored as +/-infinity, with
+ * no distance, so it's reported as a centipawn score of +/-32000, unless it
+ * was found in the endgame tables, which give the distance, so it's reported
+ * as a mate in so many moves. The first iteration of a search is always
+ * completed, so a time or node limit can be overrun by it.
+ * <p>
+ * Run from the commandline as:
+ * <pre>
+ *     java org.kmfahey.jchessgame.UciEngine
+ *     java org.kmfahey.jchessgame.UciEngine --check
+ * </pre>
+ * The second runs the command scripts in CHECK_SCRIPTS against the engine
+ * and reports whether each ended with its bestmove lines, rather than
+ * hanging.
+ *
+ * @see MinimaxRunner
+ */
+public final class UciEngine {
+
+    /** The engine name reported by the uci command. */
+    public static final String ENGINE_NAME = "JChessGame";
+
+    /** The author reported by the uci command. */
+    public static final String ENGINE_AUTHOR = "MagentaToBe";
+
+    /* The approximate heap footprint of one evaluation cache entry: the map
+       node, the boxed Long key, the boxed Double score and the node's share
+       of the map's table. It was measured at 85-90 bytes on a 64-bit JVM with
+       compressed pointers by filling a map with up to six million entries.
+       It's used to convert the Hash option, in megabytes, to an entry
+       count. */
+    private static final int EVALUATION_CACHE_ENTRY_BYTES = 88;
+
+    /* The bounds and defaults of the UCI options. The Hash default is the
+       memory MinimaxRunner's default evaluation cache of 2^20 entries takes,
+       so it converts back to that many entries. */
+    private static final int HASH_DEFAULT_MB = 88;
+    private static final int HASH_MIN_MB = 1;
+    private static final int HASH_MAX_MB = 4096;
+    private static final int THREADS_DEFAULT = 1;
+    private static final int THREADS_MIN = 1;
+    private static final int THREADS_MAX = 64;
+
+    /* The depth limit used for searches bounded by time, nodes or a stop
+       command rather than depth. */
+    private static final int UNBOUNDED_DEPTH = 64;
+
+    /* The number of moves assumed to be left in the game when allotting time
+       from the clock without a movestogo, and the time held back to allow for
+       the overhead of communicating the move. */
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    private static final long MOVE_OVERHEAD_MILLIS = 50;
+
+    /* The score reported for a forced mate, in centipawns. */
+    private static final int MATE_SCORE_CENTIPAWNS = 32000;
+
+    /* The scripts run by --check. Each is read by the engine all at once,
+       so the commands after a go are read before the search thread has got
+       going, which is when a stop or quit used to be lost. Each script is run
+       CHECK_RUNS times, and each run has to write one bestmove line per go
+       and end within CHECK_TIMEOUT_MILLIS. */
+    private static final String[] CHECK_SCRIPTS = {
+        "position startpos\ngo infinite\nstop\n",
+        "position startpos\ngo infinite\nquit\n",
+        "position startpos\ngo ponder wtime 60000 btime 60000\nstop\n",
+        "position startpos\ngo infinite\nstop\nposition startpos moves e2e4\ngo infinite\nstop\n"
+    };
+    private static final int CHECK_RUNS = 10;
+    private static final long CHECK_TIMEOUT_MILLIS = 10_000;
+
+    /* FEN boards are laid out with white at the bottom, so black is on top. */
+    private static final int COLOR_ON_TOP = BoardArrays.BLACK;
+
+    private final BufferedReader input;
+    private final PrintStream output;
+
+    /* The current position: the board, the side to move, the castling
+       rights, and the number of plies played since the game started (used as
+       MinimaxRunner's turn count). */
+    private int[][] boardArray;
+    private int colorToMove;
+    private int castlingRights;
+    private int pliesPlayed;
+
+    /* The engine. The Chessboard is the one the MinimaxRunner searches on; it
+       has the current position copied into it at each go command. */
+    private final Chessboard chessboard;
+    private final MinimaxRunner minimaxRunner;
+
+    /* The search in progress, if any. When the search is infinite or a
+       ponder search, holdBestMove is set, and the search thread waits for it
+       to be cleared by stop or ponderhit before writing its bestmove.
+       ponderTimeBudgetMillis is the time budget the search would've had if it
+       weren't pondering, which ponderhit arms. Guarded by synchronizing on
+       this object. */
+    private Thread searchThread = null;
+    private boolean holdBestMove = false;
+    private long ponderTimeBudgetMillis = 0;
+
+    /* Fires stopSearch() after a ponderhit. It's created when first needed.
+       ponderStopTask is the task scheduled on it for the search in progress,
+       if any; it's cancelled when that search ends, so it can't stop the next
+       one. Guarded by synchronizing on this object. */
+    private Timer stopTimer = null;
+    private TimerTask ponderStopTask = null;
+
+    /**
+     * Initializes the engine with the starting position.
+     *
+     * @param inputStream  The stream to read commands from.
+     * @param outputStream The stream to write responses to.
+     */
+    public UciEngine(final InputStream inputStream, final PrintStream outputStream) {
+        input = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        output = outputStream;
+        chessboard = new Chessboard(new int[8][8], BoardArrays.BLACK, COLOR_ON_TOP);
+        minimaxRunner = new MinimaxRunner(chessboard, BoardArrays.WHITE);
+        minimaxRunner.setHashSize(megabytesToCacheEntries(HASH_DEFAULT_MB));
+        minimaxRunner.setIterationListener(this::sendIterationInfo);
+        setPosition(Fen.START_POSITION);
+    }
+
+    /**
+     * Reads and executes commands until quit is received or the input ends.
+     *
+     * @throws IOException If reading from the input fails.
+     */
+    public void run() throws IOException {
+        String line;
+        while ((line = input.readLine()) != null) {
+            if (!executeCommand(line.trim())) {
+                break;
+            }
+        }
+        stopSearchAndWait();
+    }
+
+    /*
+     * Executes one command. Unknown commands are ignored, as the protocol
+     * requires.
+     *
+     * @param line The command line, trimmed.
+     * @return     False if the command was quit, true otherwise.
+     */
+    private boolean executeCommand(final String line) {
+        String[] tokens = line.split("\\s+");
+        switch (tokens[0]) {
+            case "uci" -> {
+                send("id name " + ENGINE_NAME);
+                send("id author " + ENGINE_AUTHOR);
+                send("option name Hash type spin default " + HASH_DEFAULT_MB + " min " + HASH_MIN_MB + " max "
+                     + HASH_MAX_MB);
+                send("option name Threads type spin default " + THREADS_DEFAULT + " min " + THREADS_MIN + " max "
+                     + THREADS_MAX);
+                send("option name Ponder type check default false");
+                send("option name BookFile type string default <empty>");
+                send("option name BitbaseDir type string default <empty>");
+                send("option name AnalysisFile type string default <empty>");
+                send("option name WeightsFile type string default <empty>");
+                send("uciok");
+            }
+            case "debug" -> minimaxRunner.setIncrementalEvaluationChecked(tokens.length > 1
+                                                                          && tokens[1].equals("on"));
+            case "isready" -> send("readyok");
+            case "setoption" -> setOption(tokens);
+            case "ucinewgame" -> {
+                stopSearchAndWait();
+                minimaxRunner.clearEvaluationCache();
+                setPosition(Fen.START_POSITION);
+            }
+            case "position" -> {
+                stopSearchAndWait();
+                executePosition(tokens);
+            }
+            case "go" -> {
+                stopSearchAndWait();
+                executeGo(tokens);
+            }
+            case "stop" -> stopSearchAndWait();
+            case "ponderhit" -> executePonderhit();
+            case "quit" -> {
+                return false;
+            }
+            default -> { }
+        }
+        return true;
+    }
+
+    /*
+     * Executes a setoption command. The option name and value may each be
+     * several words long, though the ones supported aren't.
+     *
+     * @param tokens The command, split on whitespace.
+     */
+    private void setOption(final String[] tokens) {
+        String name = tokenSpan(tokens, "name", "value");
+        String value = tokenSpan(tokens, "value", null);
+        try {
+            switch (name.toLowerCase()) {
+                case "hash" -> {
+                    int hashMegabytes = Math.max(HASH_MIN_MB, Math.min(HASH_MAX_MB, Integer.parseInt(value)));
+                    minimaxRunner.setHashSize(megabytesToCacheEntries(hashMegabytes));
+                }
+                case "threads" -> {
+                    int threads = Math.max(THREADS_MIN, Math.min(THREADS_MAX, Integer.parseInt(value)));
+                    minimaxRunner.setThreadCount(threads);
+                }
+                case "bookfile" -> setBookFile(value);
+                case "bitbasedir" -> setBitbaseDir(value);
+                case "analysisfile" -> setAnalysisFile(value);
+                case "weightsfile" -> setWeightsFile(value);
+                default -> { }
+            }
+        } catch (NumberFormatException exception) {
+            send("info string option " + name + " value `" + value + "` isn't a number");
+        }
+    }
+
+    /*
+     * Opens the opening book named by a setoption BookFile command and gives
+     * it to the runner. If the book can't be opened, the engine carries on
+     * without one.
+     *
+     * @param bookFileName The path of the book file, or empty or <empty> to
+     *                     play without a book.
+     */
+    private void setBookFile(final String bookFileName) {
+        if (bookFileName.isEmpty() || bookFileName.equals("<empty>")) {
+            minimaxRunner.setOpeningBook(null);
+            return;
+        }
+        try {
+            minimaxRunner.setOpeningBook(PolyglotBook.open(Path.of(bookFileName)));
+        } catch (IOException | InvalidPathException exception) {
+            minimaxRunner.setOpeningBook(null);
+            send("info string couldn't open opening book: " + exception.getMessage());
+        }
+    }
+
+    /*
+     * Loads the endgame tables in the directory named by a setoption
+     * BitbaseDir command and gives them to the runner. If they can't be
+     * loaded, the engine carries on without them.
+     *
+     * @param bitbaseDirName The path of the directory, or empty or <empty>
+     *                       to play without tables.
+     */
+    private void setBitbaseDir(final String bitbaseDirName) {
+        if (bitbaseDirName.isEmpty() || bitbaseDirName.equals("<empty>")) {
+            minimaxRunner.setBitbase(null);
+            return;
+        }
+        try {
+            minimaxRunner.setBitbase(Bitbase.open(Path.of(bitbaseDirName)));
+        } catch (IOException | InvalidPathException exception) {
+            minimaxRunner.setBitbase(null);
+            send("info string couldn't load endgame bitbases: " + exception.getMessage());
+        }
+    }
+
+    /*
+     * Opens the analysis store named by a setoption AnalysisFile command,
+     * creating it if it doesn't exist, and gives it to the runner. If it
+     * can't be opened, the engine carries on without one.
+     *
+     * @param analysisFileName The path of the store file, or empty or
+     *                         <empty> to search without one.
+     */
+    private void setAnalysisFile(final String analysisFileName) {
+        if (analysisFileName.isEmpty() || analysisFileName.equals("<empty>")) {
+            minimaxRunner.setAnalysisStore(null);
+            return;
+        }
+        try {
+            minimaxRunner.setAnalysisStore(AnalysisStore.open(Path.of(analysisFileName),
+                                                              AnalysisStore.DEFAULT_SIZE_MB));
+        } catch (IOException | InvalidPathException exception) {
+            minimaxRunner.setAnalysisStore(null);
+            send("info string couldn't open analysis store: " + exception.getMessage());
+        }
+    }
+
+    /*
+     * Loads the piece-square tables in the file named by a setoption
+     * WeightsFile command into the runner. If they can't be loaded, the
+     * engine carries on with the built-in ones.
+     *
+     * @param weightsFileName The path of the weights file, or empty or
+     *                        <empty> to use the built-in tables.
+     */
+    private void setWeightsFile(final String weightsFileName) {
+        if (weightsFileName.isEmpty() || weightsFileName.equals("<empty>")) {
+            minimaxRunner.setWeightsFile("");
+            return;
+        }
+        try {
+            minimaxRunner.setWeightsFile(weightsFileName);
+        } catch (IllegalArgumentException exception) {
+            minimaxRunner.setWeightsFile("");
+            send("info string " + exception.getMessage());
+        }
+    }
+
+    /*
+     * Executes a position command, setting up the position and then playing
+     * any moves listed. If a move isn't legal, it and the moves after it are
+     * ignored.
+     *
+     * @param tokens The command, split on whitespace.
+     */
+    private void executePosition(final String[] tokens) {
+        int tokenIdx = 1;
+        if (tokens.length > 1 && tokens[1].equals("startpos")) {
+            setPosition(Fen.START_POSITION);
+            tokenIdx = 2;
+        } else if (tokens.length > 1 && tokens[1].equals("fen")) {
+            StringBuilder fenBuilder = new StringBuilder();
+            for (tokenIdx = 2; tokenIdx < tokens.length && !tokens[tokenIdx].equals("moves"); tokenIdx++) {
+                fenBuilder.append(tokens[tokenIdx]).append(' ');
+            }
+            try {
+                setPosition(fenBuilder.toString().trim());
+            } catch (IllegalArgumentException exception) {
+                send("info string " + exception.getMessage());
+                return;
+            }
+        } else {
+            return;
+        }
+
+        if (tokenIdx < tokens.length && tokens[tokenIdx].equals("moves")) {
+            for (tokenIdx++; tokenIdx < tokens.length; tokenIdx++) {
+                if (!playMove(tokens[tokenIdx])) {
+                    send("info string illegal move " + tokens[tokenIdx] + "; ignoring it and any after it");
+                    break;
+                }
+            }
+        }
+    }
+
+    /*
+     * Executes a go command: converts its parameters to MinimaxRunner
+     * tunables and starts the search thread.
+     *
+     * @param tokens The command, split on whitespace.
+     */
+    private void executeGo(final String[] tokens) {
+        int depth = 0;
+        long moveTimeMillis = 0;
+        long whiteTimeMillis = 0;
+        long blackTimeMillis = 0;
+        long whiteIncrementMillis = 0;
+        long blackIncrementMillis = 0;
+        int movesToGo = 0;
+        long nodes = 0;
+        boolean infinite = false;
+        boolean ponder = false;
+
+        try {
+            for (int tokenIdx = 1; tokenIdx < tokens.length; tokenIdx++) {
+                switch (tokens[tokenIdx]) {
+                    case "depth" -> depth = Integer.parseInt(tokens[++tokenIdx]);
+                    case "movetime" -> moveTimeMillis = Long.parseLong(tokens[++tokenIdx]);
+                    case "wtime" -> whiteTimeMillis = Long.parseLong(tokens[++tokenIdx]);
+                    case "btime" -> blackTimeMillis = Long.parseLong(tokens[++tokenIdx]);
+                    case "winc" -> whiteIncrementMillis = Long.parseLong(tokens[++tokenIdx]);
+                    case "binc" -> blackIncrementMillis = Long.parseLong(tokens[++tokenIdx]);
+                    case "movestogo" -> movesToGo = Integer.parseInt(tokens[++tokenIdx]);
+                    case "nodes" -> nodes = Long.parseLong(tokens[++tokenIdx]);
+                    case "infinite" -> infinite = true;
+                    case "ponder" -> ponder = true;
+                    default -> { }
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException exception) {
+            send("info string malformed go command");
+        }
+
+        /* The time budget comes from movetime if it was given, otherwise from
+           the side to move's clock: an even share of the time left over the
+           moves left, plus most of the increment. */
+        long timeBudgetMillis = moveTimeMillis;
+        long clockMillis = colorToMove == BoardArrays.WHITE ? whiteTimeMillis : blackTimeMillis;
+        if (timeBudgetMillis == 0 && clockMillis > 0) {
+            long incrementMillis = colorToMove == BoardArrays.WHITE ? whiteIncrementMillis : blackIncrementMillis;
+            timeBudgetMillis = clockMillis / (movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO)
+                               + incrementMillis * 3 / 4;
+            timeBudgetMillis = Math.min(timeBudgetMillis, clockMillis - MOVE_OVERHEAD_MILLIS);
+        }
+        timeBudgetMillis = timeBudgetMillis > 0 ? Math.max(1, timeBudgetMillis - MOVE_OVERHEAD_MILLIS) : 0;
+
+        /* Without a depth, a search runs until its time, nodes or a stop
+           command ends it. If none of those apply, MinimaxRunner's configured
+           depth is used. */
+        boolean bounded = timeBudgetMillis > 0 || nodes > 0 || infinite || ponder;
+        int maxDepth = depth > 0 ? depth : bounded ? UNBOUNDED_DEPTH : minimaxRunner.getMaxDepth();
+
+        /* While pondering the clock isn't running, so the time budget is
+           held back until ponderhit. */
+        minimaxRunner.setMaxDepth(maxDepth);
+        minimaxRunner.setTimeBudgetMillis(ponder ? 0 : timeBudgetMillis);
+        minimaxRunner.setNodeBudget(nodes);
+        minimaxRunner.setCastlingRights(castlingRights);
+        minimaxRunner.setColors(otherColor(colorToMove), COLOR_ON_TOP);
+        chessboard.setBoardArray(boardArray);
+
+        synchronized (this) {
+            cancelPonderStopTask();
+            holdBestMove = infinite || ponder;
+            ponderTimeBudgetMillis = ponder ? timeBudgetMillis : 0;
+            /* The stop flag is cleared here rather than on the search
+               thread, so a stop read right after this go isn't lost if it
+               comes in before that thread gets going. */
+            minimaxRunner.prepareSearch();
+            searchThread = new Thread(this::runSearch, "uci-search");
+            searchThread.setDaemon(true);
+            searchThread.start();
+        }
+    }
+
+    /*
+     * Runs on the search thread: searches, waits if the best move is being
+     * held, then writes the bestmove line.
+     */
+    private void runSearch() {
+        Chessboard.Move bestMoveObj = minimaxRunner.algorithmTopLevel(pliesPlayed);
+        synchronized (this) {
+            cancelPonderStopTask();
+            while (holdBestMove) {
+                try {
+                    wait();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        send("bestmove " + moveObjToLongAlgNotn(bestMoveObj));
+    }
+
+    /*
+     * Executes a ponderhit command: the opponent played the move being
+     * pondered on, so the ponder search carries on as a normal search, with
+     * the time budget it was given starting now.
+     */
+    private synchronized void executePonderhit() {
+        if (searchThread == null || !holdBestMove) {
+            return;
+        }
+        holdBestMove = false;
+        notifyAll();
+        if (ponderTimeBudgetMillis > 0) {
+            if (stopTimer == null) {
+                stopTimer = new Timer("uci-stop-timer", true);
+            }
+            ponderStopTask = new TimerTask() {
+                @Override
+                public void run() {
+                    /* If the task started running just as it was cancelled,
+                       it's no longer the current one and leaves alone the
+                       search that's been started since. */
+                    synchronized (UciEngine.this) {
+                        if (ponderStopTask == this) {
+                            ponderStopTask = null;
+                            minimaxRunner.stopSearch();
+                        }
+                    }
+                }
+            };
+            stopTimer.schedule(ponderStopTask, ponderTimeBudgetMillis);
+        }
+    }
+
+    /*
+     * Cancels the task a ponderhit scheduled to stop the search, if there is
+     * one. Called with this object's lock held.
+     */
+    private void cancelPonderStopTask() {
+        if (ponderStopTask != null) {
+            ponderStopTask.cancel();
+            ponderStopTask = null;
+        }
+    }
+
+    /*
+     * Stops the search in progress, if there is one, and waits for it to
+     * write its bestmove line.
+     */
+    private void stopSearchAndWait() {
+        Thread threadToJoin;
+        synchronized (this) {
+            if (searchThread == null) {
+                return;
+            }
+            threadToJoin = searchThread;
+            cancelPonderStopTask();
+            minimaxRunner.stopSearch();
+            holdBestMove = false;
+            notifyAll();
+        }
+        try {
+            threadToJoin.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (searchThread == threadToJoin) {
+                searchThread = null;
+            }
+        }
+    }
+
+    /*
+     * Writes an info line for a completed iteration. Called on the search
+     * thread by MinimaxRunner.
+     *
+     * @param depth         The depth of the iteration.
+     * @param score         The score of the best move.
+     * @param nodes         The nodes searched so far.
+     * @param elapsedNanos  The time since the search started.
+     * @param bestMoveArray The best move found.
+     */
+    private void sendIterationInfo(final int depth, final double score, final long nodes, final long elapsedNanos,
+                                   final int[] bestMoveArray) {
+        long elapsedMillis = elapsedNanos / 1_000_000L;
+        long nodesPerSecond = elapsedNanos > 0 ? nodes * 1_000_000_000L / elapsedNanos : 0;
+        long centipawns = Double.isInfinite(score)
+                          ? (score > 0 ? MATE_SCORE_CENTIPAWNS : -MATE_SCORE_CENTIPAWNS)
+                          : Math.round(score * 100);
+
+        /* A win or loss found in the endgame tables is reported as a mate in
+           so many moves, since the tables know the distance; its score would
+           otherwise be well past the one used for a forced mate. */
+        String scoreStr = "cp " + centipawns;
+        int matePlies = MinimaxRunner.bitbaseMatePlies(score, depth);
+        if (matePlies != 0) {
+            scoreStr = "mate " + (matePlies > 0 ? (matePlies + 1) / 2 : matePlies / 2);
+        }
+        send("info depth " + depth + " score " + scoreStr + " nodes " + nodes + " nps " + nodesPerSecond
+             + " time " + elapsedMillis + " pv " + BoardArrays.moveArrayToLongAlgNotn(bestMoveArray));
+    }
+
+    /*
+     * Sets the current position from a FEN string. The en passant field is
+     * ignored, and the move counters are optional; the fullmove number is
+     * used to set the number of plies played.
+     *
+     * @param fen The position, in Forsyth-Edwards Notation.
+     * @throws IllegalArgumentException If the FEN can't be parsed.
+     */
+    private void setPosition(final String fen) throws IllegalArgumentException {
+        Fen.Position position = Fen.parse(fen);
+
+        boardArray = position.boardArray();
+        colorToMove = position.colorToMove();
+        castlingRights = position.castlingRights();
+        pliesPlayed = (position.fullmoveNumber() - 1) * 2 + (colorToMove == BoardArrays.BLACK ? 1 : 0);
+    }
+
+    /*
+     * Plays a move given in long algebraic notation on the current position,
+     * if it's one of the legal moves.
+     *
+     * @param moveStr The move, for instance "e2e4" or "e7e8q".
+     * @return        True if the move was legal and played, false otherwise.
+     */
+    private boolean playMove(final String moveStr) {
+        int[][] movesArray = new int[128][7];
+        int movesCount = BoardArrays.generatePossibleMoves(boardArray, movesArray, colorToMove, COLOR_ON_TOP);
+        for (int moveIdx = 0; moveIdx < movesCount; moveIdx++) {
+            int[] moveArray = movesArray[moveIdx];
+            if (BoardArrays.isCastlingAllowed(moveArray, castlingRights)
+                && BoardArrays.moveArrayToLongAlgNotn(moveArray).equals(moveStr)) {
+                BoardArrays.makeMove(boardArray, moveArray);
+                castlingRights = BoardArrays.updateCastlingRights(castlingRights, moveArray, COLOR_ON_TOP);
+                colorToMove = otherColor(colorToMove);
+                pliesPlayed++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Renders the move MinimaxRunner chose in long algebraic notation.
+     *
+     * @param moveObj The move returned by algorithmTopLevel().
+     * @return        The move in long algebraic notation, or "0000" (the
+     *                protocol's null move) if there was no legal move.
+     */
+    private static String moveObjToLongAlgNotn(final Chessboard.Move moveObj) {
+        if (moveObj.movingPiece() == null) {
+            return "0000";
+        }
+        int[] moveArray = new int[] {moveObj.movingPiece().pieceInt(), moveObj.fromXCoord(), moveObj.fromYCoord(),
+                                     moveObj.toXCoord(), moveObj.toYCoord(), moveObj.capturedPieceInt(),
+                                     moveObj.promotedToPieceInt()};
+        return BoardArrays.moveArrayToLongAlgNotn(moveArray);
+    }
+
+    /*
+     * Collects the words of a setoption command between a keyword and the
+     * next keyword.
+     *
+     * @param tokens     The command, split on whitespace.
+     * @param startToken The keyword the span follows.
+     * @param endToken   The keyword that ends the span, or null to run to the
+     *                   end of the command.
+     * @return           The words, joined with single spaces; an empty string
+     *                   if the keyword isn't present.
+     */
+    private static String tokenSpan(final String[] tokens, final String startToken, final String endToken) {
+        StringBuilder spanBuilder = new StringBuilder();
+        boolean inSpan = false;
+        for (String token : tokens) {
+            if (inSpan && token.equals(endToken)) {
+                break;
+            } else if (inSpan) {
+                spanBuilder.append(spanBuilder.length() > 0 ? " " : "").append(token);
+            } else if (token.equals(startToken)) {
+                inSpan = true;
+            }
+        }
+        return spanBuilder.toString();
+    }
+
+    /*
+     * Converts a Hash option value to a number of evaluation cache entries.
+     *
+     * @param megabytes The cache size in megabytes.
+     * @return          The number of entries that fit in that much memory.
+     */
+    private static int megabytesToCacheEntries(final int megabytes) {
+        return (int) ((long) megabytes * 1024 * 1024 / EVALUATION_CACHE_ENTRY_BYTES);
+    }
+
+    /*
+     * Returns the opposing color.
+     *
+     * @param color BoardArrays.WHITE or BoardArrays.BLACK.
+     * @return      The other of the two.
+     */
+    private static int otherColor(final int color) {
+        return color == BoardArrays.WHITE ? BoardArrays.BLACK : BoardArrays.WHITE;
+    }
+
+    /*
+     * Writes a line to the output and flushes it. Synchronized since both the
+     * command loop and the search thread write.
+     *
+     * @param line The line to write.
+     */
+    private synchronized void send(final String line) {
+        output.println(line);
+        output.flush();
+    }
+
+    /*
+     * Runs every script in CHECK_SCRIPTS CHECK_RUNS times, each on a new
+     * engine, and prints how many runs of each passed.
+     *
+     * @return True if every run passed, false otherwise.
+     */
+    private static boolean runCheck() {
+        boolean allPassed = true;
+
+        for (String script : CHECK_SCRIPTS) {
+            long expectedBestMoves = script.lines().filter(line -> line.startsWith("go")).count();
+            int passedRuns = 0;
+            for (int runIdx = 0; runIdx < CHECK_RUNS; runIdx++) {
+                ByteArrayOutputStream outputBytes = new ByteArrayOutputStream();
+                UciEngine engine = new UciEngine(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)),
+                                                 new PrintStream(outputBytes, true, StandardCharsets.UTF_8));
+                Thread engineThread = new Thread(() -> {
+                    try {
+                        engine.run();
+                    } catch (IOException exception) {
+                        assert true;
+                    }
+                }, "uci-check");
+                engineThread.setDaemon(true);
+                engineThread.start();
+                try {
+                    engineThread.join(CHECK_TIMEOUT_MILLIS);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                long bestMoves = outputBytes.toString(StandardCharsets.UTF_8).lines()
+                                            .filter(line -> line.startsWith("bestmove ")).count();
+                if (!engineThread.isAlive() && bestMoves == expectedBestMoves) {
+                    passedRuns++;
+                }
+            }
+            boolean passed = passedRuns == CHECK_RUNS;
+            allPassed &= passed;
+            System.out.printf("%-80s %2d/%2d  %s%n", script.strip().replace("\n", " | "), passedRuns, CHECK_RUNS,
+                              passed ? "ok" : "FAIL");
+        }
+
+        System.out.println();
+        System.out.println(allPassed ? "All scripts passed" : "FAILURES");
+        return allPassed;
+    }
+
+    /**
+     * Main method, which runs the engine on standard in and standard out, or
+     * with --check runs the check scripts. The process exits with status 1 if
+     * a check script fails.
+     *
+     * @param args The commandline arguments: none, or --check.
+     * @throws IOException If reading from standard in fails.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 1 && args[0].equals("--check")) {
+            System.exit(runCheck() ? 0 : 1);
+        }
+        new UciEngine(System.in, System.out).run();
+    }
+}